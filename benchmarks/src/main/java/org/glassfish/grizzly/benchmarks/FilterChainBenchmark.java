@@ -0,0 +1,367 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.benchmarks;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.IOEvent;
+import org.glassfish.grizzly.ProcessorExecutor;
+import org.glassfish.grizzly.WriteHandler;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.DefaultFilterChain;
+import org.glassfish.grizzly.filterchain.FilterChain;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.FilterChainEvent;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.nio.NIOConnection;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the per-operation dispatch cost of a {@link DefaultFilterChain}
+ * laid out like a typical HTTPS server chain (transport, SSL, idle timeout,
+ * HTTP codec, file cache, HTTP server), with and without skipping of the
+ * filters, which don't override the handler of the executed operation.
+ *
+ * The filters are synthetic: each of them overrides exactly the same set of
+ * handlers as the real filter it stands for, but does no work, so the
+ * numbers reflect the chain traversal overhead only.
+ *
+ * Run with:
+ * <pre>
+ * mvn -Pbenchmarks -pl benchmarks -am package
+ * java -jar benchmarks/target/benchmarks.jar FilterChainBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FilterChainBenchmark {
+
+    private static final FilterChainEvent EVENT = new FilterChainEvent() {
+        @Override
+        public Object type() {
+            return FilterChainBenchmark.class;
+        }
+    };
+
+    private static final Object MESSAGE = new Object();
+
+    @Param({"true", "false"})
+    public boolean skipNoOpFilters;
+
+    private FilterChain filterChain;
+    private BenchmarkConnection connection;
+
+    @Setup
+    public void setUp() {
+        // the property is read when the chain compiles its dispatch table,
+        // which happens on the first execution
+        System.setProperty(DefaultFilterChain.SKIP_NOOP_FILTERS_PROPERTY,
+                String.valueOf(skipNoOpFilters));
+
+        filterChain = FilterChainBuilder.stateless()
+                .add(new TransportLikeFilter())
+                .add(new SSLLikeFilter())
+                .add(new IdleTimeoutLikeFilter())
+                .add(new HttpCodecLikeFilter())
+                .add(new FileCacheLikeFilter())
+                .add(new HttpServerLikeFilter())
+                .build();
+
+        connection = new BenchmarkConnection();
+
+        // compile the dispatch table while the property has the expected value
+        read();
+    }
+
+    @Benchmark
+    public FilterChain read() {
+        ProcessorExecutor.execute(connection, IOEvent.READ, filterChain, null);
+        return filterChain;
+    }
+
+    @Benchmark
+    public FilterChain write() {
+        filterChain.write(connection, null, MESSAGE, null);
+        return filterChain;
+    }
+
+    @Benchmark
+    public FilterChain eventUpstream() {
+        filterChain.fireEventUpstream(connection, EVENT, null);
+        return filterChain;
+    }
+
+    @Benchmark
+    public FilterChain eventDownstream() {
+        filterChain.fireEventDownstream(connection, EVENT, null);
+        return filterChain;
+    }
+
+    // ------------------------------------------------------- Synthetic filters
+
+    /**
+     * Mirrors TransportFilter and SSLBaseFilter, which override every handler.
+     */
+    private static class AllHandlersFilter extends BaseFilter {
+
+        @Override
+        public NextAction handleRead(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getInvokeAction();
+        }
+
+        @Override
+        public NextAction handleWrite(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getInvokeAction();
+        }
+
+        @Override
+        public NextAction handleEvent(final FilterChainContext ctx,
+                final FilterChainEvent event) throws IOException {
+            return ctx.getInvokeAction();
+        }
+
+        @Override
+        public NextAction handleConnect(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getInvokeAction();
+        }
+
+        @Override
+        public NextAction handleAccept(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getInvokeAction();
+        }
+
+        @Override
+        public NextAction handleClose(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getInvokeAction();
+        }
+    }
+
+    private static final class TransportLikeFilter extends AllHandlersFilter {
+    }
+
+    private static final class SSLLikeFilter extends AllHandlersFilter {
+    }
+
+    /**
+     * Mirrors IdleTimeoutFilter, which doesn't handle events.
+     */
+    private static final class IdleTimeoutLikeFilter extends BaseFilter {
+
+        @Override
+        public NextAction handleRead(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getInvokeAction();
+        }
+
+        @Override
+        public NextAction handleWrite(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getInvokeAction();
+        }
+
+        @Override
+        public NextAction handleConnect(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getInvokeAction();
+        }
+
+        @Override
+        public NextAction handleAccept(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getInvokeAction();
+        }
+
+        @Override
+        public NextAction handleClose(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getInvokeAction();
+        }
+    }
+
+    /**
+     * Mirrors the codec-level HttpServerFilter.
+     */
+    private static final class HttpCodecLikeFilter extends BaseFilter {
+
+        @Override
+        public NextAction handleRead(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getInvokeAction();
+        }
+
+        @Override
+        public NextAction handleWrite(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getInvokeAction();
+        }
+
+        @Override
+        public NextAction handleEvent(final FilterChainContext ctx,
+                final FilterChainEvent event) throws IOException {
+            return ctx.getInvokeAction();
+        }
+
+        @Override
+        public NextAction handleClose(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getInvokeAction();
+        }
+    }
+
+    /**
+     * Mirrors FileCacheFilter, which is interested in reads only.
+     */
+    private static final class FileCacheLikeFilter extends BaseFilter {
+
+        @Override
+        public NextAction handleRead(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getInvokeAction();
+        }
+    }
+
+    /**
+     * Mirrors the server-level HttpServerFilter.
+     */
+    private static final class HttpServerLikeFilter extends BaseFilter {
+
+        @Override
+        public NextAction handleRead(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getStopAction();
+        }
+
+        @Override
+        public NextAction handleEvent(final FilterChainContext ctx,
+                final FilterChainEvent event) throws IOException {
+            return ctx.getStopAction();
+        }
+    }
+
+    // ------------------------------------------------------------- Connection
+
+    private static final class BenchmarkConnection extends NIOConnection {
+
+        private final SocketAddress localAddress;
+        private final SocketAddress peerAddress;
+
+        BenchmarkConnection() {
+            super(TCPNIOTransportBuilder.newInstance().build());
+            localAddress = new InetSocketAddress("127.0.0.1", 0);
+            peerAddress = new InetSocketAddress("127.0.0.1", 0);
+        }
+
+        @Override
+        protected void preClose() {
+        }
+
+        @Override
+        public SocketAddress getPeerAddress() {
+            return peerAddress;
+        }
+
+        @Override
+        public SocketAddress getLocalAddress() {
+            return localAddress;
+        }
+
+        @Override
+        public int getReadBufferSize() {
+            return 65536;
+        }
+
+        @Override
+        public void setReadBufferSize(int readBufferSize) {
+        }
+
+        @Override
+        public int getWriteBufferSize() {
+            return 65536;
+        }
+
+        @Override
+        public void setWriteBufferSize(int writeBufferSize) {
+        }
+
+        @Override
+        public void notifyCanWrite(WriteHandler handler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void notifyCanWrite(WriteHandler handler, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean canWrite() {
+            return true;
+        }
+
+        @Override
+        public boolean canWrite(int length) {
+            return true;
+        }
+    }
+}
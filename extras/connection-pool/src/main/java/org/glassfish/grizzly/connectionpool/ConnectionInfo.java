@@ -40,6 +40,7 @@
 
 package org.glassfish.grizzly.connectionpool;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import org.glassfish.grizzly.Connection;
 
 /**
@@ -49,18 +50,46 @@ import org.glassfish.grizzly.Connection;
  * @author Alexey Stashok
  */
 public final class ConnectionInfo<E> {
+    /**
+     * The {@link Connection} is used by a user
+     */
+    static final int BUSY = 0;
+    /**
+     * The {@link Connection} is waiting in the pool to be retrieved
+     */
+    static final int READY = 1;
+    /**
+     * The {@link Connection} is not registered in the pool anymore
+     */
+    static final int DETACHED = 2;
+    
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<ConnectionInfo> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(ConnectionInfo.class, "state");
+    
     final Connection connection;
-    final Link<ConnectionInfo<E>> readyStateLink;
     final SingleEndpointPool<E> endpointPool;
     
     long ttlTimeout; // the place holder for TTL time stamp
     
     private final long pooledTimeStamp;
+    
+    /**
+     * The connection state, one of {@link #BUSY}, {@link #READY}, {@link #DETACHED}.
+     * State transitions are performed using CAS, so ready {@link Connection}s
+     * could be retrieved from the pool without holding the pool monitor.
+     */
+    private volatile int state = BUSY;
+    
+    /**
+     * The time stamp, when the {@link Connection} was switched to ready state
+     * last time. The value is meaningful only in {@link #READY} state.
+     */
+    private volatile long readyTimeStamp;
 
     ConnectionInfo(final Connection connection, final SingleEndpointPool<E> endpointPool) {
         this.connection = connection;
         this.endpointPool = endpointPool;
-        this.readyStateLink = new Link<ConnectionInfo<E>>(this);
         pooledTimeStamp = System.currentTimeMillis();
     }
 
@@ -70,9 +99,7 @@ public final class ConnectionInfo<E> {
      * if the {@link Connection} is currently busy.
      */
     public boolean isReady() {
-        synchronized(endpointPool.poolSync) {
-            return readyStateLink.isAttached();
-        }
+        return state == READY;
     }
     
     /**
@@ -81,9 +108,8 @@ public final class ConnectionInfo<E> {
      * the {@link Connection} is currently in busy state.
      */
     public long getReadyTimeStamp() {
-        synchronized(endpointPool.poolSync) {
-            return readyStateLink.getAttachmentTimeStamp();
-        }
+        final long timeStamp = readyTimeStamp;
+        return state == READY ? timeStamp : -1;
     }
     
     /**
@@ -94,11 +120,54 @@ public final class ConnectionInfo<E> {
         return pooledTimeStamp;
     }
 
+    /**
+     * @return the current connection state
+     */
+    int getState() {
+        return state;
+    }
+    
+    /**
+     * Switches the {@link Connection} from busy to ready state.
+     * 
+     * @return <tt>true</tt> if the state has been changed, or <tt>false</tt>
+     * if the {@link Connection} was not busy
+     */
+    boolean markReady() {
+        if (state != BUSY) {
+            return false;
+        }
+        
+        // only the Connection owner is allowed to switch it to ready state,
+        // so it's safe to update the time stamp before the state
+        readyTimeStamp = System.currentTimeMillis();
+        return STATE_UPDATER.compareAndSet(this, BUSY, READY);
+    }
+    
+    /**
+     * Switches the {@link Connection} from ready to busy state.
+     * 
+     * @return <tt>true</tt> if the caller has exclusively obtained the
+     * {@link Connection}, or <tt>false</tt> if the {@link Connection} was not ready
+     */
+    boolean markBusy() {
+        return STATE_UPDATER.compareAndSet(this, READY, BUSY);
+    }
+    
+    /**
+     * Switches the {@link Connection} to detached state.
+     * 
+     * @return the previous connection state
+     */
+    int markDetached() {
+        return STATE_UPDATER.getAndSet(this, DETACHED);
+    }
+    
     @Override
     public String toString() {
         return "ConnectionInfo{"
                     + "connection=" + connection
-                    + ", readyStateLink=" + readyStateLink
+                    + ", state=" + state
                     + ", endpointPool=" + endpointPool
                     + ", pooledTimeStamp=" + pooledTimeStamp
                     + "} " + super.toString();
@@ -0,0 +1,218 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.connectionpool;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.glassfish.grizzly.monitoring.MetricsSource;
+import org.glassfish.grizzly.monitoring.MetricsWriter;
+
+/**
+ * {@link MetricsSource} reporting the state of one or more
+ * {@link SingleEndpointPool}s and {@link MultiEndpointPool}s.
+ * The values are read from the pools at rendering time, so the pools don't
+ * pay any monitoring cost in between.
+ * 
+ * @since 2.4.3
+ */
+public class ConnectionPoolMetrics implements MetricsSource {
+    private final CopyOnWriteArrayList<Entry> entries =
+            new CopyOnWriteArrayList<Entry>();
+
+    /**
+     * Starts reporting metrics of the {@link SingleEndpointPool}.
+     * 
+     * @param name the name to label the pool samples with
+     * @param pool the {@link SingleEndpointPool}
+     * @return <tt>true</tt> if the pool has been added, or <tt>false</tt>
+     *          if it had already been added before
+     */
+    public boolean add(final String name, final SingleEndpointPool pool) {
+        return add(new Entry(name, pool, null));
+    }
+
+    /**
+     * Starts reporting metrics of the {@link MultiEndpointPool}.
+     * The samples are aggregated across all the pool endpoints.
+     * 
+     * @param name the name to label the pool samples with
+     * @param pool the {@link MultiEndpointPool}
+     * @return <tt>true</tt> if the pool has been added, or <tt>false</tt>
+     *          if it had already been added before
+     */
+    public boolean add(final String name, final MultiEndpointPool pool) {
+        return add(new Entry(name, null, pool));
+    }
+
+    /**
+     * Stops reporting metrics of the pool.
+     * 
+     * @param pool the {@link SingleEndpointPool} or {@link MultiEndpointPool}
+     * @return <tt>true</tt> if the pool has been removed
+     */
+    public synchronized boolean remove(final Object pool) {
+        final Entry entry = find(pool);
+        return entry != null && entries.remove(entry);
+    }
+
+    @Override
+    public void writeMetrics(final MetricsWriter writer) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        
+        writer.family("grizzly_connection_pool_connections_open",
+                MetricsWriter.Type.GAUGE,
+                "The number of connected connections in the pool");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_connection_pool_connections_open")
+                    .label("pool", entry.name)
+                    .value(entry.getOpenConnectionsCount());
+        }
+        
+        writer.family("grizzly_connection_pool_connections_pending",
+                MetricsWriter.Type.GAUGE,
+                "The number of connections being established");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_connection_pool_connections_pending")
+                    .label("pool", entry.name)
+                    .value(entry.getSize() - entry.getOpenConnectionsCount());
+        }
+        
+        writer.family("grizzly_connection_pool_connections_ready",
+                MetricsWriter.Type.GAUGE,
+                "The number of idle connections ready to be taken");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_connection_pool_connections_ready")
+                    .label("pool", entry.name)
+                    .value(entry.getReadyConnectionsCount());
+        }
+        
+        writer.family("grizzly_connection_pool_connections_max",
+                MetricsWriter.Type.GAUGE,
+                "The maximum number of connections the pool can keep, or -1 if unlimited");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_connection_pool_connections_max")
+                    .label("pool", entry.name)
+                    .value(entry.getMaxConnectionsCount());
+        }
+        
+        writer.family("grizzly_connection_pool_waiters",
+                MetricsWriter.Type.GAUGE,
+                "The number of asynchronous requests waiting for a connection");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_connection_pool_waiters")
+                    .label("pool", entry.name)
+                    .value(entry.getWaitersCount());
+        }
+    }
+
+    private synchronized boolean add(final Entry entry) {
+        if (find(entry.singlePool != null
+                ? entry.singlePool : entry.multiPool) != null) {
+            return false;
+        }
+        
+        return entries.add(entry);
+    }
+    
+    private Entry find(final Object pool) {
+        for (Entry entry : entries) {
+            if (entry.singlePool == pool || entry.multiPool == pool) {
+                return entry;
+            }
+        }
+        
+        return null;
+    }
+    
+    private static final class Entry {
+        private final String name;
+        private final SingleEndpointPool<?> singlePool;
+        private final MultiEndpointPool<?> multiPool;
+
+        Entry(final String name, final SingleEndpointPool<?> singlePool,
+                final MultiEndpointPool<?> multiPool) {
+            this.name = name;
+            this.singlePool = singlePool;
+            this.multiPool = multiPool;
+        }
+        
+        int getSize() {
+            return singlePool != null ? singlePool.size() : multiPool.size();
+        }
+        
+        int getOpenConnectionsCount() {
+            return singlePool != null
+                    ? singlePool.getOpenConnectionsCount()
+                    : multiPool.getOpenConnectionsCount();
+        }
+        
+        int getMaxConnectionsCount() {
+            return singlePool != null
+                    ? singlePool.getMaxPoolSize()
+                    : multiPool.getMaxConnectionsTotal();
+        }
+        
+        int getReadyConnectionsCount() {
+            if (singlePool != null) {
+                return singlePool.getReadyConnectionsCount();
+            }
+            
+            int count = 0;
+            for (SingleEndpointPool<?> pool : multiPool.endpointToPoolMap.values()) {
+                count += pool.getReadyConnectionsCount();
+            }
+            return count;
+        }
+        
+        int getWaitersCount() {
+            if (singlePool != null) {
+                return singlePool.getAsyncWaitersCount();
+            }
+            
+            int count = 0;
+            for (SingleEndpointPool<?> pool : multiPool.endpointToPoolMap.values()) {
+                count += pool.getAsyncWaitersCount();
+            }
+            return count;
+        }
+    }
+}
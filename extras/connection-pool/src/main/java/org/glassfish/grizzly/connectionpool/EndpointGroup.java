@@ -0,0 +1,592 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.connectionpool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.CloseListener;
+import org.glassfish.grizzly.CloseType;
+import org.glassfish.grizzly.CompletionHandler;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.GrizzlyFuture;
+import org.glassfish.grizzly.impl.FutureImpl;
+import org.glassfish.grizzly.utils.Futures;
+
+/**
+ * The group of equivalent {@link Endpoint}s served by one {@link MultiEndpointPool},
+ * which chooses the {@link Endpoint} for each {@link #take()} request itself.
+ * 
+ * The {@link Endpoint} is selected using "power of two choices": two random
+ * group members are compared and the one with the lower cost is used, where
+ * the cost is the member's EWMA response latency multiplied by the number of
+ * {@link Connection}s currently taken from it (plus one). The response latency
+ * is reported by the user, when the {@link Connection} is returned using
+ * {@link #release(org.glassfish.grizzly.Connection, long, java.util.concurrent.TimeUnit)}.
+ * 
+ * An {@link Endpoint}, whose connect attempts failed more than
+ * <tt>maxReconnectAttempts</tt> times in a row, is ejected from the selection
+ * for the endpoint pool's <tt>reconnectDelay</tt> (or {@link #DEFAULT_EJECTION_TIMEOUT_MILLIS},
+ * if reconnect mechanism is disabled). Once the period is expired, the
+ * {@link Endpoint} becomes eligible again and the next successful connect
+ * brings it back. If all the {@link Endpoint}s are ejected, they all stay
+ * eligible, so the group keeps trying.
+ * 
+ * When the group is built, each {@link Endpoint} pool is pre-warmed, so
+ * it starts establishing its <tt>corePoolSize</tt> {@link Connection}s
+ * (see {@link MultiEndpointPool.EndpointPoolCustomizer}).
+ * 
+ * {@link Connection}s obtained from the group have to be returned to the
+ * group, not directly to the {@link MultiEndpointPool}, otherwise the
+ * {@link Endpoint} load will be calculated incorrectly.
+ * 
+ * @param <E> the address type, for example for TCP transport it's {@link java.net.SocketAddress}
+ */
+public class EndpointGroup<E> {
+    private static final Logger LOGGER = Grizzly.logger(EndpointGroup.class);
+    
+    /**
+     * The default period, for which a failing {@link Endpoint} is ejected,
+     * if the endpoint pool has no reconnect delay set.
+     */
+    public static final long DEFAULT_EJECTION_TIMEOUT_MILLIS = 5000;
+    
+    /**
+     * Returns the {@link EndpointGroup} {@link Builder}.
+     * 
+     * @param <T> endpoint type
+     * @param pool the {@link MultiEndpointPool} to be used to obtain
+     *             {@link Connection}s
+     * @return {@link Builder}
+     */
+    public static <T> Builder<T> builder(final MultiEndpointPool<T> pool) {
+        return new Builder<T>(pool);
+    }
+    
+    private final MultiEndpointPool<E> pool;
+    
+    private final List<Member<E>> members;
+    
+    private final Map<Endpoint<E>, Member<E>> membersMap =
+            new ConcurrentHashMap<Endpoint<E>, Member<E>>();
+    
+    /**
+     * {@link Connection}s taken from the group and not returned yet
+     */
+    private final Map<Connection, Member<E>> takenConnections =
+            new ConcurrentHashMap<Connection, Member<E>>();
+    
+    /**
+     * The weight of the new latency sample in EWMA
+     */
+    private final double latencyWeight;
+    
+    private final CloseListener<Connection, CloseType> closeListener =
+            new CloseListener<Connection, CloseType>() {
+        @Override
+        public void onClosed(final Connection connection, final CloseType type)
+                throws IOException {
+            final Member<E> member = takenConnections.remove(connection);
+            if (member != null) {
+                member.inFlight.decrementAndGet();
+            }
+        }
+    };
+    
+    /**
+     * Constructs EndpointGroup instance.
+     * 
+     * @param pool the {@link MultiEndpointPool} to be used to obtain {@link Connection}s
+     * @param endpoints the group {@link Endpoint}s
+     * @param latencyWeight the weight of the new latency sample in EWMA
+     */
+    protected EndpointGroup(final MultiEndpointPool<E> pool,
+            final Collection<Endpoint<E>> endpoints,
+            final double latencyWeight) {
+        this.pool = pool;
+        this.latencyWeight = latencyWeight;
+        
+        final List<Member<E>> list = new ArrayList<Member<E>>(endpoints.size());
+        for (Endpoint<E> endpoint : endpoints) {
+            if (!membersMap.containsKey(endpoint)) {
+                final Member<E> member = new Member<E>(endpoint);
+                membersMap.put(endpoint, member);
+                list.add(member);
+            }
+        }
+        
+        members = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @return the {@link MultiEndpointPool} used by this group
+     */
+    public MultiEndpointPool<E> getPool() {
+        return pool;
+    }
+    
+    /**
+     * @return the group {@link Endpoint}s
+     */
+    public List<Endpoint<E>> getEndpoints() {
+        final List<Endpoint<E>> endpoints = new ArrayList<Endpoint<E>>(members.size());
+        for (Member<E> member : members) {
+            endpoints.add(member.endpoint);
+        }
+        
+        return endpoints;
+    }
+    
+    /**
+     * @param endpoint {@link Endpoint}
+     * @return the number of {@link Connection}s to the {@link Endpoint},
+     *         taken from the group and not returned yet
+     */
+    public int getInFlightCount(final Endpoint<E> endpoint) {
+        final Member<E> member = membersMap.get(endpoint);
+        return member != null ? member.inFlight.get() : 0;
+    }
+    
+    /**
+     * @param endpoint {@link Endpoint}
+     * @param timeUnit {@link TimeUnit}
+     * @return the EWMA response latency of the {@link Endpoint}, or <tt>0</tt>
+     *         if no latency has been reported yet
+     */
+    public long getLatency(final Endpoint<E> endpoint, final TimeUnit timeUnit) {
+        final Member<E> member = membersMap.get(endpoint);
+        return member != null
+                ? timeUnit.convert(member.latencyNanos.get(), TimeUnit.NANOSECONDS)
+                : 0;
+    }
+    
+    /**
+     * @param endpoint {@link Endpoint}
+     * @return <tt>true</tt> if the {@link Endpoint} is currently excluded
+     *         from the selection because of connect failures
+     */
+    public boolean isEjected(final Endpoint<E> endpoint) {
+        final Member<E> member = membersMap.get(endpoint);
+        return member != null && isEjected(member, System.currentTimeMillis());
+    }
+    
+    /**
+     * Initiates establishing <tt>corePoolSize</tt> {@link Connection}s for
+     * each group {@link Endpoint}.
+     * 
+     * @return the number of initiated connect operations
+     * @throws IOException if the pool is closed
+     */
+    public int prewarm() throws IOException {
+        int count = 0;
+        for (Member<E> member : members) {
+            count += pool.obtainSingleEndpointPool(member.endpoint).prewarm();
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Obtains a {@link Connection} to the least loaded group {@link Endpoint}
+     * in non-blocking/asynchronous fashion.
+     * 
+     * @return {@link GrizzlyFuture}
+     * @see MultiEndpointPool#take(org.glassfish.grizzly.connectionpool.Endpoint)
+     */
+    public GrizzlyFuture<Connection> take() {
+        final FutureImpl<Connection> future = Futures.createSafeFuture();
+        take(Futures.toCompletionHandler(future));
+        
+        return future;
+    }
+    
+    /**
+     * Obtains a {@link Connection} to the least loaded group {@link Endpoint}
+     * in non-blocking/asynchronous fashion.
+     * 
+     * @param completionHandler to be notified once {@link Connection} is available or
+     *                          an error occurred
+     */
+    public void take(final CompletionHandler<Connection> completionHandler) {
+        if (completionHandler == null) {
+            throw new IllegalArgumentException("The completionHandler argument can not be null");
+        }
+        
+        final Member<E> member = select();
+        if (member == null) {
+            completionHandler.failed(new IOException("The endpoint group is empty"));
+            return;
+        }
+        
+        member.inFlight.incrementAndGet();
+        pool.take(member.endpoint, new CompletionHandler<Connection>() {
+
+            @Override
+            public void cancelled() {
+                member.inFlight.decrementAndGet();
+                completionHandler.cancelled();
+            }
+
+            @Override
+            public void failed(final Throwable throwable) {
+                member.inFlight.decrementAndGet();
+                completionHandler.failed(throwable);
+            }
+
+            @Override
+            public void completed(final Connection connection) {
+                takenConnections.put(connection, member);
+                connection.addCloseListener(closeListener);
+                completionHandler.completed(connection);
+            }
+
+            @Override
+            public void updated(final Connection connection) {
+                completionHandler.updated(connection);
+            }
+        });
+    }
+    
+    /**
+     * Returns the {@link Connection} to the pool without updating the
+     * {@link Endpoint} response latency.
+     * 
+     * @param connection the {@link Connection} to return
+     * @return <code>true</code> if the connection was successfully released
+     * @see MultiEndpointPool#release(org.glassfish.grizzly.Connection)
+     */
+    public boolean release(final Connection connection) {
+        return release(connection, -1, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Returns the {@link Connection} to the pool and updates the
+     * {@link Endpoint} response latency.
+     * 
+     * @param connection the {@link Connection} to return
+     * @param latency the response latency observed on the {@link Connection},
+     *                negative value means the latency is unknown
+     * @param timeUnit the latency {@link TimeUnit}
+     * @return <code>true</code> if the connection was successfully released
+     * @see MultiEndpointPool#release(org.glassfish.grizzly.Connection)
+     */
+    public boolean release(final Connection connection, final long latency,
+            final TimeUnit timeUnit) {
+        final Member<E> member = takenConnections.remove(connection);
+        if (member != null) {
+            connection.removeCloseListener(closeListener);
+            member.inFlight.decrementAndGet();
+            
+            if (latency >= 0) {
+                updateLatency(member, timeUnit.toNanos(latency));
+            }
+        }
+        
+        return pool.release(connection);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) +
+                "{"
+                + "members=" + members
+                + ", pool=" + pool
+                + "}";
+    }
+    
+    /**
+     * Selects the group member using "power of two choices".
+     */
+    private Member<E> select() {
+        final int size = members.size();
+        if (size < 2) {
+            return size == 1 ? members.get(0) : null;
+        }
+        
+        final long now = System.currentTimeMillis();
+        
+        final Member<E> first;
+        final Member<E> second;
+        
+        final Member<E>[] pair = pickTwo(members);
+        final boolean isFirstEjected = isEjected(pair[0], now);
+        final boolean isSecondEjected = isEjected(pair[1], now);
+        
+        if (!isFirstEjected && !isSecondEjected) {
+            first = pair[0];
+            second = pair[1];
+        } else if (!isFirstEjected || !isSecondEjected) {
+            return isFirstEjected ? pair[1] : pair[0];
+        } else {
+            // both picks are ejected, choose among the eligible members
+            final List<Member<E>> eligible = new ArrayList<Member<E>>(size);
+            for (Member<E> member : members) {
+                if (!isEjected(member, now)) {
+                    eligible.add(member);
+                }
+            }
+            
+            if (eligible.size() == 1) {
+                return eligible.get(0);
+            }
+            
+            // if all the endpoints are ejected - keep trying all of them
+            final Member<E>[] eligiblePair =
+                    pickTwo(eligible.isEmpty() ? members : eligible);
+            first = eligiblePair[0];
+            second = eligiblePair[1];
+        }
+        
+        final double firstCost = first.cost();
+        final double secondCost = second.cost();
+        if (firstCost != secondCost) {
+            return firstCost < secondCost ? first : second;
+        }
+        
+        return first.inFlight.get() <= second.inFlight.get() ? first : second;
+    }
+    
+    /**
+     * Picks two distinct random members from the list, which has at least
+     * two elements.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> Member<E>[] pickTwo(final List<Member<E>> list) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int size = list.size();
+        
+        final int firstIdx = random.nextInt(size);
+        int secondIdx = random.nextInt(size - 1);
+        if (secondIdx >= firstIdx) {
+            secondIdx++;
+        }
+        
+        return new Member[] {list.get(firstIdx), list.get(secondIdx)};
+    }
+    
+    private boolean isEjected(final Member<E> member, final long now) {
+        final SingleEndpointPool<E> sePool =
+                pool.endpointToPoolMap.get(member.endpoint);
+        if (sePool == null ||
+                sePool.getConsecutiveConnectFailures() <= sePool.getMaxReconnectAttempts()) {
+            return false;
+        }
+        
+        final long reconnectDelay = sePool.getReconnectDelay(TimeUnit.MILLISECONDS);
+        final long ejectionTimeout = reconnectDelay > 0
+                ? reconnectDelay
+                : DEFAULT_EJECTION_TIMEOUT_MILLIS;
+        
+        final boolean isEjected =
+                now - sePool.getLastConnectFailureTimeStamp() < ejectionTimeout;
+        
+        if (isEjected && LOGGER.isLoggable(Level.FINEST)) {
+            LOGGER.log(Level.FINEST, "Endpoint {0} is ejected", member.endpoint);
+        }
+        
+        return isEjected;
+    }
+    
+    private void updateLatency(final Member<E> member, final long sampleNanos) {
+        final AtomicLong latencyNanos = member.latencyNanos;
+        
+        long current;
+        long updated;
+        do {
+            current = latencyNanos.get();
+            updated = current == 0
+                    ? Math.max(sampleNanos, 1)
+                    : Math.max((long) (current + (sampleNanos - current) * latencyWeight), 1);
+        } while (!latencyNanos.compareAndSet(current, updated));
+    }
+    
+    /**
+     * The group member state.
+     */
+    private static final class Member<E> {
+        private final Endpoint<E> endpoint;
+        /**
+         * The number of {@link Connection}s taken and not returned yet
+         */
+        private final AtomicInteger inFlight = new AtomicInteger();
+        /**
+         * EWMA response latency in nanoseconds, <tt>0</tt> means there is
+         * no latency reported yet
+         */
+        private final AtomicLong latencyNanos = new AtomicLong();
+
+        private Member(final Endpoint<E> endpoint) {
+            this.endpoint = endpoint;
+        }
+        
+        /**
+         * The member cost: EWMA latency multiplied by the number of
+         * in-flight requests including the new one. The members with no
+         * latency reported yet are preferred, so they get probed.
+         */
+        private double cost() {
+            return (double) latencyNanos.get() * (inFlight.get() + 1);
+        }
+
+        @Override
+        public String toString() {
+            return "Member{"
+                    + "endpoint=" + endpoint
+                    + ", inFlight=" + inFlight
+                    + ", latencyNanos=" + latencyNanos
+                    + "}";
+        }
+    }
+    
+    /**
+     * The Builder class responsible for constructing {@link EndpointGroup}.
+     * 
+     * @param <E> endpoint address type, for example {@link java.net.SocketAddress} for TCP and UDP transports
+     */
+    public static class Builder<E> {
+        private final MultiEndpointPool<E> pool;
+        
+        private final List<Endpoint<E>> endpoints = new ArrayList<Endpoint<E>>();
+        
+        /**
+         * the weight of the new latency sample in EWMA
+         */
+        private double latencyWeight = 0.2;
+        
+        /**
+         * pre-warm endpoint pools, when the group is built
+         */
+        private boolean prewarm = true;
+
+        protected Builder(final MultiEndpointPool<E> pool) {
+            if (pool == null) {
+                throw new IllegalArgumentException("The pool can not be null");
+            }
+            
+            this.pool = pool;
+        }
+        
+        /**
+         * Adds the {@link Endpoint} to the group.
+         * 
+         * @param endpoint {@link Endpoint}
+         * @return this {@link Builder}
+         */
+        public Builder<E> endpoint(final Endpoint<E> endpoint) {
+            endpoints.add(endpoint);
+            return this;
+        }
+        
+        /**
+         * Adds the {@link Endpoint}s to the group.
+         * 
+         * @param endpoints {@link Endpoint}s
+         * @return this {@link Builder}
+         */
+        public Builder<E> endpoints(final Collection<Endpoint<E>> endpoints) {
+            this.endpoints.addAll(endpoints);
+            return this;
+        }
+        
+        /**
+         * Sets the weight (from <tt>0</tt> exclusive to <tt>1</tt> inclusive)
+         * of the new latency sample used to calculate the {@link Endpoint}
+         * EWMA response latency. The bigger the value - the faster the
+         * group reacts on latency changes.
+         * Default value is 0.2.
+         * 
+         * @param latencyWeight the new latency sample weight
+         * @return this {@link Builder}
+         */
+        public Builder<E> latencyWeight(final double latencyWeight) {
+            this.latencyWeight = latencyWeight;
+            return this;
+        }
+        
+        /**
+         * Sets whether the {@link Endpoint} pools have to start establishing
+         * their <tt>corePoolSize</tt> {@link Connection}s, when the group is built.
+         * Default value is <tt>true</tt>.
+         * 
+         * @param prewarm <tt>true</tt> to pre-warm the {@link Endpoint} pools
+         * @return this {@link Builder}
+         */
+        public Builder<E> prewarm(final boolean prewarm) {
+            this.prewarm = prewarm;
+            return this;
+        }
+        
+        /**
+         * Constructs {@link EndpointGroup}.
+         * 
+         * @return {@link EndpointGroup}
+         * @throws IOException if the pool is closed
+         */
+        public EndpointGroup<E> build() throws IOException {
+            if (endpoints.isEmpty()) {
+                throw new IllegalStateException("At least one endpoint has to be added");
+            }
+            
+            if (latencyWeight <= 0 || latencyWeight > 1) {
+                throw new IllegalStateException("Latency weight has to be in (0, 1] range");
+            }
+            
+            final EndpointGroup<E> group =
+                    new EndpointGroup<E>(pool, endpoints, latencyWeight);
+            if (prewarm) {
+                group.prewarm();
+            }
+            
+            return group;
+        }
+    }
+}
@@ -988,6 +988,23 @@ public class MultiEndpointPool<E> {
             }
         }
     
+        @Override
+        boolean reservePendingConnection() {
+            if (super.isMaxCapacityReached()) {
+                return false;
+            }
+            
+            synchronized (countersSync) {
+                if (MultiEndpointPool.this.isMaxCapacityReached()) {
+                    return false;
+                }
+                
+                pendingConnections++;
+                totalPendingConnections++;
+                return true;
+            }
+        }
+        
         @Override
         void onConnected(final Connection connection) {
             super.onConnected(connection);
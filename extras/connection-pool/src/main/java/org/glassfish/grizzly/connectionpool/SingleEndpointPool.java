@@ -43,12 +43,15 @@ package org.glassfish.grizzly.connectionpool;
 import java.io.IOException;
 import java.net.ConnectException;
 import java.net.SocketAddress;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.glassfish.grizzly.CloseListener;
@@ -102,6 +105,12 @@ import org.glassfish.grizzly.utils.Futures;
 public class SingleEndpointPool<E> {
     private static final Logger LOGGER = Grizzly.logger(SingleEndpointPool.class);
     
+    /**
+     * The min number of stale ready {@link Connection} records, which
+     * triggers the ready {@link Connection}s stack purging
+     */
+    private static final int MIN_STALE_RECORDS_TO_PURGE = 16;
+    
     /**
      * Returns single endpoint pool {@link Builder}.
      * 
@@ -127,25 +136,48 @@ public class SingleEndpointPool<E> {
             new PoolConnectionCloseListener();
     
     /**
-     * The {@link Chain} of ready connections
+     * The lock-free stack of ready connections. The most recently released
+     * {@link Connection}s are retrieved first, the oldest ones are located
+     * at the head and checked by keep-alive mechanism.
+     * 
+     * A {@link ConnectionInfo} is owned by the thread, which managed to switch
+     * its state from ready to busy, so the stack might contain records of
+     * {@link Connection}s, which are not ready anymore (claimed by keep-alive
+     * or TTL mechanism, or detached), instead of searching for them;
+     * such records are skipped on retrieval, and purged once there are too
+     * many of them.
+     */
+    private final ConcurrentLinkedDeque<ConnectionInfo<E>> readyConnections =
+            new ConcurrentLinkedDeque<ConnectionInfo<E>>();
+    
+    /**
+     * The number of {@link Connection}s in ready state
      */
-    private final Chain<ConnectionInfo<E>> readyConnections = new Chain<ConnectionInfo<E>>();
+    private final AtomicInteger readyConnectionsCount = new AtomicInteger();
+    
+    /**
+     * The (approximate) number of stale records in the ready
+     * {@link Connection}s stack
+     */
+    private final AtomicInteger staleReadyRecordsCount = new AtomicInteger();
     
     /**
      * The {@link Map} contains *all* pooled {@link Connection}s
      */
     private final Map<Connection, ConnectionInfo<E>> connectionsMap =
-            new HashMap<Connection, ConnectionInfo<E>>();
+            new ConcurrentHashMap<Connection, ConnectionInfo<E>>();
     
     /**
-     * Sync object
+     * Sync object, which guards the pool state transitions: connect, close,
+     * attach/detach and async waiting list changes.
+     * Ready {@link Connection}s are obtained and returned without holding it.
      */
     final Object poolSync = new Object();
     
     /**
      * close flag
      */
-    private boolean isClosed;
+    private volatile boolean isClosed;
     
     /**
      * The thread-pool used by theownDelayedExecutor
@@ -236,21 +268,39 @@ public class SingleEndpointPool<E> {
     /**
      * current pool size
      */
-    private int poolSize;
+    private volatile int poolSize;
     /**
      * Number of connections we're currently trying to establish and waiting for the result
      */
-    protected int pendingConnections;
+    protected volatile int pendingConnections;
 
     /**
      * Number of failed connect attempts.
      */
     private int failedConnectAttempts;
     
+    /**
+     * Number of connect attempts failed in a row, unlike
+     * {@link #failedConnectAttempts} it's not reset, when waiting pollers
+     * are notified about the failure.
+     */
+    private volatile int consecutiveConnectFailures;
+    
+    /**
+     * The time stamp of the last failed connect attempt
+     */
+    private volatile long lastConnectFailureTimeStamp;
+    
     /**
      * The waiting list of asynchronous polling clients
      */
     private final Chain<AsyncPoll> asyncWaitingList = new Chain<AsyncPoll>();
+    
+    /**
+     * The size of the {@link #asyncWaitingList}, which could be checked
+     * without holding {@link #poolSync}
+     */
+    private volatile int asyncWaitersCount;
 
     /**
      * Constructs SingleEndpointPool instance.
@@ -536,9 +586,7 @@ public class SingleEndpointPool<E> {
      * @return the current pool size
      */
     public int size() {
-        synchronized (poolSync) {
-            return poolSize + pendingConnections;
-        }
+        return poolSize + pendingConnections;
     }
     
     /**
@@ -547,18 +595,14 @@ public class SingleEndpointPool<E> {
      * (connect in progress) {@link Connection}s.
      */
     public int getOpenConnectionsCount() {
-        synchronized (poolSync) {
-            return poolSize;
-        }
+        return poolSize;
     }
 
     /**
      * @return the number of {@link Connection}s ready to be retrieved and used.
      */
     public int getReadyConnectionsCount() {
-        synchronized (poolSync) {
-            return readyConnections.size();
-        }
+        return Math.max(0, readyConnectionsCount.get());
     }
 
     /**
@@ -567,10 +611,8 @@ public class SingleEndpointPool<E> {
      * <tt>false</tt> otherwise.
      */
     public boolean isMaxCapacityReached() {
-        synchronized (poolSync) {
-            return maxPoolSize != -1
-                    && poolSize + pendingConnections >= maxPoolSize;
-        }
+        return maxPoolSize != -1
+                && poolSize + pendingConnections >= maxPoolSize;
     }
     
     /**
@@ -584,9 +626,7 @@ public class SingleEndpointPool<E> {
      * the {@link Connection} is not registered in the pool
      */
     public boolean isRegistered(final Connection connection) {
-        synchronized (poolSync) {
-            return connectionsMap.containsKey(connection);
-        }
+        return connectionsMap.containsKey(connection);
     }
     
     /**
@@ -600,15 +640,11 @@ public class SingleEndpointPool<E> {
      * returns <tt>false</tt>
      */
     public boolean isBusy(final Connection connection) {
-        synchronized (poolSync) {
-            return isBusy0(connectionsMap.get(connection));
-        }
+        return isBusy0(connectionsMap.get(connection));
     }
 
     boolean isBusy0(final ConnectionInfo<E> connectionRecord) {
-        synchronized (poolSync) {
-            return connectionRecord != null && !connectionRecord.isReady();
-        }
+        return connectionRecord != null && !connectionRecord.isReady();
     }
     
     /**
@@ -622,9 +658,7 @@ public class SingleEndpointPool<E> {
      * this pool
      */
     public ConnectionInfo<E> getConnectionInfo(final Connection connection) {
-        synchronized (poolSync) {
-            return connectionsMap.get(connection);
-        }
+        return connectionsMap.get(connection);
     }
     
     /**
@@ -652,19 +686,37 @@ public class SingleEndpointPool<E> {
      * }
      * </pre>
      * 
+     * <p> The callers are served in FIFO order: as long as there are callers
+     * waiting for a {@link Connection}, a new caller is queued after them
+     * even if a released {@link Connection} is ready at the moment.
+     * 
      * @return {@link GrizzlyFuture}
      */
     public GrizzlyFuture<Connection> take() {
+        if (!isClosed && asyncWaitersCount == 0) {
+            // fast path: try to obtain a ready connection without locking,
+            // unless there are asynchronous pollers waiting in the queue
+            final ConnectionInfo<E> info = pollReady();
+            if (info != null) {
+                return Futures.createReadyFuture(info.connection);
+            }
+        }
+        
         int errorCode = 0;
         GrizzlyFuture<Connection> future = null;
         boolean isCreateNewConnection = false;
+        boolean isNotifyAsyncPollers = false;
         
         try {
             synchronized (poolSync) {
                 // we need to maintain this weird if's layout to make sure we
                 // create Exceptions or new connections outside of synchronized.
                 if (!isClosed) {
-                    if (readyConnections.isEmpty()) {
+                    // don't overtake the asynchronous pollers, which are
+                    // already waiting for a Connection
+                    final boolean hasWaiters = asyncWaitersCount > 0;
+                    ConnectionInfo<E> info = !hasWaiters ? pollReady() : null;
+                    if (info == null) {
                         if (!failFastWhenMaxSizeReached
                                 || !isMaxCapacityReached()
                                 || pendingConnections >= getWaitingListSize() + 1) {
@@ -693,14 +745,25 @@ public class SingleEndpointPool<E> {
                             asyncPoll.future = cancellableFuture;
                             addToAsyncWaitingList(pollLink);
 
-                            isCreateNewConnection = checkBeforeOpeningConnection();
-                            future = cancellableFuture;
+                            // a Connection might have been released while
+                            // we were registering the poller
+                            info = !hasWaiters ? pollReady() : null;
+                            if (info == null) {
+                                if (readyConnectionsCount.get() > 0) {
+                                    isNotifyAsyncPollers = true;
+                                } else {
+                                    isCreateNewConnection = checkBeforeOpeningConnection();
+                                }
+                                future = cancellableFuture;
+                            } else {
+                                removeFromAsyncWaitingList(pollLink);
+                                future = Futures.createReadyFuture(info.connection);
+                            }
                         } else {
                             errorCode = 2;
                         }
                     } else {
-                        future = Futures.createReadyFuture(
-                                readyConnections.pollLast().getValue().connection);
+                        future = Futures.createReadyFuture(info.connection);
                     }
                 } else {
                     errorCode = 1;
@@ -711,7 +774,9 @@ public class SingleEndpointPool<E> {
                 case 0: {
                     assert future != null;
                     
-                    if (isCreateNewConnection) {
+                    if (isNotifyAsyncPollers) {
+                        notifyAsyncPollers();
+                    } else if (isCreateNewConnection) {
                         connect();
                     }
                     
@@ -740,6 +805,8 @@ public class SingleEndpointPool<E> {
      * Obtains a {@link Connection} from the pool in non-blocking/asynchronous fashion.
      * The passed {@link CompletionHandler} will be notified about the result of the
      * non-blocking/asynchronous obtain task.
+     * The callers are served in the same FIFO order as {@link #take()} callers.
+     * 
      * @param completionHandler to be notified once {@link Connection} is available or
      *                          an error occurred
      */
@@ -748,16 +815,31 @@ public class SingleEndpointPool<E> {
             throw new IllegalArgumentException("The completionHandler argument can not be null");
         }
         
+        if (!isClosed && asyncWaitersCount == 0) {
+            // fast path: try to obtain a ready connection without locking,
+            // unless there are asynchronous pollers waiting in the queue
+            final ConnectionInfo<E> info = pollReady();
+            if (info != null) {
+                completionHandler.completed(info.connection);
+                return;
+            }
+        }
+        
         int errorCode = 0;
         Connection connection = null;
         boolean isCreateNewConnection = false;
+        boolean isNotifyAsyncPollers = false;
         
         try {
             synchronized (poolSync) {
                 // we need to maintain this weird if's layout to make sure we
                 // create Exceptions or new connections outside of synchronized.
                 if (!isClosed) {
-                    if (readyConnections.isEmpty()) {
+                    // don't overtake the asynchronous pollers, which are
+                    // already waiting for a Connection
+                    final boolean hasWaiters = asyncWaitersCount > 0;
+                    ConnectionInfo<E> info = !hasWaiters ? pollReady() : null;
+                    if (info == null) {
                         if (!failFastWhenMaxSizeReached
                                 || !isMaxCapacityReached()
                                 || pendingConnections >= getWaitingListSize() + 1) {
@@ -768,12 +850,24 @@ public class SingleEndpointPool<E> {
 
                             addToAsyncWaitingList(pollLink);
 
-                            isCreateNewConnection = checkBeforeOpeningConnection();
+                            // a Connection might have been released while
+                            // we were registering the poller
+                            info = !hasWaiters ? pollReady() : null;
+                            if (info == null) {
+                                if (readyConnectionsCount.get() > 0) {
+                                    isNotifyAsyncPollers = true;
+                                } else {
+                                    isCreateNewConnection = checkBeforeOpeningConnection();
+                                }
+                            } else {
+                                removeFromAsyncWaitingList(pollLink);
+                                connection = info.connection;
+                            }
                         } else {
                             errorCode = 2;
                         }
                     } else {
-                        connection = readyConnections.pollLast().getValue().connection;
+                        connection = info.connection;
                     }
                 } else {
                     errorCode = 1;
@@ -784,6 +878,8 @@ public class SingleEndpointPool<E> {
                 case 0: {
                     if (connection != null) {
                         completionHandler.completed(connection);
+                    } else if (isNotifyAsyncPollers) {
+                        notifyAsyncPollers();
                     } else if (isCreateNewConnection) {
                         connect();
                     }
@@ -807,20 +903,26 @@ public class SingleEndpointPool<E> {
     }
 
     /**
+     * Returns a ready {@link Connection}, if there is one available at the
+     * moment. The ready {@link Connection}s are passed to the asynchronous
+     * {@link #take()} waiters in the order they were queued, so this method
+     * returns <tt>null</tt> as long as there are any waiters.
+     * 
      * @return a {@link Connection} from the pool, if there is one available at the moment,
      *          or <tt>null</tt> otherwise
      * @throws java.io.IOException if the pool is closed
      */
     public Connection poll() throws IOException {
-        synchronized (poolSync) {
-            if (isClosed) {
-                throw new IOException("The pool is closed");
-            }
+        if (isClosed) {
+            throw new IOException("The pool is closed");
+        }
 
-            return !readyConnections.isEmpty()
-                    ? readyConnections.pollLast().getValue().connection
-                    : null;
+        if (asyncWaitersCount > 0) {
+            return null;
         }
+        
+        final ConnectionInfo<E> info = pollReady();
+        return info != null ? info.connection : null;
     }
     
     /**
@@ -841,15 +943,13 @@ public class SingleEndpointPool<E> {
      *  and <code>false</code> will be returned.
      */
     public boolean release(final Connection connection) {
-        synchronized (poolSync) {
-            final ConnectionInfo<E> info = connectionsMap.get(connection);
-            if (info == null) {
-                connection.closeSilently();
-                return false;
-            } 
-            
-            return release0(info);
-        }
+        final ConnectionInfo<E> info = connectionsMap.get(connection);
+        if (info == null) {
+            connection.closeSilently();
+            return false;
+        } 
+
+        return release0(info);
     }
 
     /**
@@ -857,38 +957,145 @@ public class SingleEndpointPool<E> {
      * on connection {@link Link}.
      */
     boolean release0(final ConnectionInfo<E> info) {
-        final boolean isKeepAlive;
-        AsyncPoll asyncPoller = null;
-        
-        synchronized (poolSync) {
-            if (info.isReady()) {
-                return false;
-            }
-
-            // close pooled connection, if keepAliveTimeoutMillis == 0
-            if (keepAliveTimeoutMillis == 0 && poolSize > corePoolSize) {
-                detach(info.connection); // detach in sync block and close outside sync
-                isKeepAlive = false;
-            } else {
-                isKeepAlive = true;
-                asyncPoller = getAsyncPoller();
-                if (asyncPoller == null) {
-                    readyConnections.offerLast(info.readyStateLink);
+        // close pooled connection, if keepAliveTimeoutMillis == 0
+        if (keepAliveTimeoutMillis == 0 && poolSize > corePoolSize) {
+            final boolean isKeepAlive;
+            synchronized (poolSync) {
+                if (info.isReady()) {
+                    return false;
+                }
+                
+                isKeepAlive = poolSize <= corePoolSize;
+                if (!isKeepAlive) {
+                    detach(info.connection); // detach in sync block and close outside sync
                 }
             }
+            
+            if (!isKeepAlive) {
+                info.connection.closeSilently();
+                return false;
+            }
         }
         
-        if (!isKeepAlive) {
-            info.connection.closeSilently();
+        if (!info.markReady()) {
+            if (info.getState() == ConnectionInfo.DETACHED) {
+                // the Connection has been detached or the pool has been closed
+                info.connection.closeSilently();
+            }
+            
             return false;
         }
         
-        if (asyncPoller != null) {
+        readyConnectionsCount.incrementAndGet();
+        readyConnections.offerLast(info);
+        
+        // the poller registers itself first and then checks the ready
+        // connections, we do it in the opposite order, so at least one
+        // of us will see the other
+        if (asyncWaitersCount > 0) {
+            notifyAsyncPollers();
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Passes ready {@link Connection}s to the asynchronous pollers, waiting
+     * for a {@link Connection}.
+     */
+    private void notifyAsyncPollers() {
+        while (true) {
+            final ConnectionInfo<E> info;
+            final AsyncPoll asyncPoller;
+            
+            synchronized (poolSync) {
+                if (asyncWaitingList.isEmpty()) {
+                    return;
+                }
+                
+                info = pollReady();
+                if (info == null) {
+                    return;
+                }
+                
+                asyncPoller = obtainFromAsyncWaitingList();
+            }
+            
             Futures.notifyResult(asyncPoller.future,
                     asyncPoller.completionHandler, info.connection);
         }
+    }
+    
+    /**
+     * Retrieves a ready {@link Connection} from the pool and switches it to
+     * busy state. The method doesn't require {@link #poolSync} to be held.
+     * 
+     * @return {@link ConnectionInfo} of the obtained {@link Connection}, or
+     * <tt>null</tt> if there is no ready {@link Connection} at the moment
+     */
+    private ConnectionInfo<E> pollReady() {
+        ConnectionInfo<E> info;
+        while ((info = readyConnections.pollLast()) != null) {
+            if (info.markBusy()) {
+                readyConnectionsCount.decrementAndGet();
+                return info;
+            }
+            
+            // stale record
+            staleReadyRecordsCount.decrementAndGet();
+        }
         
-        return true;
+        return null;
+    }
+    
+    /**
+     * Switches the {@link Connection} to ready state and makes it available
+     * for retrieval.
+     */
+    private void offerReady(final ConnectionInfo<E> info) {
+        if (info.markReady()) {
+            readyConnectionsCount.incrementAndGet();
+            readyConnections.offerLast(info);
+        }
+    }
+    
+    /**
+     * Switches the ready {@link Connection} to busy state, so it can't be
+     * retrieved by pool users. The {@link Connection} record is left in the
+     * ready {@link Connection}s stack, so the method has to be called
+     * holding {@link #poolSync}.
+     * 
+     * @return <tt>true</tt> if the {@link Connection} was ready and has been
+     * claimed by the caller, or <tt>false</tt> otherwise
+     */
+    boolean claimReady(final ConnectionInfo<E> info) {
+        if (info.markBusy()) {
+            readyConnectionsCount.decrementAndGet();
+            onStaleReadyRecord();
+            return true;
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Counts the record of the {@link Connection}, which is not ready anymore,
+     * but is still in the ready {@link Connection}s stack, and purges the stack
+     * once the stale records outnumber the ready ones. Must be called holding
+     * {@link #poolSync}.
+     */
+    private void onStaleReadyRecord() {
+        if (staleReadyRecordsCount.incrementAndGet() >
+                Math.max(MIN_STALE_RECORDS_TO_PURGE, readyConnectionsCount.get())) {
+            staleReadyRecordsCount.set(0);
+            
+            for (Iterator<ConnectionInfo<E>> it = readyConnections.iterator();
+                    it.hasNext();) {
+                if (!it.next().isReady()) {
+                    it.remove();
+                }
+            }
+        }
     }
     
     /**
@@ -975,10 +1182,9 @@ public class SingleEndpointPool<E> {
                     ownDelayedExecutorThreadPool.shutdownNow();
                 }
                 
-                final int size = readyConnections.size();
-                for (int i = 0; i < size; i++) {
-                    final Connection c = readyConnections.pollLast().getValue().connection;
-                    c.closeSilently();
+                ConnectionInfo<E> info;
+                while ((info = pollReady()) != null) {
+                    info.connection.closeSilently();
                 }
                 
                 final int asyncWaitingListSize = asyncWaitingList.size();
@@ -996,10 +1202,16 @@ public class SingleEndpointPool<E> {
                     }
                 }
                 
-                for (Map.Entry<Connection, ConnectionInfo<E>> entry : connectionsMap.entrySet()) {
-                    deregisterConnection(entry.getValue());
+                // remove each record before deregistering it, because
+                // the close listener might be notified meanwhile
+                for (Iterator<ConnectionInfo<E>> it = connectionsMap.values().iterator();
+                        it.hasNext();) {
+                    final ConnectionInfo<E> connectionInfo = it.next();
+                    it.remove();
+                    deregisterConnection(connectionInfo);
                 }
-                connectionsMap.clear();
+                readyConnections.clear();
+                staleReadyRecordsCount.set(0);
                 
             } finally {
                 poolSync.notifyAll();
@@ -1007,6 +1219,35 @@ public class SingleEndpointPool<E> {
         }
     }
     
+    /**
+     * Initiates new {@link Connection}s establishing, so the pool size
+     * reaches <tt>corePoolSize</tt> without waiting for the first
+     * {@link #take()} requests. Established {@link Connection}s are added
+     * to the pool in ready state.
+     * 
+     * @return the number of initiated connect operations
+     */
+    public int prewarm() {
+        int connectCount = 0;
+        
+        synchronized (poolSync) {
+            if (isClosed) {
+                return 0;
+            }
+            
+            while (poolSize + pendingConnections < corePoolSize
+                    && reservePendingConnection()) {
+                connectCount++;
+            }
+        }
+        
+        for (int i = 0; i < connectCount; i++) {
+            connect();
+        }
+        
+        return connectCount;
+    }
+    
     /**
      * The method is called before the pool will try to establish new client
      * connection.
@@ -1025,6 +1266,46 @@ public class SingleEndpointPool<E> {
         return false;
     }
 
+    /**
+     * The method is called before the pool will try to establish new client
+     * connection, which is not requested by any consumer.
+     * If the method returns <tt>true</tt> it also increases
+     * the {@link #pendingConnections} counter.
+     * 
+     * @return <tt>true</tt> if new connection could be created, or <tt>false</tt> otherwise
+     */
+    boolean reservePendingConnection() {
+        if (isMaxCapacityReached()) {
+            return false;
+        }
+        
+        pendingConnections++;
+        return true;
+    }
+
+    /**
+     * @return the number of asynchronous take requests waiting for a
+     * {@link Connection}
+     */
+    int getAsyncWaitersCount() {
+        return asyncWaitersCount;
+    }
+
+    /**
+     * @return the number of connect attempts failed in a row
+     */
+    int getConsecutiveConnectFailures() {
+        return consecutiveConnectFailures;
+    }
+    
+    /**
+     * @return the time stamp (in milliseconds) of the last failed connect
+     * attempt, or <tt>0</tt> if there were no failures
+     */
+    long getLastConnectFailureTimeStamp() {
+        return lastConnectFailureTimeStamp;
+    }
+    
     /**
      * @return the number of consumers waiting for a connection
      */
@@ -1095,22 +1376,34 @@ public class SingleEndpointPool<E> {
                 return true;
             }
 
-            if (!readyConnections.isEmpty() && poolSize > corePoolSize) {
+            if (readyConnectionsCount.get() > 0 && poolSize > corePoolSize) {
                 final long now = System.currentTimeMillis();
 
                 try {
-                    do {
-                        final Link<ConnectionInfo<E>> link = readyConnections.getFirstLink();
+                    // the oldest ready connections are located at the head
+                    final Iterator<ConnectionInfo<E>> it = readyConnections.iterator();
+                    while (it.hasNext() && poolSize > corePoolSize) {
+                        final ConnectionInfo<E> info = it.next();
+                        final long readyTimeStamp = info.getReadyTimeStamp();
+                        if (readyTimeStamp == -1) { // stale record
+                            it.remove();
+                            staleReadyRecordsCount.decrementAndGet();
+                            continue;
+                        }
                         
-                        if ((now - link.getAttachmentTimeStamp()) >= keepAliveTimeoutMillis) {
-                            final Connection c = link.getValue().connection;
-                            detach(c);
-                            c.closeSilently();
-                        } else { // the rest of links are ok
+                        if ((now - readyTimeStamp) >= keepAliveTimeoutMillis) {
+                            if (info.markBusy()) {
+                                readyConnectionsCount.decrementAndGet();
+                                it.remove();
+                                
+                                final Connection c = info.connection;
+                                detach(c);
+                                c.closeSilently();
+                            }
+                        } else { // the rest of connections are ok
                             break;
                         }
-                        
-                    } while (!readyConnections.isEmpty() && poolSize > corePoolSize);
+                    }
                 } catch (Exception ignore) {
                 }
             }
@@ -1190,7 +1483,16 @@ public class SingleEndpointPool<E> {
             connectionTTLQueue.remove(info);
         }
         
-        readyConnections.remove(info.readyStateLink);
+        if (info.markDetached() == ConnectionInfo.READY) {
+            readyConnectionsCount.decrementAndGet();
+            onStaleReadyRecord();
+            
+            if (isClosed) {
+                // the Connection has been released concurrently with close()
+                info.connection.closeSilently();
+            }
+        }
+        
         poolSize--;
 
         onCloseConnection(info);
@@ -1198,6 +1500,7 @@ public class SingleEndpointPool<E> {
 
     private void addToAsyncWaitingList(final Link<AsyncPoll> pollLink) {
         asyncWaitingList.offerLast(pollLink);
+        asyncWaitersCount = asyncWaitingList.size();
 
         if (asyncPollTimeoutMillis >= 0) {
             asyncPollTimeoutQueue.add(pollLink,
@@ -1207,6 +1510,7 @@ public class SingleEndpointPool<E> {
 
     private AsyncPoll obtainFromAsyncWaitingList() {
         final Link<AsyncPoll> link = asyncWaitingList.pollFirst();
+        asyncWaitersCount = asyncWaitingList.size();
         
         if (asyncPollTimeoutMillis >= 0) {
             asyncPollTimeoutQueue.remove(link);
@@ -1217,6 +1521,7 @@ public class SingleEndpointPool<E> {
     
     private boolean removeFromAsyncWaitingList(final Link<AsyncPoll> pollLink) {
         final boolean result = asyncWaitingList.remove(pollLink);
+        asyncWaitersCount = asyncWaitingList.size();
         
         if (result && asyncPollTimeoutMillis >= 0) {
             asyncPollTimeoutQueue.remove(pollLink);
@@ -1257,6 +1562,7 @@ public class SingleEndpointPool<E> {
             synchronized (poolSync) {
                if (!isClosed) {
                    failedConnectAttempts = 0;
+                   consecutiveConnectFailures = 0;
                    onConnected(connection);
 
                    if (!isOverflown()) {
@@ -1265,7 +1571,7 @@ public class SingleEndpointPool<E> {
                        final ConnectionInfo<E> info = attach0(connection);
                        asyncPoller = getAsyncPoller();
                        if (asyncPoller == null) {
-                           readyConnections.offerLast(info.readyStateLink);
+                           offerReady(info);
                        }
                    }
                 }
@@ -1296,6 +1602,8 @@ public class SingleEndpointPool<E> {
             try {
                 synchronized (poolSync) {
                     pendingConnections--;
+                    consecutiveConnectFailures++;
+                    lastConnectFailureTimeStamp = System.currentTimeMillis();
 
                     onFailedConnection();
 
@@ -1496,6 +1804,7 @@ public class SingleEndpointPool<E> {
                 final SingleEndpointPool<?> pool = asyncPollLink.getValue().pool;
                 synchronized (pool.poolSync) {
                     removed = pool.asyncWaitingList.remove(asyncPollLink);
+                    pool.asyncWaitersCount = pool.asyncWaitingList.size();
                 }
                 
                 if (removed) {
@@ -1564,7 +1873,7 @@ public class SingleEndpointPool<E> {
             }
             
             synchronized(ci.endpointPool.poolSync) {
-                if (ci.isReady()) {
+                if (ci.endpointPool.claimReady(ci)) {
                     ci.connection.close();
                 } else {
                     ci.endpointPool.detach(ci.connection);
@@ -0,0 +1,225 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.connectionpool;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The {@link EndpointGroup} tests.
+ */
+public class EndpointGroupTest {
+    private static final int PORT = 18340;
+    private static final int NUMBER_OF_PORTS_TO_BIND = 2;
+    // nobody listens on this port
+    private static final int CLOSED_PORT = PORT + 9;
+    
+    private TCPNIOTransport transport;
+    
+    @Before
+    public void init() throws IOException {
+        transport = TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(FilterChainBuilder.stateless()
+                .add(new TransportFilter()).build());
+        
+        for (int i = 0; i < NUMBER_OF_PORTS_TO_BIND; i++) {
+            transport.bind(PORT + i);
+        }
+        
+        transport.start();
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        if (transport != null) {
+            transport.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPrewarm() throws Exception {
+        final MultiEndpointPool<SocketAddress> pool = MultiEndpointPool
+                .builder(SocketAddress.class)
+                .maxConnectionsPerEndpoint(4)
+                .maxConnectionsTotal(16)
+                .endpointPoolCustomizer(new MultiEndpointPool.EndpointPoolCustomizer<SocketAddress>() {
+
+                    @Override
+                    public void customize(final Endpoint<SocketAddress> endpoint,
+                            final MultiEndpointPool.EndpointPoolBuilder<SocketAddress> builder) {
+                        builder.corePoolSize(2);
+                    }
+                })
+                .build();
+        
+        try {
+            final Endpoint<SocketAddress> endpoint1 = endpoint(PORT);
+            final Endpoint<SocketAddress> endpoint2 = endpoint(PORT + 1);
+            
+            final EndpointGroup<SocketAddress> group = EndpointGroup
+                    .builder(pool)
+                    .endpoint(endpoint1)
+                    .endpoint(endpoint2)
+                    .build();
+            
+            final SingleEndpointPool<SocketAddress> sePool1 =
+                    pool.obtainSingleEndpointPool(endpoint1);
+            final SingleEndpointPool<SocketAddress> sePool2 =
+                    pool.obtainSingleEndpointPool(endpoint2);
+            
+            for (int i = 0; i < 50 && (sePool1.getReadyConnectionsCount() < 2
+                    || sePool2.getReadyConnectionsCount() < 2); i++) {
+                Thread.sleep(100);
+            }
+            
+            assertEquals(2, sePool1.getReadyConnectionsCount());
+            assertEquals(2, sePool2.getReadyConnectionsCount());
+            assertEquals(4, pool.getOpenConnectionsCount());
+            
+            // already pre-warmed - no new connections
+            assertEquals(0, group.prewarm());
+            
+            final Connection c = group.take().get(10, TimeUnit.SECONDS);
+            assertNotNull(c);
+            assertEquals(4, pool.size());
+            assertTrue(group.release(c));
+        } finally {
+            pool.close();
+        }
+    }
+    
+    @Test
+    public void testLatencyAwareSelection() throws Exception {
+        final MultiEndpointPool<SocketAddress> pool = MultiEndpointPool
+                .builder(SocketAddress.class)
+                .maxConnectionsPerEndpoint(4)
+                .maxConnectionsTotal(16)
+                .build();
+        
+        try {
+            final Endpoint<SocketAddress> fastEndpoint = endpoint(PORT);
+            final Endpoint<SocketAddress> slowEndpoint = endpoint(PORT + 1);
+            
+            final EndpointGroup<SocketAddress> group = EndpointGroup
+                    .builder(pool)
+                    .endpoint(fastEndpoint)
+                    .endpoint(slowEndpoint)
+                    .build();
+            
+            int fastCount = 0;
+            for (int i = 0; i < 200; i++) {
+                final Connection c = group.take().get(10, TimeUnit.SECONDS);
+                final Endpoint<SocketAddress> endpoint =
+                        pool.getConnectionInfo(c).endpointPool.getEndpoint();
+                assertEquals(1, group.getInFlightCount(endpoint));
+                
+                final boolean isFast = fastEndpoint.equals(endpoint);
+                if (i >= 100 && isFast) {
+                    fastCount++;
+                }
+                
+                group.release(c, isFast ? 1 : 50, TimeUnit.MILLISECONDS);
+                assertEquals(0, group.getInFlightCount(endpoint));
+            }
+            
+            assertTrue("fastCount=" + fastCount, fastCount >= 90);
+            assertTrue(group.getLatency(fastEndpoint, TimeUnit.MILLISECONDS)
+                    < group.getLatency(slowEndpoint, TimeUnit.MILLISECONDS));
+        } finally {
+            pool.close();
+        }
+    }
+    
+    @Test
+    public void testFailingEndpointEjection() throws Exception {
+        final MultiEndpointPool<SocketAddress> pool = MultiEndpointPool
+                .builder(SocketAddress.class)
+                .maxConnectionsPerEndpoint(4)
+                .maxConnectionsTotal(16)
+                .maxReconnectAttempts(1)
+                .build();
+        
+        try {
+            final Endpoint<SocketAddress> goodEndpoint = endpoint(PORT);
+            final Endpoint<SocketAddress> badEndpoint = endpoint(CLOSED_PORT);
+            
+            final EndpointGroup<SocketAddress> group = EndpointGroup
+                    .builder(pool)
+                    .endpoint(goodEndpoint)
+                    .endpoint(badEndpoint)
+                    .build();
+            
+            int failures = 0;
+            for (int i = 0; i < 30; i++) {
+                try {
+                    final Connection c = group.take().get(10, TimeUnit.SECONDS);
+                    group.release(c, 1, TimeUnit.MILLISECONDS);
+                } catch (ExecutionException e) {
+                    failures++;
+                }
+            }
+            
+            assertTrue(group.isEjected(badEndpoint));
+            assertFalse(group.isEjected(goodEndpoint));
+            assertTrue("failures=" + failures, failures <= 2);
+            assertEquals(0, group.getInFlightCount(badEndpoint));
+        } finally {
+            pool.close();
+        }
+    }
+    
+    private Endpoint<SocketAddress> endpoint(final int port) {
+        return Endpoint.Factory.<SocketAddress>create(
+                new InetSocketAddress("localhost", port), transport);
+    }
+}
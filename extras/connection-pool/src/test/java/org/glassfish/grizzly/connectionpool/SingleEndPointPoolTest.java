@@ -51,6 +51,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.glassfish.grizzly.Connection;
@@ -563,4 +564,114 @@ public class SingleEndPointPoolTest {
             transport.shutdownNow();
         }
     }    
+
+    @Test
+    public void testWaitersServedInOrder() throws Exception {
+        final SingleEndpointPool<SocketAddress> pool = SingleEndpointPool
+                .builder(SocketAddress.class)
+                .connectorHandler(transport)
+                .endpointAddress(new InetSocketAddress("localhost", PORT))
+                .maxPoolSize(1)
+                .build();
+        
+        try {
+            final Connection c1 = pool.take().get(10, TimeUnit.SECONDS);
+            assertNotNull(c1);
+            
+            final GrizzlyFuture<Connection> future1 = pool.take();
+            final AtomicReference<Connection> connection2 =
+                    new AtomicReference<Connection>();
+            pool.take(new EmptyCompletionHandler<Connection>() {
+
+                @Override
+                public void completed(final Connection result) {
+                    connection2.set(result);
+                }
+            });
+            assertEquals(2, pool.getWaitingListSize());
+            
+            pool.release(c1);
+            assertSame(c1, future1.get(10, TimeUnit.SECONDS));
+            assertNull(connection2.get());
+            
+            // the new callers must not overtake the waiting one
+            final GrizzlyFuture<Connection> future3 = pool.take();
+            assertNull(pool.poll());
+            
+            pool.release(c1);
+            assertSame(c1, connection2.get());
+            assertFalse(future3.isDone());
+            
+            pool.release(c1);
+            assertSame(c1, future3.get(10, TimeUnit.SECONDS));
+            assertEquals(0, pool.getWaitingListSize());
+            
+            pool.release(c1);
+            assertSame(c1, pool.poll());
+            pool.release(c1);
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentTakeRelease() throws Exception {
+        final int threadsCount = 16;
+        final int iterations = 2000;
+        final int maxPoolSize = 4;
+        
+        final SingleEndpointPool<SocketAddress> pool = SingleEndpointPool
+                .builder(SocketAddress.class)
+                .connectorHandler(transport)
+                .endpointAddress(new InetSocketAddress("localhost", PORT))
+                .maxPoolSize(maxPoolSize)
+                .build();
+        
+        final Set<Connection> inUse =
+                Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicReference<Throwable> failure =
+                new AtomicReference<Throwable>();
+        final CountDownLatch latch = new CountDownLatch(threadsCount);
+        
+        try {
+            for (int i = 0; i < threadsCount; i++) {
+                new Thread() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            for (int j = 0; j < iterations; j++) {
+                                final Connection c = pool.take().get(10, TimeUnit.SECONDS);
+                                if (!inUse.add(c) || !pool.isBusy(c)) {
+                                    // the same connection was given to two users
+                                    errors.incrementAndGet();
+                                }
+                                
+                                inUse.remove(c);
+                                if (!pool.release(c)) {
+                                    errors.incrementAndGet();
+                                }
+                            }
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                }.start();
+            }
+            
+            assertTrue(latch.await(60, TimeUnit.SECONDS));
+            if (failure.get() != null) {
+                throw new AssertionError(failure.get());
+            }
+            assertEquals(0, errors.get());
+            assertTrue(pool.size() <= maxPoolSize);
+            assertEquals(pool.getOpenConnectionsCount(),
+                    pool.getReadyConnectionsCount());
+        } finally {
+            pool.close();
+        }
+    }
 }
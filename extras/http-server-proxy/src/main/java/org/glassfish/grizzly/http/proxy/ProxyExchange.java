@@ -0,0 +1,500 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.proxy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.ReadHandler;
+import org.glassfish.grizzly.WriteHandler;
+import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.Protocol;
+import org.glassfish.grizzly.http.io.NIOInputStream;
+import org.glassfish.grizzly.http.io.NIOOutputStream;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.server.TimeoutHandler;
+import org.glassfish.grizzly.http.util.DataChunk;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.glassfish.grizzly.http.util.MimeHeaders;
+
+/**
+ * The state of a single request forwarded by {@link ReverseProxyHttpHandler}.
+ * 
+ * The request payload is forwarded by the {@link ReadHandler} callbacks,
+ * the response is forwarded by {@link UpstreamFilter}. The exchange is
+ * completed exactly once: either when the last upstream response chunk has
+ * been passed to the client, or when either side fails.
+ */
+final class ProxyExchange implements ReadHandler {
+    private static final Logger LOGGER = Grizzly.logger(ProxyExchange.class);
+    
+    private static final String X_FORWARDED_FOR = "X-Forwarded-For";
+    private static final String X_FORWARDED_PROTO = "X-Forwarded-Proto";
+    private static final String X_FORWARDED_HOST = "X-Forwarded-Host";
+    
+    private final ReverseProxyHttpHandler handler;
+    private final Request request;
+    private final Response response;
+    private final NIOInputStream inputStream;
+    private final NIOOutputStream outputStream;
+    
+    private final AtomicBoolean isDone = new AtomicBoolean();
+    
+    private HttpRequestPacket upstreamRequest;
+    private volatile Connection upstreamConnection;
+    private volatile boolean isRequestSent;
+    private boolean isResponseHeaderSent;
+
+    ProxyExchange(final ReverseProxyHttpHandler handler,
+            final Request request, final Response response) {
+        this.handler = handler;
+        this.request = request;
+        this.response = response;
+        this.inputStream = request.getNIOInputStream();
+        this.outputStream = response.getNIOOutputStream();
+    }
+
+    void start(final long timeoutMillis) {
+        upstreamRequest = createUpstreamRequest();
+        
+        response.suspend(timeoutMillis, TimeUnit.MILLISECONDS,
+                new EmptyCompletionHandler<Response>() {
+
+            @Override
+            public void cancelled() {
+                // the client connection has been closed, or the timeout expired
+                abortUpstream();
+            }
+        }, new TimeoutHandler() {
+
+            @Override
+            public boolean onTimeout(final Response response) {
+                if (isDone.compareAndSet(false, true)) {
+                    closeUpstream();
+                    if (!response.isCommitted()) {
+                        response.reset();
+                        response.setStatus(HttpStatus.GATEWAY_TIMEOUT_504);
+                    } else {
+                        closeDownstream();
+                    }
+                }
+                
+                return true;
+            }
+        });
+        
+        handler.getConnectionPool().take(new EmptyCompletionHandler<Connection>() {
+
+            @Override
+            public void completed(final Connection connection) {
+                onUpstreamConnection(connection);
+            }
+
+            @Override
+            public void failed(final Throwable throwable) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, "Can't obtain upstream connection", throwable);
+                }
+                fail(HttpStatus.BAD_GATEWAY_502);
+            }
+        });
+    }
+    
+    // ----------------------------------------------------- Downstream -> Upstream
+
+    private void onUpstreamConnection(final Connection connection) {
+        upstreamConnection = connection;
+        
+        if (isDone.get()) {
+            // the exchange has been aborted in the meantime
+            closeUpstream();
+            return;
+        }
+        
+        UpstreamFilter.attach(connection, this);
+        
+        final boolean hasPayload = upstreamRequest.isChunked()
+                || upstreamRequest.getContentLength() > 0;
+
+        if (!hasPayload) {
+            writeUpstream(null, true);
+            isRequestSent = true;
+            return;
+        }
+        
+        // the request header will be sent along with the first payload chunk
+        inputStream.notifyAvailable(this);
+    }
+
+    @Override
+    public void onDataAvailable() throws Exception {
+        forwardRequestPayload(false);
+    }
+
+    @Override
+    public void onAllDataRead() throws Exception {
+        forwardRequestPayload(true);
+    }
+
+    @Override
+    public void onError(final Throwable t) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Error reading the request payload", t);
+        }
+        fail(HttpStatus.BAD_GATEWAY_502);
+    }
+    
+    private void forwardRequestPayload(final boolean isLast) {
+        final Buffer payload = inputStream.readBuffer();
+        
+        if (isDone.get()) {
+            payload.tryDispose();
+            return;
+        }
+        
+        if (payload.hasRemaining() || isLast) {
+            // empty chunk would terminate the chunked payload
+            writeUpstream(payload, isLast);
+        }
+        
+        if (isLast) {
+            isRequestSent = true;
+            return;
+        }
+        
+        final Connection connection = upstreamConnection;
+        if (connection.canWrite()) {
+            inputStream.notifyAvailable(this);
+            return;
+        }
+        
+        // the upstream can't keep up - stop reading the client payload
+        connection.notifyCanWrite(new WriteHandler() {
+
+            @Override
+            public void onWritePossible() throws Exception {
+                inputStream.notifyAvailable(ProxyExchange.this);
+            }
+
+            @Override
+            public void onError(final Throwable t) {
+                ProxyExchange.this.onError(t);
+            }
+        });
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void writeUpstream(final Buffer payload, final boolean isLast) {
+        final HttpContent.Builder builder = upstreamRequest.httpContentBuilder()
+                .last(isLast);
+        if (payload != null) {
+            builder.content(payload);
+        }
+        
+        upstreamConnection.write(builder.build());
+    }
+    
+    // ----------------------------------------------------- Upstream -> Downstream
+
+    /**
+     * Passes the upstream response chunk to the client.
+     * 
+     * @return <tt>true</tt> if more response data is expected by this exchange
+     */
+    boolean onUpstreamContent(final HttpContent httpContent) {
+        if (isDone.get()) {
+            httpContent.getContent().tryDispose();
+            return false;
+        }
+        
+        final HttpResponsePacket upstreamResponse =
+                (HttpResponsePacket) httpContent.getHttpHeader();
+        
+        try {
+            if (!isResponseHeaderSent) {
+                isResponseHeaderSent = true;
+                copyResponseHeader(upstreamResponse);
+            }
+
+            final Buffer payload = httpContent.getContent();
+            if (payload.hasRemaining()) {
+                outputStream.write(payload);
+                // pass the chunk on as soon as it arrives, so streamed
+                // responses are not delayed and canWrite() reflects the
+                // client connection write queue
+                outputStream.flush();
+            } else {
+                payload.tryDispose();
+            }
+        } catch (Exception e) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Error writing the response payload", e);
+            }
+            
+            onDownstreamError(e);
+            return false;
+        }
+        
+        if (httpContent.isLast()) {
+            complete(upstreamResponse.getProcessingState().isKeepAlive());
+            return false;
+        }
+        
+        return true;
+    }
+    
+    boolean canWriteDownstream() {
+        return outputStream.canWrite();
+    }
+
+    void notifyCanWriteDownstream(final WriteHandler writeHandler) {
+        outputStream.notifyCanWrite(writeHandler);
+    }
+    
+    void onDownstreamError(final Throwable t) {
+        fail(HttpStatus.BAD_GATEWAY_502);
+    }
+
+    void onUpstreamClosed() {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Upstream connection {0} has been closed",
+                    upstreamConnection);
+        }
+        
+        fail(HttpStatus.BAD_GATEWAY_502);
+    }
+    
+    // ---------------------------------------------------------------- Completion
+    
+    private void complete(final boolean isKeepAlive) {
+        if (!isDone.compareAndSet(false, true)) {
+            return;
+        }
+        
+        final Connection connection = upstreamConnection;
+        UpstreamFilter.detach(connection);
+        
+        if (isKeepAlive && isRequestSent) {
+            handler.getConnectionPool().release(connection);
+        } else {
+            // the connection is either not reusable or still busy with
+            // the request payload
+            connection.closeSilently();
+        }
+        
+        response.resume();
+    }
+    
+    private void fail(final HttpStatus status) {
+        if (!isDone.compareAndSet(false, true)) {
+            return;
+        }
+        
+        closeUpstream();
+        
+        try {
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(status);
+            } else {
+                // the client has got a part of the response already,
+                // there's no way to report the error but closing the connection
+                closeDownstream();
+            }
+        } finally {
+            response.resume();
+        }
+    }
+    
+    private void abortUpstream() {
+        if (isDone.compareAndSet(false, true)) {
+            closeUpstream();
+        }
+    }
+    
+    private void closeUpstream() {
+        final Connection connection = upstreamConnection;
+        if (connection != null) {
+            UpstreamFilter.detach(connection);
+            connection.closeSilently();
+        }
+    }
+    
+    private void closeDownstream() {
+        request.getContext().getConnection().closeSilently();
+    }
+    
+    // ------------------------------------------------------------------- Headers
+
+    private HttpRequestPacket createUpstreamRequest() {
+        final HttpRequestPacket downstream = request.getRequest();
+        
+        final HttpRequestPacket upstream = HttpRequestPacket.builder()
+                .method(downstream.getMethod())
+                .uri(downstream.getRequestURIRef()
+                        .getOriginalRequestURIBC().toString())
+                .protocol(Protocol.HTTP_1_1)
+                .build();
+        
+        final String query = downstream.getQueryString();
+        if (query != null) {
+            upstream.setQueryString(query);
+        }
+        
+        final MimeHeaders headers = downstream.getHeaders();
+        final String connectionTokens = headers.getHeader(Header.Connection);
+        
+        final int size = headers.size();
+        for (int i = 0; i < size; i++) {
+            final DataChunk name = headers.getName(i);
+            if (isHopByHop(name, connectionTokens)
+                    || name.equalsIgnoreCase(Header.Expect.getLowerCaseBytes())
+                    || (!handler.isPreserveHost()
+                        && name.equalsIgnoreCase(Header.Host.getLowerCaseBytes()))) {
+                continue;
+            }
+            
+            upstream.addHeader(name.toString(), headers.getValue(i).toString());
+        }
+        
+        if (!handler.isPreserveHost()) {
+            upstream.setHeader(Header.Host, handler.getUpstreamAuthority());
+        }
+        
+        if (downstream.isChunked()) {
+            upstream.setChunked(true);
+        } else {
+            upstream.setContentLengthLong(downstream.getContentLength());
+        }
+        
+        if (handler.isForwardedHeadersEnabled()) {
+            addForwardedHeaders(downstream, upstream);
+        }
+        
+        return upstream;
+    }
+    
+    private void addForwardedHeaders(final HttpRequestPacket downstream,
+            final HttpRequestPacket upstream) {
+        final String remoteAddr = request.getRemoteAddr();
+        final String forwardedFor = downstream.getHeader(X_FORWARDED_FOR);
+        upstream.setHeader(X_FORWARDED_FOR, forwardedFor != null
+                ? forwardedFor + ", " + remoteAddr
+                : remoteAddr);
+        
+        upstream.setHeader(X_FORWARDED_PROTO,
+                request.isSecure() ? "https" : "http");
+        
+        final String host = downstream.getHeader(Header.Host);
+        if (host != null) {
+            upstream.setHeader(X_FORWARDED_HOST, host);
+        }
+        
+        final String protocol = downstream.getProtocolString();
+        final String via = (protocol.startsWith("HTTP/")
+                ? protocol.substring(5)
+                : protocol) + ' ' + handler.getViaPseudonym();
+        final String existingVia = downstream.getHeader(Header.Via);
+        upstream.setHeader(Header.Via, existingVia != null
+                ? existingVia + ", " + via
+                : via);
+    }
+    
+    private void copyResponseHeader(final HttpResponsePacket upstream) {
+        response.setStatus(upstream.getStatus(), upstream.getReasonPhrase());
+        
+        final MimeHeaders headers = upstream.getHeaders();
+        final String connectionTokens = headers.getHeader(Header.Connection);
+        
+        final int size = headers.size();
+        for (int i = 0; i < size; i++) {
+            final DataChunk name = headers.getName(i);
+            if (isHopByHop(name, connectionTokens)
+                    || name.equalsIgnoreCase(Header.ContentLength.getLowerCaseBytes())) {
+                continue;
+            }
+            
+            response.addHeader(name.toString(), headers.getValue(i).toString());
+        }
+        
+        if (!upstream.isChunked() && upstream.getContentLength() >= 0) {
+            response.setContentLengthLong(upstream.getContentLength());
+        }
+    }
+    
+    /**
+     * @return <tt>true</tt> if the header must not be forwarded by a proxy,
+     *  see RFC 7230, section 6.1
+     */
+    static boolean isHopByHop(final DataChunk name,
+            final String connectionTokens) {
+        if (name.equalsIgnoreCase(Header.Connection.getLowerCaseBytes())
+                || name.equalsIgnoreCase(Header.KeepAlive.getLowerCaseBytes())
+                || name.equalsIgnoreCase(Header.ProxyAuthenticate.getLowerCaseBytes())
+                || name.equalsIgnoreCase(Header.ProxyAuthorization.getLowerCaseBytes())
+                || name.equalsIgnoreCase(Header.ProxyConnection.getLowerCaseBytes())
+                || name.equalsIgnoreCase(Header.TE.getLowerCaseBytes())
+                || name.equalsIgnoreCase(Header.Trailer.getLowerCaseBytes())
+                || name.equalsIgnoreCase(Header.TransferEncoding.getLowerCaseBytes())
+                || name.equalsIgnoreCase(Header.Upgrade.getLowerCaseBytes())) {
+            return true;
+        }
+        
+        if (connectionTokens != null) {
+            for (String token : connectionTokens.split(",")) {
+                if (name.equalsIgnoreCase(token.trim())) {
+                    return true;
+                }
+            }
+        }
+        
+        return false;
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.proxy;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.connectionpool.SingleEndpointPool;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.http.ContentEncoding;
+import org.glassfish.grizzly.http.HttpClientFilter;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.nio.transport.TCPNIOConnectorHandler;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.utils.DelayedExecutor;
+
+/**
+ * {@link HttpHandler}, which forwards requests to an upstream HTTP server
+ * and streams the upstream response back to the client.
+ * 
+ * Request and response payloads are passed between the downstream and
+ * upstream connections as {@link org.glassfish.grizzly.Buffer}s without
+ * copying. Backpressure is propagated in both directions: the request
+ * payload is not read from the client while the upstream connection can't
+ * accept more data, and the upstream connection is not read while the
+ * client can't accept more response data.
+ * 
+ * Upstream connections are kept in a {@link SingleEndpointPool} and reused
+ * as long as the upstream server keeps them alive. Hop-by-hop headers are
+ * not forwarded; <tt>X-Forwarded-For</tt>, <tt>X-Forwarded-Proto</tt>,
+ * <tt>X-Forwarded-Host</tt> and <tt>Via</tt> headers are added to the
+ * upstream request unless disabled.
+ * 
+ * @since 2.4.3
+ */
+public class ReverseProxyHttpHandler extends HttpHandler {
+    private static final int DEFAULT_MAX_CONNECTIONS = 64;
+    
+    private final SocketAddress upstreamAddress;
+    private final String upstreamAuthority;
+    private final SingleEndpointPool<SocketAddress> connectionPool;
+
+    private volatile boolean forwardedHeadersEnabled = true;
+    private volatile boolean preserveHost = true;
+    private volatile String viaPseudonym = "grizzly";
+    private volatile long timeoutMillis = DelayedExecutor.UNSET_TIMEOUT;
+
+    /**
+     * Constructs a <tt>ReverseProxyHttpHandler</tt>, which forwards requests
+     * to the given upstream server.
+     * 
+     * @param transport the {@link TCPNIOTransport} to be used for upstream
+     *  connections, the transport has to be started
+     * @param host the upstream host
+     * @param port the upstream port
+     */
+    public ReverseProxyHttpHandler(final TCPNIOTransport transport,
+            final String host, final int port) {
+        this(transport, new InetSocketAddress(host, port));
+    }
+
+    /**
+     * Constructs a <tt>ReverseProxyHttpHandler</tt>, which forwards requests
+     * to the given upstream server.
+     * 
+     * @param transport the {@link TCPNIOTransport} to be used for upstream
+     *  connections, the transport has to be started
+     * @param upstreamAddress the upstream server address
+     */
+    public ReverseProxyHttpHandler(final TCPNIOTransport transport,
+            final SocketAddress upstreamAddress) {
+        this(transport, upstreamAddress, DEFAULT_MAX_CONNECTIONS);
+    }
+    
+    /**
+     * Constructs a <tt>ReverseProxyHttpHandler</tt>, which forwards requests
+     * to the given upstream server.
+     * 
+     * @param transport the {@link TCPNIOTransport} to be used for upstream
+     *  connections, the transport has to be started
+     * @param upstreamAddress the upstream server address
+     * @param maxConnections the max number of upstream connections
+     */
+    public ReverseProxyHttpHandler(final TCPNIOTransport transport,
+            final SocketAddress upstreamAddress, final int maxConnections) {
+        super("ReverseProxyHttpHandler");
+        
+        if (upstreamAddress == null) {
+            throw new IllegalArgumentException("upstreamAddress can't be null");
+        }
+        
+        this.upstreamAddress = upstreamAddress;
+        this.upstreamAuthority = toAuthority(upstreamAddress);
+        
+        final HttpClientFilter httpClientFilter = new HttpClientFilter();
+        // pass the upstream payload through as it is
+        for (ContentEncoding encoding : httpClientFilter.getContentEncodings()) {
+            httpClientFilter.removeContentEncoding(encoding);
+        }
+        
+        final FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless()
+                .add(new TransportFilter())
+                .add(httpClientFilter)
+                .add(new UpstreamFilter());
+        
+        connectionPool = SingleEndpointPool.builder(SocketAddress.class)
+                .connectorHandler(TCPNIOConnectorHandler.builder(transport)
+                        .processor(filterChainBuilder.build())
+                        .build())
+                .endpointAddress(upstreamAddress)
+                .maxPoolSize(maxConnections)
+                .build();
+    }
+
+    /**
+     * @return the upstream server address
+     */
+    public SocketAddress getUpstreamAddress() {
+        return upstreamAddress;
+    }
+
+    /**
+     * @return the upstream {@link SingleEndpointPool}
+     */
+    public SingleEndpointPool<SocketAddress> getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * @return <tt>true</tt>, if <tt>X-Forwarded-*</tt> and <tt>Via</tt>
+     *  headers are added to the upstream requests
+     */
+    public boolean isForwardedHeadersEnabled() {
+        return forwardedHeadersEnabled;
+    }
+
+    /**
+     * Enables or disables <tt>X-Forwarded-*</tt> and <tt>Via</tt> headers
+     * in the upstream requests.
+     * 
+     * @param forwardedHeadersEnabled
+     */
+    public void setForwardedHeadersEnabled(final boolean forwardedHeadersEnabled) {
+        this.forwardedHeadersEnabled = forwardedHeadersEnabled;
+    }
+
+    /**
+     * @return <tt>true</tt>, if the client's <tt>Host</tt> header is
+     *  passed to the upstream server, or <tt>false</tt> if it's replaced
+     *  with the upstream server address
+     */
+    public boolean isPreserveHost() {
+        return preserveHost;
+    }
+
+    /**
+     * @param preserveHost <tt>true</tt>, if the client's <tt>Host</tt>
+     *  header has to be passed to the upstream server, or <tt>false</tt> if
+     *  it has to be replaced with the upstream server address
+     */
+    public void setPreserveHost(final boolean preserveHost) {
+        this.preserveHost = preserveHost;
+    }
+
+    /**
+     * @return the pseudonym used in the <tt>Via</tt> header
+     */
+    public String getViaPseudonym() {
+        return viaPseudonym;
+    }
+
+    /**
+     * Sets the pseudonym used in the <tt>Via</tt> header.
+     * 
+     * @param viaPseudonym
+     */
+    public void setViaPseudonym(final String viaPseudonym) {
+        this.viaPseudonym = viaPseudonym;
+    }
+
+    /**
+     * @param timeUnit {@link TimeUnit}
+     * @return the max time a request may be in progress, or a negative
+     *  value if there's no limit
+     */
+    public long getTimeout(final TimeUnit timeUnit) {
+        return timeoutMillis > 0
+                ? timeUnit.convert(timeoutMillis, TimeUnit.MILLISECONDS)
+                : timeoutMillis;
+    }
+
+    /**
+     * Sets the max time a request may be in progress. If the upstream
+     * response hasn't been completed in time - the client gets
+     * <tt>504 Gateway Timeout</tt> response, or the client connection is
+     * closed if the response has already been committed.
+     * 
+     * @param timeout the timeout, a value &lt;= 0 means no limit
+     * @param timeUnit {@link TimeUnit}
+     */
+    public void setTimeout(final long timeout, final TimeUnit timeUnit) {
+        timeoutMillis = timeout > 0
+                ? TimeUnit.MILLISECONDS.convert(timeout, timeUnit)
+                : DelayedExecutor.UNSET_TIMEOUT;
+    }
+
+    @Override
+    public void service(final Request request, final Response response)
+            throws Exception {
+        new ProxyExchange(this, request, response).start(timeoutMillis);
+    }
+
+    @Override
+    public void destroy() {
+        connectionPool.close();
+    }
+
+    String getUpstreamAuthority() {
+        return upstreamAuthority;
+    }
+    
+    private static String toAuthority(final SocketAddress address) {
+        if (address instanceof InetSocketAddress) {
+            final InetSocketAddress inetAddress = (InetSocketAddress) address;
+            return inetAddress.getHostString() + ':' + inetAddress.getPort();
+        }
+        
+        return address.toString();
+    }
+}
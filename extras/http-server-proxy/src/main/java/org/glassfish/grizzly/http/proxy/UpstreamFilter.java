@@ -0,0 +1,124 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.proxy;
+
+import java.io.IOException;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.WriteHandler;
+import org.glassfish.grizzly.attributes.Attribute;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.http.HttpContent;
+
+/**
+ * The last {@link org.glassfish.grizzly.filterchain.Filter} in the upstream
+ * connection filter chain, which passes the upstream response to the
+ * {@link ProxyExchange} the connection is currently assigned to.
+ * 
+ * If the client can't accept more response data - the upstream connection
+ * processing is suspended until the client becomes writable again.
+ */
+final class UpstreamFilter extends BaseFilter {
+    private static final Attribute<ProxyExchange> EXCHANGE_ATTR =
+            Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
+            UpstreamFilter.class.getName() + ".exchange");
+
+    static void attach(final Connection connection,
+            final ProxyExchange exchange) {
+        EXCHANGE_ATTR.set(connection, exchange);
+    }
+    
+    static void detach(final Connection connection) {
+        EXCHANGE_ATTR.remove(connection);
+    }
+    
+    @Override
+    public NextAction handleRead(final FilterChainContext ctx)
+            throws IOException {
+        final Connection connection = ctx.getConnection();
+        final HttpContent httpContent = ctx.getMessage();
+        final ProxyExchange exchange = EXCHANGE_ATTR.get(connection);
+        
+        if (exchange == null) {
+            // response data, which doesn't belong to any exchange
+            connection.closeSilently();
+            return ctx.getStopAction();
+        }
+        
+        if (!exchange.onUpstreamContent(httpContent)
+                || exchange.canWriteDownstream()) {
+            return ctx.getStopAction();
+        }
+        
+        // the client can't keep up - stop reading the upstream connection
+        final NextAction suspendAction = ctx.getSuspendAction();
+        ctx.suspend();
+        
+        exchange.notifyCanWriteDownstream(new WriteHandler() {
+
+            @Override
+            public void onWritePossible() throws Exception {
+                ctx.resumeNext();
+            }
+
+            @Override
+            public void onError(final Throwable t) {
+                exchange.onDownstreamError(t);
+                ctx.resumeNext();
+            }
+        });
+        
+        return suspendAction;
+    }
+
+    @Override
+    public NextAction handleClose(final FilterChainContext ctx)
+            throws IOException {
+        final ProxyExchange exchange = EXCHANGE_ATTR.get(ctx.getConnection());
+        if (exchange != null) {
+            exchange.onUpstreamClosed();
+        }
+        
+        return ctx.getInvokeAction();
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.proxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Arrays;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.server.ServerConfiguration;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link ReverseProxyHttpHandler}.
+ */
+public class ReverseProxyHttpHandlerTest {
+    private static final int PORT = 18931;
+    private static final int UPSTREAM_PORT = 18932;
+    private static final int CLOSED_PORT = 18933;
+    private static final int SOCKET_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_PENDING_BYTES = 64 * 1024;
+    
+    private HttpServer upstreamServer;
+    private HttpServer proxyServer;
+    private TCPNIOTransport clientTransport;
+    private ReverseProxyHttpHandler proxyHandler;
+
+    @Before
+    public void before() throws Exception {
+        upstreamServer = HttpServer.createSimpleServer(null, "localhost", UPSTREAM_PORT);
+        final ServerConfiguration upstreamConfig = upstreamServer.getServerConfiguration();
+        upstreamConfig.addHttpHandler(new HttpHandler() {
+            @Override
+            public void service(Request request, Response response) throws Exception {
+                response.setHeader("X-Upstream", "yes");
+                response.setHeader("Keep-Alive", "timeout=100");
+                response.getWriter().write(
+                        request.getMethod() + " " + request.getRequestURI()
+                        + "?" + request.getQueryString()
+                        + "|" + request.getHeader("X-Forwarded-For")
+                        + "|" + request.getHeader("X-Forwarded-Proto")
+                        + "|" + request.getHeader("X-Forwarded-Host")
+                        + "|" + request.getHeader("Via")
+                        + "|" + request.getHeader("Proxy-Authorization"));
+            }
+        }, "/headers");
+        upstreamConfig.addHttpHandler(new HttpHandler() {
+            @Override
+            public void service(Request request, Response response) throws Exception {
+                final InputStream in = request.getInputStream();
+                final OutputStream out = response.getOutputStream();
+                final byte[] buf = new byte[8192];
+                int len;
+                while ((len = in.read(buf)) != -1) {
+                    out.write(buf, 0, len);
+                }
+            }
+        }, "/echo");
+        upstreamConfig.addHttpHandler(new HttpHandler() {
+            @Override
+            public void service(Request request, Response response) throws Exception {
+                final int size = Integer.parseInt(request.getParameter("size"));
+                response.setContentLength(size);
+                final OutputStream out = response.getOutputStream();
+                for (int i = 0; i < size; i++) {
+                    out.write(i);
+                }
+            }
+        }, "/big");
+        upstreamServer.start();
+        
+        // small socket buffers and write queues to make sure
+        // backpressure kicks in
+        clientTransport = TCPNIOTransportBuilder.newInstance().build();
+        clientTransport.setWriteBufferSize(SOCKET_BUFFER_SIZE);
+        clientTransport.getAsyncQueueIO().getWriter()
+                .setMaxPendingBytesPerConnection(MAX_PENDING_BYTES);
+        clientTransport.start();
+        
+        proxyServer = HttpServer.createSimpleServer(null, "localhost", PORT);
+        final NetworkListener listener = proxyServer.getListener("grizzly");
+        listener.getTransport().setWriteBufferSize(SOCKET_BUFFER_SIZE);
+        listener.setMaxPendingBytes(MAX_PENDING_BYTES);
+        proxyHandler = new ReverseProxyHttpHandler(clientTransport,
+                "localhost", UPSTREAM_PORT);
+        proxyServer.getServerConfiguration().addHttpHandler(proxyHandler, "/");
+        proxyServer.start();
+    }
+
+    @After
+    public void after() throws Exception {
+        if (proxyServer != null) {
+            proxyServer.shutdownNow();
+        }
+        if (clientTransport != null) {
+            clientTransport.shutdownNow();
+        }
+        if (upstreamServer != null) {
+            upstreamServer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testHeaders() throws Exception {
+        final HttpURLConnection connection = open("/headers?a=1");
+        connection.setRequestProperty("Proxy-Authorization", "must not be forwarded");
+        connection.setRequestProperty("X-Forwarded-For", "10.0.0.1");
+        
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("yes", connection.getHeaderField("X-Upstream"));
+        assertNull(connection.getHeaderField("Keep-Alive"));
+        assertEquals("GET /headers?a=1|10.0.0.1, 127.0.0.1|http|localhost:"
+                + PORT + "|1.1 grizzly|null",
+                new String(read(connection), "UTF-8"));
+    }
+
+    @Test
+    public void testRequestPayload() throws Exception {
+        final byte[] payload = new byte[1024 * 1024];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (i % 31);
+        }
+        
+        // fixed length request payload
+        HttpURLConnection connection = open("/echo");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(payload.length);
+        write(connection, payload);
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(Arrays.equals(payload, read(connection)));
+        
+        // chunked request payload
+        connection = open("/echo");
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(8192);
+        write(connection, payload);
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(Arrays.equals(payload, read(connection)));
+    }
+
+    @Test
+    public void testLargeResponse() throws Exception {
+        final int size = 8 * 1024 * 1024;
+        final HttpURLConnection connection = open("/big?size=" + size);
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(size, connection.getContentLength());
+        
+        final byte[] result = read(connection);
+        assertEquals(size, result.length);
+        for (int i = 0; i < size; i++) {
+            if (result[i] != (byte) i) {
+                fail("Unexpected byte at " + i);
+            }
+        }
+    }
+
+    @Test
+    public void testSlowClient() throws Exception {
+        final int size = 4 * 1024 * 1024;
+        
+        final Socket socket = new Socket();
+        socket.setReceiveBufferSize(8192);
+        socket.setSoTimeout(30000);
+        socket.connect(new InetSocketAddress("localhost", PORT));
+        try {
+            final OutputStream out = socket.getOutputStream();
+            out.write(("GET /big?size=" + size + " HTTP/1.1\r\n"
+                    + "Host: localhost:" + PORT + "\r\n"
+                    + "Connection: close\r\n\r\n").getBytes("ISO-8859-1"));
+            out.flush();
+            
+            final InputStream in = socket.getInputStream();
+            
+            // skip the response header
+            int matched = 0;
+            while (matched < 4) {
+                final int b = in.read();
+                assertTrue("Unexpected EOF", b != -1);
+                matched = (b == (matched % 2 == 0 ? '\r' : '\n'))
+                        ? matched + 1
+                        : (b == '\r' ? 1 : 0);
+            }
+            
+            final byte[] buf = new byte[8192];
+            int offset = 0;
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                for (int i = 0; i < len; i++) {
+                    if (buf[i] != (byte) (offset + i)) {
+                        fail("Unexpected byte at " + (offset + i));
+                    }
+                }
+                offset += len;
+                
+                if (offset % (256 * 1024) < len) {
+                    // let the proxy hit the client's write limit
+                    Thread.sleep(20);
+                }
+            }
+            
+            assertEquals(size, offset);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testUpstreamConnectionReuse() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            final HttpURLConnection connection = open("/headers?i=" + i);
+            assertEquals(200, connection.getResponseCode());
+            read(connection);
+        }
+        
+        assertEquals(1, proxyHandler.getConnectionPool().getOpenConnectionsCount());
+    }
+
+    @Test
+    public void testUpstreamUnavailable() throws Exception {
+        final ReverseProxyHttpHandler handler = new ReverseProxyHttpHandler(
+                clientTransport, new InetSocketAddress("localhost", CLOSED_PORT));
+        proxyServer.getServerConfiguration().addHttpHandler(handler, "/closed/*");
+        
+        try {
+            final HttpURLConnection connection = open("/closed/test");
+            assertEquals(502, connection.getResponseCode());
+        } finally {
+            handler.destroy();
+        }
+    }
+    
+    private static HttpURLConnection open(final String path) throws Exception {
+        final HttpURLConnection connection = (HttpURLConnection)
+                new URL("http://localhost:" + PORT + path).openConnection();
+        connection.setReadTimeout(30000);
+        return connection;
+    }
+
+    private static void write(final HttpURLConnection connection,
+            final byte[] payload) throws Exception {
+        final OutputStream out = connection.getOutputStream();
+        try {
+            for (int i = 0; i < payload.length; i += 4096) {
+                out.write(payload, i, Math.min(4096, payload.length - i));
+            }
+        } finally {
+            out.close();
+        }
+    }
+    
+    private static byte[] read(final HttpURLConnection connection)
+            throws Exception {
+        final InputStream in = connection.getInputStream();
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buf = new byte[8192];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+            }
+            
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
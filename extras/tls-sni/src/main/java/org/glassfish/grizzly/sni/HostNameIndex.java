@@ -0,0 +1,175 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.sni;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Index of exact and wildcard host names, organized as a trie of DNS labels
+ * in the reverse order (<tt>www.example.com</tt> is stored as
+ * <tt>com -&gt; example -&gt; www</tt>), so the lookup cost depends on
+ * the number of labels in the host name, not on the number of indexed names.
+ * 
+ * A wildcard name like <tt>*.example.com</tt> matches exactly one label
+ * (<tt>www.example.com</tt>, but neither <tt>example.com</tt>,
+ * nor <tt>a.b.example.com</tt>), an exact name always takes precedence over
+ * the wildcard one.
+ * 
+ * The index is not thread-safe, it's expected to be populated by a single
+ * thread and then safely published for lookups.
+ * 
+ * @param <E> the indexed value type
+ */
+final class HostNameIndex<E> {
+    private static final String WILDCARD = "*";
+    
+    private final Node<E> root = new Node<E>();
+    private int size;
+
+    /**
+     * Indexes the value by the exact or wildcard host name.
+     * 
+     * @return the value previously indexed by the same name, or <tt>null</tt>
+     */
+    E put(final String name, final E value) {
+        final String normalized = normalize(name);
+        
+        Node<E> node = root;
+        int end = normalized.length();
+        
+        while (true) {
+            final int dot = normalized.lastIndexOf('.', end - 1);
+            final String label = normalized.substring(dot + 1, end);
+            
+            if (dot < 0) {
+                final E old;
+                if (WILDCARD.equals(label)) {
+                    old = node.wildcard;
+                    node.wildcard = value;
+                } else {
+                    final Node<E> leaf = node.obtainChild(label);
+                    old = leaf.exact;
+                    leaf.exact = value;
+                }
+                
+                if (old == null) {
+                    size++;
+                }
+                
+                return old;
+            }
+            
+            node = node.obtainChild(label);
+            end = dot;
+        }
+    }
+    
+    /**
+     * @return the value indexed by the exact host name, or by the wildcard
+     *          name matching the host name, or <tt>null</tt>
+     */
+    E get(final String hostName) {
+        if (hostName == null || hostName.isEmpty()) {
+            return null;
+        }
+        
+        final String normalized = normalize(hostName);
+        
+        Node<E> node = root;
+        int end = normalized.length();
+        
+        while (end > 0) {
+            final int dot = normalized.lastIndexOf('.', end - 1);
+            final String label = normalized.substring(dot + 1, end);
+            
+            if (dot < 0) {
+                final Node<E> leaf = node.children != null
+                        ? node.children.get(label)
+                        : null;
+                return leaf != null && leaf.exact != null
+                        ? leaf.exact
+                        : node.wildcard;
+            }
+            
+            node = node.children != null ? node.children.get(label) : null;
+            if (node == null) {
+                return null;
+            }
+            
+            end = dot;
+        }
+        
+        return null;
+    }
+
+    int size() {
+        return size;
+    }
+    
+    private static String normalize(final String name) {
+        final String lowerCase = name.toLowerCase(Locale.ENGLISH);
+        return lowerCase.endsWith(".")
+                ? lowerCase.substring(0, lowerCase.length() - 1)
+                : lowerCase;
+    }
+    
+    private static final class Node<E> {
+        private Map<String, Node<E>> children;
+        private E exact;
+        private E wildcard;
+
+        private Node<E> obtainChild(final String label) {
+            if (children == null) {
+                children = new HashMap<String, Node<E>>(4);
+            }
+            
+            Node<E> child = children.get(label);
+            if (child == null) {
+                child = new Node<E>();
+                children.put(label, child);
+            }
+            
+            return child;
+        }
+    }
+}
@@ -0,0 +1,607 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.sni;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.ssl.SSLEngineConfigurator;
+
+/**
+ * {@link SNIServerConfigResolver}, which serves many host names (tenants)
+ * with their own certificates.
+ * 
+ * The certificates are loaded from a directory of key stores
+ * (<tt>*.jks</tt> for JKS, <tt>*.p12</tt> or <tt>*.pfx</tt> for PKCS12)
+ * and/or from the {@link KeyStore}s registered via
+ * {@link #addKeyStore(KeyStore, char[])}. Each private key entry is
+ * indexed by the DNS names from its certificate's subject alternative names
+ * extension (or by the subject's common name, if the extension is absent),
+ * including the wildcard names like <tt>*.example.com</tt>. The host name
+ * lookup cost doesn't depend on the number of the indexed certificates.
+ * 
+ * An {@link SSLContext}, and so the TLS session cache, is created once per
+ * certificate, lazily, when the certificate is requested for the first
+ * time, and reused for all the subsequent handshakes.
+ * 
+ * The directory may be rescanned either explicitly via {@link #reload()},
+ * or periodically, see {@link #startReloading(long, TimeUnit)}. Only new
+ * and changed files are reloaded, the certificates of unchanged files keep
+ * their {@link SSLContext}s. The changes are applied to the new handshakes
+ * without restarting the listener.
+ * 
+ * <pre>
+ * {@code
+ *      final SNICertificateStore store = new SNICertificateStore(
+ *              new File("/etc/tenants"), "changeit".toCharArray());
+ *      store.startReloading(30, TimeUnit.SECONDS);
+ *      
+ *      final SNIFilter sniFilter = new SNIFilter();
+ *      sniFilter.setServerSSLConfigResolver(store);
+ * }
+ * </pre>
+ */
+public class SNICertificateStore implements SNIServerConfigResolver {
+    private static final Logger LOGGER = Grizzly.logger(SNICertificateStore.class);
+    
+    // the password protecting the private key inside the per-certificate
+    // in-memory KeyStore passed to KeyManagerFactory
+    private static final char[] ENTRY_PASSWORD = "grizzly-sni".toCharArray();
+    
+    private static final int DNS_NAME_TYPE = 2;
+    
+    private final File directory;
+    private final char[] password;
+    
+    private final Object sync = new Object();
+    
+    // guarded by sync
+    private final List<CertificateEntry> keyStoreEntries =
+            new ArrayList<CertificateEntry>();
+    private Map<File, LoadedFile> loadedFiles = new TreeMap<File, LoadedFile>();
+    private ScheduledExecutorService reloadExecutor;
+    
+    private volatile HostNameIndex<CertificateEntry> index =
+            new HostNameIndex<CertificateEntry>();
+    
+    private volatile SSLEngineConfigurator configuratorTemplate;
+    private volatile boolean failOnUnknownHost;
+
+    /**
+     * Creates an empty store, the certificates have to be added via
+     * {@link #addKeyStore(KeyStore, char[])}.
+     */
+    public SNICertificateStore() {
+        this.directory = null;
+        this.password = null;
+    }
+
+    /**
+     * Creates a store and loads the key stores from the given directory.
+     * The key stores, which can't be loaded, are skipped with a warning.
+     * 
+     * @param directory the directory containing the key stores
+     * @param password the password of the key stores and the private keys
+     * @throws IOException if the directory can't be read
+     */
+    public SNICertificateStore(final File directory, final char[] password)
+            throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory can't be null");
+        }
+        
+        this.directory = directory;
+        this.password = password != null ? password.clone() : null;
+        
+        reload();
+    }
+
+    /**
+     * Adds the private key entries of the {@link KeyStore} to the store.
+     * Unlike the directory key stores, these certificates are never reloaded.
+     * 
+     * @param keyStore {@link KeyStore}
+     * @param keyPassword the password of the private keys
+     * @return this store
+     * @throws GeneralSecurityException if the private keys can't be read
+     */
+    public SNICertificateStore addKeyStore(final KeyStore keyStore,
+            final char[] keyPassword) throws GeneralSecurityException {
+        final List<CertificateEntry> entries = readEntries(keyStore, keyPassword);
+        
+        synchronized (sync) {
+            keyStoreEntries.addAll(entries);
+            rebuildIndex();
+        }
+        
+        return this;
+    }
+
+    /**
+     * @return the {@link SSLEngineConfigurator}, which settings (enabled
+     * protocols and cipher suites, client authentication, record size
+     * policy) are applied to all the certificates, or <tt>null</tt>
+     */
+    public SSLEngineConfigurator getConfiguratorTemplate() {
+        return configuratorTemplate;
+    }
+
+    /**
+     * Sets the {@link SSLEngineConfigurator}, which settings (enabled
+     * protocols and cipher suites, client authentication, record size
+     * policy) are applied to all the certificates. The template's
+     * {@link SSLContext} is ignored.
+     * 
+     * @param configuratorTemplate {@link SSLEngineConfigurator}
+     */
+    public void setConfiguratorTemplate(
+            final SSLEngineConfigurator configuratorTemplate) {
+        this.configuratorTemplate = configuratorTemplate;
+        
+        synchronized (sync) {
+            for (CertificateEntry entry : keyStoreEntries) {
+                entry.reset();
+            }
+            
+            for (LoadedFile loadedFile : loadedFiles.values()) {
+                for (CertificateEntry entry : loadedFile.entries) {
+                    entry.reset();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return <tt>true</tt>, if the handshake has to fail for a host name
+     * which isn't found in the store, or <tt>false</tt> (default), if the
+     * {@link SNIFilter}'s default configuration has to be used
+     */
+    public boolean isFailOnUnknownHost() {
+        return failOnUnknownHost;
+    }
+
+    /**
+     * @param failOnUnknownHost <tt>true</tt>, if the handshake has to fail
+     *        for a host name which isn't found in the store, or <tt>false</tt>,
+     *        if the {@link SNIFilter}'s default configuration has to be used
+     */
+    public void setFailOnUnknownHost(final boolean failOnUnknownHost) {
+        this.failOnUnknownHost = failOnUnknownHost;
+    }
+
+    /**
+     * @return the number of the indexed host names
+     */
+    public int size() {
+        return index.size();
+    }
+    
+    /**
+     * Rescans the directory: loads new and changed key stores and removes
+     * the certificates of the deleted ones. A key store, which fails to load,
+     * keeps its previously loaded certificates, if any, and is not retried
+     * until it's modified again.
+     * 
+     * @throws IOException if the directory can't be read
+     */
+    public void reload() throws IOException {
+        if (directory == null) {
+            return;
+        }
+        
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Can't read the directory: " + directory);
+        }
+        
+        synchronized (sync) {
+            final Map<File, LoadedFile> newLoadedFiles =
+                    new TreeMap<File, LoadedFile>();
+            boolean isChanged = false;
+            
+            for (File file : files) {
+                final String keyStoreType = getKeyStoreType(file);
+                if (keyStoreType == null || !file.isFile()) {
+                    continue;
+                }
+                
+                LoadedFile loadedFile = loadedFiles.get(file);
+                
+                if (loadedFile == null || loadedFile.isModified(file)) {
+                    try {
+                        loadedFile = loadFile(file, keyStoreType);
+                        isChanged = true;
+                    } catch (Exception e) {
+                        LOGGER.log(Level.WARNING,
+                                "Can not load the key store: " + file, e);
+                        
+                        // keep the previously loaded certificates, if any,
+                        // and don't retry until the file is modified again
+                        loadedFile = new LoadedFile(file.lastModified(),
+                                file.length(),
+                                loadedFile != null
+                                        ? loadedFile.entries
+                                        : Collections.<CertificateEntry>emptyList());
+                    }
+                }
+                
+                newLoadedFiles.put(file, loadedFile);
+            }
+            
+            isChanged |= !newLoadedFiles.keySet().equals(loadedFiles.keySet());
+            loadedFiles = newLoadedFiles;
+            
+            if (isChanged) {
+                rebuildIndex();
+            }
+        }
+    }
+
+    /**
+     * Starts rescanning the directory periodically.
+     * 
+     * @param period the period between the rescans
+     * @param timeUnit {@link TimeUnit}
+     */
+    public void startReloading(final long period, final TimeUnit timeUnit) {
+        if (directory == null) {
+            throw new IllegalStateException("The store has no directory");
+        }
+        
+        synchronized (sync) {
+            if (reloadExecutor != null) {
+                throw new IllegalStateException("Already started");
+            }
+            
+            reloadExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(r,
+                            "grizzly-sni-store-reload(" + directory.getName() + ')');
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            
+            reloadExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        reload();
+                    } catch (Exception e) {
+                        LOGGER.log(Level.WARNING,
+                                "Can not reload the certificate store", e);
+                    }
+                }
+            }, period, period, timeUnit);
+        }
+    }
+
+    /**
+     * Stops the periodical directory rescanning.
+     */
+    public void stopReloading() {
+        synchronized (sync) {
+            if (reloadExecutor != null) {
+                reloadExecutor.shutdownNow();
+                reloadExecutor = null;
+            }
+        }
+    }
+    
+    // ---------------------------------------- Methods from SNIServerConfigResolver
+
+    @Override
+    public SNIConfig resolve(final Connection connection, final String hostname) {
+        final CertificateEntry entry = index.get(hostname);
+        
+        if (entry == null) {
+            return failOnUnknownHost
+                    ? SNIConfig.failServerConfig(hostname)
+                    : null;
+        }
+        
+        return entry.getSNIConfig(hostname);
+    }
+    
+    // ------------------------------------------------------- Private Methods
+
+    /**
+     * Has to be called in synchronized(sync) {...} block.
+     */
+    private void rebuildIndex() {
+        final HostNameIndex<CertificateEntry> newIndex =
+                new HostNameIndex<CertificateEntry>();
+        
+        index(newIndex, keyStoreEntries);
+        for (LoadedFile loadedFile : loadedFiles.values()) {
+            index(newIndex, loadedFile.entries);
+        }
+        
+        index = newIndex;
+    }
+    
+    private static void index(final HostNameIndex<CertificateEntry> index,
+            final Collection<CertificateEntry> entries) {
+        for (CertificateEntry entry : entries) {
+            for (String name : entry.names) {
+                final CertificateEntry old = index.put(name, entry);
+                if (old != null && LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE,
+                            "Host name {0} is served by {1} instead of {2}",
+                            new Object[] {name, entry, old});
+                }
+            }
+        }
+    }
+    
+    private LoadedFile loadFile(final File file, final String keyStoreType)
+            throws IOException, GeneralSecurityException {
+        // the file attributes are taken before reading, so a concurrent
+        // modification is detected during the next reload
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        
+        final KeyStore keyStore = KeyStore.getInstance(keyStoreType);
+        
+        final InputStream in = new FileInputStream(file);
+        try {
+            keyStore.load(in, password);
+        } finally {
+            in.close();
+        }
+        
+        return new LoadedFile(lastModified, length,
+                readEntries(keyStore, password));
+    }
+    
+    private List<CertificateEntry> readEntries(final KeyStore keyStore,
+            final char[] keyPassword) throws GeneralSecurityException {
+        final List<CertificateEntry> entries = new ArrayList<CertificateEntry>();
+        
+        for (Enumeration<String> aliases = keyStore.aliases();
+                aliases.hasMoreElements();) {
+            final String alias = aliases.nextElement();
+            if (!keyStore.isKeyEntry(alias)) {
+                continue;
+            }
+            
+            final Key key = keyStore.getKey(alias, keyPassword);
+            final Certificate[] chain = keyStore.getCertificateChain(alias);
+            
+            if (!(key instanceof PrivateKey) || chain == null
+                    || chain.length == 0
+                    || !(chain[0] instanceof X509Certificate)) {
+                continue;
+            }
+            
+            final List<String> names = getNames((X509Certificate) chain[0]);
+            if (names.isEmpty()) {
+                LOGGER.log(Level.WARNING,
+                        "No host names found in the certificate: {0}", alias);
+                continue;
+            }
+            
+            entries.add(new CertificateEntry(alias, (PrivateKey) key, chain,
+                    names));
+        }
+        
+        return entries;
+    }
+    
+    private static List<String> getNames(final X509Certificate certificate)
+            throws GeneralSecurityException {
+        final List<String> names = new ArrayList<String>(2);
+        
+        final Collection<List<?>> altNames =
+                certificate.getSubjectAlternativeNames();
+        if (altNames != null) {
+            for (List<?> altName : altNames) {
+                if (((Integer) altName.get(0)) == DNS_NAME_TYPE) {
+                    names.add((String) altName.get(1));
+                }
+            }
+        }
+        
+        if (names.isEmpty()) {
+            try {
+                final LdapName subject = new LdapName(
+                        certificate.getSubjectX500Principal().getName());
+                for (Rdn rdn : subject.getRdns()) {
+                    if ("CN".equalsIgnoreCase(rdn.getType())) {
+                        names.add(rdn.getValue().toString());
+                    }
+                }
+            } catch (InvalidNameException ignored) {
+            }
+        }
+        
+        return names;
+    }
+    
+    private static String getKeyStoreType(final File file) {
+        final String name = file.getName().toLowerCase(Locale.ENGLISH);
+        
+        if (name.endsWith(".jks")) {
+            return "JKS";
+        } else if (name.endsWith(".p12") || name.endsWith(".pfx")) {
+            return "PKCS12";
+        }
+        
+        return null;
+    }
+    
+    private static final class LoadedFile {
+        private final long lastModified;
+        private final long length;
+        private final List<CertificateEntry> entries;
+
+        private LoadedFile(final long lastModified, final long length,
+                final List<CertificateEntry> entries) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.entries = Collections.unmodifiableList(entries);
+        }
+        
+        private boolean isModified(final File file) {
+            return lastModified != file.lastModified()
+                    || length != file.length();
+        }
+    }
+    
+    /**
+     * A certificate with its private key, and the lazily created
+     * {@link SNIConfig}, which holds the certificate's {@link SSLContext}.
+     */
+    private final class CertificateEntry {
+        private final String alias;
+        private final PrivateKey privateKey;
+        private final Certificate[] chain;
+        private final List<String> names;
+        
+        private volatile SNIConfig sniConfig;
+
+        private CertificateEntry(final String alias,
+                final PrivateKey privateKey, final Certificate[] chain,
+                final List<String> names) {
+            this.alias = alias;
+            this.privateKey = privateKey;
+            this.chain = chain;
+            this.names = names;
+        }
+        
+        private SNIConfig getSNIConfig(final String hostname) {
+            SNIConfig config = sniConfig;
+            if (config == null) {
+                synchronized (this) {
+                    config = sniConfig;
+                    if (config == null) {
+                        try {
+                            config = createSNIConfig();
+                        } catch (GeneralSecurityException e) {
+                            LOGGER.log(Level.WARNING,
+                                    "Can not create SSLContext for " + this, e);
+                            return SNIConfig.failServerConfig(hostname);
+                        } catch (IOException e) {
+                            LOGGER.log(Level.WARNING,
+                                    "Can not create SSLContext for " + this, e);
+                            return SNIConfig.failServerConfig(hostname);
+                        }
+                        
+                        sniConfig = config;
+                    }
+                }
+            }
+            
+            return config;
+        }
+        
+        private synchronized void reset() {
+            sniConfig = null;
+        }
+        
+        private SNIConfig createSNIConfig()
+                throws GeneralSecurityException, IOException {
+            final KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            keyStore.load(null, null);
+            keyStore.setKeyEntry(alias, privateKey, ENTRY_PASSWORD, chain);
+            
+            final KeyManagerFactory keyManagerFactory =
+                    KeyManagerFactory.getInstance(
+                            KeyManagerFactory.getDefaultAlgorithm());
+            keyManagerFactory.init(keyStore, ENTRY_PASSWORD);
+            
+            final SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+            
+            final SSLEngineConfigurator template = configuratorTemplate;
+            final SSLEngineConfigurator configurator;
+            
+            if (template == null) {
+                configurator = new SSLEngineConfigurator(sslContext,
+                        false, false, false);
+            } else {
+                configurator = new SSLEngineConfigurator(sslContext,
+                        false, template.isNeedClientAuth(),
+                        template.isWantClientAuth());
+                configurator.setEnabledProtocols(template.getEnabledProtocols());
+                configurator.setEnabledCipherSuites(template.getEnabledCipherSuites());
+                configurator.setRecordSizePolicy(template.getRecordSizePolicy());
+            }
+            
+            return SNIConfig.newServerConfig(configurator);
+        }
+
+        @Override
+        public String toString() {
+            return alias + names;
+        }
+    }
+}
@@ -214,6 +214,7 @@ public class SNIFilter extends SSLFilter {
                 configurator.createSSLEngine();
         
         sslCtx.configure(sslEngine);
+        sslCtx.setRecordSizePolicy(resolveRecordSizePolicy(configurator));
         sslEngine.beginHandshake();
         notifyHandshakeStart(c);
         
@@ -284,6 +285,7 @@ public class SNIFilter extends SSLFilter {
                 
                 final SSLEngine sslEngine = configurator.createSSLEngine();
                 sslCtx.configure(sslEngine);
+                sslCtx.setRecordSizePolicy(resolveRecordSizePolicy(configurator));
                 sslEngine.beginHandshake();
                 notifyHandshakeStart(c);
             }
@@ -0,0 +1,200 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.sni;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.KeyStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link SNICertificateStore} and {@link HostNameIndex} tests.
+ */
+public class SNICertificateStoreTest {
+    // the CN of the test certificate, which has no subject alternative names
+    private static final String HOST = "Project Grizzly";
+    private static final char[] PASSWORD = "changeit".toCharArray();
+    
+    private File directory;
+    
+    @Before
+    public void before() throws IOException {
+        directory = File.createTempFile("sni-store", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+    }
+    
+    @After
+    public void after() {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        
+        directory.delete();
+    }
+    
+    @Test
+    public void testHostNameIndex() {
+        final HostNameIndex<String> index = new HostNameIndex<String>();
+        index.put("example.com", "apex");
+        index.put("*.example.com", "wildcard");
+        index.put("www.example.com", "www");
+        index.put("*.b.example.com", "nested-wildcard");
+        
+        assertEquals(4, index.size());
+        assertEquals("apex", index.get("example.com"));
+        assertEquals("www", index.get("www.example.com"));
+        assertEquals("www", index.get("WWW.Example.COM."));
+        assertEquals("wildcard", index.get("api.example.com"));
+        assertEquals("wildcard", index.get("b.example.com"));
+        assertEquals("nested-wildcard", index.get("a.b.example.com"));
+        
+        // the wildcard matches exactly one label
+        assertNull(index.get("a.c.example.com"));
+        assertNull(index.get("com"));
+        assertNull(index.get("example.org"));
+        assertNull(index.get(""));
+        assertNull(index.get(null));
+        
+        assertEquals("www", index.put("www.example.com", "www2"));
+        assertEquals(4, index.size());
+    }
+    
+    @Test
+    public void testDirectoryReload() throws Exception {
+        copyKeyStore("tenant1.jks");
+        
+        final SNICertificateStore store =
+                new SNICertificateStore(directory, PASSWORD);
+        assertEquals(1, store.size());
+        
+        final SNIConfig config = store.resolve(null, HOST);
+        assertNotNull(config);
+        assertFalse(config.isClientConfig);
+        assertNotNull(config.sslEngineConfigurator.createSSLEngine());
+        
+        // the SSLContext is cached
+        assertSame(config, store.resolve(null, HOST.toLowerCase()));
+        
+        // unknown host
+        assertNull(store.resolve(null, "unknown.com"));
+        store.setFailOnUnknownHost(true);
+        assertNotNull(store.resolve(null, "unknown.com"));
+        
+        // a broken key store is skipped
+        final OutputStream out =
+                new FileOutputStream(new File(directory, "broken.jks"));
+        try {
+            out.write(new byte[] {1, 2, 3});
+        } finally {
+            out.close();
+        }
+        
+        store.reload();
+        assertEquals(1, store.size());
+        
+        // unchanged key stores keep their SSLContexts
+        assertSame(config, store.resolve(null, HOST));
+        
+        assertTrue(new File(directory, "tenant1.jks").delete());
+        store.reload();
+        assertEquals(0, store.size());
+        store.setFailOnUnknownHost(false);
+        assertNull(store.resolve(null, HOST));
+        
+        copyKeyStore("tenant2.jks");
+        store.reload();
+        assertEquals(1, store.size());
+        assertNotNull(store.resolve(null, HOST));
+        assertNotSame(config, store.resolve(null, HOST));
+    }
+    
+    @Test
+    public void testAddKeyStore() throws Exception {
+        final KeyStore keyStore = KeyStore.getInstance("JKS");
+        final InputStream in = getClass().getClassLoader()
+                .getResourceAsStream("ssltest-keystore.jks");
+        try {
+            keyStore.load(in, PASSWORD);
+        } finally {
+            in.close();
+        }
+        
+        final SNICertificateStore store = new SNICertificateStore()
+                .addKeyStore(keyStore, PASSWORD);
+        assertEquals(1, store.size());
+        assertNotNull(store.resolve(null, HOST));
+        
+        // no reload for the directory-less store
+        store.reload();
+        assertEquals(1, store.size());
+    }
+    
+    private void copyKeyStore(final String fileName) throws IOException {
+        final InputStream in = getClass().getClassLoader()
+                .getResourceAsStream("ssltest-keystore.jks");
+        try {
+            final OutputStream out =
+                    new FileOutputStream(new File(directory, fileName));
+            try {
+                final byte[] buf = new byte[4096];
+                int len;
+                while ((len = in.read(buf)) != -1) {
+                    out.write(buf, 0, len);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -41,6 +41,7 @@
 package org.glassfish.grizzly.comet;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -54,12 +55,14 @@ import org.glassfish.grizzly.CompletionHandler;
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.CloseType;
 import org.glassfish.grizzly.GenericCloseListener;
+import org.glassfish.grizzly.GrizzlyFuture;
 import org.glassfish.grizzly.ReadHandler;
 import org.glassfish.grizzly.http.server.Request;
 import org.glassfish.grizzly.http.server.Response;
 import org.glassfish.grizzly.http.server.TimeoutHandler;
 import org.glassfish.grizzly.http.io.NIOInputStream;
 import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.utils.Futures;
 
 /**
  * The main object used by {@link CometHandler} and Servlet to push information amongst suspended request/response. The
@@ -438,6 +441,32 @@ public class CometContext<E> {
         notificationHandler.notify(new CometEvent<E>(eventType, this, attachment), handlers.iterator());
     }
 
+    /**
+     * Notify all {@link CometHandler}s with a {@link CometEvent} of type NOTIFY and return the {@link GrizzlyFuture},
+     * which is completed once the event is delivered. The delivery is asynchronous only if the
+     * {@link NotificationHandler} is a {@link PartitionedNotificationHandler}, otherwise the {@link CometHandler}s are
+     * notified by the caller thread and a completed {@link GrizzlyFuture} is returned.
+     *
+     * @param attachment An object shared amongst {@link CometHandler}.
+     * @since 2.4.3
+     */
+    public GrizzlyFuture<NotificationResult> notifyAsync(E attachment) {
+        final CometEvent<E> event = new CometEvent<E>(CometEvent.Type.NOTIFY, this, attachment);
+        if (notificationHandler instanceof PartitionedNotificationHandler) {
+            return ((PartitionedNotificationHandler) notificationHandler).notifyAsync(event, handlers.iterator());
+        }
+
+        final long startNanos = System.nanoTime();
+        final int handlersCount = handlers.size();
+        try {
+            notificationHandler.notify(event, handlers.iterator());
+        } catch (IOException e) {
+            return Futures.createReadyFuture(e);
+        }
+        return Futures.createReadyFuture(new NotificationResult(handlersCount, 1, 0, 0,
+            Collections.<Throwable>emptyList(), System.nanoTime() - startNanos));
+    }
+
     /**
      * Initialize the newly added {@link CometHandler}.
      */
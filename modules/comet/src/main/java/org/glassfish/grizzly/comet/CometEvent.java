@@ -67,6 +67,10 @@ public class CometEvent<E> {
      * The CometContext from where this instance was fired.
      */
     private CometContext cometContext;
+    /**
+     * The attachment representation, rendered once and shared amongst {@link CometHandler}
+     */
+    private Object renderedPayload;
     private static final long serialVersionUID = 920798330036889926L;
 
     /**
@@ -140,4 +144,23 @@ public class CometEvent<E> {
     protected void setCometContext(CometContext cometContext) {
         this.cometContext = cometContext;
     }
+
+    /**
+     * Return the attachment representation rendered by the {@link PayloadRenderer} once per notification. The
+     * payload is shared amongst all notified {@link CometHandler}s, so it must not be modified.
+     *
+     * @return the rendered payload, or <code>null</code> if there is no {@link PayloadRenderer} configured
+     *
+     * @see PartitionedNotificationHandler#setPayloadRenderer(PayloadRenderer)
+     */
+    public Object getRenderedPayload() {
+        return renderedPayload;
+    }
+
+    /**
+     * Set the attachment representation shared amongst {@link CometHandler}s.
+     */
+    protected void setRenderedPayload(Object renderedPayload) {
+        this.renderedPayload = renderedPayload;
+    }
 }
@@ -105,6 +105,20 @@ public class DefaultNotificationHandler implements NotificationHandler {
      * @param cometHandler The CometHandler to invoke.
      */
     protected void notify0(CometEvent cometEvent, CometHandler cometHandler) {
+        notifyHandler(cometEvent, cometHandler);
+    }
+
+    /**
+     * Notify a {@link CometHandler} the same way {@link #notify0(CometEvent, CometHandler)}
+     * does, and report the notification failure, if any. If the notification fails, the
+     * {@link CometHandler} is resumed.
+     *
+     * @param cometEvent An object shared amongst {@link CometHandler}.
+     * @param cometHandler The CometHandler to invoke.
+     * @return the notification failure, or <tt>null</tt> if the {@link CometHandler}
+     *         has been notified successfully
+     */
+    protected Throwable notifyHandler(CometEvent cometEvent, CometHandler cometHandler) {
         try {
             switch (cometEvent.getType()) {
                 case INTERRUPT:
@@ -126,6 +140,8 @@ public class DefaultNotificationHandler implements NotificationHandler {
                 default:
                     throw ISEempty;
             }
+
+            return null;
         } catch (Throwable ex) {
             logger.log(Level.FINE, "Notification failed: ", ex);
             try {
@@ -133,6 +149,8 @@ public class DefaultNotificationHandler implements NotificationHandler {
             } catch (Throwable t) {
                 logger.log(Level.FINE, "Resume phase failed: ", t);
             }
+
+            return ex;
         }
     }
 
@@ -0,0 +1,122 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.comet;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of a {@link CometEvent} delivery by the {@link PartitionedNotificationHandler}.
+ *
+ * @since 2.4.3
+ */
+public final class NotificationResult {
+    private final int handlersCount;
+    private final int batchesCount;
+    private final int failedBatchesCount;
+    private final int failedHandlersCount;
+    private final List<Throwable> failures;
+    private final long durationNanos;
+
+    NotificationResult(final int handlersCount, final int batchesCount,
+            final int failedBatchesCount, final int failedHandlersCount,
+            final List<Throwable> failures, final long durationNanos) {
+        this.handlersCount = handlersCount;
+        this.batchesCount = batchesCount;
+        this.failedBatchesCount = failedBatchesCount;
+        this.failedHandlersCount = failedHandlersCount;
+        this.failures = failures;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * @return the number of {@link CometHandler}s the event has been delivered to
+     */
+    public int getHandlersCount() {
+        return handlersCount;
+    }
+
+    /**
+     * @return the number of batches the {@link CometHandler}s were partitioned into
+     */
+    public int getBatchesCount() {
+        return batchesCount;
+    }
+
+    /**
+     * @return the number of batches, which had at least one failed {@link CometHandler}
+     */
+    public int getFailedBatchesCount() {
+        return failedBatchesCount;
+    }
+
+    /**
+     * @return the number of {@link CometHandler}s, which failed to process the event
+     */
+    public int getFailedHandlersCount() {
+        return failedHandlersCount;
+    }
+
+    /**
+     * @return the first failure of every failed batch
+     */
+    public List<Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @param timeUnit the {@link TimeUnit}
+     * @return the time passed from the notification start till the last batch completion
+     */
+    public long getDuration(final TimeUnit timeUnit) {
+        return timeUnit.convert(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "NotificationResult{handlers=" + handlersCount
+                + ", batches=" + batchesCount
+                + ", failedBatches=" + failedBatchesCount
+                + ", failedHandlers=" + failedHandlersCount
+                + ", durationMicros=" + getDuration(TimeUnit.MICROSECONDS)
+                + '}';
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.comet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.grizzly.GrizzlyFuture;
+import org.glassfish.grizzly.impl.FutureImpl;
+import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.glassfish.grizzly.utils.Futures;
+
+/**
+ * {@link NotificationHandler}, which partitions the {@link CometHandler}s into batches and notifies the batches in
+ * parallel using a bounded {@link ExecutorService}, so publishing to a topic with many suspended clients neither
+ * blocks the publisher nor takes time proportional to the number of clients.
+ * <p/>
+ * {@link #notify(CometEvent, Iterator)} returns as soon as the batches are dispatched; use
+ * {@link #notifyAsync(CometEvent, Iterator)} or {@link CometContext#notifyAsync(Object)} to be notified about the
+ * delivery completion and failures. If the {@link ExecutorService} rejects a batch, the batch is processed on the
+ * caller thread.
+ * <p/>
+ * If a {@link PayloadRenderer} is set, the event attachment is rendered once per notification and shared amongst the
+ * {@link CometHandler}s via {@link CometEvent#getRenderedPayload()}.
+ * <p/>
+ * Consecutive events might be delivered to the same {@link CometHandler} concurrently, so handlers either have to be
+ * thread-safe or extend {@link org.glassfish.grizzly.comet.concurrent.DefaultConcurrentCometHandler}.
+ * <pre><code>
+ * CometContext context = CometEngine.getEngine().register(topic, PartitionedNotificationHandler.class);
+ * ((PartitionedNotificationHandler) context.getNotificationHandler()).setBatchSize(512);
+ * </code></pre>
+ *
+ * @since 2.4.3
+ */
+public class PartitionedNotificationHandler extends DefaultNotificationHandler {
+    private final static Logger logger = Logger.getLogger(PartitionedNotificationHandler.class.getName());
+    /**
+     * The default number of {@link CometHandler}s notified by a single task.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    /**
+     * The {@link ExecutorService} shared by handlers, which don't have their own.
+     */
+    private static volatile ExecutorService sharedThreadPool;
+
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile PayloadRenderer payloadRenderer;
+
+    public PartitionedNotificationHandler() {
+    }
+
+    /**
+     * Set the {@link ExecutorService} used to notify the batches. If not set, a bounded pool shared by all
+     * {@link PartitionedNotificationHandler}s is used.
+     */
+    @Override
+    public void setThreadPool(ExecutorService threadPool) {
+        super.setThreadPool(threadPool);
+    }
+
+    /**
+     * Return the number of {@link CometHandler}s notified by a single task.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the number of {@link CometHandler}s notified by a single task.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize should be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Return the {@link PayloadRenderer}, or <code>null</code> if payload is not rendered.
+     */
+    public PayloadRenderer getPayloadRenderer() {
+        return payloadRenderer;
+    }
+
+    /**
+     * Set the {@link PayloadRenderer}, which renders {@link CometEvent.Type#NOTIFY} event attachments once per
+     * notification.
+     */
+    public void setPayloadRenderer(PayloadRenderer payloadRenderer) {
+        this.payloadRenderer = payloadRenderer;
+    }
+
+    /**
+     * Dispatch the notification of all {@link CometHandler}s without waiting for its completion.
+     *
+     * @param cometEvent the CometEvent used to notify CometHandler
+     * @param iteratorHandlers An iterator over a list of CometHandler
+     */
+    @Override
+    public void notify(final CometEvent cometEvent, final Iterator<CometHandler> iteratorHandlers)
+        throws IOException {
+        notifyAsync(cometEvent, iteratorHandlers);
+    }
+
+    /**
+     * Notify all {@link CometHandler}s in parallel batches.
+     *
+     * @param cometEvent the CometEvent used to notify CometHandler
+     * @param iteratorHandlers An iterator over a list of CometHandler
+     * @return the {@link GrizzlyFuture}, which is completed once all the batches are processed
+     */
+    public GrizzlyFuture<NotificationResult> notifyAsync(final CometEvent cometEvent,
+        final Iterator<CometHandler> iteratorHandlers) {
+        final long startNanos = System.nanoTime();
+        final FutureImpl<NotificationResult> future = Futures.createSafeFuture();
+
+        final List<CometHandler> cometHandlers = new ArrayList<CometHandler>();
+        while (iteratorHandlers.hasNext()) {
+            cometHandlers.add(iteratorHandlers.next());
+        }
+
+        final PayloadRenderer renderer = payloadRenderer;
+        if (renderer != null && cometEvent.getType() == CometEvent.Type.NOTIFY) {
+            try {
+                cometEvent.setRenderedPayload(renderer.render(cometEvent));
+            } catch (Throwable t) {
+                logger.log(Level.FINE, "Payload rendering failed: ", t);
+                future.result(new NotificationResult(cometHandlers.size(), 0, 0,
+                    cometHandlers.size(), Collections.singletonList(t), System.nanoTime() - startNanos));
+                return future;
+            }
+        }
+
+        final int size = batchSize;
+        final int batchesCount = (cometHandlers.size() + size - 1) / size;
+        final Notification notification = new Notification(cometEvent, cometHandlers, batchesCount,
+            startNanos, future);
+        if (batchesCount == 0) {
+            notification.complete();
+            return future;
+        }
+
+        final ExecutorService executor = threadPool != null ? threadPool : getSharedThreadPool();
+        for (int i = 0; i < batchesCount; i++) {
+            final Batch batch = new Batch(notification, i * size,
+                Math.min(cometHandlers.size(), (i + 1) * size));
+            try {
+                executor.execute(batch);
+            } catch (RejectedExecutionException e) {
+                batch.run();
+            }
+        }
+
+        return future;
+    }
+
+    private static ExecutorService getSharedThreadPool() {
+        if (sharedThreadPool == null) {
+            synchronized (PartitionedNotificationHandler.class) {
+                if (sharedThreadPool == null) {
+                    final int threadsCount = Runtime.getRuntime().availableProcessors();
+                    sharedThreadPool = GrizzlyExecutorService.createInstance(
+                        ThreadPoolConfig.defaultConfig()
+                            .setPoolName("Grizzly-Comet-Notification")
+                            .setCorePoolSize(threadsCount)
+                            .setMaxPoolSize(threadsCount)
+                            .setQueueLimit(threadsCount * 64)
+                            .setDaemon(true));
+                }
+            }
+        }
+        return sharedThreadPool;
+    }
+
+    /**
+     * The state of a single notification shared by its batches.
+     */
+    private final class Notification {
+        private final CometEvent cometEvent;
+        private final List<CometHandler> cometHandlers;
+        private final int batchesCount;
+        private final long startNanos;
+        private final FutureImpl<NotificationResult> future;
+
+        private final AtomicInteger pendingBatches;
+        private final AtomicInteger failedBatches = new AtomicInteger();
+        private final AtomicInteger failedHandlers = new AtomicInteger();
+        private final Queue<Throwable> failures = new ConcurrentLinkedQueue<Throwable>();
+
+        private Notification(CometEvent cometEvent, List<CometHandler> cometHandlers, int batchesCount,
+            long startNanos, FutureImpl<NotificationResult> future) {
+            this.cometEvent = cometEvent;
+            this.cometHandlers = cometHandlers;
+            this.batchesCount = batchesCount;
+            this.startNanos = startNanos;
+            this.future = future;
+            pendingBatches = new AtomicInteger(batchesCount);
+        }
+
+        private void onBatchComplete(final int failedCount, final Throwable failure) {
+            if (failedCount > 0) {
+                failedBatches.incrementAndGet();
+                failedHandlers.addAndGet(failedCount);
+                failures.add(failure);
+            }
+
+            if (pendingBatches.decrementAndGet() == 0) {
+                complete();
+            }
+        }
+
+        private void complete() {
+            final NotificationResult result = new NotificationResult(cometHandlers.size(), batchesCount,
+                failedBatches.get(), failedHandlers.get(),
+                Collections.unmodifiableList(new ArrayList<Throwable>(failures)),
+                System.nanoTime() - startNanos);
+            if (logger.isLoggable(Level.FINE)) {
+                logger.log(Level.FINE, "Notified {0} of topic {1}: {2}",
+                    new Object[]{cometEvent.getType(), cometEvent.getCometContext().getTopic(), result});
+            }
+            future.result(result);
+        }
+    }
+
+    /**
+     * The task notifying a range of {@link CometHandler}s.
+     */
+    private final class Batch implements Runnable {
+        private final Notification notification;
+        private final int from;
+        private final int to;
+
+        private Batch(Notification notification, int from, int to) {
+            this.notification = notification;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public void run() {
+            int failedCount = 0;
+            Throwable firstFailure = null;
+            for (int i = from; i < to; i++) {
+                final Throwable failure = notifyHandler(notification.cometEvent,
+                    notification.cometHandlers.get(i));
+                if (failure != null) {
+                    failedCount++;
+                    if (firstFailure == null) {
+                        firstFailure = failure;
+                    }
+                }
+            }
+            notification.onBatchComplete(failedCount, firstFailure);
+        }
+    }
+}
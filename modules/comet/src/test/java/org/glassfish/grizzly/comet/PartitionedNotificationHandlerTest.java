@@ -0,0 +1,178 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.comet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * {@link PartitionedNotificationHandler} tests.
+ */
+public class PartitionedNotificationHandlerTest extends TestCase {
+    private static final String TEST_TOPIC = "/partitioned-topic";
+
+    private CometContext<String> cometContext;
+    private PartitionedNotificationHandler notificationHandler;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cometContext = CometEngine.getEngine().register(TEST_TOPIC, PartitionedNotificationHandler.class);
+        notificationHandler = (PartitionedNotificationHandler) cometContext.getNotificationHandler();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        cometContext.getCometHandlers().clear();
+        CometEngine.getEngine().deregister(TEST_TOPIC);
+        super.tearDown();
+    }
+
+    public void testAllHandlersNotifiedInBatches() throws Exception {
+        final ExecutorService threadPool = Executors.newFixedThreadPool(4);
+        try {
+            notificationHandler.setThreadPool(threadPool);
+            notificationHandler.setBatchSize(10);
+
+            final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            final List<RecordingCometHandler> cometHandlers = addHandlers(95, -1, threads);
+
+            final NotificationResult result = cometContext.notifyAsync("message").get(10, TimeUnit.SECONDS);
+            assertEquals(95, result.getHandlersCount());
+            assertEquals(10, result.getBatchesCount());
+            assertEquals(0, result.getFailedBatchesCount());
+            assertEquals(0, result.getFailedHandlersCount());
+            assertTrue(result.getFailures().isEmpty());
+            assertTrue(result.getDuration(TimeUnit.NANOSECONDS) > 0);
+
+            for (RecordingCometHandler cometHandler : cometHandlers) {
+                assertEquals(1, cometHandler.events.get());
+            }
+            assertFalse(threads.contains(Thread.currentThread().getName()));
+        } finally {
+            threadPool.shutdownNow();
+        }
+    }
+
+    public void testFailuresReportedPerBatch() throws Exception {
+        notificationHandler.setBatchSize(4);
+        addHandlers(12, 5, null);
+
+        final NotificationResult result = cometContext.notifyAsync("message").get(10, TimeUnit.SECONDS);
+        assertEquals(12, result.getHandlersCount());
+        assertEquals(3, result.getBatchesCount());
+        assertEquals(1, result.getFailedBatchesCount());
+        assertEquals(1, result.getFailedHandlersCount());
+        assertEquals(1, result.getFailures().size());
+        assertEquals("handler-5", result.getFailures().get(0).getMessage());
+        // the failed handler is resumed
+        assertEquals(11, cometContext.getCometHandlers().size());
+    }
+
+    public void testPayloadRenderedOnce() throws Exception {
+        final AtomicInteger renderCount = new AtomicInteger();
+        notificationHandler.setBatchSize(3);
+        notificationHandler.setPayloadRenderer(new PayloadRenderer() {
+            @Override
+            public Object render(CometEvent cometEvent) {
+                renderCount.incrementAndGet();
+                return ("data: " + cometEvent.attachment()).getBytes();
+            }
+        });
+        final List<RecordingCometHandler> cometHandlers = addHandlers(10, -1, null);
+
+        cometContext.notifyAsync("message").get(10, TimeUnit.SECONDS);
+        assertEquals(1, renderCount.get());
+        final Object payload = cometHandlers.get(0).renderedPayload;
+        assertNotNull(payload);
+        for (RecordingCometHandler cometHandler : cometHandlers) {
+            assertSame(payload, cometHandler.renderedPayload);
+        }
+    }
+
+    private List<RecordingCometHandler> addHandlers(final int count, final int failingIdx,
+        final Set<String> threads) {
+        final List<RecordingCometHandler> cometHandlers = new ArrayList<RecordingCometHandler>(count);
+        for (int i = 0; i < count; i++) {
+            final RecordingCometHandler cometHandler = new RecordingCometHandler(i, i == failingIdx, threads);
+            cometHandler.setCometContext(cometContext);
+            cometHandlers.add(cometHandler);
+        }
+        cometContext.getCometHandlers().addAll(cometHandlers);
+        return cometHandlers;
+    }
+
+    private static class RecordingCometHandler extends DefaultCometHandler<String> {
+        private final int idx;
+        private final boolean fail;
+        private final Set<String> threads;
+        private final AtomicInteger events = new AtomicInteger();
+        private volatile Object renderedPayload;
+
+        RecordingCometHandler(int idx, boolean fail, Set<String> threads) {
+            this.idx = idx;
+            this.fail = fail;
+            this.threads = threads;
+        }
+
+        @Override
+        public void onEvent(CometEvent event) throws IOException {
+            if (fail) {
+                throw new IOException("handler-" + idx);
+            }
+            if (threads != null) {
+                threads.add(Thread.currentThread().getName());
+            }
+            renderedPayload = event.getRenderedPayload();
+            events.incrementAndGet();
+        }
+    }
+}
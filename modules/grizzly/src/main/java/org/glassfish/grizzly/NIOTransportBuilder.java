@@ -93,6 +93,8 @@ public abstract class NIOTransportBuilder<T extends NIOTransportBuilder> {
     protected int maxPendingBytesPerConnection = AsyncQueueWriter.AUTO_SIZE;
     protected boolean optimizedForMultiplexing = NIOTransport.DEFAULT_OPTIMIZED_FOR_MULTIPLEXING;
 
+    protected boolean temporarySelectorsEnabled = NIOTransport.DEFAULT_TEMPORARY_SELECTORS_ENABLED;
+
     protected long readTimeout = TimeUnit.MILLISECONDS.convert(Transport.DEFAULT_READ_TIMEOUT, TimeUnit.SECONDS);
     protected long writeTimeout = TimeUnit.MILLISECONDS.convert(Transport.DEFAULT_WRITE_TIMEOUT, TimeUnit.SECONDS);
 
@@ -546,6 +548,27 @@ public abstract class NIOTransportBuilder<T extends NIOTransportBuilder> {
         return getThis();
     }
 
+    /**
+     * @see org.glassfish.grizzly.nio.NIOTransport#isTemporarySelectorsEnabled()
+     *
+     * @since 2.4.3
+     */
+    public boolean isTemporarySelectorsEnabled() {
+        return temporarySelectorsEnabled;
+    }
+
+    /**
+     * @see org.glassfish.grizzly.nio.NIOTransport#setTemporarySelectorsEnabled(boolean)
+     *
+     * @return this <code>NIOTransportBuilder</code>
+     *
+     * @since 2.4.3
+     */
+    public T setTemporarySelectorsEnabled(final boolean temporarySelectorsEnabled) {
+        this.temporarySelectorsEnabled = temporarySelectorsEnabled;
+        return getThis();
+    }
+
     /**
      * @return an {@link NIOTransport} based on the builder's configuration.
      */
@@ -575,6 +598,7 @@ public abstract class NIOTransportBuilder<T extends NIOTransportBuilder> {
         transport.setWriteBufferSize(writeBufferSize);
         transport.setReuseAddress(reuseAddress);
         transport.setOptimizedForMultiplexing(isOptimizedForMultiplexing());
+        transport.setTemporarySelectorsEnabled(isTemporarySelectorsEnabled());
         transport.getAsyncQueueIO()
                 .getWriter()
                 .setMaxPendingBytesPerConnection(
@@ -42,7 +42,9 @@ package org.glassfish.grizzly.filterchain;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -55,6 +57,7 @@ import org.glassfish.grizzly.filterchain.FilterChainContext.Operation;
 import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.localization.LogMessages;
 import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.monitoring.FlightRecorder;
 import org.glassfish.grizzly.utils.Exceptions;
 import org.glassfish.grizzly.utils.Futures;
 import org.glassfish.grizzly.utils.NullaryFunction;
@@ -78,6 +81,20 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
      */
     private static final Logger LOGGER = Grizzly.logger(DefaultFilterChain.class);
 
+    /**
+     * System property, which could be set to <tt>false</tt> to invoke every
+     * {@link Filter} in the chain, even the ones, which inherit
+     * {@link BaseFilter}'s pass-through implementation of the operation.
+     */
+    public static final String SKIP_NOOP_FILTERS_PROPERTY =
+            DefaultFilterChain.class.getName() + ".skip-noop-filters";
+
+    /**
+     * The per-{@link Operation} dispatch tables, or <tt>null</tt>, if
+     * they have to be (re)built.
+     */
+    private volatile DispatchTable dispatchTable;
+
     public DefaultFilterChain() {
         this(new ArrayList<Filter>());
     }
@@ -187,8 +204,25 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
         int lastNextActionType = InvokeAction.TYPE;
         NextAction lastNextAction = null;
 
+        final boolean isUpstream = executor.isUpstream();
+        final int[] jumps = obtainDispatchTable().jumps(
+                ctx.getOperation(), isUpstream);
+        final boolean isRecording = FlightRecorder.isEnabled();
+        
         while (i != end) {
 
+            if (jumps != null && ctx.predefinedNextAction == null) {
+                // skip the filters, which don't override the operation handler
+                final int next = jumps[i];
+                if (next != i) {
+                    i = isUpstream ? Math.min(next, end) : Math.max(next, end);
+                    ctx.setFilterIdx(i);
+                    if (i == end) {
+                        break;
+                    }
+                }
+            }
+            
             // current Filter to be executed
             currentFilter = get(i);
 
@@ -198,7 +232,8 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
                 checkStoredMessage(ctx, filtersState, i);
 
                 // execute the task
-                lastNextAction = executeFilter(executor, currentFilter, ctx);
+                lastNextAction = executeFilter(executor, currentFilter, ctx,
+                        isRecording);
             } else {
                 lastNextAction = ctx.predefinedNextAction;
                 ctx.predefinedNextAction = null;
@@ -265,13 +300,16 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
      * @param executor
      * @param currentFilter
      * @param ctx
+     * @param isRecording <tt>true</tt> if the {@link Filter} execution has to
+     *        be reported to the {@link FlightRecorder}
      *
      * @return {@link NextAction}.
      * 
      * @throws IOException
      */
     protected NextAction executeFilter(final FilterExecutor executor,
-            final Filter currentFilter, final FilterChainContext ctx)
+            final Filter currentFilter, final FilterChainContext ctx,
+            final boolean isRecording)
             throws IOException {
 
         NextAction nextNextAction;
@@ -281,7 +319,12 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
                         new Object[]{currentFilter, ctx});
             }
             // execute the task
-            nextNextAction = executor.execute(currentFilter, ctx);
+            if (!isRecording) {
+                nextNextAction = executor.execute(currentFilter, ctx);
+            } else {
+                nextNextAction = executeRecordedFilter(executor,
+                        currentFilter, ctx);
+            }
 
             if (LOGGER.isLoggable(Level.FINEST)) {
                 LOGGER.log(Level.FINE, "after execute filter. filter={0} context={1} nextAction={2}",
@@ -292,6 +335,28 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
         return nextNextAction;
     }
     
+    /**
+     * Executes the {@link Filter} and reports its <tt>READ</tt> or
+     * <tt>WRITE</tt> execution to the {@link FlightRecorder}.
+     */
+    private static NextAction executeRecordedFilter(
+            final FilterExecutor executor, final Filter currentFilter,
+            final FilterChainContext ctx) throws IOException {
+        final Operation operation = ctx.getOperation();
+        final Object recording =
+                operation == Operation.READ || operation == Operation.WRITE
+                ? FlightRecorder.beginFilter()
+                : null;
+        try {
+            return executor.execute(currentFilter, ctx);
+        } finally {
+            if (recording != null) {
+                FlightRecorder.endFilter(recording, ctx.getConnection(),
+                        currentFilter, operation.name());
+            }
+        }
+    }
+    
     /**
      * Locates a message remainder in the {@link FilterChain}, associated with the
      * {@link Connection} and prepares the {@link Context} for remainder processing.
@@ -484,11 +549,33 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
         }
     }
 
+    @Override
+    public void clear() {
+        super.clear();
+        dispatchTable = null;
+    }
+
+    @Override
+    protected void notifyChangedExcept(final Filter filter) {
+        dispatchTable = null;
+        super.notifyChangedExcept(filter);
+    }
+
     @Override
     public DefaultFilterChain subList(int fromIndex, int toIndex) {
         return new DefaultFilterChain(filters.subList(fromIndex, toIndex));
     }
 
+    private DispatchTable obtainDispatchTable() {
+        DispatchTable table = dispatchTable;
+        if (table == null || table.size != size()) {
+            table = DispatchTable.compile(filters);
+            dispatchTable = table;
+        }
+        
+        return table;
+    }
+
     @SuppressWarnings("unchecked")
     private FiltersState obtainFiltersState(final Connection connection) {
         return (FiltersState) connection.obtainProcessorState(this, filtersStateFactory);
@@ -722,6 +809,126 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
         }        
     }
     
+    /**
+     * Per-{@link Operation} and direction jump tables: for every filter index
+     * the table contains the index of the closest {@link Filter} (in the
+     * processing direction), which overrides the operation's handler.
+     * A <tt>null</tt> table means every filter has to be invoked.
+     */
+    private static final class DispatchTable {
+        private static final int OPERATIONS_NUM = Operation.values().length;
+        
+        private static final ClassValue<boolean[]> OVERRIDES =
+                new ClassValue<boolean[]>() {
+            @Override
+            protected boolean[] computeValue(final Class<?> type) {
+                final boolean[] overrides = new boolean[OPERATIONS_NUM];
+                overrides[Operation.ACCEPT.ordinal()] = overrides(type, "handleAccept");
+                overrides[Operation.CONNECT.ordinal()] = overrides(type, "handleConnect");
+                overrides[Operation.READ.ordinal()] = overrides(type, "handleRead");
+                overrides[Operation.WRITE.ordinal()] = overrides(type, "handleWrite");
+                overrides[Operation.CLOSE.ordinal()] = overrides(type, "handleClose");
+                overrides[Operation.EVENT.ordinal()] = overrides(type, "handleEvent",
+                        FilterChainEvent.class);
+                return overrides;
+            }
+        };
+        
+        private final int size;
+        private final int[][] upstreamJumps;
+        private final int[][] downstreamJumps;
+
+        private DispatchTable(final int size, final int[][] upstreamJumps,
+                final int[][] downstreamJumps) {
+            this.size = size;
+            this.upstreamJumps = upstreamJumps;
+            this.downstreamJumps = downstreamJumps;
+        }
+
+        int[] jumps(final Operation operation, final boolean isUpstream) {
+            final int[][] jumps = isUpstream ? upstreamJumps : downstreamJumps;
+            return jumps != null ? jumps[operation.ordinal()] : null;
+        }
+        
+        static DispatchTable compile(final List<Filter> filters) {
+            final Filter[] array = filters.toArray(new Filter[filters.size()]);
+            final int size = array.length;
+            
+            if ("false".equalsIgnoreCase(
+                    System.getProperty(SKIP_NOOP_FILTERS_PROPERTY))) {
+                return new DispatchTable(size, null, null);
+            }
+            
+            final boolean[][] overrides = new boolean[size][];
+            for (int i = 0; i < size; i++) {
+                overrides[i] = overrides(array[i]);
+            }
+            
+            final int[][] upstreamJumps = new int[OPERATIONS_NUM][];
+            final int[][] downstreamJumps = new int[OPERATIONS_NUM][];
+            
+            for (Operation operation : Operation.values()) {
+                if (operation == Operation.NONE) {
+                    continue;
+                }
+                
+                final int op = operation.ordinal();
+                final int[] up = new int[size];
+                final int[] down = new int[size];
+                boolean hasNoOps = false;
+                
+                int next = size;
+                for (int i = size - 1; i >= 0; i--) {
+                    if (overrides[i][op]) {
+                        next = i;
+                    } else {
+                        hasNoOps = true;
+                    }
+                    up[i] = next;
+                }
+                
+                int prev = -1;
+                for (int i = 0; i < size; i++) {
+                    if (overrides[i][op]) {
+                        prev = i;
+                    }
+                    down[i] = prev;
+                }
+                
+                if (hasNoOps) {
+                    upstreamJumps[op] = up;
+                    downstreamJumps[op] = down;
+                }
+            }
+            
+            return new DispatchTable(size, upstreamJumps, downstreamJumps);
+        }
+        
+        private static boolean[] overrides(final Filter filter) {
+            if (!(filter instanceof BaseFilter)) {
+                final boolean[] all = new boolean[OPERATIONS_NUM];
+                Arrays.fill(all, true);
+                return all;
+            }
+            
+            return OVERRIDES.get(filter.getClass());
+        }
+        
+        private static boolean overrides(final Class<?> type,
+                final String methodName, final Class<?>... extraParams) {
+            final Class<?>[] params = new Class<?>[extraParams.length + 1];
+            params[0] = FilterChainContext.class;
+            System.arraycopy(extraParams, 0, params, 1, extraParams.length);
+            
+            try {
+                return type.getMethod(methodName, params).getDeclaringClass()
+                        != BaseFilter.class;
+            } catch (Exception e) {
+                return true;
+            }
+        }
+    }
+    
     private static final class FilterExecution {
         private static final int CONTINUE_TYPE = 0;
         private static final int TERMINATE_TYPE = 1;
@@ -0,0 +1,234 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring;
+
+import javax.net.ssl.SSLEngine;
+import org.glassfish.grizzly.CloseType;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.IOEvent;
+import org.glassfish.grizzly.filterchain.Filter;
+
+/**
+ * Entry point for the Java Flight Recorder events, emitted by Grizzly
+ * core and HTTP modules.
+ * 
+ * This is the Java 8 implementation, where every method is a no-op.
+ * The framework jar contains a multi-release Java 11 version of the class
+ * (<tt>META-INF/versions/11</tt>), which emits <tt>jdk.jfr</tt> events in the
+ * "Grizzly" category, when they are enabled in an active recording.
+ * 
+ * Duration events are bracketed by a <tt>begin*()</tt> call, which returns
+ * a recording token (<tt>null</tt> if the event is not being recorded), and
+ * a matching <tt>end*()</tt> call. Callers are expected to pass the token
+ * back only if it's not <tt>null</tt>, so event attributes are never
+ * computed while recording is off.
+ * 
+ * @since 2.4.3
+ */
+public final class FlightRecorder {
+
+    /**
+     * @return <tt>true</tt> if this runtime is able to emit Flight Recorder
+     *      events, or <tt>false</tt> otherwise
+     */
+    public static boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     * Returns <tt>true</tt> if there is a running Flight Recorder recording,
+     * so the events might be recorded. The check is a single volatile read,
+     * so the hot paths are expected to call it once and skip the event
+     * bracketing altogether, if it returns <tt>false</tt>.
+     * 
+     * @return <tt>true</tt> if there is a running Flight Recorder recording,
+     *      or <tt>false</tt> otherwise
+     */
+    public static boolean isEnabled() {
+        return false;
+    }
+
+    /**
+     * Records the connection accept event.
+     * 
+     * @param serverConnection the server {@link Connection}, which accepted
+     *      the client connection
+     * @param connection the accepted client {@link Connection}
+     */
+    public static void connectionAccepted(final Connection serverConnection,
+            final Connection connection) {
+    }
+
+    /**
+     * Records the connection close event.
+     * 
+     * @param connection the closed {@link Connection}
+     * @param type the {@link CloseType}
+     */
+    public static void connectionClosed(final Connection connection,
+            final CloseType type) {
+    }
+
+    /**
+     * Returns the time stamp to be passed to
+     * {@link #endIOEvent(java.lang.Object, org.glassfish.grizzly.Connection, org.glassfish.grizzly.IOEvent, long)},
+     * when {@link IOEvent} processing is queued to a worker thread pool.
+     * 
+     * @return {@link System#nanoTime()} if the IOEvent dispatch event is being
+     *      recorded, or <tt>0</tt> otherwise
+     */
+    public static long ioEventQueued() {
+        return 0;
+    }
+
+    /**
+     * Starts the {@link IOEvent} dispatch event.
+     * 
+     * @return the recording token, or <tt>null</tt> if the event is not
+     *      being recorded
+     */
+    public static Object beginIOEvent() {
+        return null;
+    }
+
+    /**
+     * Completes the {@link IOEvent} dispatch event.
+     * 
+     * @param recording the token returned by {@link #beginIOEvent()}
+     * @param connection the {@link Connection}
+     * @param ioEvent the dispatched {@link IOEvent}
+     * @param queuedTimeStamp the value returned by {@link #ioEventQueued()},
+     *      or <tt>0</tt> if the event has been processed without queueing
+     */
+    public static void endIOEvent(final Object recording,
+            final Connection connection, final IOEvent ioEvent,
+            final long queuedTimeStamp) {
+    }
+
+    /**
+     * Starts the {@link Filter} execution event.
+     * 
+     * @return the recording token, or <tt>null</tt> if the event is not
+     *      being recorded
+     */
+    public static Object beginFilter() {
+        return null;
+    }
+
+    /**
+     * Completes the {@link Filter} execution event. The event is committed
+     * only if the execution took longer than the threshold configured for
+     * the recording.
+     * 
+     * @param recording the token returned by {@link #beginFilter()}
+     * @param connection the {@link Connection}
+     * @param filter the executed {@link Filter}
+     * @param operation the executed operation name (<tt>READ</tt>,
+     *      <tt>WRITE</tt> etc.)
+     */
+    public static void endFilter(final Object recording,
+            final Connection connection, final Filter filter,
+            final String operation) {
+    }
+
+    /**
+     * Records the event of a connection asynchronous write queue growing
+     * over its configured limit.
+     * 
+     * @param connection the {@link Connection}
+     * @param pendingBytes the number of bytes pending in the write queue
+     * @param maxPendingBytes the write queue limit
+     */
+    public static void writeQueueOverflow(final Connection connection,
+            final int pendingBytes, final int maxPendingBytes) {
+    }
+
+    /**
+     * Starts the TLS handshake event.
+     * 
+     * @return the recording token, or <tt>null</tt> if the event is not
+     *      being recorded
+     */
+    public static Object beginTlsHandshake() {
+        return null;
+    }
+
+    /**
+     * Completes the TLS handshake event.
+     * 
+     * @param recording the token returned by {@link #beginTlsHandshake()}
+     * @param connection the {@link Connection}
+     * @param sslEngine the connection {@link SSLEngine}, might be <tt>null</tt>
+     * @param failure the handshake failure cause, or <tt>null</tt> if the
+     *      handshake has completed successfully
+     */
+    public static void endTlsHandshake(final Object recording,
+            final Connection connection, final SSLEngine sslEngine,
+            final Throwable failure) {
+    }
+
+    /**
+     * Starts the HTTP request processing event.
+     * 
+     * @return the recording token, or <tt>null</tt> if the event is not
+     *      being recorded
+     */
+    public static Object beginHttpRequest() {
+        return null;
+    }
+
+    /**
+     * Completes the HTTP request processing event.
+     * 
+     * @param recording the token returned by {@link #beginHttpRequest()}
+     * @param connection the {@link Connection}
+     * @param method the request method
+     * @param uri the request URI
+     * @param status the response status code
+     */
+    public static void endHttpRequest(final Object recording,
+            final Connection connection, final String method,
+            final String uri, final int status) {
+    }
+
+    private FlightRecorder() {
+    }
+}
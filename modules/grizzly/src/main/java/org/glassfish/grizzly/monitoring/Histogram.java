@@ -0,0 +1,224 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free, fixed memory histogram of non-negative <tt>long</tt> values
+ * (latencies in nanoseconds, sizes in bytes etc.).
+ * 
+ * Values are grouped into log-linear buckets: every power-of-two range is
+ * split into 16 linear sub-buckets, so the relative error of a reported
+ * value never exceeds 1/16 of the value, while the whole <tt>long</tt> range
+ * is covered by less than a thousand counters.
+ * 
+ * {@link #record(long)} never blocks and never allocates, so the histogram
+ * may be updated directly from monitoring probes. Statistics are
+ * calculated on a {@link HistogramSnapshot}, see {@link #snapshot()}.
+ * 
+ * @since 2.4.3
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+    
+    static final int BUCKETS_COUNT =
+            bucketIndex(Long.MAX_VALUE) + 1;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+    
+    /**
+     * The last snapshot taken by {@link #snapshot(long, TimeUnit)}
+     */
+    private volatile HistogramSnapshot lastSnapshot;
+    
+    /**
+     * Records the value. Negative values are recorded as <tt>0</tt>.
+     * 
+     * @param value the value to record
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        
+        counts.incrementAndGet(bucketIndex(value));
+        sum.add(value);
+        
+        long current;
+        while (value < (current = min.get())) {
+            if (min.compareAndSet(current, value)) {
+                break;
+            }
+        }
+        
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+    
+    /**
+     * Records the time, which has elapsed since the passed
+     * {@link System#nanoTime()} time stamp.
+     * 
+     * @param startNanos the {@link System#nanoTime()} time stamp
+     */
+    public void recordElapsedSince(final long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+    
+    /**
+     * @return the number of values recorded so far
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            count += counts.get(i);
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Returns the point-in-time copy of this histogram. The values, which are
+     * being recorded concurrently, may or may not be reflected in the snapshot.
+     * 
+     * @return the {@link HistogramSnapshot}
+     */
+    public HistogramSnapshot snapshot() {
+        final long[] countsCopy = new long[BUCKETS_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            final long c = counts.get(i);
+            countsCopy[i] = c;
+            count += c;
+        }
+        
+        return new HistogramSnapshot(countsCopy, count, sum.sum(),
+                min.get(), max.get());
+    }
+    
+    /**
+     * Returns the point-in-time copy of this histogram, reusing the previous
+     * snapshot if it is younger than the passed age. Useful when several
+     * statistics of the same histogram are read one by one, like JMX
+     * attributes, to avoid copying all the buckets for each of them.
+     * 
+     * @param maxAge the maximum age of the reused snapshot
+     * @param unit the {@link TimeUnit} of the <tt>maxAge</tt>
+     * @return the {@link HistogramSnapshot}
+     */
+    public HistogramSnapshot snapshot(final long maxAge, final TimeUnit unit) {
+        final HistogramSnapshot last = lastSnapshot;
+        if (last != null && System.nanoTime() - last.nanoTime < unit.toNanos(maxAge)) {
+            return last;
+        }
+        
+        final HistogramSnapshot snapshot = snapshot();
+        lastSnapshot = snapshot;
+        return snapshot;
+    }
+    
+    /**
+     * Resets the histogram. The values, which are being recorded concurrently
+     * with the reset, may be partially lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        
+        sum.reset();
+        min.set(Long.MAX_VALUE);
+        max.set(Long.MIN_VALUE);
+        lastSnapshot = null;
+    }
+    
+    /**
+     * Returns the bucket index for the non-negative value.
+     * Values below {@link #SUB_BUCKET_COUNT} are mapped one to one, larger
+     * values are mapped to one of {@link #SUB_BUCKET_HALF_COUNT} linear
+     * sub-buckets of their power-of-two range.
+     */
+    static int bucketIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        
+        final int shift = 63 - Long.numberOfLeadingZeros(value)
+                - (SUB_BUCKET_BITS - 1);
+        return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+    }
+    
+    /**
+     * Returns the smallest value, which is mapped to the bucket.
+     */
+    static long lowestValue(final int bucketIndex) {
+        if (bucketIndex < SUB_BUCKET_COUNT) {
+            return bucketIndex;
+        }
+        
+        final int shift = bucketIndex / SUB_BUCKET_HALF_COUNT - 1;
+        final long subBucket = bucketIndex - shift * SUB_BUCKET_HALF_COUNT;
+        return subBucket << shift;
+    }
+    
+    /**
+     * Returns the largest value, which is mapped to the bucket.
+     */
+    static long highestValue(final int bucketIndex) {
+        if (bucketIndex == BUCKETS_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        
+        return lowestValue(bucketIndex + 1) - 1;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable point-in-time copy of a {@link Histogram}.
+ * 
+ * @since 2.4.3
+ */
+public final class HistogramSnapshot {
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long min;
+    private final long max;
+    
+    /**
+     * The {@link System#nanoTime()} time stamp the snapshot was taken at
+     */
+    final long nanoTime;
+
+    HistogramSnapshot(final long[] counts, final long count, final long sum,
+            final long min, final long max) {
+        this.nanoTime = System.nanoTime();
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.min = count > 0 ? min : 0;
+        this.max = count > 0 ? max : 0;
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the sum of the recorded values
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * @return the smallest recorded value, or <tt>0</tt> if no values were
+     *          recorded
+     */
+    public long getMin() {
+        return min;
+    }
+
+    /**
+     * @return the largest recorded value, or <tt>0</tt> if no values were
+     *          recorded
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return the arithmetic mean of the recorded values, or <tt>0</tt> if
+     *          no values were recorded
+     */
+    public double getMean() {
+        return count > 0 ? (double) sum / count : 0;
+    }
+
+    /**
+     * Returns the value, which is greater or equal to the given percentage of
+     * the recorded values, with the histogram's precision.
+     * 
+     * @param percentile the percentile in the range <tt>[0, 100]</tt>
+     * @return the value at the percentile, or <tt>0</tt> if no values were
+     *          recorded
+     */
+    public long getValueAtPercentile(final double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException(
+                    "Percentile has to be in range [0, 100]");
+        }
+        
+        if (count == 0) {
+            return 0;
+        }
+        
+        final long rank = Math.max(1,
+                (long) Math.ceil(percentile / 100 * count));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                final long value = Histogram.highestValue(i);
+                return Math.max(min, Math.min(value, max));
+            }
+        }
+        
+        return max;
+    }
+
+    /**
+     * @return the median
+     */
+    public long getP50() {
+        return getValueAtPercentile(50);
+    }
+
+    /**
+     * @return the 99th percentile
+     */
+    public long getP99() {
+        return getValueAtPercentile(99);
+    }
+
+    /**
+     * @return the 99.9th percentile
+     */
+    public long getP999() {
+        return getValueAtPercentile(99.9);
+    }
+
+    /**
+     * Converts the nanosecond value (typically returned by one of the
+     * snapshot's getters) to the given {@link TimeUnit}.
+     * 
+     * @param nanos the value in nanoseconds
+     * @param unit the target {@link TimeUnit}
+     * @return the converted value
+     */
+    public static long convert(final long nanos, final TimeUnit unit) {
+        return unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramSnapshot{count=" + count
+                + ", min=" + min
+                + ", max=" + max
+                + ", mean=" + getMean()
+                + ", p50=" + getP50()
+                + ", p99=" + getP99()
+                + ", p999=" + getP999()
+                + '}';
+    }
+}
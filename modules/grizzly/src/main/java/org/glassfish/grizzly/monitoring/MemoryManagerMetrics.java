@@ -0,0 +1,166 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.memory.MemoryProbe;
+
+/**
+ * {@link MetricsSource} reporting {@link MemoryManager} allocation statistics.
+ * 
+ * @since 2.4.3
+ */
+public class MemoryManagerMetrics implements MetricsSource {
+    private final CopyOnWriteArrayList<Entry> entries =
+            new CopyOnWriteArrayList<Entry>();
+
+    /**
+     * Starts collecting metrics of the {@link MemoryManager}.
+     * 
+     * @param name the name to label the {@link MemoryManager} samples with
+     * @param memoryManager the {@link MemoryManager}
+     * @return <tt>true</tt> if the {@link MemoryManager} has been added, or
+     *          <tt>false</tt> if it had already been added before
+     */
+    public synchronized boolean add(final String name,
+            final MemoryManager memoryManager) {
+        if (find(memoryManager) != null) {
+            return false;
+        }
+        
+        final Entry entry = new Entry(name, memoryManager);
+        memoryManager.getMonitoringConfig().addProbes(entry);
+        entries.add(entry);
+        return true;
+    }
+
+    /**
+     * Stops collecting metrics of the {@link MemoryManager}.
+     * 
+     * @param memoryManager the {@link MemoryManager}
+     * @return <tt>true</tt> if the {@link MemoryManager} has been removed
+     */
+    public synchronized boolean remove(final MemoryManager memoryManager) {
+        final Entry entry = find(memoryManager);
+        if (entry == null) {
+            return false;
+        }
+        
+        memoryManager.getMonitoringConfig().removeProbes(entry);
+        entries.remove(entry);
+        return true;
+    }
+
+    @Override
+    public void writeMetrics(final MetricsWriter writer) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        
+        writer.family("grizzly_memory_allocated_bytes",
+                MetricsWriter.Type.COUNTER,
+                "The total number of bytes allocated outside of the buffer pool");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_memory_allocated_bytes", "_total")
+                    .label("memory_manager", entry.name)
+                    .value(entry.allocatedBytes.sum());
+        }
+        
+        writer.family("grizzly_memory_pool_allocated_bytes",
+                MetricsWriter.Type.COUNTER,
+                "The total number of bytes allocated from the buffer pool");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_memory_pool_allocated_bytes", "_total")
+                    .label("memory_manager", entry.name)
+                    .value(entry.poolAllocatedBytes.sum());
+        }
+        
+        writer.family("grizzly_memory_pool_released_bytes",
+                MetricsWriter.Type.COUNTER,
+                "The total number of bytes released to the buffer pool");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_memory_pool_released_bytes", "_total")
+                    .label("memory_manager", entry.name)
+                    .value(entry.poolReleasedBytes.sum());
+        }
+    }
+    
+    private Entry find(final MemoryManager memoryManager) {
+        for (Entry entry : entries) {
+            if (entry.memoryManager == memoryManager) {
+                return entry;
+            }
+        }
+        
+        return null;
+    }
+    
+    private static final class Entry extends MemoryProbe.Adapter {
+        private final String name;
+        private final MemoryManager memoryManager;
+        
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final LongAdder poolAllocatedBytes = new LongAdder();
+        private final LongAdder poolReleasedBytes = new LongAdder();
+
+        Entry(final String name, final MemoryManager memoryManager) {
+            this.name = name;
+            this.memoryManager = memoryManager;
+        }
+
+        @Override
+        public void onBufferAllocateEvent(final int size) {
+            allocatedBytes.add(size);
+        }
+
+        @Override
+        public void onBufferAllocateFromPoolEvent(final int size) {
+            poolAllocatedBytes.add(size);
+        }
+
+        @Override
+        public void onBufferReleaseToPoolEvent(final int size) {
+            poolReleasedBytes.add(size);
+        }
+    }
+}
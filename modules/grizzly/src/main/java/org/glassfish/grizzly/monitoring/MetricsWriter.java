@@ -0,0 +1,445 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.CompositeBuffer;
+import org.glassfish.grizzly.memory.MemoryManager;
+
+/**
+ * Renders metrics in the
+ * <a href="https://openmetrics.io">OpenMetrics</a> text format directly into
+ * {@link Buffer}s allocated from a {@link MemoryManager}.
+ * 
+ * Names, labels and values are encoded byte by byte, so rendering doesn't
+ * create intermediate {@link String}s. The output is accumulated in fixed size
+ * chunks, which are combined into a {@link CompositeBuffer} by
+ * {@link #finish()}.
+ * 
+ * A typical sample is written like:
+ * <pre>
+ * writer.family("grizzly_transport_read_bytes", MetricsWriter.Type.COUNTER,
+ *         "The total number of bytes read");
+ * writer.sample("grizzly_transport_read_bytes", "_total")
+ *         .label("transport", name)
+ *         .value(bytesRead);
+ * </pre>
+ * 
+ * The writer is not thread-safe and is expected to be used for a single
+ * rendering.
+ * 
+ * @see MetricsSource
+ * @since 2.4.3
+ */
+public final class MetricsWriter {
+    private static final int DEFAULT_CHUNK_SIZE = 4096;
+    
+    private static final long[] POWERS_OF_TEN = new long[19];
+    
+    static {
+        long value = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = value;
+            value *= 10;
+        }
+    }
+    
+    /**
+     * Metric family types.
+     */
+    public enum Type {
+        COUNTER("counter"), GAUGE("gauge"), SUMMARY("summary");
+        
+        private final String name;
+
+        Type(final String name) {
+            this.name = name;
+        }
+    }
+    
+    private final MemoryManager memoryManager;
+    private final int chunkSize;
+    private final byte[] digits = new byte[20];
+    
+    private Buffer chunk;
+    private CompositeBuffer result;
+    private boolean hasLabels;
+    
+    public MetricsWriter(final MemoryManager memoryManager) {
+        this(memoryManager, DEFAULT_CHUNK_SIZE);
+    }
+
+    public MetricsWriter(final MemoryManager memoryManager,
+            final int chunkSize) {
+        if (chunkSize < 64) {
+            throw new IllegalArgumentException("chunkSize has to be >= 64");
+        }
+        
+        this.memoryManager = memoryManager;
+        this.chunkSize = chunkSize;
+    }
+    
+    /**
+     * Writes the metric family <tt>TYPE</tt> and <tt>HELP</tt> metadata.
+     * All the family samples have to be written right after this call.
+     * 
+     * @param name the family name
+     * @param type the family {@link Type}
+     * @param help the family description
+     * @return this writer
+     */
+    public MetricsWriter family(final String name, final Type type,
+            final String help) {
+        writeAscii("# TYPE ");
+        writeAscii(name);
+        writeByte((byte) ' ');
+        writeAscii(type.name);
+        writeByte((byte) '\n');
+        
+        if (help != null) {
+            writeAscii("# HELP ");
+            writeAscii(name);
+            writeByte((byte) ' ');
+            writeEscaped(help, false);
+            writeByte((byte) '\n');
+        }
+        
+        return this;
+    }
+    
+    /**
+     * Starts the sample line. The line has to be completed by one of the
+     * <tt>value(...)</tt> methods, optionally preceded by
+     * {@link #label(java.lang.String, java.lang.String)} calls.
+     * 
+     * @param name the sample name
+     * @return this writer
+     */
+    public MetricsWriter sample(final String name) {
+        return sample(name, null);
+    }
+
+    /**
+     * Starts the sample line, which name is composed of the family name and
+     * the suffix like <tt>_total</tt>, <tt>_count</tt> or <tt>_sum</tt>.
+     * 
+     * @param name the family name
+     * @param suffix the sample name suffix, may be <tt>null</tt>
+     * @return this writer
+     */
+    public MetricsWriter sample(final String name, final String suffix) {
+        hasLabels = false;
+        writeAscii(name);
+        if (suffix != null) {
+            writeAscii(suffix);
+        }
+        
+        return this;
+    }
+    
+    /**
+     * Adds the label to the current sample.
+     * 
+     * @param name the label name
+     * @param value the label value, which will be escaped if needed
+     * @return this writer
+     */
+    public MetricsWriter label(final String name, final String value) {
+        writeByte(hasLabels ? (byte) ',' : (byte) '{');
+        hasLabels = true;
+        
+        writeAscii(name);
+        writeByte((byte) '=');
+        writeByte((byte) '"');
+        writeEscaped(value, true);
+        writeByte((byte) '"');
+        
+        return this;
+    }
+    
+    /**
+     * Completes the current sample line with the value.
+     * 
+     * @param value the sample value
+     * @return this writer
+     */
+    public MetricsWriter value(final long value) {
+        return value(value, 0);
+    }
+
+    /**
+     * Completes the current sample line with the decimal value
+     * <tt>unscaledValue * 10<sup>-scale</sup></tt>.
+     * For example the nanosecond value is written in seconds as
+     * <tt>value(nanos, 9)</tt>.
+     * 
+     * @param unscaledValue the unscaled value
+     * @param scale the number of fractional digits, in range <tt>[0, 18]</tt>
+     * @return this writer
+     */
+    public MetricsWriter value(final long unscaledValue, final int scale) {
+        if (scale < 0 || scale >= POWERS_OF_TEN.length) {
+            throw new IllegalArgumentException("Illegal scale: " + scale);
+        }
+        
+        if (hasLabels) {
+            writeByte((byte) '}');
+            hasLabels = false;
+        }
+        
+        writeByte((byte) ' ');
+        writeDecimal(unscaledValue, scale);
+        writeByte((byte) '\n');
+        
+        return this;
+    }
+
+    /**
+     * Writes the <tt>summary</tt> samples (p50, p99, p999 quantiles, count and
+     * sum) of the {@link HistogramSnapshot}.
+     * The family metadata is expected to be written by the caller.
+     * 
+     * @param name the family name
+     * @param labelName the name of the label identifying the summary
+     *                  within the family, may be <tt>null</tt>
+     * @param labelValue the label value
+     * @param snapshot the {@link HistogramSnapshot}
+     * @param scale the number of fractional digits the snapshot values are
+     *              scaled by, see {@link #value(long, int)}
+     * @return this writer
+     */
+    public MetricsWriter summary(final String name, final String labelName,
+            final String labelValue, final HistogramSnapshot snapshot,
+            final int scale) {
+        quantile(name, labelName, labelValue, "0.5", snapshot.getP50(), scale);
+        quantile(name, labelName, labelValue, "0.99", snapshot.getP99(), scale);
+        quantile(name, labelName, labelValue, "0.999", snapshot.getP999(), scale);
+        
+        sample(name, "_count");
+        if (labelName != null) {
+            label(labelName, labelValue);
+        }
+        value(snapshot.getCount());
+        
+        sample(name, "_sum");
+        if (labelName != null) {
+            label(labelName, labelValue);
+        }
+        return value(snapshot.getSum(), scale);
+    }
+    
+    /**
+     * Completes the rendering by writing the <tt># EOF</tt> marker.
+     * 
+     * @return the {@link Buffer} containing the rendered metrics
+     */
+    public Buffer finish() {
+        writeAscii("# EOF\n");
+        
+        final Buffer last = chunk;
+        chunk = null;
+        last.trim();
+        
+        if (result == null) {
+            return last;
+        }
+        
+        final CompositeBuffer composite = result;
+        result = null;
+        composite.append(last);
+        
+        return composite;
+    }
+
+    private void quantile(final String name, final String labelName,
+            final String labelValue, final String quantile, final long value,
+            final int scale) {
+        sample(name);
+        if (labelName != null) {
+            label(labelName, labelValue);
+        }
+        label("quantile", quantile);
+        value(value, scale);
+    }
+    
+    private void writeDecimal(final long value, final int scale) {
+        // sign, decimal point and up to 20 digits
+        ensure(digits.length + 2);
+        
+        if (value < 0) {
+            chunk.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                // can't be negated, write the last digit separately
+                writeDecimal(-(value / 10), scale - 1, -(value % 10));
+                return;
+            }
+        }
+        
+        writeDecimal(Math.abs(value), scale, -1);
+    }
+    
+    private void writeDecimal(final long absValue, int scale,
+            final long lastDigit) {
+        int count = 0;
+        long v = absValue;
+        if (lastDigit >= 0) {
+            digits[count++] = (byte) ('0' + lastDigit);
+        }
+        
+        do {
+            digits[count++] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+        
+        if (lastDigit >= 0) {
+            scale++;
+        }
+        
+        // pad with zeros, so there is at least one integer digit
+        while (count <= scale) {
+            digits[count++] = '0';
+        }
+        
+        for (int i = count - 1; i >= 0; i--) {
+            if (i == scale - 1) {
+                chunk.put((byte) '.');
+            }
+            chunk.put(digits[i]);
+        }
+    }
+    
+    private void writeEscaped(final String value, final boolean isLabel) {
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    ensure(2);
+                    chunk.put((byte) '\\').put((byte) '\\');
+                    continue;
+                case '\n':
+                    ensure(2);
+                    chunk.put((byte) '\\').put((byte) 'n');
+                    continue;
+                case '"':
+                    if (isLabel) {
+                        ensure(2);
+                        chunk.put((byte) '\\').put((byte) '"');
+                        continue;
+                    }
+            }
+            
+            writeChar(value, i, c);
+            if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                i++;
+            }
+        }
+    }
+    
+    private void writeChar(final String value, final int i, final char c) {
+        if (c < 0x80) {
+            ensure(1);
+            chunk.put((byte) c);
+        } else if (c < 0x800) {
+            ensure(2);
+            chunk.put((byte) (0xC0 | (c >> 6)))
+                    .put((byte) (0x80 | (c & 0x3F)));
+        } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(i + 1))) {
+            final int cp = Character.toCodePoint(c, value.charAt(i + 1));
+            ensure(4);
+            chunk.put((byte) (0xF0 | (cp >> 18)))
+                    .put((byte) (0x80 | ((cp >> 12) & 0x3F)))
+                    .put((byte) (0x80 | ((cp >> 6) & 0x3F)))
+                    .put((byte) (0x80 | (cp & 0x3F)));
+        } else if (Character.isSurrogate(c)) {
+            ensure(1);
+            chunk.put((byte) '?');
+        } else {
+            ensure(3);
+            chunk.put((byte) (0xE0 | (c >> 12)))
+                    .put((byte) (0x80 | ((c >> 6) & 0x3F)))
+                    .put((byte) (0x80 | (c & 0x3F)));
+        }
+    }
+    
+    private void writeAscii(final String value) {
+        final int length = value.length();
+        int offset = 0;
+        while (offset < length) {
+            ensure(1);
+            final int n = Math.min(chunk.remaining(), length - offset);
+            for (int i = 0; i < n; i++) {
+                chunk.put((byte) value.charAt(offset + i));
+            }
+            offset += n;
+        }
+    }
+    
+    private void writeByte(final byte b) {
+        ensure(1);
+        chunk.put(b);
+    }
+    
+    /**
+     * Makes sure the current chunk has at least the given number of bytes
+     * remaining (up to the chunk size), switching to a new chunk if needed.
+     */
+    private void ensure(final int size) {
+        if (chunk != null && chunk.remaining() >= Math.min(size, chunkSize)) {
+            return;
+        }
+        
+        if (chunk != null) {
+            chunk.trim();
+            if (result == null) {
+                result = CompositeBuffer.newBuffer(memoryManager);
+                result.allowBufferDispose(true);
+                result.allowInternalBuffersDispose(true);
+            }
+            result.append(chunk);
+        }
+        
+        chunk = memoryManager.allocate(chunkSize);
+        chunk.allowBufferDispose(true);
+    }
+}
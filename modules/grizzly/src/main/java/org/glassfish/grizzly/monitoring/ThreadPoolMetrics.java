@@ -0,0 +1,254 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.glassfish.grizzly.threadpool.AbstractThreadPool;
+import org.glassfish.grizzly.threadpool.ThreadPoolProbe;
+
+/**
+ * {@link MetricsSource} reporting thread pool statistics.
+ * Thread pools are added by their {@link ThreadPoolProbe}
+ * {@link MonitoringConfig}, so it's possible to start monitoring a pool,
+ * which hasn't been created yet, like
+ * {@link org.glassfish.grizzly.Transport#getThreadPoolMonitoringConfig()}.
+ * 
+ * @since 2.4.3
+ */
+public class ThreadPoolMetrics implements MetricsSource {
+    private final CopyOnWriteArrayList<Entry> entries =
+            new CopyOnWriteArrayList<Entry>();
+
+    /**
+     * Starts collecting metrics of the thread pool(s) monitored by the
+     * {@link MonitoringConfig}.
+     * 
+     * @param name the name to label the thread pool samples with
+     * @param monitoringConfig the thread pool {@link MonitoringConfig}
+     * @return <tt>true</tt> if the {@link MonitoringConfig} has been added,
+     *          or <tt>false</tt> if it had already been added before
+     */
+    public synchronized boolean add(final String name,
+            final MonitoringConfig<ThreadPoolProbe> monitoringConfig) {
+        if (find(monitoringConfig) != null) {
+            return false;
+        }
+        
+        final Entry entry = new Entry(name, monitoringConfig);
+        monitoringConfig.addProbes(entry);
+        entries.add(entry);
+        return true;
+    }
+
+    /**
+     * Stops collecting metrics of the thread pool(s) monitored by the
+     * {@link MonitoringConfig}.
+     * 
+     * @param monitoringConfig the thread pool {@link MonitoringConfig}
+     * @return <tt>true</tt> if the {@link MonitoringConfig} has been removed
+     */
+    public synchronized boolean remove(
+            final MonitoringConfig<ThreadPoolProbe> monitoringConfig) {
+        final Entry entry = find(monitoringConfig);
+        if (entry == null) {
+            return false;
+        }
+        
+        monitoringConfig.removeProbes(entry);
+        entries.remove(entry);
+        return true;
+    }
+
+    @Override
+    public void writeMetrics(final MetricsWriter writer) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        
+        writer.family("grizzly_thread_pool_threads",
+                MetricsWriter.Type.GAUGE,
+                "The current number of threads managed by the thread pool");
+        for (Entry entry : entries) {
+            final AbstractThreadPool pool = entry.threadPool;
+            writer.sample("grizzly_thread_pool_threads")
+                    .label("pool", entry.name)
+                    .value(pool != null ? pool.getSize() : 0);
+        }
+        
+        writer.family("grizzly_thread_pool_busy_threads",
+                MetricsWriter.Type.GAUGE,
+                "The number of threads, which are currently processing tasks");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_thread_pool_busy_threads")
+                    .label("pool", entry.name)
+                    .value(entry.busyThreads.get());
+        }
+        
+        writer.family("grizzly_thread_pool_queued_tasks",
+                MetricsWriter.Type.GAUGE,
+                "The number of tasks waiting in the task queue");
+        for (Entry entry : entries) {
+            final AbstractThreadPool pool = entry.threadPool;
+            writer.sample("grizzly_thread_pool_queued_tasks")
+                    .label("pool", entry.name)
+                    .value(pool != null ? pool.getQueue().size() : 0);
+        }
+        
+        writer.family("grizzly_thread_pool_completed_tasks",
+                MetricsWriter.Type.COUNTER,
+                "The total number of completed tasks");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_thread_pool_completed_tasks", "_total")
+                    .label("pool", entry.name)
+                    .value(entry.completedTasks.sum());
+        }
+        
+        writer.family("grizzly_thread_pool_queue_overflows",
+                MetricsWriter.Type.COUNTER,
+                "The total number of times the task queue has been saturated");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_thread_pool_queue_overflows", "_total")
+                    .label("pool", entry.name)
+                    .value(entry.queueOverflows.sum());
+        }
+        
+        writer.family("grizzly_thread_pool_queue_wait_seconds",
+                MetricsWriter.Type.SUMMARY,
+                "The time tasks spent in the task queue");
+        for (Entry entry : entries) {
+            writer.summary("grizzly_thread_pool_queue_wait_seconds",
+                    "pool", entry.name, entry.queueWaitTime.snapshot(), 9);
+        }
+    }
+    
+    private Entry find(final MonitoringConfig<ThreadPoolProbe> monitoringConfig) {
+        for (Entry entry : entries) {
+            if (entry.monitoringConfig == monitoringConfig) {
+                return entry;
+            }
+        }
+        
+        return null;
+    }
+    
+    private static final class Entry extends ThreadPoolProbe.Adapter {
+        private final String name;
+        private final MonitoringConfig<ThreadPoolProbe> monitoringConfig;
+        
+        private volatile AbstractThreadPool threadPool;
+        
+        private final AtomicInteger busyThreads = new AtomicInteger();
+        private final LongAdder completedTasks = new LongAdder();
+        private final LongAdder queueOverflows = new LongAdder();
+        private final Histogram queueWaitTime = new Histogram();
+        private final ConcurrentMap<Runnable, Long> queuedTasks =
+                new ConcurrentHashMap<Runnable, Long>();
+
+        Entry(final String name,
+                final MonitoringConfig<ThreadPoolProbe> monitoringConfig) {
+            this.name = name;
+            this.monitoringConfig = monitoringConfig;
+        }
+
+        @Override
+        public void onThreadPoolStartEvent(final AbstractThreadPool threadPool) {
+            this.threadPool = threadPool;
+        }
+
+        @Override
+        public void onThreadPoolStopEvent(final AbstractThreadPool threadPool) {
+            queuedTasks.clear();
+        }
+
+        @Override
+        public void onThreadAllocateEvent(final AbstractThreadPool threadPool,
+                final Thread thread) {
+            this.threadPool = threadPool;
+        }
+
+        @Override
+        public void onTaskQueueEvent(final AbstractThreadPool threadPool,
+                final Runnable task) {
+            queuedTasks.put(task, System.nanoTime());
+        }
+
+        @Override
+        public void onTaskDequeueEvent(final AbstractThreadPool threadPool,
+                final Runnable task) {
+            busyThreads.incrementAndGet();
+            
+            final Long queuedNanos = queuedTasks.remove(task);
+            if (queuedNanos != null) {
+                queueWaitTime.recordElapsedSince(queuedNanos);
+            }
+        }
+
+        @Override
+        public void onTaskCancelEvent(final AbstractThreadPool threadPool,
+                final Runnable task) {
+            decBusyThreads();
+        }
+
+        @Override
+        public void onTaskCompleteEvent(final AbstractThreadPool threadPool,
+                final Runnable task) {
+            completedTasks.increment();
+            decBusyThreads();
+        }
+
+        @Override
+        public void onTaskQueueOverflowEvent(final AbstractThreadPool threadPool) {
+            queueOverflows.increment();
+        }
+        
+        private void decBusyThreads() {
+            final int val = busyThreads.decrementAndGet();
+            if (val < 0) {
+                // the task might have been dequeued before the probe was added
+                busyThreads.compareAndSet(val, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.ConnectionProbe;
+import org.glassfish.grizzly.IOEvent;
+import org.glassfish.grizzly.Transport;
+
+/**
+ * {@link MetricsSource} reporting connection and I/O statistics of one or
+ * more {@link Transport}s. Samples are labeled with the name the
+ * {@link Transport} was added with.
+ * 
+ * @since 2.4.3
+ */
+public class TransportMetrics implements MetricsSource {
+    private final CopyOnWriteArrayList<Entry> entries =
+            new CopyOnWriteArrayList<Entry>();
+
+    /**
+     * Starts collecting metrics of the {@link Transport}.
+     * 
+     * @param name the name to label the {@link Transport} samples with
+     * @param transport the {@link Transport}
+     * @return <tt>true</tt> if the {@link Transport} has been added, or
+     *          <tt>false</tt> if it had already been added before
+     */
+    public synchronized boolean add(final String name,
+            final Transport transport) {
+        if (find(transport) != null) {
+            return false;
+        }
+        
+        final Entry entry = new Entry(name, transport);
+        transport.getConnectionMonitoringConfig().addProbes(entry);
+        entries.add(entry);
+        return true;
+    }
+
+    /**
+     * Stops collecting metrics of the {@link Transport}.
+     * 
+     * @param transport the {@link Transport}
+     * @return <tt>true</tt> if the {@link Transport} has been removed
+     */
+    public synchronized boolean remove(final Transport transport) {
+        final Entry entry = find(transport);
+        if (entry == null) {
+            return false;
+        }
+        
+        transport.getConnectionMonitoringConfig().removeProbes(entry);
+        entries.remove(entry);
+        return true;
+    }
+
+    @Override
+    public void writeMetrics(final MetricsWriter writer) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        
+        writer.family("grizzly_transport_connections_open",
+                MetricsWriter.Type.GAUGE, "The number of open connections");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_transport_connections_open")
+                    .label("transport", entry.name)
+                    .value(entry.openConnections.get());
+        }
+        
+        writer.family("grizzly_transport_connections",
+                MetricsWriter.Type.COUNTER,
+                "The total number of accepted and connected connections");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_transport_connections", "_total")
+                    .label("transport", entry.name)
+                    .value(entry.totalConnections.sum());
+        }
+        
+        writer.family("grizzly_transport_read_bytes",
+                MetricsWriter.Type.COUNTER, "The total number of bytes read");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_transport_read_bytes", "_total")
+                    .label("transport", entry.name)
+                    .value(entry.bytesRead.sum());
+        }
+        
+        writer.family("grizzly_transport_written_bytes",
+                MetricsWriter.Type.COUNTER, "The total number of bytes written");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_transport_written_bytes", "_total")
+                    .label("transport", entry.name)
+                    .value(entry.bytesWritten.sum());
+        }
+        
+        writer.family("grizzly_transport_errors",
+                MetricsWriter.Type.COUNTER,
+                "The total number of connection errors");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_transport_errors", "_total")
+                    .label("transport", entry.name)
+                    .value(entry.errors.sum());
+        }
+    }
+    
+    private Entry find(final Transport transport) {
+        for (Entry entry : entries) {
+            if (entry.transport == transport) {
+                return entry;
+            }
+        }
+        
+        return null;
+    }
+    
+    private static final class Entry implements ConnectionProbe {
+        private final String name;
+        private final Transport transport;
+        
+        private final AtomicInteger openConnections = new AtomicInteger();
+        private final LongAdder totalConnections = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        Entry(final String name, final Transport transport) {
+            this.name = name;
+            this.transport = transport;
+        }
+
+        @Override
+        public void onBindEvent(final Connection connection) {
+        }
+
+        @Override
+        public void onAcceptEvent(final Connection serverConnection,
+                final Connection clientConnection) {
+            openConnections.incrementAndGet();
+            totalConnections.increment();
+        }
+
+        @Override
+        public void onConnectEvent(final Connection connection) {
+            openConnections.incrementAndGet();
+            totalConnections.increment();
+        }
+
+        @Override
+        public void onReadEvent(final Connection connection,
+                final Buffer data, final int size) {
+            bytesRead.add(size);
+        }
+
+        @Override
+        public void onWriteEvent(final Connection connection,
+                final Buffer data, final long size) {
+            bytesWritten.add(size);
+        }
+
+        @Override
+        public void onErrorEvent(final Connection connection,
+                final Throwable error) {
+            errors.increment();
+        }
+
+        @Override
+        public void onCloseEvent(final Connection connection) {
+            // the connection might have been opened before the probe was added
+            final int val = openConnections.decrementAndGet();
+            if (val < 0) {
+                openConnections.compareAndSet(val, 0);
+            }
+        }
+
+        @Override
+        public void onIOEventReadyEvent(final Connection connection,
+                final IOEvent ioEvent) {
+        }
+
+        @Override
+        public void onIOEventEnableEvent(final Connection connection,
+                final IOEvent ioEvent) {
+        }
+
+        @Override
+        public void onIOEventDisableEvent(final Connection connection,
+                final IOEvent ioEvent) {
+        }
+    }
+}
@@ -59,6 +59,7 @@ import org.glassfish.grizzly.asyncqueue.PushBackHandler;
 import org.glassfish.grizzly.asyncqueue.RecordWriteResult;
 import org.glassfish.grizzly.asyncqueue.TaskQueue;
 import org.glassfish.grizzly.asyncqueue.WritableMessage;
+import org.glassfish.grizzly.monitoring.FlightRecorder;
 
 
 /**
@@ -225,6 +226,14 @@ public abstract class AbstractNIOAsyncQueueWriter
         final int pendingBytes = writeTaskQueue.reserveSpace(bytesToReserve);
         final boolean isCurrent = (pendingBytes == bytesToReserve);
 
+        final int maxPendingBytes = nioConnection.getMaxAsyncWriteQueueSize();
+        if (maxPendingBytes > 0 && pendingBytes > maxPendingBytes
+                && pendingBytes - bytesToReserve <= maxPendingBytes) {
+            // the queue has just crossed its limit
+            FlightRecorder.writeQueueOverflow(nioConnection, pendingBytes,
+                    maxPendingBytes);
+        }
+
         final boolean isLogFine = LOGGER.isLoggable(Level.FINEST);
 
         if (isLogFine) {
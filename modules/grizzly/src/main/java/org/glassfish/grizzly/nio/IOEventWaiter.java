@@ -0,0 +1,251 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nio;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Parks the thread, which performs blocking IO on a {@link NIOConnection},
+ * until the connection's {@link SelectorRunner} reports the channel is ready
+ * for the IO operation. It replaces the temporary {@link java.nio.channels.Selector}
+ * the channel would be registered with otherwise.
+ * 
+ * Only one thread can wait for a given interest at a time. If the waiting
+ * thread gives up (timeout or interruption), the interest it has registered
+ * is withdrawn by the {@link SelectorRunner} thread. The interest is
+ * withdrawn only if the waiter has added it, an interest registered by the
+ * regular processing is kept. The readiness reported after the thread gave up
+ * is passed to the connection's regular {@link org.glassfish.grizzly.IOEvent}
+ * processing only if the regular processing has registered the interest,
+ * otherwise it's swallowed.
+ * 
+ * @since 2.4.3
+ */
+final class IOEventWaiter {
+    private static final int IDLE = 0;
+    private static final int WAITING = 1;
+    private static final int SIGNALED = 2;
+    private static final int ABANDONED = 3;
+
+    private static final AtomicIntegerFieldUpdater<IOEventWaiter> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(IOEventWaiter.class, "state");
+
+    private final NIOConnection connection;
+    private final int interest;
+
+    private volatile int state;
+    private volatile Thread thread;
+
+    // true, if the interest has been added by the waiter, accessed by the
+    // SelectorRunner thread only
+    private boolean isInterestAdded;
+
+    private final SelectorHandler.Task registerInterestTask =
+            new SelectorHandler.Task() {
+                @Override
+                public boolean run() throws IOException {
+                    registerInterest();
+                    return true;
+                }
+            };
+
+    private final SelectorHandler.Task withdrawInterestTask =
+            new SelectorHandler.Task() {
+                @Override
+                public boolean run() throws IOException {
+                    if (STATE_UPDATER.compareAndSet(IOEventWaiter.this,
+                            ABANDONED, IDLE)) {
+                        withdrawInterest();
+                    }
+                    return true;
+                }
+            };
+
+    IOEventWaiter(final NIOConnection connection, final int interest) {
+        this.connection = connection;
+        this.interest = interest;
+    }
+
+    /**
+     * Blocks the current thread until the channel is ready, the timeout expires,
+     * the thread is interrupted or the connection is closed.
+     * 
+     * @param timeout the timeout, if not positive - wait without timeout.
+     * @param timeunit the timeout unit.
+     * @return <tt>true</tt> if the channel is ready or the connection is
+     *  closed, or <tt>false</tt> otherwise.
+     * @throws IOException 
+     */
+    boolean await(final long timeout, final TimeUnit timeunit)
+            throws IOException {
+        thread = Thread.currentThread();
+        arm();
+
+        final SelectorHandler selectorHandler =
+                connection.transport.getSelectorHandler();
+        final SelectorRunner selectorRunner = connection.getSelectorRunner();
+
+        try {
+            // let the SelectorRunner register the interest
+            selectorHandler.enque(selectorRunner, registerInterestTask, null);
+
+            final long deadline = timeout > 0
+                    ? System.nanoTime() + timeunit.toNanos(timeout)
+                    : 0;
+            while (state == WAITING && connection.isOpen()) {
+                if (deadline == 0) {
+                    LockSupport.park(this);
+                } else {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+            }
+        } finally {
+            thread = null;
+            if (STATE_UPDATER.compareAndSet(this, WAITING, ABANDONED)) {
+                // let the SelectorRunner withdraw the registered interest
+                selectorHandler.enque(selectorRunner, withdrawInterestTask, null);
+            }
+        }
+
+        if (state == SIGNALED) {
+            state = IDLE;
+            return true;
+        }
+
+        return !connection.isOpen();
+    }
+
+    /**
+     * Invoked by the {@link SelectorRunner} thread, when the channel is ready
+     * for the interest.
+     * 
+     * @return <tt>true</tt> if the readiness has been consumed by the waiter,
+     *  and must not be processed as a regular {@link org.glassfish.grizzly.IOEvent}.
+     * @throws IOException
+     */
+    boolean onReady() throws IOException {
+        switch (state) {
+            case WAITING:
+                if (STATE_UPDATER.compareAndSet(this, WAITING, SIGNALED)) {
+                    withdrawInterest();
+                    LockSupport.unpark(thread);
+                    return true;
+                }
+
+                return onReady();
+            case ABANDONED:
+                if (STATE_UPDATER.compareAndSet(this, ABANDONED, IDLE)) {
+                    // nobody waits. If the regular processing has registered
+                    // the interest - pass the readiness on, otherwise swallow
+                    // it, because the thread which gave up may still be
+                    // doing blocking IO on the connection
+                    final boolean isSwallowed = isInterestAdded;
+                    withdrawInterest();
+                    return isSwallowed;
+                }
+
+                return onReady();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Wakes up the waiting thread, if any.
+     */
+    void wakeUp() {
+        final Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    private void arm() {
+        for (;;) {
+            final int s = state;
+            if (s == WAITING || s == SIGNALED) {
+                thread = null;
+                throw new IllegalStateException(
+                        "Another thread is waiting for the same IO event");
+            }
+
+            // re-arming the ABANDONED waiter keeps the interest registered
+            if (STATE_UPDATER.compareAndSet(this, s, WAITING)) {
+                return;
+            }
+        }
+    }
+
+    private void registerInterest() throws IOException {
+        final SelectionKey key = connection.getSelectionKey();
+        if (key == null || !key.isValid()
+                || (key.interestOps() & interest) != 0) {
+            return;
+        }
+
+        isInterestAdded = true;
+        connection.transport.getSelectorHandler().registerKeyInterest(
+                connection.getSelectorRunner(), key, interest);
+    }
+
+    private void withdrawInterest() throws IOException {
+        if (!isInterestAdded) {
+            return;
+        }
+
+        isInterestAdded = false;
+        connection.transport.getSelectorHandler().deregisterKeyInterest(
+                connection.getSelectorRunner(), connection.getSelectionKey(),
+                interest);
+    }
+}
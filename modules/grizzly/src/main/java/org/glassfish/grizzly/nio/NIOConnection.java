@@ -86,6 +86,7 @@ import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.memory.MemoryManager;
 import org.glassfish.grizzly.monitoring.MonitoringConfig;
 import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
+import org.glassfish.grizzly.monitoring.FlightRecorder;
 import org.glassfish.grizzly.utils.CompletionHandlerAdapter;
 import org.glassfish.grizzly.utils.Futures;
 import org.glassfish.grizzly.utils.NullaryFunction;
@@ -133,6 +134,16 @@ public abstract class NIOConnection implements Connection<SocketAddress> {
     // closeTypeFlag, "null" value means the connection is open.
     private final AtomicBoolean isCloseScheduled = new AtomicBoolean();
     
+    // Waiters for the blocking IO, which doesn't use temporary Selectors
+    private static final AtomicReferenceFieldUpdater<NIOConnection, IOEventWaiter> readWaiterUpdater =
+            AtomicReferenceFieldUpdater.newUpdater(NIOConnection.class,
+                    IOEventWaiter.class, "readWaiter");
+    private static final AtomicReferenceFieldUpdater<NIOConnection, IOEventWaiter> writeWaiterUpdater =
+            AtomicReferenceFieldUpdater.newUpdater(NIOConnection.class,
+                    IOEventWaiter.class, "writeWaiter");
+    private volatile IOEventWaiter readWaiter;
+    private volatile IOEventWaiter writeWaiter;
+    
     private static final AtomicReferenceFieldUpdater<NIOConnection, CloseReason> closeReasonUpdater =
             AtomicReferenceFieldUpdater.newUpdater(NIOConnection.class,
                     CloseReason.class, "closeReason");
@@ -620,8 +631,10 @@ public abstract class NIOConnection implements Connection<SocketAddress> {
             }
             
             preClose();
+            wakeUpIOEventWaiters();
             notifyCloseListeners(reason);
             notifyProbesClose(this);
+            FlightRecorder.connectionClosed(this, reason.getType());
             
             transport.getSelectorHandler().execute(
                     selectorRunner, new SelectorHandler.Task() {
@@ -744,6 +757,8 @@ public abstract class NIOConnection implements Connection<SocketAddress> {
      */
     protected static void notifyProbesAccept(final NIOConnection serverConnection,
             final NIOConnection clientConnection) {
+        FlightRecorder.connectionAccepted(serverConnection, clientConnection);
+        
         final ConnectionProbe[] probes =
             serverConnection.monitoringConfig.getProbesUnsafe();
         if (probes != null) {
@@ -935,6 +950,84 @@ public abstract class NIOConnection implements Connection<SocketAddress> {
         }
     }
     
+    /**
+     * Blocks the current thread until the connection's channel is ready for the
+     * {@link IOEvent#READ} or {@link IOEvent#WRITE} operation. The connection's
+     * {@link SelectorRunner} detects the readiness and wakes up the thread, so
+     * no temporary {@link java.nio.channels.Selector} is needed. The readiness
+     * detected this way is not passed to the regular {@link IOEvent} processing.
+     * 
+     * The method must not be called by the connection's {@link SelectorRunner}
+     * thread, and only one thread at a time may wait for the given {@link IOEvent}.
+     * 
+     * @param ioEvent {@link IOEvent#READ} or {@link IOEvent#WRITE}.
+     * @param timeout the timeout, if not positive - wait without timeout.
+     * @param timeunit the timeout unit.
+     * @return <tt>true</tt> if the channel is ready or the connection has been
+     *  closed, or <tt>false</tt> if the timeout expired or the thread has been
+     *  interrupted.
+     * @throws IOException
+     * 
+     * @since 2.4.3
+     */
+    public boolean awaitIOEvent(final IOEvent ioEvent, final long timeout,
+            final TimeUnit timeunit) throws IOException {
+        return obtainIOEventWaiter(ioEvent).await(timeout, timeunit);
+    }
+    
+    /**
+     * Invoked by the {@link SelectorRunner}, when the channel is ready for the
+     * {@link IOEvent}.
+     * 
+     * @return <tt>true</tt> if the readiness has been consumed by a thread
+     *  waiting in {@link #awaitIOEvent(IOEvent, long, TimeUnit)}.
+     */
+    boolean onIOEventReady(final IOEvent ioEvent) throws IOException {
+        final IOEventWaiter waiter;
+        if (ioEvent == IOEvent.READ) {
+            waiter = readWaiter;
+        } else if (ioEvent == IOEvent.WRITE) {
+            waiter = writeWaiter;
+        } else {
+            return false;
+        }
+        
+        return waiter != null && waiter.onReady();
+    }
+    
+    private IOEventWaiter obtainIOEventWaiter(final IOEvent ioEvent) {
+        final AtomicReferenceFieldUpdater<NIOConnection, IOEventWaiter> updater;
+        if (ioEvent == IOEvent.READ) {
+            updater = readWaiterUpdater;
+        } else if (ioEvent == IOEvent.WRITE) {
+            updater = writeWaiterUpdater;
+        } else {
+            throw new IllegalArgumentException(
+                    "We support only READ and WRITE events. Got " + ioEvent);
+        }
+        
+        final IOEventWaiter waiter = updater.get(this);
+        if (waiter != null) {
+            return waiter;
+        }
+        
+        updater.compareAndSet(this, null,
+                new IOEventWaiter(this, ioEvent.getSelectionKeyInterest()));
+        return updater.get(this);
+    }
+    
+    private void wakeUpIOEventWaiters() {
+        final IOEventWaiter readWaiterLocal = readWaiter;
+        if (readWaiterLocal != null) {
+            readWaiterLocal.wakeUp();
+        }
+        
+        final IOEventWaiter writeWaiterLocal = writeWaiter;
+        if (writeWaiterLocal != null) {
+            writeWaiterLocal.wakeUp();
+        }
+    }
+    
     @Override
     public final void enableIOEvent(final IOEvent ioEvent) throws IOException {
         final boolean isOpRead = (ioEvent == IOEvent.READ);
@@ -91,6 +91,7 @@ public abstract class NIOTransport extends AbstractTransport
             SocketConnectorHandler.DEFAULT_CONNECTION_TIMEOUT;
     public static final int DEFAULT_SELECTOR_RUNNER_COUNT = -1;
     public static final boolean DEFAULT_OPTIMIZED_FOR_MULTIPLEXING = false;
+    public static final boolean DEFAULT_TEMPORARY_SELECTORS_ENABLED = true;
 
     private static final Logger LOGGER = Grizzly.logger(NIOTransport.class);
 
@@ -280,6 +281,38 @@ public abstract class NIOTransport extends AbstractTransport
         getAsyncQueueIO().getWriter().setAllowDirectWrite(!optimizedForMultiplexing);
     }
 
+    /**
+     * Returns <tt>true</tt>, if the blocking IO waits for the channel readiness
+     * using temporary {@link java.nio.channels.Selector}s, or <tt>false</tt>,
+     * if the waiting thread is parked until the connection's
+     * {@link SelectorRunner} reports the readiness.
+     *
+     * @return <tt>true</tt>, if the blocking IO uses temporary
+     *  {@link java.nio.channels.Selector}s.
+     *
+     * @since 2.4.3
+     */
+    public boolean isTemporarySelectorsEnabled() {
+        return temporarySelectorIO.isTemporarySelectorsEnabled();
+    }
+
+    /**
+     * Configures how the blocking IO waits for the channel readiness. If
+     * <tt>false</tt>, the waiting thread is parked until the connection's
+     * {@link SelectorRunner} reports the readiness, so the channel is not
+     * registered with a temporary {@link java.nio.channels.Selector} and the
+     * number of concurrent blocking operations is not limited by the
+     * {@link TemporarySelectorPool} size.
+     *
+     * @param temporarySelectorsEnabled <tt>true</tt> (default) to use temporary
+     *  {@link java.nio.channels.Selector}s.
+     *
+     * @since 2.4.3
+     */
+    public void setTemporarySelectorsEnabled(final boolean temporarySelectorsEnabled) {
+        temporarySelectorIO.setTemporarySelectorsEnabled(temporarySelectorsEnabled);
+    }
+
     protected synchronized void startSelectorRunners() throws IOException {
         selectorRunners = new SelectorRunner[selectorRunnersCount];
         
@@ -411,6 +411,11 @@ public final class SelectorRunner implements Runnable {
             
             final int interest = ioEvent.getSelectionKeyInterest();
             keyReadyOps &= (~interest);
+            if (connection.onIOEventReady(ioEvent)) {
+                // consumed by the thread blocked on IO
+                continue;
+            }
+            
             if (selectionKeyHandler.onProcessInterest(keyLocal, interest)) {
                 if (!ioStrategy.executeIoEvent(connection, ioEvent)) {
                     return false;
@@ -50,6 +50,8 @@ import org.glassfish.grizzly.Reader;
 import org.glassfish.grizzly.Writer;
 import java.util.logging.Logger;
 import org.glassfish.grizzly.localization.LogMessages;
+import org.glassfish.grizzly.nio.NIOConnection;
+import org.glassfish.grizzly.nio.SelectorRunner;
 
 /**
  *
@@ -60,6 +62,8 @@ public class TemporarySelectorIO {
 
     protected TemporarySelectorPool selectorPool;
 
+    private volatile boolean temporarySelectorsEnabled = true;
+
     private final Reader<SocketAddress> reader;
     private final Writer<SocketAddress> writer;
 
@@ -84,6 +88,57 @@ public class TemporarySelectorIO {
         this.selectorPool = selectorPool;
     }
 
+    /**
+     * @return <tt>true</tt> if the blocking IO waits for the channel readiness
+     *  using temporary {@link Selector}s, or <tt>false</tt> if the waiting
+     *  thread is parked until the connection's {@link SelectorRunner} reports
+     *  the readiness.
+     * 
+     * @since 2.4.3
+     */
+    public boolean isTemporarySelectorsEnabled() {
+        return temporarySelectorsEnabled;
+    }
+
+    /**
+     * Configures how the blocking IO waits for the channel readiness. If
+     * <tt>true</tt> (default) the channel is registered with a temporary
+     * {@link Selector} from the {@link TemporarySelectorPool}, otherwise the
+     * waiting thread is parked until the connection's {@link SelectorRunner}
+     * reports the readiness (see {@link NIOConnection#awaitIOEvent(org.glassfish.grizzly.IOEvent, long, java.util.concurrent.TimeUnit)}).
+     * The blocking IO performed by a {@link SelectorRunner} thread itself
+     * always uses temporary {@link Selector}s.
+     * 
+     * @param temporarySelectorsEnabled <tt>true</tt> to use temporary
+     *  {@link Selector}s.
+     * 
+     * @since 2.4.3
+     */
+    public void setTemporarySelectorsEnabled(
+            final boolean temporarySelectorsEnabled) {
+        this.temporarySelectorsEnabled = temporarySelectorsEnabled;
+    }
+
+    /**
+     * @param connection the {@link NIOConnection}.
+     * @return <tt>true</tt> if the current thread should wait for the
+     *  connection's channel readiness using
+     *  {@link NIOConnection#awaitIOEvent(org.glassfish.grizzly.IOEvent, long, java.util.concurrent.TimeUnit)}
+     *  rather than a temporary {@link Selector}.
+     * 
+     * @since 2.4.3
+     */
+    protected boolean isAwaitIOEvent(final NIOConnection connection) {
+        if (temporarySelectorsEnabled) {
+            return false;
+        }
+        
+        final SelectorRunner selectorRunner = connection.getSelectorRunner();
+        return selectorRunner != null
+                && connection.getSelectionKey() != null
+                && selectorRunner.getRunnerThread() != Thread.currentThread();
+    }
+
     public Reader<SocketAddress> getReader() {
         return reader;
     }
@@ -170,7 +170,15 @@ public abstract class TemporarySelectorReader
         try {
             bytesRead = readNow0(connection, buffer, currentResult);
 
-            if (bytesRead == 0) {
+            if (bytesRead == 0 && transport.getTemporarySelectorIO()
+                    .isAwaitIOEvent(connection)) {
+                if (!connection.awaitIOEvent(IOEvent.READ, readTimeout,
+                        TimeUnit.MILLISECONDS)) {
+                    return bytesRead;
+                }
+
+                bytesRead = readNow0(connection, buffer, currentResult);
+            } else if (bytesRead == 0) {
                 readSelector = transport.getTemporarySelectorIO().
                         getSelectorPool().poll();
 
@@ -208,6 +208,16 @@ public abstract class TemporarySelectorWriter
                         bytesWritten += len;
                     } else {
                         attempts++;
+                        if (transport.getTemporarySelectorIO()
+                                .isAwaitIOEvent(connection)) {
+                            if (!connection.awaitIOEvent(IOEvent.WRITE,
+                                    writeTimeout, TimeUnit.MILLISECONDS)
+                                    && attempts > 2) {
+                                throw new IOException("Client disconnected");
+                            }
+                            continue;
+                        }
+                        
                         if (writeSelector == null) {
                             writeSelector = transport.getTemporarySelectorIO().
                                     getSelectorPool().poll();
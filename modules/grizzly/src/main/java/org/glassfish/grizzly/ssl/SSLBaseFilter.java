@@ -71,6 +71,7 @@ import org.glassfish.grizzly.IOEventLifeCycleListener.Adapter;
 import org.glassfish.grizzly.ProcessorExecutor;
 import org.glassfish.grizzly.ReadResult;
 import org.glassfish.grizzly.Transport;
+import org.glassfish.grizzly.WriteResult;
 import org.glassfish.grizzly.asyncqueue.MessageCloner;
 import org.glassfish.grizzly.filterchain.BaseFilter;
 import org.glassfish.grizzly.filterchain.FilterChain;
@@ -84,6 +85,7 @@ import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.memory.CompositeBuffer;
 import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.monitoring.FlightRecorder;
 import org.glassfish.grizzly.ssl.SSLConnectionContext.Allocator;
 import org.glassfish.grizzly.ssl.SSLConnectionContext.SslResult;
 import org.glassfish.grizzly.utils.Futures;
@@ -130,6 +132,10 @@ public class SSLBaseFilter extends BaseFilter {
             Collections.newSetFromMap(new ConcurrentHashMap<>(2));
     
     private long handshakeTimeoutMillis = -1;
+    
+    private volatile SSLRecordSizePolicy recordSizePolicy;
+    
+    private volatile int writeCoalescingThreshold = -1;
         
     private SSLTransportFilterWrapper optimizedTransportFilter;
     
@@ -193,6 +199,52 @@ public class SSLBaseFilter extends BaseFilter {
         return serverSSLEngineConfigurator;
     }
     
+    /**
+     * @return the {@link SSLRecordSizePolicy} applied to the data sent over
+     * the filter's connections, or <tt>null</tt> if the policy of the
+     * corresponding {@link SSLEngineConfigurator} is used
+     */
+    public SSLRecordSizePolicy getRecordSizePolicy() {
+        return recordSizePolicy;
+    }
+
+    /**
+     * Sets the {@link SSLRecordSizePolicy} applied to the data sent over
+     * the filter's connections. If the policy is not set (default) - the
+     * policy of the {@link SSLEngineConfigurator}, which was used to create
+     * the connection's {@link SSLEngine}, is used.
+     * 
+     * @param recordSizePolicy {@link SSLRecordSizePolicy}
+     */
+    public void setRecordSizePolicy(final SSLRecordSizePolicy recordSizePolicy) {
+        this.recordSizePolicy = recordSizePolicy;
+    }
+
+    /**
+     * @return the write coalescing threshold in bytes, or <tt>-1</tt> if
+     * write coalescing is disabled (default)
+     */
+    public int getWriteCoalescingThreshold() {
+        return writeCoalescingThreshold;
+    }
+
+    /**
+     * Enables write coalescing. If enabled, small non-blocking writes issued
+     * while a {@link Connection}'s read event is being processed are not
+     * encrypted one by one, but accumulated and encrypted at once, when either
+     * the accumulated size reaches the threshold, or the read event processing
+     * is over. This way a chatty response, written in small chunks, produces
+     * fewer TLS records and fewer write calls.
+     * 
+     * @param writeCoalescingThreshold the threshold in bytes, or <tt>-1</tt>
+     *        to disable write coalescing
+     */
+    public void setWriteCoalescingThreshold(final int writeCoalescingThreshold) {
+        this.writeCoalescingThreshold = writeCoalescingThreshold > 0
+                ? writeCoalescingThreshold
+                : -1;
+    }
+
     public void addHandshakeListener(final HandshakeListener listener) {
         handshakeListeners.add(listener);
     }
@@ -292,7 +344,20 @@ public class SSLBaseFilter extends BaseFilter {
     public NextAction handleEvent(final FilterChainContext ctx,
                                   final FilterChainEvent event)
     throws IOException {
-        if (event.type() == CertificateEvent.TYPE) {
+        if (event.type() == TransportFilter.FlushEvent.TYPE) {
+            final Connection connection = ctx.getConnection();
+            final SSLConnectionContext sslCtx = getSslConnectionContext(connection);
+            final SSLWriteCoalescer writeCoalescer = sslCtx != null
+                    ? sslCtx.getWriteCoalescer()
+                    : null;
+            
+            if (writeCoalescer != null) {
+                //noinspection SynchronizationOnLocalVariableOrMethodParameter
+                synchronized (connection) {
+                    flushCoalescedWrites(ctx, writeCoalescer);
+                }
+            }
+        } else if (event.type() == CertificateEvent.TYPE) {
             final CertificateEvent ce = (CertificateEvent) event;
             try {
                 return ctx.getSuspendAction();
@@ -314,12 +379,15 @@ public class SSLBaseFilter extends BaseFilter {
         SSLEngine sslEngine = sslCtx.getSslEngine();
         
         if (sslEngine != null && !isHandshaking(sslEngine)) {
+            beginWriteCoalescing(ctx, sslCtx);
             return unwrapAll(ctx, sslCtx);
         } else {
             if (sslEngine == null) {
                 sslEngine = serverSSLEngineConfigurator.createSSLEngine();
                 sslEngine.beginHandshake();
                 sslCtx.configure(sslEngine);
+                sslCtx.setRecordSizePolicy(
+                        resolveRecordSizePolicy(serverSSLEngineConfigurator));
                 notifyHandshakeStart(connection);
             }
 
@@ -366,6 +434,7 @@ public class SSLBaseFilter extends BaseFilter {
 
                 if (hasRemaining) {
                     ctx.setMessage(buffer);
+                    beginWriteCoalescing(ctx, sslCtx);
                     return unwrapAll(ctx, sslCtx);
                 }
             }
@@ -385,8 +454,15 @@ public class SSLBaseFilter extends BaseFilter {
 
         //noinspection SynchronizationOnLocalVariableOrMethodParameter
         synchronized(connection) {
-            final Buffer output =
-                    wrapAll(ctx, obtainSslConnectionContext(connection));
+            final SSLConnectionContext sslCtx =
+                    obtainSslConnectionContext(connection);
+            final SSLWriteCoalescer writeCoalescer = sslCtx.getWriteCoalescer();
+            
+            if (writeCoalescer != null && coalesceWrite(ctx, writeCoalescer)) {
+                return ctx.getStopAction();
+            }
+            
+            final Buffer output = wrapAll(ctx, sslCtx);
 
             final TransportContext transportContext =
                     ctx.getTransportContext();
@@ -472,6 +548,42 @@ public class SSLBaseFilter extends BaseFilter {
         return ctx.getStopAction(makeInputRemainder(sslCtx, ctx, input));
     }
 
+    /**
+     * Has to be called in synchronized(connection) {...} block.
+     * 
+     * Encrypts the coalesced writes, if any, at once and passes the result
+     * downstream.
+     */
+    void flushCoalescedWrites(final FilterChainContext ctx,
+            final SSLWriteCoalescer writeCoalescer) throws SSLException {
+        final Buffer input = writeCoalescer.takePendingBuffer();
+        if (input == null) {
+            return;
+        }
+        
+        // the write below reserves the queue space for the encrypted data
+        writeCoalescer.releaseReservedSpace();
+        
+        final CompletionHandler<WriteResult> completionHandler =
+                writeCoalescer.takeCompletionHandler();
+        
+        final Buffer output;
+        try {
+            output = writeCoalescer.getSslConnectionContext().wrapAll(
+                    input, OUTPUT_BUFFER_ALLOCATOR);
+        } catch (SSLException e) {
+            if (completionHandler != null) {
+                completionHandler.failed(e);
+            }
+            
+            throw e;
+        } finally {
+            input.tryDispose();
+        }
+        
+        ctx.write(null, output, completionHandler, COPY_CLONER, false);
+    }
+    
     @SuppressWarnings("MethodMayBeStatic")
     protected Buffer wrapAll(final FilterChainContext ctx,
                              final SSLConnectionContext sslCtx) throws SSLException {
@@ -740,6 +852,7 @@ public class SSLBaseFilter extends BaseFilter {
                     inputBuffer = makeInputRemainder(sslCtx, ctx, inputBuffer);
                 }
                 
+                releaseCoalescedWritesSpace(sslCtx);
                 ctx.write(tmpNetBuffer);
             }
         }
@@ -926,6 +1039,88 @@ public class SSLBaseFilter extends BaseFilter {
         }
     }
 
+    /**
+     * Starts write coalescing for the read event being processed
+     * by the current thread, if write coalescing is enabled.
+     */
+    private void beginWriteCoalescing(final FilterChainContext ctx,
+            final SSLConnectionContext sslCtx) {
+        if (writeCoalescingThreshold <= 0) {
+            return;
+        }
+        
+        final Connection connection = ctx.getConnection();
+        final SSLWriteCoalescer writeCoalescer;
+        
+        //noinspection SynchronizationOnLocalVariableOrMethodParameter
+        synchronized (connection) {
+            SSLWriteCoalescer wc = sslCtx.getWriteCoalescer();
+            if (wc == null) {
+                wc = new SSLWriteCoalescer(this, sslCtx);
+                sslCtx.setWriteCoalescer(wc);
+            }
+            
+            if (!wc.beginPass(ctx)) {
+                return;
+            }
+            
+            writeCoalescer = wc;
+        }
+        
+        ctx.getInternalContext().addLifeCycleListener(writeCoalescer);
+    }
+    
+    /**
+     * Releases the async write queue space reserved by the coalesced writes,
+     * so the handshake data isn't queued behind them.
+     */
+    private static void releaseCoalescedWritesSpace(
+            final SSLConnectionContext sslCtx) {
+        final Connection connection = sslCtx.getConnection();
+        
+        //noinspection SynchronizationOnLocalVariableOrMethodParameter
+        synchronized (connection) {
+            final SSLWriteCoalescer writeCoalescer = sslCtx.getWriteCoalescer();
+            if (writeCoalescer != null) {
+                writeCoalescer.releaseReservedSpace();
+            }
+        }
+    }
+    
+    /**
+     * Has to be called in synchronized(connection) {...} block.
+     * 
+     * @return <tt>true</tt> if the write has been coalesced, or <tt>false</tt>
+     *          if it has to be encrypted and written as usual
+     */
+    @SuppressWarnings({"unchecked", "deprecation"})
+    private boolean coalesceWrite(final FilterChainContext ctx,
+            final SSLWriteCoalescer writeCoalescer) throws SSLException {
+        final int threshold = writeCoalescingThreshold;
+        final TransportContext transportContext = ctx.getTransportContext();
+        final Buffer input = ctx.getMessage();
+        
+        if (threshold > 0
+                && writeCoalescer.isInPass()
+                && !transportContext.isBlocking()
+                && transportContext.getPushBackHandler() == null
+                && input.remaining() < threshold) {
+            writeCoalescer.add(ctx.getMemoryManager(), input,
+                    transportContext.getCompletionHandler(), threshold);
+            
+            if (writeCoalescer.getPendingBytes() >= threshold) {
+                flushCoalescedWrites(ctx, writeCoalescer);
+            }
+            
+            return true;
+        }
+        
+        // the write can't be coalesced, so flush the pending data first
+        // to keep the writes order
+        flushCoalescedWrites(ctx, writeCoalescer);
+        return false;
+    }
+
     protected SSLConnectionContext obtainSslConnectionContext(
             final Connection connection) {
         SSLConnectionContext sslCtx = SSL_CTX_ATTR.get(connection);
@@ -937,6 +1132,19 @@ public class SSLBaseFilter extends BaseFilter {
         return sslCtx;
     }
     
+    /**
+     * @param sslEngineConfigurator {@link SSLEngineConfigurator} used to
+     *        create the connection's {@link SSLEngine}
+     * @return the {@link SSLRecordSizePolicy} to be applied to the connection
+     */
+    protected SSLRecordSizePolicy resolveRecordSizePolicy(
+            final SSLEngineConfigurator sslEngineConfigurator) {
+        final SSLRecordSizePolicy policy = recordSizePolicy;
+        return policy != null || sslEngineConfigurator == null
+                ? policy
+                : sslEngineConfigurator.getRecordSizePolicy();
+    }
+
     @SuppressWarnings("MethodMayBeStatic")
     protected SSLConnectionContext createSslConnectionContext(
             final Connection connection) {
@@ -1006,6 +1214,14 @@ public class SSLBaseFilter extends BaseFilter {
     }
 
     protected void notifyHandshakeStart(final Connection connection) {
+        final Object recording = FlightRecorder.beginTlsHandshake();
+        if (recording != null) {
+            final SSLConnectionContext sslCtx = getSslConnectionContext(connection);
+            if (sslCtx != null) {
+                sslCtx.handshakeRecording = recording;
+            }
+        }
+        
         if (!handshakeListeners.isEmpty()) {
             for (final HandshakeListener listener : handshakeListeners) {
                 listener.onStart(connection);
@@ -1016,6 +1232,8 @@ public class SSLBaseFilter extends BaseFilter {
     protected void notifyHandshakeComplete(final Connection<?> connection,
                                           final SSLEngine sslEngine) {
 
+        recordHandshakeEnd(connection, sslEngine, null);
+        
         if (!handshakeListeners.isEmpty()) {
             for (final HandshakeListener listener : handshakeListeners) {
                 listener.onComplete(connection);
@@ -1025,12 +1243,30 @@ public class SSLBaseFilter extends BaseFilter {
 
     protected void notifyHandshakeFailed(final Connection connection,
             final Throwable t) {
+        recordHandshakeEnd(connection, null, t);
+        
         if (!handshakeListeners.isEmpty()) {
             for (final HandshakeListener listener : handshakeListeners) {
                 listener.onFailure(connection, t);
             }
         }
     }
+
+    private static void recordHandshakeEnd(final Connection connection,
+            final SSLEngine sslEngine, final Throwable failure) {
+        if (!FlightRecorder.isAvailable()) {
+            return;
+        }
+        
+        final SSLConnectionContext sslCtx = getSslConnectionContext(connection);
+        if (sslCtx != null && sslCtx.handshakeRecording != null) {
+            final Object recording = sslCtx.handshakeRecording;
+            sslCtx.handshakeRecording = null;
+            FlightRecorder.endTlsHandshake(recording, connection,
+                    sslEngine != null ? sslEngine : sslCtx.getSslEngine(),
+                    failure);
+        }
+    }
     
     // ----------------------------------------------------------- Inner Classes
 
@@ -1136,6 +1372,8 @@ public class SSLBaseFilter extends BaseFilter {
                 final SSLEngine sslEngine = sslBaseFilter.serverSSLEngineConfigurator.createSSLEngine();
                 sslEngine.beginHandshake();
                 sslCtx.configure(sslEngine);
+                sslCtx.setRecordSizePolicy(sslBaseFilter.resolveRecordSizePolicy(
+                        sslBaseFilter.serverSSLEngineConfigurator));
                 sslBaseFilter.notifyHandshakeStart(connection);
             }
             
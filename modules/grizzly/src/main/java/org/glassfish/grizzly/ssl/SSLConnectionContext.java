@@ -99,6 +99,14 @@ public final class SSLConnectionContext {
     
     private final Connection connection;
     private FilterChain newConnectionFilterChain;
+    
+    private SSLRecordSizePolicy recordSizePolicy;
+    private SSLWriteCoalescer writeCoalescer;
+    // the number of plain text bytes wrapped since the handshake or the last idle reset
+    private long wrappedBytes;
+    private long lastWrapTimestamp;
+    // the TLS handshake flight recorder event, if it's being recorded
+    Object handshakeRecording;
 
     public SSLConnectionContext(Connection connection) {
         this.connection = connection;
@@ -148,6 +156,32 @@ public final class SSLConnectionContext {
         this.newConnectionFilterChain = newConnectionFilterChain;
     }
 
+    /**
+     * @return the {@link SSLRecordSizePolicy} applied to the outbound data,
+     * or <tt>null</tt> if the data is wrapped into max-size records
+     */
+    public SSLRecordSizePolicy getRecordSizePolicy() {
+        return recordSizePolicy;
+    }
+
+    /**
+     * Sets the {@link SSLRecordSizePolicy} applied to the outbound data.
+     * 
+     * @param recordSizePolicy {@link SSLRecordSizePolicy}, or <tt>null</tt>
+     *        to wrap the data into max-size records
+     */
+    public void setRecordSizePolicy(final SSLRecordSizePolicy recordSizePolicy) {
+        this.recordSizePolicy = recordSizePolicy;
+    }
+
+    SSLWriteCoalescer getWriteCoalescer() {
+        return writeCoalescer;
+    }
+
+    void setWriteCoalescer(final SSLWriteCoalescer writeCoalescer) {
+        this.writeCoalescer = writeCoalescer;
+    }
+
     Buffer resetLastOutputBuffer() {
         final Buffer tmp = lastOutputBuffer;
         lastOutputBuffer = null;
@@ -235,6 +269,10 @@ public final class SSLConnectionContext {
 
     Buffer wrapAll(final Buffer input,
             final Allocator allocator) throws SSLException {
+        if (recordSizePolicy != null) {
+            return wrapAllSized(input, allocator, recordSizePolicy);
+        }
+        
         final MemoryManager memoryManager = connection.getMemoryManager();
         
         final ByteBufferArray bba =
@@ -245,7 +283,8 @@ public final class SSLConnectionContext {
         Buffer output = null;
         SslResult result = null;
         try {
-            result = wrap(input, inputArray, inputArraySize, null, allocator);
+            result = wrap(input, inputArray, inputArraySize, null,
+                    netBufferSize, allocator);
             
             if (result.isError()) {
                 throw result.getError();
@@ -257,7 +296,7 @@ public final class SSLConnectionContext {
             if (input.hasRemaining()) {
                 do {
                     result = wrap(input, inputArray, inputArraySize,
-                            null, allocator);
+                            null, netBufferSize, allocator);
                     
                     if (result.isError()) {
                         throw result.getError();
@@ -285,12 +324,95 @@ public final class SSLConnectionContext {
         }
     }
     
+    /**
+     * Wraps the input into TLS records, limiting the plain text size of each
+     * record according to the {@link SSLRecordSizePolicy}.
+     */
+    private Buffer wrapAllSized(final Buffer input,
+            final Allocator allocator,
+            final SSLRecordSizePolicy policy) throws SSLException {
+        final MemoryManager memoryManager = connection.getMemoryManager();
+
+        final long now = System.currentTimeMillis();
+        if (policy.isIdleReset(now - lastWrapTimestamp)) {
+            wrappedBytes = 0;
+        }
+        lastWrapTimestamp = now;
+        
+        final int inputLimit = input.limit();
+        
+        Buffer output = null;
+        SslResult result = null;
+        try {
+            do {
+                final boolean isSmall =
+                        wrappedBytes < policy.getSmallRecordsThreshold()
+                        && policy.getSmallRecordSize() < appBufferSize;
+                final int outputSize;
+                
+                if (isSmall) {
+                    // restrict the plain text available to the SSLEngine,
+                    // so it produces a small record
+                    input.limit(Math.min(inputLimit,
+                            input.position() + policy.getSmallRecordSize()));
+                    outputSize = policy.getSmallRecordSize()
+                            + (netBufferSize - appBufferSize);
+                } else {
+                    outputSize = netBufferSize;
+                }
+                
+                final ByteBufferArray bba =
+                        input.toByteBufferArray(inputByteBufferArray);
+                try {
+                    result = wrap(input, bba.getArray(), bba.size(), null,
+                            outputSize, allocator);
+                } finally {
+                    // restoring the array may roll back the input position,
+                    // if the input shares its ByteBuffer with the array
+                    final int wrappedPosition = input.position();
+                    bba.restore();
+                    bba.reset();
+                    input.limit(inputLimit);
+                    input.position(wrappedPosition);
+                }
+                
+                if (result.isError()) {
+                    throw result.getError();
+                }
+                
+                final SSLEngineResult sslEngineResult = result.getSslEngineResult();
+                if (sslEngineResult.bytesProduced() > 0) {
+                    wrappedBytes += sslEngineResult.bytesConsumed();
+                    policy.onRecord(isSmall);
+                }
+
+                final Buffer newOutput = result.getOutput();
+                newOutput.trim();
+
+                output = output == null
+                        ? newOutput
+                        : Buffers.appendBuffers(memoryManager, output, newOutput);
+            } while (input.hasRemaining());
+            
+            return output;
+        } finally {
+            if (result != null && result.isError()) {
+                if (output != null) {
+                    output.dispose();
+                }
+                
+                result.getOutput().dispose();
+            }
+        }
+    }
+    
     private SslResult wrap(final Buffer input, final ByteBuffer[] inputArray,
             final int inputArraySize,
             Buffer output,
+            final int outputSize,
             final Allocator allocator) {
             
-        output = ensureBufferSize(output, netBufferSize, allocator);
+        output = ensureBufferSize(output, outputSize, allocator);
 
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.log(Level.FINE, "wrap engine: {0} input: {1} output: {2}",
@@ -322,7 +444,8 @@ public final class SSLConnectionContext {
         if (allocator != null && isOverflow) {
             updateBufferSizes();
             output = ensureBufferSize(output, netBufferSize, allocator);
-            return wrap(input, inputArray, inputArraySize, output, null);
+            return wrap(input, inputArray, inputArraySize, output,
+                    netBufferSize, null);
         } else if (isOverflow || status == Status.BUFFER_UNDERFLOW) {
             return new SslResult(output, new SSLException("SSL wrap error: " + status));
         }
@@ -81,6 +81,10 @@ public class SSLEngineConfigurator implements SSLEngineFactory {
      * True when requesting authentication.
      */
     protected boolean wantClientAuth;
+    /**
+     * TLS record size policy for the outbound data.
+     */
+    protected SSLRecordSizePolicy recordSizePolicy;
     /**
      * Has the enabled protocol configured.
      */
@@ -172,6 +176,7 @@ public class SSLEngineConfigurator implements SSLEngineFactory {
 
         this.isCipherConfigured = pattern.isCipherConfigured;
         this.isProtocolConfigured = pattern.isProtocolConfigured;
+        this.recordSizePolicy = pattern.recordSizePolicy;
     }
 
     protected SSLEngineConfigurator() {
@@ -348,6 +353,29 @@ public class SSLEngineConfigurator implements SSLEngineFactory {
         return this;
     }
 
+    /**
+     * @return the {@link SSLRecordSizePolicy} applied to the data sent over
+     * connections, which {@link SSLEngine}s are created by this configurator,
+     * or <tt>null</tt> if the data is always wrapped into max-size records
+     */
+    public SSLRecordSizePolicy getRecordSizePolicy() {
+        return recordSizePolicy;
+    }
+
+    /**
+     * Sets the {@link SSLRecordSizePolicy} applied to the data sent over
+     * connections, which {@link SSLEngine}s are created by this configurator.
+     * 
+     * @param recordSizePolicy {@link SSLRecordSizePolicy}, or <tt>null</tt>
+     *        to always wrap the data into max-size records
+     * @return this SSLEngineConfigurator
+     */
+    public SSLEngineConfigurator setRecordSizePolicy(
+            final SSLRecordSizePolicy recordSizePolicy) {
+        this.recordSizePolicy = recordSizePolicy;
+        return this;
+    }
+
     public boolean isCipherConfigured() {
         return isCipherConfigured;
     }
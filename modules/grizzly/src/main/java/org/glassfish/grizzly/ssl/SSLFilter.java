@@ -241,6 +241,8 @@ public class SSLFilter extends SSLBaseFilter {
             sslEngine = createClientSSLEngine(sslCtx, sslEngineConfigurator);
             
             sslCtx.configure(sslEngine);
+            sslCtx.setRecordSizePolicy(
+                    resolveRecordSizePolicy(sslEngineConfigurator));
         } else if (!isHandshaking(sslEngine)) { // if handshake haven't been started
             sslEngineConfigurator.configure(sslEngine);
         }
@@ -0,0 +1,216 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.ssl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dynamic TLS record sizing policy.
+ *
+ * By default {@link SSLConnectionContext} encrypts as much of the outbound
+ * data as fits into a single TLS record (up to 16KB of plain text), so the
+ * first response bytes on a fresh connection may be spread over several TCP
+ * segments, none of which can be decrypted by the peer until the whole record
+ * arrives. When the policy is set, the first
+ * {@link #getSmallRecordsThreshold()} bytes written after the handshake, or
+ * after the connection was idle for longer than {@link #getIdleResetTimeout(TimeUnit)},
+ * are split into small records of {@link #getSmallRecordSize()} bytes,
+ * which fit a typical TCP segment. Once the threshold is passed the
+ * connection switches to maximum-size records to minimize framing overhead
+ * for bulk transfers.
+ *
+ * The policy may be shared by many {@link org.glassfish.grizzly.Connection}s,
+ * the per-connection state is kept in {@link SSLConnectionContext}.
+ * 
+ * @see SSLEngineConfigurator#setRecordSizePolicy(SSLRecordSizePolicy)
+ * @see SSLBaseFilter#setRecordSizePolicy(SSLRecordSizePolicy)
+ */
+public class SSLRecordSizePolicy {
+    /**
+     * Default size of the small record plain text, chosen so the record
+     * including the TLS header, MAC and padding fits a 1500-byte MTU
+     * TCP segment.
+     */
+    public static final int DEFAULT_SMALL_RECORD_SIZE = 1400;
+    
+    /**
+     * Default number of bytes sent in small records before switching
+     * to the full-size records.
+     */
+    public static final int DEFAULT_SMALL_RECORDS_THRESHOLD = 64 * 1024;
+    
+    /**
+     * Default idle period after which the connection starts over with
+     * small records.
+     */
+    public static final long DEFAULT_IDLE_RESET_TIMEOUT_MILLIS = 1000;
+    
+    private volatile int smallRecordSize = DEFAULT_SMALL_RECORD_SIZE;
+    private volatile int smallRecordsThreshold = DEFAULT_SMALL_RECORDS_THRESHOLD;
+    private volatile long idleResetTimeoutMillis = DEFAULT_IDLE_RESET_TIMEOUT_MILLIS;
+    
+    private final AtomicLong smallRecordsCount = new AtomicLong();
+    private final AtomicLong fullRecordsCount = new AtomicLong();
+
+    /**
+     * @return the max plain text size of a small record
+     */
+    public int getSmallRecordSize() {
+        return smallRecordSize;
+    }
+
+    /**
+     * Sets the max plain text size of a small record.
+     * 
+     * @param smallRecordSize the max plain text size of a small record
+     * @return this SSLRecordSizePolicy
+     */
+    public SSLRecordSizePolicy setSmallRecordSize(final int smallRecordSize) {
+        if (smallRecordSize <= 0) {
+            throw new IllegalArgumentException("smallRecordSize has to be positive");
+        }
+        
+        this.smallRecordSize = smallRecordSize;
+        return this;
+    }
+
+    /**
+     * @return the number of bytes a connection sends in small records,
+     * before switching to full-size records
+     */
+    public int getSmallRecordsThreshold() {
+        return smallRecordsThreshold;
+    }
+
+    /**
+     * Sets the number of bytes a connection sends in small records,
+     * before switching to full-size records. <tt>0</tt> means small records
+     * are never used.
+     * 
+     * @param smallRecordsThreshold the number of bytes
+     * @return this SSLRecordSizePolicy
+     */
+    public SSLRecordSizePolicy setSmallRecordsThreshold(
+            final int smallRecordsThreshold) {
+        if (smallRecordsThreshold < 0) {
+            throw new IllegalArgumentException("smallRecordsThreshold can't be negative");
+        }
+        
+        this.smallRecordsThreshold = smallRecordsThreshold;
+        return this;
+    }
+
+    /**
+     * @param timeUnit {@link TimeUnit}
+     * @return the idle period after which a connection starts over with
+     * small records, or <tt>-1</tt> if idle connections are never reset
+     */
+    public long getIdleResetTimeout(final TimeUnit timeUnit) {
+        if (idleResetTimeoutMillis < 0) {
+            return -1;
+        }
+        
+        return timeUnit.convert(idleResetTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets the idle period after which a connection starts over with
+     * small records.
+     * 
+     * @param idleResetTimeout the idle period, or a negative value if idle
+     *        connections should never be reset
+     * @param timeUnit {@link TimeUnit}
+     * @return this SSLRecordSizePolicy
+     */
+    public SSLRecordSizePolicy setIdleResetTimeout(final long idleResetTimeout,
+            final TimeUnit timeUnit) {
+        this.idleResetTimeoutMillis = idleResetTimeout < 0
+                ? -1
+                : TimeUnit.MILLISECONDS.convert(idleResetTimeout, timeUnit);
+        return this;
+    }
+
+    /**
+     * @return the number of small records emitted so far
+     */
+    public long getSmallRecordsCount() {
+        return smallRecordsCount.get();
+    }
+
+    /**
+     * @return the number of full-size records emitted so far
+     */
+    public long getFullRecordsCount() {
+        return fullRecordsCount.get();
+    }
+
+    /**
+     * Resets the record counters.
+     */
+    public void resetCounters() {
+        smallRecordsCount.set(0);
+        fullRecordsCount.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "SSLRecordSizePolicy{"
+                + "smallRecordSize=" + smallRecordSize
+                + ", smallRecordsThreshold=" + smallRecordsThreshold
+                + ", idleResetTimeoutMillis=" + idleResetTimeoutMillis
+                + ", smallRecordsCount=" + smallRecordsCount
+                + ", fullRecordsCount=" + fullRecordsCount
+                + '}';
+    }
+    
+    boolean isIdleReset(final long idleMillis) {
+        return idleResetTimeoutMillis >= 0 && idleMillis > idleResetTimeoutMillis;
+    }
+    
+    void onRecord(final boolean isSmall) {
+        if (isSmall) {
+            smallRecordsCount.incrementAndGet();
+        } else {
+            fullRecordsCount.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.ssl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.CompletionHandler;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Context;
+import org.glassfish.grizzly.IOEventLifeCycleListener;
+import org.glassfish.grizzly.WriteResult;
+import org.glassfish.grizzly.asyncqueue.AsyncWriteQueueRecord;
+import org.glassfish.grizzly.asyncqueue.TaskQueue;
+import org.glassfish.grizzly.filterchain.FilterChain;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.nio.NIOConnection;
+
+/**
+ * Per-connection state of the {@link SSLBaseFilter} write coalescing.
+ * 
+ * Small plain text writes, issued by the thread which is processing
+ * the connection's read event (a "pass"), are accumulated here and encrypted
+ * at once, when either the accumulated size reaches the filter's threshold,
+ * or the pass is over. Any other write flushes the accumulated data first,
+ * so the writes order is preserved.
+ * 
+ * The accumulated bytes are reserved in the connection's async write queue,
+ * so {@link org.glassfish.grizzly.asyncqueue.AsyncQueueWriter#canWrite(Connection)}
+ * takes them into account. The reservation is released right before the
+ * accumulated data is written. Each coalesced write's {@link CompletionHandler}
+ * is notified with its own {@link WriteResult}.
+ * 
+ * All the methods, except the {@link IOEventLifeCycleListener} ones, have to
+ * be called in the synchronized(connection) {...} scope.
+ */
+final class SSLWriteCoalescer extends IOEventLifeCycleListener.Adapter {
+    private final SSLBaseFilter sslBaseFilter;
+    private final SSLConnectionContext sslCtx;
+    
+    private Thread passThread;
+    private FilterChain filterChain;
+    private int filterIdx;
+    
+    private Buffer pendingBuffer;
+    private final List<CoalescedWrite> pendingWrites =
+            new ArrayList<CoalescedWrite>(4);
+    // the number of bytes reserved in the async write queue
+    private int reservedBytes;
+
+    SSLWriteCoalescer(final SSLBaseFilter sslBaseFilter,
+            final SSLConnectionContext sslCtx) {
+        this.sslBaseFilter = sslBaseFilter;
+        this.sslCtx = sslCtx;
+    }
+
+    SSLConnectionContext getSslConnectionContext() {
+        return sslCtx;
+    }
+    
+    /**
+     * Marks the current thread as processing the read event.
+     * 
+     * @return <tt>true</tt> if the pass has just started and the
+     *          coalescer has to be registered as a life-cycle listener,
+     *          or <tt>false</tt> if it's already registered
+     */
+    boolean beginPass(final FilterChainContext ctx) {
+        final Thread currentThread = Thread.currentThread();
+        if (passThread == currentThread) {
+            return false;
+        }
+        
+        passThread = currentThread;
+        filterChain = ctx.getFilterChain();
+        filterIdx = ctx.getFilterIdx();
+        return true;
+    }
+
+    boolean isInPass() {
+        return passThread == Thread.currentThread();
+    }
+
+    int getPendingBytes() {
+        return pendingBuffer != null ? pendingBuffer.position() : 0;
+    }
+    
+    /**
+     * Copies the message into the pending buffer.
+     */
+    void add(final MemoryManager memoryManager, final Buffer message,
+            final CompletionHandler<WriteResult> completionHandler,
+            final int threshold) {
+        final int size = message.remaining();
+        
+        if (pendingBuffer == null) {
+            pendingBuffer = memoryManager.allocate(Math.max(threshold, size));
+        } else if (pendingBuffer.remaining() < size) {
+            pendingBuffer = memoryManager.reallocate(pendingBuffer,
+                    pendingBuffer.position() + Math.max(threshold, size));
+        }
+        
+        pendingBuffer.put(message);
+        message.tryDispose();
+        
+        final TaskQueue<AsyncWriteQueueRecord> writeQueue = getAsyncWriteQueue();
+        if (writeQueue != null) {
+            writeQueue.reserveSpace(size);
+            reservedBytes += size;
+        }
+        
+        if (completionHandler != null) {
+            pendingWrites.add(
+                    new CoalescedWrite(completionHandler, message, size));
+        }
+    }
+    
+    /**
+     * Releases the bytes reserved in the async write queue, so the following
+     * write is not queued behind them. The registered
+     * {@link org.glassfish.grizzly.WriteHandler}s are notified once that
+     * write is processed.
+     */
+    void releaseReservedSpace() {
+        if (reservedBytes == 0) {
+            return;
+        }
+        
+        final TaskQueue<AsyncWriteQueueRecord> writeQueue = getAsyncWriteQueue();
+        if (writeQueue != null) {
+            writeQueue.releaseSpace(reservedBytes);
+        }
+        reservedBytes = 0;
+    }
+    
+    /**
+     * @return the accumulated plain text, ready to be wrapped, or
+     *          <tt>null</tt> if there is nothing to flush
+     */
+    Buffer takePendingBuffer() {
+        final Buffer buffer = pendingBuffer;
+        pendingBuffer = null;
+        
+        if (buffer != null) {
+            buffer.flip();
+        }
+        
+        return buffer;
+    }
+    
+    /**
+     * @return the {@link CompletionHandler} to be notified once the
+     *          accumulated data is written, or <tt>null</tt>
+     */
+    CompletionHandler<WriteResult> takeCompletionHandler() {
+        final int size = pendingWrites.size();
+        if (size == 0) {
+            return null;
+        }
+        
+        final CoalescedWrite[] writes =
+                pendingWrites.toArray(new CoalescedWrite[size]);
+        pendingWrites.clear();
+        
+        return new CoalescedCompletionHandler(sslCtx.getConnection(), writes);
+    }
+    
+    private TaskQueue<AsyncWriteQueueRecord> getAsyncWriteQueue() {
+        final Connection connection = sslCtx.getConnection();
+        return connection instanceof NIOConnection
+                ? ((NIOConnection) connection).getAsyncWriteQueue()
+                : null;
+    }
+    
+    private void endPass() throws IOException {
+        final Connection connection = sslCtx.getConnection();
+        
+        //noinspection SynchronizationOnLocalVariableOrMethodParameter
+        synchronized (connection) {
+            if (passThread == Thread.currentThread()) {
+                passThread = null;
+            }
+            
+            if (pendingBuffer == null) {
+                return;
+            }
+            
+            final FilterChainContext writeCtx =
+                    filterChain.obtainFilterChainContext(connection,
+                            filterIdx, filterIdx, filterIdx);
+            try {
+                sslBaseFilter.flushCoalescedWrites(writeCtx, this);
+            } finally {
+                writeCtx.completeAndRecycle();
+            }
+        }
+    }
+    
+    // ----------------------------------- Methods from IOEventLifeCycleListener
+
+    @Override
+    public void onContextSuspend(final Context context) throws IOException {
+        endPass();
+    }
+
+    @Override
+    public void onComplete(final Context context, final Object data)
+            throws IOException {
+        endPass();
+    }
+
+    @Override
+    public void onLeave(final Context context) throws IOException {
+        endPass();
+    }
+
+    @Override
+    public void onTerminate(final Context context) throws IOException {
+        endPass();
+    }
+
+    @Override
+    public void onReregister(final Context context) throws IOException {
+        endPass();
+    }
+
+    @Override
+    public void onError(final Context context, final Object description)
+            throws IOException {
+        endPass();
+    }
+
+    @Override
+    public void onNotRun(final Context context) throws IOException {
+        endPass();
+    }
+
+    /**
+     * A coalesced write, which has a {@link CompletionHandler} to be notified.
+     */
+    private static final class CoalescedWrite {
+        private final CompletionHandler<WriteResult> completionHandler;
+        private final Object message;
+        private final int size;
+
+        CoalescedWrite(final CompletionHandler<WriteResult> completionHandler,
+                final Object message, final int size) {
+            this.completionHandler = completionHandler;
+            this.message = message;
+            this.size = size;
+        }
+    }
+    
+    /**
+     * Notifies the {@link CompletionHandler}s of all the coalesced writes
+     * about the result of the single write they were merged into. Each
+     * {@link CompletionHandler} gets a {@link WriteResult} carrying its own
+     * message and size.
+     */
+    private static final class CoalescedCompletionHandler
+            implements CompletionHandler<WriteResult> {
+        private final Connection connection;
+        private final CoalescedWrite[] writes;
+
+        CoalescedCompletionHandler(final Connection connection,
+                final CoalescedWrite[] writes) {
+            this.connection = connection;
+            this.writes = writes;
+        }
+
+        @Override
+        public void cancelled() {
+            for (CoalescedWrite write : writes) {
+                write.completionHandler.cancelled();
+            }
+        }
+
+        @Override
+        public void failed(final Throwable throwable) {
+            for (CoalescedWrite write : writes) {
+                write.completionHandler.failed(throwable);
+            }
+        }
+
+        @Override
+        public void completed(final WriteResult result) {
+            for (CoalescedWrite write : writes) {
+                write.completionHandler.completed(toWriteResult(write, result));
+            }
+        }
+
+        @Override
+        public void updated(final WriteResult result) {
+            // the coalesced writes are reported once they're completed
+        }
+
+        @SuppressWarnings("unchecked")
+        private WriteResult toWriteResult(final CoalescedWrite write,
+                final WriteResult result) {
+            return WriteResult.create(connection, write.message,
+                    result.getDstAddress(), write.size);
+        }
+    }
+}
@@ -48,6 +48,7 @@ import java.util.logging.Logger;
 import org.glassfish.grizzly.*;
 import org.glassfish.grizzly.asyncqueue.AsyncQueue;
 import org.glassfish.grizzly.localization.LogMessages;
+import org.glassfish.grizzly.monitoring.FlightRecorder;
 import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
 
 /**
@@ -109,11 +110,36 @@ public abstract class AbstractIOStrategy implements IOStrategy {
                                       final IOEvent ioEvent,
                                       final IOEventLifeCycleListener listener,
                                       final Logger logger) {
+        fireIOEvent(connection, ioEvent, listener, logger, 0);
+    }
+
+    /**
+     * Fires the {@link IOEvent}, which has been queued for processing.
+     * 
+     * @param connection the {@link Connection}
+     * @param ioEvent the {@link IOEvent}
+     * @param listener the {@link IOEventLifeCycleListener}
+     * @param logger the {@link Logger}
+     * @param queuedTimeStamp the value returned by
+     *      {@link FlightRecorder#ioEventQueued()}, when the {@link IOEvent}
+     *      was queued, or <tt>0</tt>
+     */
+    protected static void fireIOEvent(final Connection connection,
+                                      final IOEvent ioEvent,
+                                      final IOEventLifeCycleListener listener,
+                                      final Logger logger,
+                                      final long queuedTimeStamp) {
+        final Object recording = FlightRecorder.beginIOEvent();
         try {
             connection.getTransport().fireIOEvent(ioEvent, connection, listener);
         } catch (Exception e) {
             logger.log(Level.WARNING, LogMessages.WARNING_GRIZZLY_IOSTRATEGY_UNCAUGHT_EXCEPTION(), e);
             connection.closeSilently();
+        } finally {
+            if (recording != null) {
+                FlightRecorder.endIOEvent(recording, connection, ioEvent,
+                        queuedTimeStamp);
+            }
         }
 
     }
@@ -47,6 +47,7 @@ import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.IOEvent;
 import org.glassfish.grizzly.IOEventLifeCycleListener;
 import org.glassfish.grizzly.Processor;
+import org.glassfish.grizzly.monitoring.FlightRecorder;
 import java.util.logging.Logger;
 
 /**
@@ -118,11 +119,22 @@ public final class WorkerThreadIOStrategy extends AbstractIOStrategy {
         fireIOEvent(connection, ioEvent, lifeCycleListener, logger);
 
     }
+
+    private static void run0(final Connection connection,
+                             final IOEvent ioEvent,
+                             final IOEventLifeCycleListener lifeCycleListener,
+                             final long queuedTimeStamp) {
+
+        fireIOEvent(connection, ioEvent, lifeCycleListener, logger,
+                queuedTimeStamp);
+
+    }
     
     private static final class WorkerThreadRunnable implements Runnable {
         final Connection connection;
         final IOEvent ioEvent;
         final IOEventLifeCycleListener lifeCycleListener;
+        final long queuedTimeStamp;
         
         private WorkerThreadRunnable(final Connection connection,
                 final IOEvent ioEvent,
@@ -130,12 +142,13 @@ public final class WorkerThreadIOStrategy extends AbstractIOStrategy {
             this.connection = connection;
             this.ioEvent = ioEvent;
             this.lifeCycleListener = lifeCycleListener;
+            this.queuedTimeStamp = FlightRecorder.ioEventQueued();
             
         }
 
         @Override
         public void run() {
-            run0(connection, ioEvent, lifeCycleListener);
+            run0(connection, ioEvent, lifeCycleListener, queuedTimeStamp);
         }        
     }
 
@@ -0,0 +1,511 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+import org.glassfish.grizzly.CloseType;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.IOEvent;
+import org.glassfish.grizzly.filterchain.Filter;
+
+/**
+ * Entry point for the Java Flight Recorder events, emitted by Grizzly
+ * core and HTTP modules.
+ * 
+ * This is the Java 11 implementation, packaged in the multi-release part
+ * of the framework jar. The events belong to the "Grizzly" category and
+ * can be enabled, disabled and tuned (duration thresholds) like any other
+ * <tt>jdk.jfr</tt> event. While an event is not enabled in any active
+ * recording the corresponding method returns after a single flag check.
+ * {@link #isEnabled()} tracks the running recordings, so the hot paths can
+ * skip the event bracketing altogether while nothing is being recorded.
+ * 
+ * Events can be switched off completely using the
+ * <tt>org.glassfish.grizzly.monitoring.FlightRecorder.disabled</tt> system
+ * property, or when the runtime has no <tt>jdk.jfr</tt> module.
+ * 
+ * @since 2.4.3
+ */
+public final class FlightRecorder {
+    private static final String DISABLED_PROPERTY =
+            FlightRecorder.class.getName() + ".disabled";
+
+    private static final boolean AVAILABLE = isJfrPresent()
+            && !Boolean.getBoolean(DISABLED_PROPERTY);
+
+    // true, if there is at least one running recording
+    private static volatile boolean isRecording;
+
+    static {
+        if (AVAILABLE) {
+            Events.trackRecordings();
+        }
+    }
+
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    public static boolean isEnabled() {
+        return isRecording;
+    }
+
+    public static void connectionAccepted(final Connection serverConnection,
+            final Connection connection) {
+        if (AVAILABLE) {
+            Events.connectionAccepted(serverConnection, connection);
+        }
+    }
+
+    public static void connectionClosed(final Connection connection,
+            final CloseType type) {
+        if (AVAILABLE) {
+            Events.connectionClosed(connection, type);
+        }
+    }
+
+    public static long ioEventQueued() {
+        return AVAILABLE && Events.IO_EVENT_DISPATCH.isEnabled()
+                ? System.nanoTime()
+                : 0;
+    }
+
+    public static Object beginIOEvent() {
+        return AVAILABLE ? Events.beginIOEvent() : null;
+    }
+
+    public static void endIOEvent(final Object recording,
+            final Connection connection, final IOEvent ioEvent,
+            final long queuedTimeStamp) {
+        if (recording != null) {
+            Events.endIOEvent(recording, connection, ioEvent, queuedTimeStamp);
+        }
+    }
+
+    public static Object beginFilter() {
+        return AVAILABLE ? Events.beginFilter() : null;
+    }
+
+    public static void endFilter(final Object recording,
+            final Connection connection, final Filter filter,
+            final String operation) {
+        if (recording != null) {
+            Events.endFilter(recording, connection, filter, operation);
+        }
+    }
+
+    public static void writeQueueOverflow(final Connection connection,
+            final int pendingBytes, final int maxPendingBytes) {
+        if (AVAILABLE) {
+            Events.writeQueueOverflow(connection, pendingBytes, maxPendingBytes);
+        }
+    }
+
+    public static Object beginTlsHandshake() {
+        return AVAILABLE ? Events.beginTlsHandshake() : null;
+    }
+
+    public static void endTlsHandshake(final Object recording,
+            final Connection connection, final SSLEngine sslEngine,
+            final Throwable failure) {
+        if (recording != null) {
+            Events.endTlsHandshake(recording, connection, sslEngine, failure);
+        }
+    }
+
+    public static Object beginHttpRequest() {
+        return AVAILABLE ? Events.beginHttpRequest() : null;
+    }
+
+    public static void endHttpRequest(final Object recording,
+            final Connection connection, final String method,
+            final String uri, final int status) {
+        if (recording != null) {
+            Events.endHttpRequest(recording, connection, method, uri, status);
+        }
+    }
+
+    private static boolean isJfrPresent() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    private FlightRecorder() {
+    }
+
+    /**
+     * Holder of the <tt>jdk.jfr</tt> dependent code, which is loaded only
+     * if the Flight Recorder is available.
+     */
+    private static final class Events {
+        // IOEvent dispatches, which waited in a worker queue for longer
+        // than that, are recorded regardless of their processing time
+        private static final long QUEUE_WAIT_THRESHOLD_NANOS =
+                TimeUnit.MILLISECONDS.toNanos(1);
+
+        static final EventType CONNECTION_ACCEPT =
+                EventType.getEventType(ConnectionAcceptEvent.class);
+        static final EventType CONNECTION_CLOSE =
+                EventType.getEventType(ConnectionCloseEvent.class);
+        static final EventType IO_EVENT_DISPATCH =
+                EventType.getEventType(IOEventDispatchEvent.class);
+        static final EventType FILTER_EXECUTION =
+                EventType.getEventType(FilterExecutionEvent.class);
+        static final EventType WRITE_QUEUE_OVERFLOW =
+                EventType.getEventType(WriteQueueOverflowEvent.class);
+        static final EventType TLS_HANDSHAKE =
+                EventType.getEventType(TlsHandshakeEvent.class);
+        static final EventType HTTP_REQUEST =
+                EventType.getEventType(HttpRequestEvent.class);
+
+        // the running recordings, guarded by itself
+        private static final Set<Recording> RUNNING_RECORDINGS =
+                Collections.newSetFromMap(new IdentityHashMap<Recording, Boolean>());
+
+        static void trackRecordings() {
+            // doesn't initialize the Flight Recorder, the listener is
+            // notified about the recordings once it's initialized
+            jdk.jfr.FlightRecorder.addListener(new FlightRecorderListener() {
+                @Override
+                public void recordingStateChanged(final Recording recording) {
+                    synchronized (RUNNING_RECORDINGS) {
+                        if (recording.getState() == RecordingState.RUNNING) {
+                            RUNNING_RECORDINGS.add(recording);
+                        } else {
+                            RUNNING_RECORDINGS.remove(recording);
+                        }
+                        
+                        isRecording = !RUNNING_RECORDINGS.isEmpty();
+                    }
+                }
+            });
+        }
+
+        static void connectionAccepted(final Connection serverConnection,
+                final Connection connection) {
+            if (CONNECTION_ACCEPT.isEnabled()) {
+                final ConnectionAcceptEvent event = new ConnectionAcceptEvent();
+                event.localAddress = String.valueOf(serverConnection.getLocalAddress());
+                event.peerAddress = String.valueOf(connection.getPeerAddress());
+                event.commit();
+            }
+        }
+
+        static void connectionClosed(final Connection connection,
+                final CloseType type) {
+            if (CONNECTION_CLOSE.isEnabled()) {
+                final ConnectionCloseEvent event = new ConnectionCloseEvent();
+                event.localAddress = String.valueOf(connection.getLocalAddress());
+                event.peerAddress = String.valueOf(connection.getPeerAddress());
+                event.closeType = String.valueOf(type);
+                event.commit();
+            }
+        }
+
+        static Object beginIOEvent() {
+            if (!IO_EVENT_DISPATCH.isEnabled()) {
+                return null;
+            }
+
+            final IOEventDispatchEvent event = new IOEventDispatchEvent();
+            event.startNanos = System.nanoTime();
+            event.begin();
+            return event;
+        }
+
+        static void endIOEvent(final Object recording,
+                final Connection connection, final IOEvent ioEvent,
+                final long queuedTimeStamp) {
+            final IOEventDispatchEvent event = (IOEventDispatchEvent) recording;
+            event.end();
+            final long queueWait = queuedTimeStamp != 0
+                    ? event.startNanos - queuedTimeStamp
+                    : 0;
+            if (event.shouldCommit() || queueWait >= QUEUE_WAIT_THRESHOLD_NANOS) {
+                event.peerAddress = String.valueOf(connection.getPeerAddress());
+                event.ioEvent = String.valueOf(ioEvent);
+                event.queueWait = Math.max(queueWait, 0);
+                event.commit();
+            }
+        }
+
+        static Object beginFilter() {
+            if (!FILTER_EXECUTION.isEnabled()) {
+                return null;
+            }
+
+            final FilterExecutionEvent event = new FilterExecutionEvent();
+            event.begin();
+            return event;
+        }
+
+        static void endFilter(final Object recording,
+                final Connection connection, final Filter filter,
+                final String operation) {
+            final FilterExecutionEvent event = (FilterExecutionEvent) recording;
+            event.end();
+            if (event.shouldCommit()) {
+                event.peerAddress = String.valueOf(connection.getPeerAddress());
+                event.filter = filter.getClass().getName();
+                event.operation = operation;
+                event.commit();
+            }
+        }
+
+        static void writeQueueOverflow(final Connection connection,
+                final int pendingBytes, final int maxPendingBytes) {
+            if (WRITE_QUEUE_OVERFLOW.isEnabled()) {
+                final WriteQueueOverflowEvent event = new WriteQueueOverflowEvent();
+                event.peerAddress = String.valueOf(connection.getPeerAddress());
+                event.pendingBytes = pendingBytes;
+                event.maxPendingBytes = maxPendingBytes;
+                event.commit();
+            }
+        }
+
+        static Object beginTlsHandshake() {
+            if (!TLS_HANDSHAKE.isEnabled()) {
+                return null;
+            }
+
+            final TlsHandshakeEvent event = new TlsHandshakeEvent();
+            event.begin();
+            return event;
+        }
+
+        static void endTlsHandshake(final Object recording,
+                final Connection connection, final SSLEngine sslEngine,
+                final Throwable failure) {
+            final TlsHandshakeEvent event = (TlsHandshakeEvent) recording;
+            event.end();
+            if (event.shouldCommit()) {
+                event.peerAddress = String.valueOf(connection.getPeerAddress());
+                if (sslEngine != null) {
+                    event.clientMode = sslEngine.getUseClientMode();
+                    final SSLSession session = sslEngine.getSession();
+                    if (session != null) {
+                        event.protocol = session.getProtocol();
+                        event.cipherSuite = session.getCipherSuite();
+                    }
+                }
+                event.success = failure == null;
+                if (failure != null) {
+                    event.failure = failure.toString();
+                }
+                event.commit();
+            }
+        }
+
+        static Object beginHttpRequest() {
+            if (!HTTP_REQUEST.isEnabled()) {
+                return null;
+            }
+
+            final HttpRequestEvent event = new HttpRequestEvent();
+            event.begin();
+            return event;
+        }
+
+        static void endHttpRequest(final Object recording,
+                final Connection connection, final String method,
+                final String uri, final int status) {
+            final HttpRequestEvent event = (HttpRequestEvent) recording;
+            event.end();
+            if (event.shouldCommit()) {
+                event.peerAddress = String.valueOf(connection.getPeerAddress());
+                event.method = method;
+                event.uri = uri;
+                event.status = status;
+                event.commit();
+            }
+        }
+    } // END Events
+
+    @Name("org.glassfish.grizzly.ConnectionAccept")
+    @Label("Connection Accept")
+    @Category({"Grizzly", "Connection"})
+    @StackTrace(false)
+    static final class ConnectionAcceptEvent extends Event {
+        @Label("Local Address")
+        String localAddress;
+
+        @Label("Peer Address")
+        String peerAddress;
+    }
+
+    @Name("org.glassfish.grizzly.ConnectionClose")
+    @Label("Connection Close")
+    @Category({"Grizzly", "Connection"})
+    @StackTrace(false)
+    static final class ConnectionCloseEvent extends Event {
+        @Label("Local Address")
+        String localAddress;
+
+        @Label("Peer Address")
+        String peerAddress;
+
+        @Label("Close Type")
+        String closeType;
+    }
+
+    @Name("org.glassfish.grizzly.IOEventDispatch")
+    @Label("IOEvent Dispatch")
+    @Description("IOEvent processing by the connection FilterChain. Dispatches,"
+            + " which waited in the worker thread pool queue for 1 ms or more,"
+            + " are recorded regardless of the threshold")
+    @Category({"Grizzly", "Connection"})
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static final class IOEventDispatchEvent extends Event {
+        @Label("Peer Address")
+        String peerAddress;
+
+        @Label("IOEvent")
+        String ioEvent;
+
+        @Label("Queue Wait")
+        @Description("Time spent in the worker thread pool queue")
+        @Timespan(Timespan.NANOSECONDS)
+        long queueWait;
+
+        // not recorded, used to calculate the queue wait
+        transient long startNanos;
+    }
+
+    @Name("org.glassfish.grizzly.FilterExecution")
+    @Label("Filter Execution")
+    @Category({"Grizzly", "Filter Chain"})
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static final class FilterExecutionEvent extends Event {
+        @Label("Peer Address")
+        String peerAddress;
+
+        @Label("Filter")
+        String filter;
+
+        @Label("Operation")
+        String operation;
+    }
+
+    @Name("org.glassfish.grizzly.WriteQueueOverflow")
+    @Label("Write Queue Overflow")
+    @Description("Connection asynchronous write queue has grown over its limit")
+    @Category({"Grizzly", "Connection"})
+    static final class WriteQueueOverflowEvent extends Event {
+        @Label("Peer Address")
+        String peerAddress;
+
+        @Label("Pending Bytes")
+        @DataAmount
+        int pendingBytes;
+
+        @Label("Max Pending Bytes")
+        @DataAmount
+        int maxPendingBytes;
+    }
+
+    @Name("org.glassfish.grizzly.TlsHandshake")
+    @Label("TLS Handshake")
+    @Category({"Grizzly", "TLS"})
+    @StackTrace(false)
+    static final class TlsHandshakeEvent extends Event {
+        @Label("Peer Address")
+        String peerAddress;
+
+        @Label("Client Mode")
+        boolean clientMode;
+
+        @Label("Protocol")
+        String protocol;
+
+        @Label("Cipher Suite")
+        String cipherSuite;
+
+        @Label("Success")
+        boolean success;
+
+        @Label("Failure")
+        String failure;
+    }
+
+    @Name("org.glassfish.grizzly.HttpRequest")
+    @Label("HTTP Request")
+    @Description("HTTP request processing, from the moment the request header"
+            + " is parsed till the response is completed")
+    @Category({"Grizzly", "HTTP"})
+    @StackTrace(false)
+    static final class HttpRequestEvent extends Event {
+        @Label("Peer Address")
+        String peerAddress;
+
+        @Label("Method")
+        String method;
+
+        @Label("URI")
+        String uri;
+
+        @Label("Status")
+        int status;
+    }
+}
@@ -40,6 +40,7 @@
 
 package org.glassfish.grizzly;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
@@ -76,10 +77,12 @@ import org.glassfish.grizzly.filterchain.TransportFilter;
 import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.impl.SafeFutureImpl;
 import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.nio.NIOConnection;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
 import org.glassfish.grizzly.ssl.SSLContextConfigurator;
 import org.glassfish.grizzly.ssl.SSLEngineConfigurator;
 import org.glassfish.grizzly.ssl.SSLFilter;
+import org.glassfish.grizzly.ssl.SSLRecordSizePolicy;
 import org.glassfish.grizzly.ssl.SSLStreamReader;
 import org.glassfish.grizzly.ssl.SSLStreamWriter;
 import org.glassfish.grizzly.streams.StreamReader;
@@ -89,6 +92,8 @@ import org.glassfish.grizzly.utils.EchoFilter;
 import org.glassfish.grizzly.utils.StringFilter;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.net.ssl.KeyManager;
@@ -397,6 +402,258 @@ public class SSLTest {
 
     }
 
+    @Test
+    public void testRecordSizePolicy() throws Exception {
+        final int responseSize = 40000;
+
+        final SSLRecordSizePolicy policy = new SSLRecordSizePolicy()
+                .setSmallRecordSize(1000)
+                .setSmallRecordsThreshold(8192)
+                .setIdleResetTimeout(1, TimeUnit.MINUTES);
+
+        Connection connection = null;
+        SSLContextConfigurator sslContextConfigurator = createSSLContextConfigurator();
+        SSLEngineConfigurator clientSSLEngineConfigurator = null;
+        SSLEngineConfigurator serverSSLEngineConfigurator = null;
+
+        if (sslContextConfigurator.validateConfiguration(true)) {
+            clientSSLEngineConfigurator =
+                    new SSLEngineConfigurator(createSSLContext(),
+                                              true,
+                                              false,
+                                              false);
+            serverSSLEngineConfigurator =
+                    new SSLEngineConfigurator(sslContextConfigurator.createSSLContext(true),
+                                              false,
+                                              false,
+                                              false)
+                            .setRecordSizePolicy(policy);
+        } else {
+            fail("Failed to validate SSLContextConfiguration.");
+        }
+
+        FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(new SSLFilter(serverSSLEngineConfigurator, null));
+        filterChainBuilder.add(new BaseFilter() {
+            @Override
+            public NextAction handleRead(final FilterChainContext ctx)
+                    throws IOException {
+                final Buffer request = ctx.getMessage();
+                request.tryDispose();
+
+                ctx.write(Buffers.wrap(ctx.getMemoryManager(),
+                        new byte[responseSize]));
+                return ctx.getStopAction();
+            }
+        });
+
+        TCPNIOTransport transport =
+                TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(filterChainBuilder.build());
+        transport.setMemoryManager(manager);
+
+        final AtomicReference<FutureImpl<Integer>> responseFuture =
+                new AtomicReference<FutureImpl<Integer>>();
+
+        TCPNIOTransport cTransport =
+                TCPNIOTransportBuilder.newInstance().build();
+        FilterChainBuilder clientChain = FilterChainBuilder.stateless();
+        clientChain.add(new TransportFilter());
+        clientChain.add(new SSLFilter(null, clientSSLEngineConfigurator));
+        clientChain.add(new BaseFilter() {
+            private int received;
+
+            @Override
+            public NextAction handleRead(final FilterChainContext ctx)
+                    throws IOException {
+                final Buffer chunk = ctx.getMessage();
+                received += chunk.remaining();
+                chunk.tryDispose();
+
+                if (received >= responseSize) {
+                    responseFuture.get().result(received);
+                    received = 0;
+                }
+
+                return ctx.getStopAction();
+            }
+        });
+        cTransport.setProcessor(clientChain.build());
+        cTransport.setMemoryManager(manager);
+
+        try {
+            transport.bind(PORT);
+            transport.start();
+
+            cTransport.start();
+
+            Future<Connection> future = cTransport.connect("localhost", PORT);
+            connection = future.get(10, TimeUnit.SECONDS);
+
+            // the first 8192 bytes go in 1000-byte records, the rest in
+            // max-size (16384) records
+            responseFuture.set(Futures.<Integer>createSafeFuture());
+            connection.write(Buffers.wrap(manager, "go"));
+            assertEquals(responseSize,
+                    (int) responseFuture.get().get(10, TimeUnit.SECONDS));
+            assertEquals(9, policy.getSmallRecordsCount());
+            assertEquals(2, policy.getFullRecordsCount());
+
+            // no idle gap - max-size records only
+            responseFuture.set(Futures.<Integer>createSafeFuture());
+            connection.write(Buffers.wrap(manager, "go"));
+            assertEquals(responseSize,
+                    (int) responseFuture.get().get(10, TimeUnit.SECONDS));
+            assertEquals(9, policy.getSmallRecordsCount());
+            assertEquals(5, policy.getFullRecordsCount());
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+            cTransport.shutdownNow();
+            transport.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void testWriteCoalescing() throws Exception {
+        final int chunksNum = 10;
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < chunksNum; i++) {
+            expected.append("chunk-").append(i).append(';');
+        }
+
+        // count the TLS records produced by the server
+        final SSLRecordSizePolicy policy = new SSLRecordSizePolicy()
+                .setSmallRecordsThreshold(0);
+
+        Connection connection = null;
+        SSLContextConfigurator sslContextConfigurator = createSSLContextConfigurator();
+        SSLEngineConfigurator clientSSLEngineConfigurator = null;
+        SSLEngineConfigurator serverSSLEngineConfigurator = null;
+
+        if (sslContextConfigurator.validateConfiguration(true)) {
+            clientSSLEngineConfigurator =
+                    new SSLEngineConfigurator(createSSLContext(),
+                                              true,
+                                              false,
+                                              false);
+            serverSSLEngineConfigurator =
+                    new SSLEngineConfigurator(sslContextConfigurator.createSSLContext(true),
+                                              false,
+                                              false,
+                                              false)
+                            .setRecordSizePolicy(policy);
+        } else {
+            fail("Failed to validate SSLContextConfiguration.");
+        }
+
+        final CountDownLatch completedWrites = new CountDownLatch(chunksNum);
+        final AtomicInteger wrongResults = new AtomicInteger();
+        final AtomicInteger queuedBytes = new AtomicInteger();
+        final SSLFilter serverSSLFilter =
+                new SSLFilter(serverSSLEngineConfigurator, null);
+        serverSSLFilter.setWriteCoalescingThreshold(8192);
+
+        FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(serverSSLFilter);
+        filterChainBuilder.add(new BaseFilter() {
+            @Override
+            public NextAction handleRead(final FilterChainContext ctx)
+                    throws IOException {
+                final Buffer request = ctx.getMessage();
+                request.tryDispose();
+
+                int size = 0;
+                for (int i = 0; i < chunksNum; i++) {
+                    final Buffer chunk = Buffers.wrap(ctx.getMemoryManager(),
+                            "chunk-" + i + ';');
+                    final int chunkSize = chunk.remaining();
+                    size += chunkSize;
+                    ctx.write(chunk,
+                            new EmptyCompletionHandler<WriteResult>() {
+                                @Override
+                                public void completed(final WriteResult result) {
+                                    // each write gets its own result
+                                    if (result.getMessage() != chunk
+                                            || result.getWrittenSize() != chunkSize) {
+                                        wrongResults.incrementAndGet();
+                                    }
+                                    completedWrites.countDown();
+                                }
+                            });
+                }
+
+                // the coalesced bytes are counted by the async write queue
+                queuedBytes.set(((NIOConnection) ctx.getConnection())
+                        .getAsyncWriteQueue().spaceInBytes() - size);
+
+                return ctx.getStopAction();
+            }
+        });
+
+        TCPNIOTransport transport =
+                TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(filterChainBuilder.build());
+        transport.setMemoryManager(manager);
+
+        final FutureImpl<String> responseFuture = Futures.createSafeFuture();
+
+        TCPNIOTransport cTransport =
+                TCPNIOTransportBuilder.newInstance().build();
+        FilterChainBuilder clientChain = FilterChainBuilder.stateless();
+        clientChain.add(new TransportFilter());
+        clientChain.add(new SSLFilter(null, clientSSLEngineConfigurator));
+        clientChain.add(new BaseFilter() {
+            private final StringBuilder received = new StringBuilder();
+
+            @Override
+            public NextAction handleRead(final FilterChainContext ctx)
+                    throws IOException {
+                final Buffer chunk = ctx.getMessage();
+                received.append(chunk.toStringContent());
+                chunk.tryDispose();
+
+                if (received.length() >= expected.length()) {
+                    responseFuture.result(received.toString());
+                }
+
+                return ctx.getStopAction();
+            }
+        });
+        cTransport.setProcessor(clientChain.build());
+        cTransport.setMemoryManager(manager);
+
+        try {
+            transport.bind(PORT);
+            transport.start();
+
+            cTransport.start();
+
+            Future<Connection> future = cTransport.connect("localhost", PORT);
+            connection = future.get(10, TimeUnit.SECONDS);
+
+            connection.write(Buffers.wrap(manager, "go"));
+            assertEquals(expected.toString(),
+                    responseFuture.get(10, TimeUnit.SECONDS));
+            
+            // all the chunks have been sent in a single TLS record
+            assertEquals(1, policy.getFullRecordsCount());
+            assertTrue(completedWrites.await(10, TimeUnit.SECONDS));
+            assertEquals(0, wrongResults.get());
+            assertTrue(queuedBytes.get() >= 0);
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+            cTransport.shutdownNow();
+            transport.shutdownNow();
+        }
+    }
+
 
     // ------------------------------------------------------- Protected Methods
 
@@ -545,7 +802,7 @@ public class SSLTest {
                         StandaloneProcessor.INSTANCE.getStreamReader(connection);
                 StreamWriter connectionStreamWriter =
                         StandaloneProcessor.INSTANCE.getStreamWriter(connection);
-                
+
                 reader = new SSLStreamReader(connectionStreamReader);
                 writer = new SSLStreamWriter(connectionStreamWriter);
 
@@ -583,13 +840,13 @@ public class SSLTest {
                         throw e;
                     }
                 }
-                
+
                 reader.close();
                 reader = null;
-                
+
                 writer.close();
                 writer = null;
-                
+
                 connection.closeSilently();
                 connection = null;
             }
@@ -661,7 +918,7 @@ public class SSLTest {
                         TCPNIOConnectorHandler.builder(transport)
                         .processor(clientFilterChainBuilder.build())
                         .build();
-                
+
                 Future<Connection> future = connectorHandler.connect("localhost", PORT);
                 connection = future.get(10, TimeUnit.SECONDS);
                 assertTrue(connection != null);
@@ -916,7 +1173,7 @@ public class SSLTest {
                 } catch (Exception e) {
                     clientCompletedFeature.failure(e);
                 }
-                
+
             }
 
             return ctx.getStopAction();
@@ -413,6 +413,150 @@ public class TCPNIOTransportTest {
         doTestParallelWrites(100, 100000, true);
     }
 
+    @Test
+    public void testParallelWritesBlockingModeNoTemporarySelectors() throws Exception {
+        doTestParallelWrites(100, 100000, true, false);
+    }
+
+    @Test
+    public void testBlockingEchoNoTemporarySelectors() throws Exception {
+        Connection connection = null;
+        StreamReader reader;
+        StreamWriter writer;
+
+        FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(new EchoFilter());
+
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .setTemporarySelectorsEnabled(false)
+                .build();
+        assertTrue(!transport.isTemporarySelectorsEnabled());
+        transport.setProcessor(filterChainBuilder.build());
+
+        try {
+            transport.bind(PORT);
+            transport.start();
+            transport.configureBlocking(true);
+
+            final FutureImpl<Connection> connectFuture =
+                    Futures.createSafeFuture();
+            transport.connect(
+                    new InetSocketAddress("localhost", PORT),
+                    Futures.toCompletionHandler(
+                    connectFuture, new EmptyCompletionHandler<Connection>() {
+
+                        @Override
+                        public void completed(final Connection connection) {
+                            //noinspection deprecation
+                            connection.configureStandalone(true);
+                        }
+                    }));
+            connection = connectFuture.get(10, TimeUnit.SECONDS);
+            assertTrue(connection != null);
+
+            // big enough to overflow the socket buffers, so both the
+            // blocking write and the blocking read have to wait for readiness
+            final byte[] originalMessage = new byte[4 * 1024 * 1024];
+            for (int i = 0; i < originalMessage.length; i++) {
+                originalMessage[i] = (byte) i;
+            }
+
+            reader = StandaloneProcessor.INSTANCE.getStreamReader(connection);
+            writer = StandaloneProcessor.INSTANCE.getStreamWriter(connection);
+
+            final StreamReader finalReader = reader;
+            final FutureImpl<byte[]> echoFuture = Futures.createSafeFuture();
+            final Thread readerThread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        final Future readFuture =
+                                finalReader.notifyAvailable(originalMessage.length);
+                        readFuture.get(30, TimeUnit.SECONDS);
+                        final byte[] echoMessage = new byte[originalMessage.length];
+                        finalReader.readByteArray(echoMessage);
+                        echoFuture.result(echoMessage);
+                    } catch (Throwable t) {
+                        echoFuture.failure(t);
+                    }
+                }
+            };
+            readerThread.start();
+
+            writer.writeByteArray(originalMessage);
+            final Future<Integer> writeFuture = writer.flush();
+            assertTrue("Write timeout", writeFuture.isDone());
+            assertEquals(originalMessage.length, (int) writeFuture.get());
+
+            assertTrue(Arrays.equals(originalMessage,
+                    echoFuture.get(30, TimeUnit.SECONDS)));
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+
+            transport.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAbandonedIOEventWaitKeepsReadInterest() throws Exception {
+        Connection connection = null;
+
+        FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(new StringFilter());
+        filterChainBuilder.add(new EchoFilter());
+
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .setTemporarySelectorsEnabled(false)
+                .build();
+        transport.setProcessor(filterChainBuilder.build());
+
+        try {
+            transport.bind(PORT);
+            transport.start();
+
+            final FutureImpl<String> echoFuture = Futures.createSafeFuture();
+            FilterChainBuilder clientFilterChainBuilder = FilterChainBuilder.stateless();
+            clientFilterChainBuilder.add(new TransportFilter());
+            clientFilterChainBuilder.add(new StringFilter());
+            clientFilterChainBuilder.add(new BaseFilter() {
+                @Override
+                public NextAction handleRead(final FilterChainContext ctx)
+                        throws IOException {
+                    echoFuture.result((String) ctx.getMessage());
+                    return ctx.getStopAction();
+                }
+            });
+
+            SocketConnectorHandler connectorHandler =
+                    TCPNIOConnectorHandler.builder(transport)
+                            .processor(clientFilterChainBuilder.build())
+                            .build();
+
+            connection = connectorHandler.connect("localhost", PORT)
+                    .get(10, TimeUnit.SECONDS);
+            assertTrue(connection != null);
+
+            // nothing to read, the waiter gives up
+            assertTrue(!((NIOConnection) connection).awaitIOEvent(
+                    IOEvent.READ, 100, TimeUnit.MILLISECONDS));
+
+            // the READ interest, registered by the regular processing,
+            // must survive the abandoned wait
+            connection.write("hello");
+            assertEquals("hello", echoFuture.get(10, TimeUnit.SECONDS));
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+
+            transport.shutdownNow();
+        }
+    }
+
     @Test
     public void testThreadInterruptionDuringAcceptDoesNotMakeServerDeaf() throws Exception {
         final Field interruptField = TCPNIOServerConnection.class.getDeclaredField("DISABLE_INTERRUPT_CLEAR");
@@ -520,6 +664,14 @@ public class TCPNIOTransportTest {
     protected void doTestParallelWrites(int packetsNumber,
                                         int size,
                                         boolean blocking) throws Exception {
+        doTestParallelWrites(packetsNumber, size, blocking, true);
+    }
+
+    protected void doTestParallelWrites(int packetsNumber,
+                                        int size,
+                                        boolean blocking,
+                                        boolean temporarySelectorsEnabled)
+            throws Exception {
         Connection connection = null;
 
         final ExecutorService executorService = Executors.newCachedThreadPool();
@@ -534,6 +686,7 @@ public class TCPNIOTransportTest {
                 TCPNIOTransportBuilder.newInstance().build();
         transport.setProcessor(filterChainBuilder.build());
         transport.configureBlocking(blocking);
+        transport.setTemporarySelectorsEnabled(temporarySelectorsEnabled);
 
         try {
             transport.bind(PORT);
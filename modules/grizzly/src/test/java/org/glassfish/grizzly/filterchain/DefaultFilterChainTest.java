@@ -0,0 +1,242 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.filterchain;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.filterchain.FilterChainContext.Operation;
+import org.glassfish.grizzly.nio.transport.TCPNIOConnection;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+
+/**
+ * Test {@link DefaultFilterChain} skipping of the {@link Filter}s, which
+ * don't override the executed operation handler.
+ */
+public class DefaultFilterChainTest extends TestCase {
+
+    private static final FilterChainEvent TEST_EVENT = new FilterChainEvent() {
+        @Override
+        public Object type() {
+            return "TEST_EVENT";
+        }
+    };
+
+    private final List<Filter> invoked = Collections.synchronizedList(
+            new ArrayList<Filter>());
+    
+    private final Filter noopFilter1 = new NoopFilter();
+    private final Filter readFilter = new ReadFilter();
+    private final Filter writeFilter = new WriteFilter();
+    private final Filter readSubFilter = new ReadSubFilter();
+    private final Filter eventFilter = new BaseFilter() {
+        @Override
+        public NextAction handleEvent(final FilterChainContext ctx,
+                final FilterChainEvent event) throws IOException {
+            return ctx.getInvokeAction();
+        }
+    };
+    private final Filter noopFilter2 = new NoopFilter();
+
+    private Connection connection;
+
+    @Override
+    protected void setUp() throws Exception {
+        connection = new TCPNIOConnection(
+                TCPNIOTransportBuilder.newInstance().build(), null);
+    }
+
+    public void testNoopFiltersSkipped() throws Exception {
+        final DefaultFilterChain chain = createChain();
+
+        execute(chain, Operation.READ);
+        assertEquals(Arrays.asList(readFilter, readSubFilter), invoked);
+
+        invoked.clear();
+        execute(chain, Operation.WRITE);
+        assertEquals(Arrays.asList(writeFilter), invoked);
+
+        invoked.clear();
+        execute(chain, Operation.CLOSE);
+        execute(chain, Operation.ACCEPT);
+        execute(chain, Operation.CONNECT);
+        assertTrue(invoked.isEmpty());
+
+        invoked.clear();
+        fireEvent(chain, true);
+        assertEquals(Arrays.asList(eventFilter), invoked);
+
+        invoked.clear();
+        fireEvent(chain, false);
+        assertEquals(Arrays.asList(eventFilter), invoked);
+    }
+
+    public void testDispatchTableRebuiltOnChange() throws Exception {
+        final DefaultFilterChain chain = createChain();
+
+        execute(chain, Operation.READ);
+        assertEquals(Arrays.asList(readFilter, readSubFilter), invoked);
+
+        final Filter readFilter2 = new ReadFilter();
+        chain.add(1, readFilter2);
+        chain.remove(readSubFilter);
+
+        invoked.clear();
+        execute(chain, Operation.READ);
+        assertEquals(Arrays.asList(readFilter2, readFilter), invoked);
+    }
+
+    public void testSkippingDisabled() throws Exception {
+        final String oldValue = System.getProperty(
+                DefaultFilterChain.SKIP_NOOP_FILTERS_PROPERTY);
+        System.setProperty(DefaultFilterChain.SKIP_NOOP_FILTERS_PROPERTY,
+                "false");
+        try {
+            final DefaultFilterChain chain = createChain();
+
+            execute(chain, Operation.READ);
+            assertEquals(Arrays.asList(noopFilter1, readFilter, writeFilter,
+                    readSubFilter, eventFilter, noopFilter2), invoked);
+
+            invoked.clear();
+            execute(chain, Operation.WRITE);
+            assertEquals(Arrays.asList(noopFilter2, eventFilter,
+                    readSubFilter, writeFilter, readFilter, noopFilter1),
+                    invoked);
+
+            invoked.clear();
+            fireEvent(chain, true);
+            assertEquals(Arrays.asList(noopFilter1, readFilter, writeFilter,
+                    readSubFilter, eventFilter, noopFilter2), invoked);
+        } finally {
+            if (oldValue != null) {
+                System.setProperty(DefaultFilterChain.SKIP_NOOP_FILTERS_PROPERTY,
+                        oldValue);
+            } else {
+                System.clearProperty(DefaultFilterChain.SKIP_NOOP_FILTERS_PROPERTY);
+            }
+        }
+    }
+
+    private DefaultFilterChain createChain() {
+        final DefaultFilterChain chain = new DefaultFilterChain();
+
+        chain.add(noopFilter1);
+        chain.add(readFilter);
+        chain.add(writeFilter);
+        chain.add(readSubFilter);
+        chain.add(eventFilter);
+        chain.add(noopFilter2);
+
+        return chain;
+    }
+
+    private void execute(final DefaultFilterChain chain,
+            final Operation operation) {
+        final FilterChainContext ctx = createContext(chain, operation);
+        ctx.setMessage("message");
+        chain.execute(ctx);
+    }
+
+    private void fireEvent(final DefaultFilterChain chain,
+            final boolean isUpstream) {
+        final FilterChainContext ctx = createContext(chain, Operation.EVENT);
+        ctx.event = TEST_EVENT;
+        
+        if (isUpstream) {
+            ExecutorResolver.UPSTREAM_EXECUTOR_SAMPLE.initIndexes(ctx);
+        } else {
+            ExecutorResolver.DOWNSTREAM_EXECUTOR_SAMPLE.initIndexes(ctx);
+        }
+        
+        chain.execute(ctx);
+    }
+
+    /**
+     * Creates the {@link FilterChainContext}, which records every
+     * {@link Filter} asking it for the invoke action. Both the test filters
+     * and {@link BaseFilter}'s pass-through handlers do that, so the
+     * recorded list contains exactly the filters, the chain has invoked.
+     */
+    private FilterChainContext createContext(final DefaultFilterChain chain,
+            final Operation operation) {
+        final FilterChainContext ctx = new FilterChainContext() {
+            @Override
+            public NextAction getInvokeAction() {
+                invoked.add(getFilterChain().get(getFilterIdx()));
+                return super.getInvokeAction();
+            }
+        };
+        
+        ctx.internalContext.setProcessor(chain);
+        ctx.setConnection(connection);
+        ctx.setCloseable(connection);
+        ctx.setOperation(operation);
+        
+        return ctx;
+    }
+
+    private static class NoopFilter extends BaseFilter {
+    }
+
+    private static class ReadFilter extends BaseFilter {
+        @Override
+        public NextAction handleRead(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getInvokeAction();
+        }
+    }
+
+    private static class ReadSubFilter extends ReadFilter {
+    }
+
+    private static class WriteFilter extends BaseFilter {
+        @Override
+        public NextAction handleWrite(final FilterChainContext ctx)
+                throws IOException {
+            return ctx.getInvokeAction();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Testing {@link Histogram}.
+ */
+public class HistogramTest {
+
+    @Test
+    public void testBucketBoundaries() {
+        long previousHighest = -1;
+        for (int i = 0; i < Histogram.BUCKETS_COUNT; i++) {
+            final long lowest = Histogram.lowestValue(i);
+            final long highest = Histogram.highestValue(i);
+            
+            assertEquals(previousHighest + 1, lowest);
+            assertTrue(highest >= lowest);
+            assertEquals(i, Histogram.bucketIndex(lowest));
+            assertEquals(i, Histogram.bucketIndex(highest));
+            
+            // relative bucket width never exceeds 1/16
+            assertTrue((highest - lowest) * Histogram.SUB_BUCKET_HALF_COUNT
+                    <= lowest || lowest < 32);
+            previousHighest = highest;
+        }
+        
+        assertEquals(Long.MAX_VALUE, previousHighest);
+    }
+
+    @Test
+    public void testPercentiles() {
+        final Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+        
+        final HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(1, snapshot.getMin());
+        assertEquals(10000, snapshot.getMax());
+        assertEquals(5000.5, snapshot.getMean(), 0.001);
+        
+        assertWithinPrecision(5000, snapshot.getP50());
+        assertWithinPrecision(9900, snapshot.getP99());
+        assertWithinPrecision(9990, snapshot.getP999());
+        assertEquals(10000, snapshot.getValueAtPercentile(100));
+        assertEquals(1, snapshot.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testEmptyAndReset() {
+        final Histogram histogram = new Histogram();
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getP99());
+        
+        histogram.record(-5);
+        histogram.record(TimeUnit.SECONDS.toNanos(1));
+        snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(TimeUnit.SECONDS.toNanos(1), snapshot.getP99());
+        
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.snapshot().getMax());
+    }
+
+    @Test
+    public void testCachedSnapshot() {
+        final Histogram histogram = new Histogram();
+        histogram.record(10);
+        
+        final HistogramSnapshot snapshot = histogram.snapshot(1, TimeUnit.HOURS);
+        assertEquals(1, snapshot.getCount());
+        
+        histogram.record(20);
+        assertSame(snapshot, histogram.snapshot(1, TimeUnit.HOURS));
+        assertEquals(2, histogram.snapshot(0, TimeUnit.NANOSECONDS).getCount());
+        
+        histogram.reset();
+        assertEquals(0, histogram.snapshot(1, TimeUnit.HOURS).getCount());
+    }
+
+    @Test
+    public void testConcurrentRecord() throws Exception {
+        final Histogram histogram = new Histogram();
+        final int threadsCount = 8;
+        final int valuesPerThread = 100000;
+        final CountDownLatch latch = new CountDownLatch(threadsCount);
+        
+        for (int i = 0; i < threadsCount; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < valuesPerThread; j++) {
+                            histogram.record(j);
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }.start();
+        }
+        
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        
+        final HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(threadsCount * valuesPerThread, snapshot.getCount());
+        assertEquals((long) threadsCount * valuesPerThread * (valuesPerThread - 1) / 2,
+                snapshot.getSum());
+        assertEquals(valuesPerThread - 1, snapshot.getMax());
+        assertEquals(0, snapshot.getMin());
+    }
+
+    private static void assertWithinPrecision(final long expected,
+            final long actual) {
+        assertTrue("expected " + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected / Histogram.SUB_BUCKET_HALF_COUNT);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring;
+
+import java.nio.charset.Charset;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.MemoryManager;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Testing {@link MetricsWriter}.
+ */
+public class MetricsWriterTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void testValues() {
+        final MetricsWriter writer = new MetricsWriter(
+                MemoryManager.DEFAULT_MEMORY_MANAGER);
+        writer.sample("a").value(0);
+        writer.sample("b").value(-42);
+        writer.sample("c").value(Long.MAX_VALUE);
+        writer.sample("d").value(Long.MIN_VALUE);
+        writer.sample("e").value(1500000, 9);
+        writer.sample("f").value(-5, 3);
+        writer.sample("g").value(Long.MIN_VALUE, 18);
+        writer.sample("h").value(123456789012L, 9);
+        
+        assertEquals("a 0\n"
+                + "b -42\n"
+                + "c 9223372036854775807\n"
+                + "d -9223372036854775808\n"
+                + "e 0.001500000\n"
+                + "f -0.005\n"
+                + "g -9.223372036854775808\n"
+                + "h 123.456789012\n"
+                + "# EOF\n", toString(writer.finish()));
+    }
+
+    @Test
+    public void testFamilyAndLabels() {
+        final MetricsWriter writer = new MetricsWriter(
+                MemoryManager.DEFAULT_MEMORY_MANAGER);
+        writer.family("requests", MetricsWriter.Type.COUNTER,
+                "Requests\nwith \\ \"help\"");
+        writer.sample("requests", "_total")
+                .label("path", "/a\"b\\c\nd")
+                .label("name", "é€😀")
+                .value(7);
+        
+        assertEquals("# TYPE requests counter\n"
+                + "# HELP requests Requests\\nwith \\\\ \"help\"\n"
+                + "requests_total{path=\"/a\\\"b\\\\c\\nd\",name=\"é€😀\"} 7\n"
+                + "# EOF\n", toString(writer.finish()));
+    }
+
+    @Test
+    public void testSummary() {
+        final Histogram histogram = new Histogram();
+        histogram.record(1000);
+        histogram.record(3000);
+        
+        final MetricsWriter writer = new MetricsWriter(
+                MemoryManager.DEFAULT_MEMORY_MANAGER);
+        writer.summary("latency_seconds", "listener", "l",
+                histogram.snapshot(), 9);
+        
+        final String text = toString(writer.finish());
+        assertTrue(text, text.startsWith(
+                "latency_seconds{listener=\"l\",quantile=\"0.5\"} 0.000001"));
+        assertTrue(text, text.contains(
+                "latency_seconds{listener=\"l\",quantile=\"0.999\"} 0.000003000\n"));
+        assertTrue(text, text.contains("latency_seconds_count{listener=\"l\"} 2\n"));
+        assertTrue(text, text.contains("latency_seconds_sum{listener=\"l\"} 0.000004000\n"));
+    }
+
+    @Test
+    public void testChunks() {
+        final MetricsWriter writer = new MetricsWriter(
+                MemoryManager.DEFAULT_MEMORY_MANAGER, 64);
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            writer.sample("a_rather_long_metric_name_to_span_several_chunks")
+                    .label("index", "value-é-" + i)
+                    .value(i * 1000L, 3);
+            expected.append("a_rather_long_metric_name_to_span_several_chunks{index=\"value-é-")
+                    .append(i).append("\"} ").append(i).append(".000\n");
+        }
+        expected.append("# EOF\n");
+        
+        assertEquals(expected.toString(), toString(writer.finish()));
+    }
+
+    private static String toString(final Buffer buffer) {
+        final String s = buffer.toStringContent(UTF8);
+        buffer.tryDispose();
+        return s;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.IOEvent;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.impl.FutureImpl;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.utils.EchoFilter;
+import org.glassfish.grizzly.utils.Futures;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the readiness, which is reported after the thread waiting in
+ * {@link NIOConnection#awaitIOEvent(IOEvent, long, TimeUnit)} gave up.
+ */
+public class IOEventWaiterTest {
+    public static final int PORT = 7791;
+
+    @Test
+    public void testAbandonedWaiterInterestSwallowsReadiness() throws Exception {
+        // nobody but the waiter has registered the READ interest
+        doTestAbandonedWait(true, true);
+    }
+
+    @Test
+    public void testAbandonedWaiterRegularInterestPassesReadiness() throws Exception {
+        // the READ interest has been registered by the regular processing
+        doTestAbandonedWait(false, false);
+    }
+
+    private void doTestAbandonedWait(final boolean isStandalone,
+            final boolean isSwallowExpected) throws Exception {
+        FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(new EchoFilter());
+
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .setTemporarySelectorsEnabled(false)
+                .build();
+        transport.setProcessor(filterChainBuilder.build());
+
+        Connection connection = null;
+        final CountDownLatch selectorBlocked = new CountDownLatch(1);
+        final CountDownLatch selectorReleased = new CountDownLatch(1);
+
+        try {
+            transport.bind(PORT);
+            transport.start();
+
+            final FutureImpl<Connection> connectFuture =
+                    Futures.createSafeFuture();
+            transport.connect(
+                    new InetSocketAddress("localhost", PORT),
+                    Futures.toCompletionHandler(
+                    connectFuture, new EmptyCompletionHandler<Connection>() {
+
+                        @Override
+                        public void completed(final Connection connection) {
+                            //noinspection deprecation
+                            connection.configureStandalone(isStandalone);
+                        }
+                    }));
+            connection = connectFuture.get(10, TimeUnit.SECONDS);
+            final NIOConnection nioConnection = (NIOConnection) connection;
+            final SelectionKey key = nioConnection.getSelectionKey();
+
+            if (!isStandalone) {
+                waitForReadInterest(key, true);
+            }
+
+            final Thread waiter = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        nioConnection.awaitIOEvent(IOEvent.READ,
+                                1, TimeUnit.SECONDS);
+                    } catch (IOException ignored) {
+                    }
+                }
+            };
+            waiter.start();
+            waitForReadInterest(key, true);
+
+            // keep the SelectorRunner busy, so the abandoned waiter's
+            // interest isn't withdrawn before the readiness is reported
+            transport.getSelectorHandler().enque(
+                    nioConnection.getSelectorRunner(),
+                    new SelectorHandler.Task() {
+                        @Override
+                        public boolean run() throws IOException {
+                            selectorBlocked.countDown();
+                            try {
+                                selectorReleased.await(10, TimeUnit.SECONDS);
+                            } catch (InterruptedException ignored) {
+                            }
+                            return true;
+                        }
+                    }, null);
+            assertTrue(selectorBlocked.await(10, TimeUnit.SECONDS));
+
+            // the wait times out
+            waiter.join(10000);
+            assertFalse(waiter.isAlive());
+
+            // the readiness is reported on behalf of the blocked SelectorRunner
+            assertTrue(isSwallowExpected
+                    == nioConnection.onIOEventReady(IOEvent.READ));
+
+            selectorReleased.countDown();
+            // only the interest added by the waiter is withdrawn
+            waitForReadInterest(key, !isSwallowExpected);
+        } finally {
+            selectorReleased.countDown();
+            if (connection != null) {
+                connection.closeSilently();
+            }
+
+            transport.shutdownNow();
+        }
+    }
+
+    private static void waitForReadInterest(final SelectionKey key,
+            final boolean isRegistered) throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            if (((key.interestOps() & SelectionKey.OP_READ) != 0) == isRegistered) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+
+        throw new AssertionError("READ interest registered: " + !isRegistered);
+    }
+}
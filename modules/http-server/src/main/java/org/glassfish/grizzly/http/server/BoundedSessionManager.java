@@ -0,0 +1,683 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.http.Cookie;
+import org.glassfish.grizzly.http.server.util.Globals;
+
+/**
+ * {@link SessionManager} implementation keeping a bounded number of
+ * {@link Session}s in memory.
+ *
+ * Sessions are kept ordered by their expiration time, so the expirer only
+ * visits sessions which are due instead of scanning all of them. When either
+ * the maximum number of sessions or the (estimated) memory budget is exceeded,
+ * the sessions closest to expiration (which, for equal timeouts, are the ones
+ * idle the longest) are evicted first. If a {@link SessionStore} is configured,
+ * evicted sessions are moved to the store and transparently restored when
+ * requested again, and all live sessions are saved on {@link #close()}, so
+ * they survive restarts.
+ *
+ * Session ids are 128-bit values produced by a per-thread {@link SecureRandom}.
+ *
+ * To use this manager with Servlets, wrap it in a <tt>ServletSessionManager</tt>.
+ */
+public class BoundedSessionManager implements SessionManager {
+    private static final Logger LOGGER = Grizzly.logger(BoundedSessionManager.class);
+
+    /**
+     * The default maximum number of sessions kept in memory.
+     */
+    public static final int DEFAULT_MAX_SESSIONS = 100000;
+    
+    /**
+     * The default memory budget (in bytes) for sessions kept in memory.
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Sessions without timeout are ordered by last access time, as if they
+     * expired after this many milliseconds (when they are re-checked, in case
+     * a timeout was set meanwhile).
+     */
+    private static final long NO_TIMEOUT_DELAY = TimeUnit.MINUTES.toMillis(5);
+    
+    private static final int SESSION_ID_BYTES = 16;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<SecureRandom> RANDOM =
+            new ThreadLocal<SecureRandom>() {
+                @Override
+                protected SecureRandom initialValue() {
+                    // per-thread generator, doesn't share the native PRNG lock
+                    try {
+                        return SecureRandom.getInstance("SHA1PRNG");
+                    } catch (NoSuchAlgorithmException e) {
+                        return new SecureRandom();
+                    }
+                }
+            };
+
+    private final ConcurrentMap<String, Tracker> sessions =
+            new ConcurrentHashMap<>();
+    
+    /**
+     * Sessions ordered by (possibly outdated) expiration time.
+     */
+    private final ConcurrentSkipListSet<Deadline> deadlines =
+            new ConcurrentSkipListSet<>();
+    
+    /**
+     * Evicted sessions waiting to be saved to the store.
+     */
+    private final ConcurrentMap<String, Session> pendingSaves =
+            new ConcurrentHashMap<>();
+    
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong estimatedBytes = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    private final int maxSessions;
+    private final long maxBytes;
+    private final SessionStore store;
+
+    private String sessionCookieName = Globals.SESSION_COOKIE_NAME;
+
+    /**
+     * Expires sessions and performs the {@link SessionStore} writes.
+     */
+    private final ScheduledThreadPoolExecutor sessionExpirer
+            = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread t = new Thread(r, "Grizzly-HttpSession-Expirer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    /**
+     * Create a {@link BoundedSessionManager} with the default limits and
+     * no {@link SessionStore}.
+     */
+    public BoundedSessionManager() {
+        this(DEFAULT_MAX_SESSIONS, DEFAULT_MAX_BYTES, null);
+    }
+
+    /**
+     * Create a {@link BoundedSessionManager} with the given limits and
+     * no {@link SessionStore}.
+     *
+     * @param maxSessions the maximum number of sessions kept in memory
+     * @param maxBytes the estimated memory budget for sessions kept in memory
+     */
+    public BoundedSessionManager(final int maxSessions, final long maxBytes) {
+        this(maxSessions, maxBytes, null);
+    }
+
+    /**
+     * Create a {@link BoundedSessionManager} with the given limits,
+     * moving evicted sessions to the given {@link SessionStore}.
+     *
+     * @param maxSessions the maximum number of sessions kept in memory
+     * @param maxBytes the estimated memory budget for sessions kept in memory
+     * @param store the {@link SessionStore} or <tt>null</tt> to discard
+     *              evicted sessions
+     */
+    public BoundedSessionManager(final int maxSessions, final long maxBytes,
+            final SessionStore store) {
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException("maxSessions must be positive");
+        }
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        
+        this.maxSessions = maxSessions;
+        this.maxBytes = maxBytes;
+        this.store = store;
+        
+        sessionExpirer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                expireSessions(System.currentTimeMillis());
+                enforceLimits();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public Session getSession(final Request request,
+            final String requestedSessionId) {
+        if (requestedSessionId == null) {
+            return null;
+        }
+        
+        Tracker tracker = sessions.get(requestedSessionId);
+        if (tracker == null) {
+            tracker = restore(requestedSessionId);
+            if (tracker == null) {
+                return null;
+            }
+        }
+        
+        final Session session = tracker.session;
+        if (!session.isValid()
+                || isExpired(session, System.currentTimeMillis())) {
+            discard(tracker);
+            return null;
+        }
+        
+        // the timeout was shortened since the session got scheduled
+        final Deadline deadline = tracker.deadline;
+        if (deadline == null || deadlineOf(session) < deadline.time) {
+            schedule(tracker);
+        }
+        
+        // re-estimate the size only if the attributes have been changed
+        // via the Session API, other changes are picked up by the expirer
+        if (tracker.attributesVersion != session.getAttributesVersion()
+                && updateSize(tracker)) {
+            enforceLimits();
+        }
+        
+        return session;
+    }
+
+    @Override
+    public Session createSession(final Request request) {
+        final Session session = new Session();
+        if (request != null && request.getHttpFilter() != null) {
+            session.setSessionTimeout(request.getHttpFilter().getConfiguration()
+                    .getSessionTimeoutSeconds() * 1000L);
+        }
+        
+        final Tracker tracker = new Tracker(session);
+        String sessionId;
+        do {
+            sessionId = generateSessionId();
+            session.setIdInternal(sessionId);
+        } while (sessions.putIfAbsent(sessionId, tracker) != null);
+        
+        schedule(tracker);
+        updateSize(tracker);
+        enforceLimits();
+        
+        return session;
+    }
+
+    @Override
+    public String changeSessionId(final Request request, final Session session) {
+        final String oldSessionId = session.getIdInternal();
+        
+        Tracker tracker = oldSessionId != null ? sessions.get(oldSessionId) : null;
+        final boolean tracked = tracker != null && tracker.session == session;
+        if (!tracked) {
+            tracker = new Tracker(session);
+        }
+        
+        String newSessionId;
+        do {
+            newSessionId = generateSessionId();
+        } while (sessions.putIfAbsent(newSessionId, tracker) != null);
+        session.setIdInternal(newSessionId);
+        
+        if (tracked) {
+            sessions.remove(oldSessionId, tracker);
+        } else {
+            schedule(tracker);
+            updateSize(tracker);
+        }
+        
+        if (oldSessionId != null) {
+            removeFromStore(oldSessionId);
+        }
+        
+        return oldSessionId;
+    }
+
+    @Override
+    public void configureSessionCookie(final Request request,
+            final Cookie cookie) {
+    }
+
+    @Override
+    public void setSessionCookieName(final String name) {
+        if (name != null && !name.isEmpty()) {
+            sessionCookieName = name;
+        }
+    }
+
+    @Override
+    public String getSessionCookieName() {
+        return sessionCookieName;
+    }
+
+    /**
+     * @return the maximum number of sessions kept in memory
+     */
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    /**
+     * @return the estimated memory budget for sessions kept in memory
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the {@link SessionStore} evicted sessions are moved to, if any
+     */
+    public SessionStore getSessionStore() {
+        return store;
+    }
+
+    /**
+     * @return the number of sessions currently kept in memory
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * @return the estimated memory used by the sessions kept in memory
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes.get();
+    }
+
+    /**
+     * @return the number of sessions evicted because the limits were exceeded
+     */
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    /**
+     * Stop the expirer and, if a {@link SessionStore} is configured, save all
+     * live sessions to it.
+     */
+    public void close() {
+        sessionExpirer.shutdown();
+        try {
+            sessionExpirer.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        if (store == null) {
+            return;
+        }
+        
+        final long now = System.currentTimeMillis();
+        for (Tracker tracker : sessions.values()) {
+            final Session session = tracker.session;
+            if (session.isValid() && !isExpired(session, now)) {
+                save(session);
+            }
+        }
+    }
+
+    /**
+     * Estimate the memory used by the given {@link Session}.
+     * The default implementation accounts for the id and the attribute
+     * names, sizing {@link CharSequence}, <tt>byte[]</tt> and boxed primitive
+     * values and assuming a fixed cost for every other value.
+     *
+     * @param session the {@link Session}
+     * @return the estimated size, in bytes
+     */
+    protected long estimateSize(final Session session) {
+        final String id = session.getIdInternal();
+        long size = 128 + (id != null ? id.length() * 2 : 0);
+        for (Map.Entry<String, Object> attribute : session.attributes().entrySet()) {
+            size += 48 + attribute.getKey().length() * 2;
+            final Object value = attribute.getValue();
+            if (value instanceof CharSequence) {
+                size += 40 + ((CharSequence) value).length() * 2;
+            } else if (value instanceof byte[]) {
+                size += 16 + ((byte[]) value).length;
+            } else if (value instanceof Number || value instanceof Boolean
+                    || value instanceof Character) {
+                size += 16;
+            } else {
+                size += 64;
+            }
+        }
+        
+        return size;
+    }
+
+    /**
+     * Expire all sessions due at the given time.
+     */
+    void expireSessions(final long now) {
+        Deadline deadline;
+        while ((deadline = deadlines.pollFirst()) != null) {
+            if (deadline.time > now) {
+                deadlines.add(deadline);
+                return;
+            }
+            
+            final Tracker tracker = deadline.tracker;
+            if (tracker.deadline != deadline) {
+                continue; // rescheduled meanwhile
+            }
+            
+            final Session session = tracker.session;
+            if (!session.isValid() || isExpired(session, now)) {
+                discard(tracker);
+            } else {
+                schedule(tracker);
+                updateSize(tracker);
+            }
+        }
+    }
+
+    private void enforceLimits() {
+        while (sessions.size() > maxSessions || estimatedBytes.get() > maxBytes) {
+            final Deadline deadline = deadlines.pollFirst();
+            if (deadline == null) {
+                return;
+            }
+            
+            final Tracker tracker = deadline.tracker;
+            if (tracker.deadline != deadline) {
+                continue; // rescheduled meanwhile
+            }
+            
+            final Session session = tracker.session;
+            if (session.isValid() && deadlineOf(session) > deadline.time) {
+                // accessed since it was scheduled, may not be the idlest one
+                schedule(tracker);
+                continue;
+            }
+            
+            evict(tracker);
+        }
+    }
+
+    private void evict(final Tracker tracker) {
+        final Session session = tracker.session;
+        if (!release(tracker)) {
+            return;
+        }
+        
+        evictedCount.incrementAndGet();
+        
+        if (store != null && session.isValid()
+                && !isExpired(session, System.currentTimeMillis())) {
+            final String sessionId = session.getIdInternal();
+            pendingSaves.put(sessionId, session);
+            runStoreTask(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        save(session);
+                    } finally {
+                        pendingSaves.remove(sessionId, session);
+                    }
+                }
+            });
+        } else {
+            session.setValid(false);
+        }
+    }
+
+    private void discard(final Tracker tracker) {
+        final Session session = tracker.session;
+        if (release(tracker)) {
+            session.setValid(false);
+            removeFromStore(session.getIdInternal());
+        }
+    }
+
+    private Tracker restore(final String sessionId) {
+        Session session = pendingSaves.remove(sessionId);
+        if (session == null) {
+            if (store == null) {
+                return null;
+            }
+            
+            try {
+                session = store.load(sessionId);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to load session " + sessionId, e);
+            }
+            
+            if (session == null) {
+                return null;
+            }
+        }
+        
+        removeFromStore(sessionId);
+        
+        if (!session.isValid()
+                || isExpired(session, System.currentTimeMillis())) {
+            return null;
+        }
+        
+        final Tracker tracker = new Tracker(session);
+        final Tracker existing = sessions.putIfAbsent(sessionId, tracker);
+        if (existing != null) {
+            return existing;
+        }
+        
+        schedule(tracker);
+        return tracker;
+    }
+
+    /**
+     * Remove the session from memory and release its memory accounting.
+     *
+     * @return <tt>false</tt> if the session was already removed
+     */
+    private boolean release(final Tracker tracker) {
+        final long size;
+        synchronized (tracker) {
+            if (tracker.released) {
+                return false;
+            }
+            tracker.released = true;
+            size = tracker.size;
+            tracker.size = 0;
+        }
+        
+        sessions.remove(tracker.session.getIdInternal(), tracker);
+        final Deadline deadline = tracker.deadline;
+        if (deadline != null) {
+            deadlines.remove(deadline);
+        }
+        estimatedBytes.addAndGet(-size);
+        return true;
+    }
+
+    /**
+     * Re-estimate the size of the tracked session.
+     *
+     * @return <tt>true</tt> if the estimated size has grown
+     */
+    private boolean updateSize(final Tracker tracker) {
+        final int attributesVersion = tracker.session.getAttributesVersion();
+        final long size = estimateSize(tracker.session);
+        final long delta;
+        synchronized (tracker) {
+            if (tracker.released) {
+                return false;
+            }
+            delta = size - tracker.size;
+            tracker.size = size;
+            tracker.attributesVersion = attributesVersion;
+        }
+        
+        if (delta != 0) {
+            estimatedBytes.addAndGet(delta);
+        }
+        
+        return delta > 0;
+    }
+
+    private void schedule(final Tracker tracker) {
+        final Deadline deadline = new Deadline(deadlineOf(tracker.session),
+                sequence.incrementAndGet(), tracker);
+        final Deadline old = tracker.deadline;
+        tracker.deadline = deadline;
+        deadlines.add(deadline);
+        if (old != null) {
+            deadlines.remove(old);
+        }
+    }
+
+    private void save(final Session session) {
+        try {
+            store.save(session);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to save session " + session.getIdInternal(), e);
+        }
+    }
+
+    private void removeFromStore(final String sessionId) {
+        if (store == null) {
+            return;
+        }
+        
+        // ordered after any pending save of the same session
+        runStoreTask(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    store.remove(sessionId);
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Unable to remove session " + sessionId, e);
+                }
+            }
+        });
+    }
+
+    private void runStoreTask(final Runnable task) {
+        try {
+            sessionExpirer.execute(task);
+        } catch (RejectedExecutionException e) {
+            // closed, do it synchronously
+            task.run();
+        }
+    }
+
+    private static long deadlineOf(final Session session) {
+        final long timeout = session.getSessionTimeout();
+        return session.getTimestamp() + (timeout > 0 ? timeout : NO_TIMEOUT_DELAY);
+    }
+
+    private static boolean isExpired(final Session session, final long now) {
+        return session.getSessionTimeout() > 0
+                && now - session.getTimestamp() > session.getSessionTimeout();
+    }
+
+    /**
+     * Returns a random 128-bit session id, hex encoded.
+     */
+    private static String generateSessionId() {
+        final byte[] bytes = new byte[SESSION_ID_BYTES];
+        RANDOM.get().nextBytes(bytes);
+        
+        final char[] chars = new char[SESSION_ID_BYTES * 2];
+        for (int i = 0; i < SESSION_ID_BYTES; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        
+        return new String(chars);
+    }
+
+    private static final class Tracker {
+        private final Session session;
+        private volatile Deadline deadline;
+        // the attributes version the size has been estimated for,
+        // a restored session doesn't have an estimate yet
+        private volatile int attributesVersion = -1;
+        
+        // guarded by this
+        private long size;
+        private boolean released;
+
+        Tracker(final Session session) {
+            this.session = session;
+        }
+    }
+
+    private static final class Deadline implements Comparable<Deadline> {
+        private final long time;
+        private final long sequence;
+        private final Tracker tracker;
+
+        Deadline(final long time, final long sequence, final Tracker tracker) {
+            this.time = time;
+            this.sequence = sequence;
+            this.tracker = tracker;
+        }
+
+        @Override
+        public int compareTo(final Deadline other) {
+            if (time != other.time) {
+                return time < other.time ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1
+                    : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
@@ -54,6 +54,7 @@ import org.glassfish.grizzly.OutputSink;
 import org.glassfish.grizzly.WriteHandler;
 import org.glassfish.grizzly.WriteResult;
 import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChain;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.filterchain.NextAction;
 import org.glassfish.grizzly.http.HttpContent;
@@ -65,7 +66,10 @@ import org.glassfish.grizzly.http.server.filecache.FileCache;
 import org.glassfish.grizzly.http.server.filecache.FileCache.CacheType;
 import org.glassfish.grizzly.http.server.filecache.FileCacheEntry;
 import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpStatus;
 import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.utils.Charsets;
 
 /**
  *
@@ -74,6 +78,9 @@ import org.glassfish.grizzly.memory.Buffers;
 public class FileCacheFilter extends BaseFilter {
     private static final Logger LOGGER = Grizzly.logger(FileCacheFilter.class);
     
+    private static final byte[] CONNECTION_CLOSE_BYTES =
+            "Connection: close\r\n\r\n".getBytes(Charsets.ASCII_CHARSET);
+    
     private final FileCache fileCache;
 
     public FileCacheFilter(FileCache fileCache) {
@@ -96,6 +103,13 @@ public class FileCacheFilter extends BaseFilter {
             final FileCacheEntry cacheEntry = fileCache.get(request);
             if (cacheEntry != null) {
                 final HttpResponsePacket response = request.getResponse();
+                
+                final NextAction preEncodedAction =
+                        sendPreEncodedResponse(ctx, request, response, cacheEntry);
+                if (preEncodedAction != null) {
+                    return preEncodedAction;
+                }
+                
                 prepareResponse(cacheEntry, response);
                 
                 if (response.getStatus() != 200) {
@@ -147,6 +161,107 @@ public class FileCacheFilter extends BaseFilter {
         return fileCache;
     }
     
+    /**
+     * Sends the cached response using the status line and headers
+     * pre-encoded by the {@link FileCacheEntry}, so the {@link HttpResponsePacket}
+     * headers don't have to be populated and serialized.
+     * 
+     * @return {@link NextAction} if the response has been sent, or <tt>null</tt>
+     *         if the response has to be prepared and serialized as usual
+     */
+    private NextAction sendPreEncodedResponse(final FilterChainContext ctx,
+            final HttpRequestPacket request, final HttpResponsePacket response,
+            final FileCacheEntry cacheEntry) {
+        if (response.getHeaders().size() != 0) {
+            // some headers have been already set, don't lose them
+            return null;
+        }
+        
+        final HttpStatus status = response.getHttpStatus();
+        final boolean isOk = (status == HttpStatus.OK_200);
+        final boolean isZeroCopy = fileCache.isFileSendEnabled() && !request.isSecure();
+        
+        if (isOk && cacheEntry.type == CacheType.FILE && !isZeroCopy) {
+            return null;
+        }
+        
+        final org.glassfish.grizzly.http.HttpServerFilter codecFilter =
+                getCodecFilter(ctx);
+        if (codecFilter == null) {
+            return null;
+        }
+        
+        final boolean isServeCompressed =
+                isOk && cacheEntry.canServeCompressed(request);
+        final byte[] head = cacheEntry.getEncodedResponseHead(
+                status, isServeCompressed);
+        
+        if (head == null || !codecFilter.commitPreEncodedResponse(ctx,
+                response, !isOk || isServeCompressed)) {
+            return null;
+        }
+        
+        final MemoryManager mm = ctx.getMemoryManager();
+        final Buffer headBuffer = Buffers.wrap(mm,
+                response.getProcessingState().isKeepAlive()
+                        ? head
+                        : addConnectionClose(head));
+        
+        if (!isOk) {
+            codecFilter.notifyPreEncodedResponse(ctx, response, headBuffer,
+                    Buffers.EMPTY_BUFFER, headBuffer);
+            ctx.write(headBuffer);
+            return flush(ctx);
+        }
+        
+        if (cacheEntry.type != CacheType.FILE) {
+            // write the head and the payload using single gathering write
+            final Buffer payload = Buffers.wrap(mm,
+                    cacheEntry.getByteBuffer(isServeCompressed).duplicate());
+            final Buffer output = Buffers.appendBuffers(mm, headBuffer, payload);
+            codecFilter.notifyPreEncodedResponse(ctx, response, headBuffer,
+                    payload, output);
+            ctx.write(output);
+            return flush(ctx);
+        }
+        
+        codecFilter.notifyPreEncodedResponse(ctx, response, headBuffer,
+                null, headBuffer);
+        ctx.write(headBuffer);
+        return sendFile(ctx, cacheEntry, isServeCompressed);
+    }
+    
+    /**
+     * Returns the HTTP codec filter of the current {@link FilterChain},
+     * or <tt>null</tt> if there is none (for example if the HTTP message
+     * is processed by HTTP/2 stream filter chain).
+     */
+    private static org.glassfish.grizzly.http.HttpServerFilter getCodecFilter(
+            final FilterChainContext ctx) {
+        final FilterChain filterChain = ctx.getFilterChain();
+        final int idx = filterChain.indexOfType(
+                org.glassfish.grizzly.http.HttpServerFilter.class);
+        
+        return idx != -1
+                ? (org.glassfish.grizzly.http.HttpServerFilter) filterChain.get(idx)
+                : null;
+    }
+    
+    /**
+     * Replaces the final CRLF of the pre-encoded response head with
+     * <tt>Connection: close</tt> header followed by CRLF.
+     */
+    private static byte[] addConnectionClose(final byte[] head) {
+        final int headersLength = head.length - 2;
+        final byte[] result =
+                new byte[headersLength + CONNECTION_CLOSE_BYTES.length];
+        System.arraycopy(head, 0, result, 0, headersLength);
+        System.arraycopy(CONNECTION_CLOSE_BYTES, 0, result, headersLength,
+                CONNECTION_CLOSE_BYTES.length);
+        
+        return result;
+    }
+    
     /**
      * Prepares common response headers.
      */
@@ -201,7 +316,11 @@ public class FileCacheFilter extends BaseFilter {
         // flush response
         ctx.write(response);
 
-        // send-file
+        return sendFile(ctx, cacheEntry, isServeCompressed);
+    }
+    
+    private NextAction sendFile(final FilterChainContext ctx,
+            final FileCacheEntry cacheEntry, final boolean isServeCompressed) {
         final FileTransfer f = new FileTransfer(
                 cacheEntry.getFile(isServeCompressed),
                 0, cacheEntry.getFileSize(isServeCompressed));
@@ -0,0 +1,304 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Grizzly;
+
+/**
+ * {@link SessionStore} keeping each {@link Session} in its own file in a
+ * local directory.
+ *
+ * Only {@link Serializable} attributes are stored, other attributes are
+ * silently dropped. Files of sessions expired while the store was not in use
+ * are deleted when the store is created.
+ */
+public class FileSessionStore implements SessionStore {
+    private static final Logger LOGGER = Grizzly.logger(FileSessionStore.class);
+
+    private static final int MAGIC = 0x47534553; // "GSES"
+    private static final String SUFFIX = ".session";
+
+    private final File directory;
+
+    /**
+     * Create a {@link FileSessionStore} keeping sessions in the specified
+     * directory, which will be created if it doesn't exist.
+     *
+     * @param directory the directory to keep sessions in
+     * @throws IOException if the directory can't be created or accessed
+     */
+    public FileSessionStore(final File directory) throws IOException {
+        if (directory == null) {
+            throw new NullPointerException("Null directory");
+        }
+        
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        
+        this.directory = directory.getCanonicalFile();
+        purgeExpired();
+    }
+
+    /**
+     * @return the directory sessions are kept in
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void save(final Session session) throws IOException {
+        final String id = session.getIdInternal();
+        final File file = fileOf(id);
+        if (file == null) {
+            throw new IOException("Invalid session id " + id);
+        }
+        
+        final File tmp = File.createTempFile("tmp-" + id, SUFFIX + ".tmp", directory);
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeLong(session.getCreationTime());
+            out.writeLong(session.getTimestamp());
+            out.writeLong(session.getSessionTimeout());
+            
+            for (Map.Entry<String, Object> attribute : session.attributes().entrySet()) {
+                final byte[] value = serialize(attribute.getKey(), attribute.getValue());
+                if (value != null) {
+                    out.writeBoolean(true);
+                    out.writeUTF(attribute.getKey());
+                    out.writeInt(value.length);
+                    out.write(value);
+                }
+            }
+            out.writeBoolean(false);
+        } finally {
+            out.close();
+        }
+        
+        Files.move(tmp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public Session load(final String id) throws IOException {
+        final File file = fileOf(id);
+        if (file == null) {
+            return null;
+        }
+        
+        final DataInputStream in;
+        try {
+            in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Invalid session file " + file);
+            }
+            
+            final Session session = new Session(id, in.readLong());
+            session.setTimestamp(in.readLong());
+            session.setSessionTimeout(in.readLong());
+            
+            while (in.readBoolean()) {
+                final String key = in.readUTF();
+                final byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                try {
+                    session.setAttribute(key, deserialize(value));
+                } catch (ClassNotFoundException e) {
+                    LOGGER.log(Level.FINE, "Unable to restore session attribute " + key, e);
+                }
+            }
+            
+            return session;
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public void remove(final String id) throws IOException {
+        final File file = fileOf(id);
+        if (file != null && file.exists() && !file.delete()) {
+            throw new IOException("Unable to delete " + file);
+        }
+    }
+
+    /**
+     * Return the file the session with the given id is kept in, or
+     * <tt>null</tt> if the id can't be safely mapped to a file name.
+     */
+    private File fileOf(final String id) {
+        if (id == null || id.isEmpty() || id.length() > 128) {
+            return null;
+        }
+        
+        for (int i = 0; i < id.length(); i++) {
+            final char c = id.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                    || (c >= '0' && c <= '9') || c == '-' || c == '_')) {
+                return null;
+            }
+        }
+        
+        return new File(directory, id + SUFFIX);
+    }
+
+    private void purgeExpired() {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        
+        final long now = System.currentTimeMillis();
+        for (File file : files) {
+            final String name = file.getName();
+            if (name.endsWith(SUFFIX + ".tmp")) {
+                file.delete();
+            } else if (name.endsWith(SUFFIX) && isExpired(file, now)) {
+                file.delete();
+            }
+        }
+    }
+
+    private static boolean isExpired(final File file, final long now) {
+        try {
+            final DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                if (in.readInt() != MAGIC) {
+                    return true;
+                }
+                in.readLong(); // creation time
+                final long timestamp = in.readLong();
+                final long timeout = in.readLong();
+                return timeout > 0 && now - timestamp > timeout;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static byte[] serialize(final String key, final Object value) {
+        if (!(value instanceof Serializable)) {
+            return null;
+        }
+        
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            try {
+                out.writeObject(value);
+            } finally {
+                out.close();
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Unable to store session attribute " + key, e);
+            return null;
+        }
+    }
+
+    private static Object deserialize(final byte[] value)
+            throws IOException, ClassNotFoundException {
+        final ObjectInputStream in = new ContextObjectInputStream(
+                new ByteArrayInputStream(value));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Resolves classes using the thread context {@link ClassLoader}, so
+     * web application classes can be restored.
+     */
+    private static final class ContextObjectInputStream extends ObjectInputStream {
+
+        ContextObjectInputStream(final InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc)
+                throws IOException, ClassNotFoundException {
+            final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            if (loader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, loader);
+                } catch (ClassNotFoundException ignored) {
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
@@ -76,6 +76,7 @@ import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.localization.LogMessages;
 
 import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
+import org.glassfish.grizzly.monitoring.FlightRecorder;
 import org.glassfish.grizzly.monitoring.MonitoringAware;
 import org.glassfish.grizzly.monitoring.MonitoringConfig;
 import org.glassfish.grizzly.monitoring.MonitoringUtils;
@@ -211,6 +212,8 @@ public class HttpServerFilter extends BaseFilter
                     handlerRequest.addAfterServiceListener(flushResponseHandler);
                 }
                 
+                handlerRequest.flightRecording =
+                        FlightRecorder.beginHttpRequest();
                 HttpServerProbeNotifier.notifyRequestReceive(this, connection,
                         handlerRequest);
 
@@ -399,6 +402,14 @@ public class HttpServerFilter extends BaseFilter
         
         HttpServerProbeNotifier.notifyRequestComplete(this, connection, response);
         
+        if (request.flightRecording != null) {
+            final Object recording = request.flightRecording;
+            request.flightRecording = null;
+            FlightRecorder.endHttpRequest(recording, connection,
+                    request.getMethod().getMethodString(),
+                    request.getRequestURI(), response.getStatus());
+        }
+        
         final HttpRequestPacket httpRequest = request.getRequest();
         final boolean isBroken = httpRequest.isContentBroken();
         
@@ -864,6 +864,7 @@ public class NetworkListener {
                     host + ':' + port);
             }
         } finally {
+            fileCache.destroy();
             state = State.STOPPED;
             if (shutdownFuture != null) {
                 shutdownFuture.result(this);
@@ -452,6 +452,11 @@ public class Request {
      */
     protected Map<String,String> trailers;
 
+    /**
+     * The HTTP request flight recorder event, if it's being recorded.
+     */
+    Object flightRecording;
+
     // ----------------------------------------------------------- Constructors
     /**
      * Temporarily introduce public constructor to fix GRIZZLY-1782.
@@ -648,6 +653,7 @@ public class Request {
      */
     protected void recycle() {
         scheme = null;
+        flightRecording = null;
         contextPath.setPath("");
         httpHandlerPath.reset();
         pathInfo.reset();
@@ -56,6 +56,13 @@ public class Session {
     private final ConcurrentMap<String,Object> attributes =
             new ConcurrentHashMap<>();
 
+    /**
+     * Changed on every {@link #setAttribute(String, Object)} and
+     * {@link #removeAttribute(String)} call, so session managers can cheaply
+     * check if the attributes have been updated.
+     */
+    private volatile int attributesVersion;
+
     /**
      * A session identifier
      */
@@ -105,6 +112,19 @@ public class Session {
     }
 
 
+    /**
+     * Re-create a session, previously persisted, using its original
+     * identifier and creation time.
+     * @param id session identifier
+     * @param creationTime when the session was originally created
+     */
+    Session(String id, long creationTime) {
+        this.id = id;
+        this.creationTime = creationTime;
+        timestamp = System.currentTimeMillis();
+    }
+
+
     /**
      * Is the current Session valid?
      * @return true if valid.
@@ -164,6 +184,7 @@ public class Session {
      */
     public void setAttribute(String key, Object value) {
         attributes.put(key, value);
+        attributesVersion++;
     }
 
     /**
@@ -183,10 +204,21 @@ public class Session {
      * @return true if successful.
      */
     public Object removeAttribute(String key){
-        return attributes.remove(key);
+        final Object value = attributes.remove(key);
+        attributesVersion++;
+        return value;
     }
 
 
+    /**
+     * @return the version of the attributes, which changes on every
+     *  {@link #setAttribute(String, Object)} and {@link #removeAttribute(String)}
+     *  call. Direct changes of the {@link #attributes()} map are not counted.
+     */
+    int getAttributesVersion() {
+        return attributesVersion;
+    }
+
     /**
      * Return a {@link ConcurrentMap} of attributes.
      * @return the attributes associated with this session.
@@ -0,0 +1,162 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.accesslog;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * A reusable, <em>thread-confined</em> buffer used by
+ * {@linkplain BinaryAccessLogFormat binary formats} to produce access log
+ * entries without allocating new objects for every request.
+ *
+ * <p>Entries are built as characters in a reusable {@link StringBuilder} and
+ * then {@linkplain #encode() encoded} in <em>UTF-8</em> (followed by the
+ * platform line separator) into a reusable byte array.</p>
+ *
+ * <p>Instances of this class are <b>not</b> thread-safe.</p>
+ */
+public final class AccessLogBuffer {
+
+    /* Line separator for entries, same as the StreamAppender */
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    /* Our per-thread buffers */
+    private static final ThreadLocal<AccessLogBuffer> BUFFERS = new ThreadLocal<AccessLogBuffer>() {
+        @Override
+        protected AccessLogBuffer initialValue() {
+            return new AccessLogBuffer();
+        }
+    };
+
+    /* The characters of the entry being formatted */
+    private final StringBuilder builder = new StringBuilder(256);
+    /* A reusable date instance */
+    private final Date date = new Date();
+    /* The encoded bytes of the entry */
+    private byte[] bytes = new byte[512];
+    /* The number of valid bytes in our array */
+    private int length;
+
+    /**
+     * Return the {@link AccessLogBuffer} associated with the current
+     * {@link Thread}.
+     */
+    static AccessLogBuffer current() {
+        return BUFFERS.get();
+    }
+
+    /**
+     * Reset this buffer and return the (empty) {@link StringBuilder} the
+     * entry should be formatted into.
+     */
+    public StringBuilder reset() {
+        builder.setLength(0);
+        length = 0;
+        return builder;
+    }
+
+    /**
+     * Return a reusable {@link Date} instance set to the specified time.
+     *
+     * <p>The returned instance is only valid until the next call to this
+     * method.</p>
+     */
+    public Date date(long timeStamp) {
+        date.setTime(timeStamp);
+        return date;
+    }
+
+    /**
+     * Encode the characters formatted so far into this buffer's byte array
+     * in <em>UTF-8</em>, appending the platform line separator.
+     */
+    public void encode() {
+        builder.append(LINE_SEPARATOR);
+        final int size = builder.length();
+
+        /* Worst case, three bytes per char (surrogate pairs are 4 per 2) */
+        if (bytes.length < size * 3) {
+            bytes = Arrays.copyOf(bytes, Math.max(size * 3, bytes.length << 1));
+        }
+
+        final byte[] b = bytes;
+        int pos = 0;
+        for (int i = 0; i < size; i++) {
+            final char c = builder.charAt(i);
+            if (c < 0x80) {
+                b[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                b[pos++] = (byte) (0xC0 | (c >> 6));
+                b[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < size
+                    && Character.isLowSurrogate(builder.charAt(i + 1))) {
+                final int cp = Character.toCodePoint(c, builder.charAt(++i));
+                b[pos++] = (byte) (0xF0 | (cp >> 18));
+                b[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                b[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                b[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                /* Unpaired surrogate, same replacement as the JDK encoder */
+                b[pos++] = (byte) '?';
+            } else {
+                b[pos++] = (byte) (0xE0 | (c >> 12));
+                b[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        length = pos;
+    }
+
+    /**
+     * Return the byte array holding the {@linkplain #encode() encoded} entry.
+     */
+    public byte[] array() {
+        return bytes;
+    }
+
+    /**
+     * Return the number of valid bytes in the {@linkplain #array() array}.
+     */
+    public int length() {
+        return length;
+    }
+
+}
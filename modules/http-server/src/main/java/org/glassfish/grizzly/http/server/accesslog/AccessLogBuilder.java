@@ -72,6 +72,10 @@ public class AccessLogBuilder {
     private String rotationPattern;
     /* Non-synchronous, always use a Queue+Thread */
     private boolean synchronous;
+    /* Zero capacity, do NOT use a ring buffer by default */
+    private int ringBufferCapacity;
+    /* What to do when the ring buffer is full */
+    private RingBufferAppender.OverflowPolicy overflowPolicy = RingBufferAppender.OverflowPolicy.DROP;
 
     /* The base file name of the access log */
     private final File file;
@@ -106,7 +110,9 @@ public class AccessLogBuilder {
         AccessLogAppender appender;
         try {
             if (rotationPattern == null) {
-                appender = new FileAppender(file.getCanonicalFile());
+                appender = ringBufferCapacity > 0
+                        ? new RingBufferAppender(file.getCanonicalFile(), ringBufferCapacity, overflowPolicy)
+                        : new FileAppender(file.getCanonicalFile());
             } else {
                 /* Get directory and base file name (encode ' single quotes) */
                 final File directory = file.getCanonicalFile().getParentFile();
@@ -132,14 +138,16 @@ public class AccessLogBuilder {
                                         .toString();
 
                 /* Create our appender */
-                appender = new RotatingFileAppender(directory, name, archive);
+                appender = ringBufferCapacity > 0
+                        ? new RingBufferAppender(directory, name, archive, ringBufferCapacity, overflowPolicy)
+                        : new RotatingFileAppender(directory, name, archive);
             }
         } catch (IOException exception) {
             throw new IllegalStateException("I/O error creating acces log", exception);
         }
 
-        /* Wrap the synch in a queue in a-synchronous */
-        if (!synchronous) appender = new QueueingAppender(appender);
+        /* Wrap the synch in a queue in a-synchronous (ring buffers already are) */
+        if (!synchronous && ringBufferCapacity <= 0) appender = new QueueingAppender(appender);
 
         /* Create and return our probe */
         return new AccessLogProbe(appender, format, statusThreshold);
@@ -268,4 +276,25 @@ public class AccessLogBuilder {
         this.synchronous = synchronous;
         return this;
     }
+
+    /**
+     * Write access log entries through a bounded {@link RingBufferAppender}
+     * holding up to the specified number of entries.
+     *
+     * <p>Entries will be formatted and encoded without intermediate objects
+     * (when the {@linkplain #format(AccessLogFormat) format} supports it),
+     * and written to the log file in batches by a separate {@link Thread}.
+     * When used, the {@linkplain #synchronous(boolean) synchronous} flag is
+     * ignored.</p>
+     *
+     * @param capacity The number of entries the ring can hold.
+     * @param overflowPolicy What to do when the ring is full.
+     */
+    public AccessLogBuilder ringBuffer(int capacity, RingBufferAppender.OverflowPolicy overflowPolicy) {
+        if (overflowPolicy == null) throw new NullPointerException("Null overflow policy");
+        if (capacity < 1) throw new IllegalArgumentException("Invalid capacity " + capacity);
+        this.ringBufferCapacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
 }
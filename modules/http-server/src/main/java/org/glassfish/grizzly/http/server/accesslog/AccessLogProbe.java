@@ -79,6 +79,9 @@ public class AccessLogProbe extends HttpServerProbe.Adapter {
     private final AccessLogFormat format;
     /* The minimum status threshold */
     private final int statusThreshold;
+    /* The binary format and appender, if both support encoded entries */
+    private final BinaryAccessLogFormat binaryFormat;
+    private final BinaryAccessLogAppender binaryAppender;
 
     /**
      * Create a new {@link AccessLogProbe} formatting data with the specified
@@ -104,6 +107,15 @@ public class AccessLogProbe extends HttpServerProbe.Adapter {
         this.appender = appender;
         this.format = format;
         this.statusThreshold = statusThreshold;
+
+        /* Skip intermediate strings if format and appender agree on bytes */
+        if ((format instanceof BinaryAccessLogFormat) && (appender instanceof BinaryAccessLogAppender)) {
+            binaryFormat = (BinaryAccessLogFormat) format;
+            binaryAppender = (BinaryAccessLogAppender) appender;
+        } else {
+            binaryFormat = null;
+            binaryAppender = null;
+        }
     }
 
     /**
@@ -141,11 +153,17 @@ public class AccessLogProbe extends HttpServerProbe.Adapter {
         final long nanoStamp = System.nanoTime();
 
         final long responseNanos = requestNanos == null ? -1 : nanoStamp - requestNanos;
-        final Date requestMillis = new Date(timeStamp - (responseNanos / 1000000L));
+        final long requestMillis = timeStamp - (responseNanos / 1000000L);
 
-        /* Create a formatted log entry string and append it */
+        /* Create a formatted log entry and append it */
         try {
-            appender.append(format.format(response, requestMillis, responseNanos));
+            if (binaryFormat != null) {
+                final AccessLogBuffer buffer = AccessLogBuffer.current();
+                binaryFormat.format(response, requestMillis, responseNanos, buffer);
+                binaryAppender.append(buffer.array(), 0, buffer.length());
+            } else {
+                appender.append(format.format(response, new Date(requestMillis), responseNanos));
+            }
         } catch (Throwable throwable) {
             LOGGER.log(WARNING, "Exception caught appending to access log", throwable);
         }
@@ -135,7 +135,7 @@ import org.glassfish.grizzly.http.util.MimeHeaders;
  * @author <a href="mailto:pier@usrz.com">Pier Fumagalli</a>
  * @author <a href="http://www.usrz.com/">USRZ.com</a>
  */
-public class ApacheLogFormat implements AccessLogFormat {
+public class ApacheLogFormat implements BinaryAccessLogFormat {
 
     /* The UTC time zone */
     private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
@@ -220,6 +220,20 @@ public class ApacheLogFormat implements AccessLogFormat {
         return builder.toString();
     }
 
+    @Override
+    public void format(Response response, long timeStamp, long responseNanos, AccessLogBuffer buffer) {
+        final StringBuilder builder = buffer.reset();
+        final Date date = buffer.date(timeStamp);
+        final Request request = response.getRequest();
+        for (Field field: fields) try {
+            field.format(builder, request, response, date, responseNanos);
+        } catch (Exception exception) {
+            LOGGER.log(WARNING, "Exception formatting access log entry", exception);
+            builder.append('-');
+        }
+        buffer.encode();
+    }
+
     String unsafeFormat(Response response, Date timeStamp, long responseNanos) {
         final StringBuilder builder = new StringBuilder();
         final Request request = response.getRequest();
@@ -572,6 +586,13 @@ public class ApacheLogFormat implements AccessLogFormat {
 
         private static final String DEFAULT_PATTERN = "[yyyy/MMM/dd:HH:mm:ss Z]";
         private final SimpleDateFormatThreadLocal simpleDateFormat;
+        private final ThreadLocal<CachedTime> cachedTime = new ThreadLocal<CachedTime>() {
+            @Override
+            protected CachedTime initialValue() {
+                return new CachedTime();
+            }
+        };
+        private final long granularity;
         private final TimeZone timeZone;
         private final String pattern;
         private final String format;
@@ -602,17 +623,25 @@ public class ApacheLogFormat implements AccessLogFormat {
                 }
             }
 
-            /* Get our simple date format */
+            /* Get our simple date format, cache per second unless we show millis */
             simpleDateFormat = new SimpleDateFormatThreadLocal(pattern);
+            granularity = pattern.indexOf('S') < 0 ? 1000L : 1L;
         }
 
         @Override
         StringBuilder format(StringBuilder builder, Request request, Response response, Date timeStamp, long responseNanos) {
             if (timeStamp == null) return builder.append('-');
 
-            final SimpleDateFormat format = simpleDateFormat.get();
-            format.setTimeZone(timeZone);
-            return builder.append(format.format(timeStamp));
+            /* Re-format only when the time stamp moves past our granularity */
+            final CachedTime cached = cachedTime.get();
+            final long key = Math.floorDiv(timeStamp.getTime(), granularity);
+            if (cached.value == null || cached.key != key) {
+                final SimpleDateFormat format = simpleDateFormat.get();
+                format.setTimeZone(timeZone);
+                cached.value = format.format(timeStamp);
+                cached.key = key;
+            }
+            return builder.append(cached.value);
         }
 
         @Override
@@ -623,6 +652,13 @@ public class ApacheLogFormat implements AccessLogFormat {
 
     /* ====================================================================== */
 
+    private static final class CachedTime {
+        private long key;
+        private String value;
+    }
+
+    /* ====================================================================== */
+
     private static class RequestMethodField extends AbstractField {
 
         RequestMethodField() {
@@ -0,0 +1,68 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.accesslog;
+
+import org.glassfish.grizzly.http.server.Response;
+
+/**
+ * An {@link AccessLogFormat} capable of formatting {@link Response}s directly
+ * into a reusable {@link AccessLogBuffer}, avoiding the creation of
+ * intermediate {@link String}s and {@link java.util.Date Date}s.
+ *
+ * <p>Implementations of this class <b>must</b> be thread-safe.</p>
+ */
+public interface BinaryAccessLogFormat extends AccessLogFormat {
+
+    /**
+     * Format the data contained in the specified {@link Response} into the
+     * specified {@link AccessLogBuffer}, leaving the
+     * {@linkplain AccessLogBuffer#encode() encoded} entry in it.
+     *
+     * @param response The {@link Response} holding the data to format.
+     * @param timeStamp The time (in milliseconds since the epoch) at which
+     *                  the request was originated.
+     * @param responseNanos The time, in nanoseconds, the {@link Response}
+     *                      took to complete.
+     * @param buffer The thread-confined {@link AccessLogBuffer} to format to.
+     */
+    void format(Response response, long timeStamp, long responseNanos, AccessLogBuffer buffer);
+
+}
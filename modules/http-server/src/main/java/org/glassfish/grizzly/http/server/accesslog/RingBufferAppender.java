@@ -0,0 +1,464 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.accesslog;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.WARNING;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.http.server.HttpServer;
+
+/**
+ * An {@link AccessLogAppender appender} publishing encoded log entries into a
+ * bounded, lock-free ring of reusable byte slots, and using a secondary,
+ * separate {@link Thread} to write them in large batches to a
+ * {@link FileChannel}.
+ *
+ * <p>When the ring is full, entries are either dropped or the appending
+ * thread waits for room, depending on the configured
+ * {@linkplain OverflowPolicy overflow policy}.</p>
+ *
+ * <p>Log files can optionally be rotated/archived following the same
+ * semantics of the {@link RotatingFileAppender}.</p>
+ */
+public class RingBufferAppender implements BinaryAccessLogAppender {
+
+    private static final Logger LOGGER = Grizzly.logger(HttpServer.class);
+
+    /**
+     * The default number of entries the ring can hold.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /* The initial size of each slot, grown if an entry does not fit */
+    private static final int SLOT_SIZE = 512;
+    /* The size of the buffer entries are batched into before writing */
+    private static final int BATCH_SIZE = 256 * 1024;
+    /* How long the writer sleeps when there's nothing to write */
+    private static final long IDLE_NANOS = 100000000L;
+    /* How long a blocked appender sleeps waiting for room in the ring */
+    private static final long BLOCKED_NANOS = 100000L;
+
+    /**
+     * What to do when an entry is appended and the ring is full.
+     */
+    public enum OverflowPolicy {
+        /** Discard the entry (and count it as {@linkplain #getDroppedEntries() dropped}). */
+        DROP,
+        /** Wait until the writer thread has made room in the ring. */
+        BLOCK
+    }
+
+    /* The ring: slots, their lengths and sequences */
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    /* The next sequence to be claimed by appenders */
+    private final AtomicLong tail = new AtomicLong();
+    /* The next sequence to be written (owned by the writer thread) */
+    private long head;
+    /* The number of entries discarded */
+    private final AtomicLong dropped = new AtomicLong();
+    /* What to do when full */
+    private final OverflowPolicy policy;
+
+    /* The SDF that will format the "current" file name */
+    private final SimpleDateFormat fileFormat;
+    /* The SDF that will format the "archive" file name, null if not rotating */
+    private final SimpleDateFormat archiveFormat;
+    /* The directory where to keep files */
+    private final File directory;
+    /* The name of the current archive file name */
+    private File currentArchive;
+    /* The name of the file we're actualy writing to */
+    private File currentFile;
+    /* The channel we're writing to */
+    private FileChannel channel;
+    /* When to check again whether to rotate */
+    private long nextRotationCheck;
+
+    /* The thread doing the writing */
+    private final Thread thread;
+    /* Flag, writer thread is (about to be) parked */
+    private volatile boolean sleeping;
+    /* Flag, closed, byebye */
+    private volatile boolean closed;
+
+    /**
+     * Create a new {@link RingBufferAppender} writing access log entries to
+     * the specified {@link File}, without rotating it.
+     *
+     * @param file The file where access log entries will be written to.
+     * @param capacity The number of entries the ring can hold (rounded up to
+     *                 the next power of two, and at least two).
+     * @param policy What to do when the ring is full.
+     * @throws IOException If an I/O error occurred accessing the filesystem.
+     */
+    public RingBufferAppender(File file, int capacity, OverflowPolicy policy)
+    throws IOException {
+        this(RotatingFileAppender.escape(file.getName()), null,
+             file.getCanonicalFile().getParentFile(), capacity, policy);
+    }
+
+    /**
+     * Create a new {@link RingBufferAppender} writing access log entries to
+     * the specified directory and rotating them like a
+     * {@link RotatingFileAppender}.
+     *
+     * <p>The <em>current</em> log file (the one being written to) will
+     * <em>always</em> be the one identified by the <code>fileName</code>
+     * parameter, and will be moved to a file whose name is given by the
+     * specified archive {@link SimpleDateFormat} pattern when the latter
+     * changes.</p>
+     *
+     * @param directory The directory where access log files will be written to.
+     * @param fileName A file name where log entries will be written to.
+     * @param archivePattern A properly escaped {@link SimpleDateFormat} pattern
+     *                       for the access log archive files.
+     * @param capacity The number of entries the ring can hold (rounded up to
+     *                 the next power of two, and at least two).
+     * @param policy What to do when the ring is full.
+     * @throws IOException If an I/O error occurred accessing the filesystem.
+     */
+    public RingBufferAppender(File directory, String fileName, String archivePattern,
+                              int capacity, OverflowPolicy policy)
+    throws IOException {
+        this(RotatingFileAppender.escape(fileName), checkPattern(archivePattern), directory, capacity, policy);
+    }
+
+    private static String checkPattern(String archivePattern) {
+        if (archivePattern == null) throw new NullPointerException("Null archive pattern");
+        return archivePattern;
+    }
+
+    /* ====================================================================== */
+
+    private RingBufferAppender(String filePattern, String archivePattern, File directory,
+                               int capacity, OverflowPolicy policy)
+    throws IOException {
+        if (policy == null) throw new NullPointerException("Null overflow policy");
+        if (capacity < 1) throw new IllegalArgumentException("Invalid capacity " + capacity);
+        if (capacity > (1 << 30)) throw new IllegalArgumentException("Capacity too big " + capacity);
+
+        /* Our ring, each slot "i" is free for sequence "i" (at least two
+         * slots, or "published" and "free for the next lap" would collide) */
+        int size = 2;
+        while (size < capacity) size <<= 1;
+        slots = new byte[size][];
+        lengths = new int[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new byte[SLOT_SIZE];
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+        this.policy = policy;
+
+        /* Our files */
+        this.directory = directory.getCanonicalFile();
+        fileFormat = new SimpleDateFormat(filePattern);
+        archiveFormat = archivePattern == null ? null : new SimpleDateFormat(archivePattern);
+
+        final Date now = new Date();
+        currentFile = new File(directory, fileFormat.format(now)).getCanonicalFile();
+        if (!this.directory.equals(currentFile.getParentFile()))
+            throw new IllegalArgumentException("Access log file \"" + currentFile + "\" is not a child of the configured directory \"" + this.directory + "\"");
+
+        if (archiveFormat != null) {
+            currentArchive = new File(directory, archiveFormat.format(now)).getCanonicalFile();
+            if (!this.directory.equals(currentArchive.getParentFile()))
+                throw new IllegalArgumentException("Archive file \"" + currentArchive + "\" is not a child of the configured directory \"" + this.directory + "\"");
+            if (currentArchive.equals(currentFile))
+                throw new IllegalArgumentException("Access log file and archive file point to the same file \"" + currentFile + "\"");
+            nextRotationCheck = nextSecond(now.getTime());
+        }
+
+        /* Validated, we can open files */
+        channel = open(currentFile);
+
+        thread = new Thread(new Drainer());
+        thread.setName(toString());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /* ====================================================================== */
+
+    /**
+     * Return the number of entries the ring can hold.
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Return the {@link OverflowPolicy} used when the ring is full.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return policy;
+    }
+
+    /**
+     * Return the number of entries discarded so far because the ring was full.
+     */
+    public long getDroppedEntries() {
+        return dropped.get();
+    }
+
+    @Override
+    public void append(String accessLogEntry)
+    throws IOException {
+        final AccessLogBuffer buffer = AccessLogBuffer.current();
+        buffer.reset().append(accessLogEntry);
+        buffer.encode();
+        append(buffer.array(), 0, buffer.length());
+    }
+
+    @Override
+    public void append(byte[] entry, int offset, int length)
+    throws IOException {
+        if (closed) return;
+
+        /* Claim a sequence whose slot was released by the writer */
+        long position = tail.get();
+        int index;
+        int attempts = 0;
+        while (true) {
+            index = (int) position & mask;
+            final long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) break;
+            } else if (difference < 0) {
+                /* Ring is full */
+                if (policy == OverflowPolicy.DROP || closed) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                wakeUp();
+                if (++attempts < 64) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(BLOCKED_NANOS);
+                }
+            }
+            position = tail.get();
+        }
+
+        /* Copy our entry in the slot, growing it only if it is too small */
+        byte[] slot = slots[index];
+        if (slot.length < length) {
+            slot = new byte[Math.max(length, slot.length << 1)];
+            slots[index] = slot;
+        }
+        System.arraycopy(entry, offset, slot, 0, length);
+        lengths[index] = length;
+
+        /* Publish */
+        sequences.set(index, position + 1);
+        if (sleeping) wakeUp();
+    }
+
+    @Override
+    public void close()
+    throws IOException {
+        closed = true;
+        wakeUp();
+        try {
+            thread.join();
+        } catch (InterruptedException exception) {
+            LOGGER.log(FINE, "Interrupted stopping writer", exception);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* ====================================================================== */
+
+    private void wakeUp() {
+        LockSupport.unpark(thread);
+    }
+
+    private static long nextSecond(long millis) {
+        return millis - (millis % 1000L) + 1000L;
+    }
+
+    private static FileChannel open(File file)
+    throws IOException {
+        return FileChannel.open(file.toPath(), CREATE, WRITE, APPEND);
+    }
+
+    /* Called by the writer thread only */
+    private void rotateIfNeeded() {
+        if (archiveFormat == null) return;
+
+        final long now = System.currentTimeMillis();
+        if (now < nextRotationCheck) return;
+        nextRotationCheck = nextSecond(now);
+
+        final Date date = new Date(now);
+        final File archive = new File(directory, archiveFormat.format(date));
+        if (archive.equals(currentArchive)) return;
+
+        try {
+            /* Close our current channel */
+            channel.close();
+
+            /* If we have different file names, move the file to archive */
+            if (!currentFile.equals(currentArchive)) {
+                LOGGER.info("Archiving \"" + currentFile + "\" to \"" + currentArchive +"\"");
+                if (!currentFile.renameTo(currentArchive))
+                    throw new IOException("Unable to rename \"" + currentFile + "\" to \"" + currentArchive + "\"");
+            }
+
+            /* Save our new state */
+            currentArchive = archive;
+            currentFile = new File(directory, fileFormat.format(date));
+
+        } catch (IOException exception) {
+            LOGGER.log(WARNING, "I/O error rotating access log file", exception);
+        }
+
+        try {
+            /* Always re-open, even if rotation failed */
+            channel = open(currentFile);
+        } catch (IOException exception) {
+            LOGGER.log(WARNING, "I/O error opening access log file \"" + currentFile + "\"", exception);
+        }
+    }
+
+    /* Called by the writer thread only */
+    private void write(ByteBuffer buffer) {
+        rotateIfNeeded();
+        try {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException exception) {
+            LOGGER.log(WARNING, "I/O error writing to access log file", exception);
+        }
+    }
+
+    /* ====================================================================== */
+    /* OUR DRAINER                                                            */
+    /* ====================================================================== */
+
+    private final class Drainer implements Runnable {
+
+        private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_SIZE);
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final int drained = drain();
+                    if (drained > 0) continue;
+
+                    if (closed) {
+                        /* Wait for entries claimed before closing to be published */
+                        if (head == tail.get()) return;
+                        Thread.yield();
+                        continue;
+                    }
+
+                    sleeping = true;
+                    if (!isReadable()) LockSupport.parkNanos(IDLE_NANOS);
+                    sleeping = false;
+                }
+            } catch (Throwable throwable) {
+                LOGGER.log(WARNING, "Exception caught writing access log entries", throwable);
+            } finally {
+                try {
+                    channel.close();
+                } catch (IOException exception) {
+                    LOGGER.log(FINE, "I/O error closing access log file", exception);
+                }
+            }
+        }
+
+        private boolean isReadable() {
+            return sequences.get((int) head & mask) == head + 1;
+        }
+
+        /* Drain all published entries, and write them in batches */
+        private int drain() {
+            int drained = 0;
+            while (isReadable()) {
+                final int index = (int) head & mask;
+                final byte[] slot = slots[index];
+                final int length = lengths[index];
+
+                if (batch.remaining() < length) flush();
+                if (length > batch.capacity()) {
+                    write(ByteBuffer.wrap(slot, 0, length));
+                } else {
+                    batch.put(slot, 0, length);
+                }
+
+                /* Release the slot for the next lap around the ring */
+                sequences.lazySet(index, head + slots.length);
+                head++;
+                drained++;
+            }
+            flush();
+            return drained;
+        }
+
+        private void flush() {
+            if (batch.position() == 0) return;
+            batch.flip();
+            write(batch);
+            batch.clear();
+        }
+    }
+
+}
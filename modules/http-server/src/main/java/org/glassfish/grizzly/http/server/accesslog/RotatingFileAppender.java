@@ -130,7 +130,7 @@ public class RotatingFileAppender implements AccessLogAppender {
 
     /* ====================================================================== */
 
-    private static String escape(String fileName) {
+    static String escape(String fileName) {
         if (fileName == null) throw new NullPointerException("Null file name");
         return "'" + fileName.replace("'", "''") + "'";
     }
@@ -54,7 +54,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
@@ -62,6 +61,8 @@ import java.nio.channels.FileChannel;
 import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -76,6 +77,8 @@ import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
 import org.glassfish.grizzly.monitoring.MonitoringAware;
 import org.glassfish.grizzly.monitoring.MonitoringConfig;
 import org.glassfish.grizzly.monitoring.MonitoringUtils;
+import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
 
 /**
  * This class implements a file caching mechanism used to cache static resources.
@@ -88,6 +91,12 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
             new File(System.getProperty("java.io.tmpdir"));
     
     final static String[] COMPRESSION_ALIASES = {"gzip"};
+    
+    /**
+     * The size of the buffers used to read a plain file and write
+     * its compressed representation.
+     */
+    private static final int COMPRESSION_BUFFER_SIZE = 64 * 1024;
 
     public enum CacheType {
         HEAP, MAPPED, FILE, TIMESTAMP
@@ -179,6 +188,42 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
      */
     private boolean fileSendEnabled;
     
+    /**
+     * The max number of threads used to compress cache entries in background.
+     */
+    private int compressionThreadsCount = 1;
+    
+    /**
+     * The max number of compression tasks waiting for execution.
+     */
+    private int maxCompressionQueueSize = 64;
+    
+    /**
+     * The {@link ExecutorService} to compress cache entries in background.
+     */
+    private volatile ExecutorService compressionExecutor;
+    
+    /**
+     * The {@link ExecutorService} created by this <tt>FileCache</tt>, which
+     * has to be shut down, when the cache is destroyed.
+     */
+    private ExecutorService ownCompressionExecutor;
+    
+    /**
+     * The number of compression tasks scheduled, but not completed yet.
+     */
+    private final AtomicInteger compressionsInProgress = new AtomicInteger();
+    
+    /**
+     * The number of successfully completed compression tasks.
+     */
+    private final AtomicLong compressionsCompleted = new AtomicLong();
+    
+    /**
+     * The number of failed compression tasks.
+     */
+    private final AtomicLong compressionsFailed = new AtomicLong();
+    
     /**
      * File cache probes
      */
@@ -200,6 +245,30 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
                 new EntryResolver());
     }
 
+    /**
+     * Releases the resources held by this <tt>FileCache</tt>, like the
+     * background compression thread pool. The custom {@link ExecutorService}
+     * set via {@link #setCompressionExecutor(java.util.concurrent.ExecutorService)}
+     * is not shut down. The <tt>FileCache</tt> could still be used afterwards,
+     * the compression thread pool will be recreated on demand.
+     */
+    public void destroy() {
+        final ExecutorService executor;
+        synchronized (this) {
+            executor = ownCompressionExecutor;
+            if (executor == null) {
+                return;
+            }
+            
+            ownCompressionExecutor = null;
+            if (compressionExecutor == executor) {
+                compressionExecutor = null;
+            }
+        }
+        
+        executor.shutdownNow();
+    }
+
     /**
      * Add a resource to the cache.
      * Unlike the {@link #add(org.glassfish.grizzly.http.HttpRequestPacket, java.io.File)}
@@ -333,6 +402,33 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         return null;
     }
 
+    /**
+     * Returns the {@link FileCacheEntry} associated with the given host and
+     * request URI, if the entry's content could be served directly from the cache.
+     * Unlike {@link #get(org.glassfish.grizzly.http.HttpRequestPacket)} this
+     * method doesn't check the request conditional headers, doesn't
+     * update the response status and doesn't notify probes.
+     *
+     * @param host the request <tt>Host</tt> header value
+     * @param requestURI the request URI
+     * @return the {@link FileCacheEntry}, or <tt>null</tt> if there is no
+     *          cached content for the given host and request URI
+     */
+    public FileCacheEntry peek(final String host, final String requestURI) {
+        if (cacheSize.get() == 0 || requestURI == null) {
+            return null;
+        }
+
+        final FileCacheKey key = FileCacheKey.create(host, requestURI);
+        final FileCacheEntry entry = fileCacheMap.get(key);
+        key.recycle();
+
+        return entry != null && entry != NULL_CACHE_ENTRY
+                && entry.type != CacheType.TIMESTAMP
+                ? entry
+                : null;
+    }
+
     protected void remove(final FileCacheEntry entry) {
         if (fileCacheMap.remove(entry.key) != null) {
             cacheSize.decrementAndGet();
@@ -655,8 +751,143 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         this.fileSendEnabled = fileSendEnabled;
     }
     
+    /**
+     * Returns the max number of threads used to compress cache entries
+     * in background.
+     */
+    public int getCompressionThreadsCount() {
+        return compressionThreadsCount;
+    }
+
+    /**
+     * Sets the max number of threads used to compress cache entries
+     * in background. The value has to be set before the first compression
+     * task is scheduled.
+     */
+    public void setCompressionThreadsCount(final int compressionThreadsCount) {
+        this.compressionThreadsCount = compressionThreadsCount;
+    }
+
+    /**
+     * Returns the max number of compression tasks waiting for execution.
+     */
+    public int getMaxCompressionQueueSize() {
+        return maxCompressionQueueSize;
+    }
+
+    /**
+     * Sets the max number of compression tasks waiting for execution.
+     * If the queue is full, the cache entry is served uncompressed and the
+     * compression is retried by a subsequent request. The value has to be set
+     * before the first compression task is scheduled.
+     */
+    public void setMaxCompressionQueueSize(final int maxCompressionQueueSize) {
+        this.maxCompressionQueueSize = maxCompressionQueueSize;
+    }
+
+    /**
+     * Sets the custom {@link ExecutorService} to be used to compress cache
+     * entries in background. If not set, the bounded {@link ExecutorService}
+     * will be created on demand according to
+     * {@link #getCompressionThreadsCount()} and {@link #getMaxCompressionQueueSize()}.
+     */
+    public void setCompressionExecutor(final ExecutorService compressionExecutor) {
+        final ExecutorService oldExecutor;
+        synchronized (this) {
+            oldExecutor = ownCompressionExecutor;
+            ownCompressionExecutor = null;
+            this.compressionExecutor = compressionExecutor;
+        }
+        
+        if (oldExecutor != null) {
+            oldExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Returns the number of cache entry compression tasks, which have been
+     * scheduled, but not completed yet.
+     */
+    public int getCompressionsInProgressCount() {
+        return compressionsInProgress.get();
+    }
+
+    /**
+     * Returns the number of successfully completed cache entry compression tasks.
+     */
+    public long getCompletedCompressionsCount() {
+        return compressionsCompleted.get();
+    }
+
+    /**
+     * Returns the number of cache entry compression tasks, which have failed.
+     */
+    public long getFailedCompressionsCount() {
+        return compressionsFailed.get();
+    }
+
+    /**
+     * Schedules the background compression of the given cache entry.
+     * 
+     * @return <tt>true</tt> if the compression task has been scheduled,
+     *         or <tt>false</tt> if the compression executor is overloaded
+     */
+    boolean scheduleCompression(final FileCacheEntry entry) {
+        compressionsInProgress.incrementAndGet();
+        
+        try {
+            obtainCompressionExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compressFile(entry);
+                    } finally {
+                        compressionsInProgress.decrementAndGet();
+                        // compressFile() logs and swallows the errors
+                        if (entry.compressedFile != null) {
+                            compressionsCompleted.incrementAndGet();
+                        } else {
+                            compressionsFailed.incrementAndGet();
+                        }
+                        notifyProbesEntryCompressionCompleted(FileCache.this, entry);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            compressionsInProgress.decrementAndGet();
+            return false;
+        }
+        
+        notifyProbesEntryCompressionScheduled(this, entry);
+        return true;
+    }
+
+    private ExecutorService obtainCompressionExecutor() {
+        ExecutorService executor = compressionExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = compressionExecutor;
+                if (executor == null) {
+                    final int threads = Math.max(1, compressionThreadsCount);
+                    executor = GrizzlyExecutorService.createInstance(
+                            ThreadPoolConfig.defaultConfig()
+                            .setPoolName("Grizzly-FileCache-Compression")
+                            .setCorePoolSize(threads)
+                            .setMaxPoolSize(threads)
+                            .setQueueLimit(maxCompressionQueueSize)
+                            .setDaemon(true));
+                    ownCompressionExecutor = executor;
+                    compressionExecutor = executor;
+                }
+            }
+        }
+        
+        return executor;
+    }
+    
     /**
      * Creates a temporary compressed representation of the given cache entry.
+     * The method is called by the background compression executor.
      */
     protected void compressFile(final FileCacheEntry entry) {
         try {
@@ -665,37 +896,7 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
                     ".tmpzip", compressedFilesFolder);
             tmpCompressedFile.deleteOnExit();
 
-            InputStream in = null;
-            OutputStream out = null;
-            try {
-                in = new FileInputStream(entry.plainFile);
-                out = new GZIPOutputStream(
-                        new FileOutputStream(tmpCompressedFile));
-                
-                final byte[] tmp = new byte[1024];
-                
-                do {
-                    final int readNow = in.read(tmp);
-                    if (readNow == -1) {
-                        break;
-                    }
-                    
-                    out.write(tmp, 0, readNow);
-                } while (true);
-            } finally {
-                if (in != null) {
-                    try {
-                        in.close();
-                    } catch (IOException ignored) {
-                    }
-                }
-                if (out != null) {
-                    try {
-                        out.close();
-                    } catch (IOException ignored) {
-                    }
-                }
-            }
+            gzip(entry.plainFile, tmpCompressedFile);
             
             final long size = tmpCompressedFile.length();
             
@@ -736,6 +937,43 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         }
     }
     
+    /**
+     * Compresses the plain file into the target file using gzip format.
+     * The plain file is read and the compressed data is written using
+     * {@link FileChannel}s and large buffers.
+     */
+    private static void gzip(final File plainFile, final File compressedFile)
+            throws IOException {
+        FileInputStream in = null;
+        OutputStream out = null;
+        try {
+            in = new FileInputStream(plainFile);
+            out = new GZIPOutputStream(new ChannelOutputStream(
+                    new FileOutputStream(compressedFile).getChannel()),
+                    COMPRESSION_BUFFER_SIZE);
+            
+            final FileChannel inChannel = in.getChannel();
+            // Deflater works with arrays, so the input buffer is heap one
+            final ByteBuffer inBuffer = ByteBuffer.allocate(COMPRESSION_BUFFER_SIZE);
+            final byte[] inArray = inBuffer.array();
+            
+            while (inChannel.read(inBuffer) != -1) {
+                out.write(inArray, 0, inBuffer.position());
+                inBuffer.clear();
+            }
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+    
     // ---------------------------------------------------- Monitoring --------//
 
 
@@ -1050,6 +1288,42 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         }
     }
 
+    /**
+     * Notify registered {@link FileCacheProbe}s about the "entry compression
+     * scheduled" event.
+     *
+     * @param fileCache the <tt>FileCache</tt> event occurred on.
+     * @param entry entry to be compressed
+     */
+    protected static void notifyProbesEntryCompressionScheduled(
+            final FileCache fileCache, final FileCacheEntry entry) {
+        final FileCacheProbe[] probes =
+                fileCache.monitoringConfig.getProbesUnsafe();
+        if (probes != null) {
+            for (FileCacheProbe probe : probes) {
+                probe.onEntryCompressionScheduledEvent(fileCache, entry);
+            }
+        }
+    }
+
+    /**
+     * Notify registered {@link FileCacheProbe}s about the "entry compression
+     * completed" event.
+     *
+     * @param fileCache the <tt>FileCache</tt> event occurred on.
+     * @param entry entry been compressed
+     */
+    protected static void notifyProbesEntryCompressionCompleted(
+            final FileCache fileCache, final FileCacheEntry entry) {
+        final FileCacheProbe[] probes =
+                fileCache.monitoringConfig.getProbesUnsafe();
+        if (probes != null) {
+            for (FileCacheProbe probe : probes) {
+                probe.onEntryCompressionCompletedEvent(fileCache, entry);
+            }
+        }
+    }
+
     protected static long convertToLong(final String dateHeader) {
 
         if (dateHeader == null)
@@ -1100,4 +1374,64 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
             element.timeoutMillis = timeoutMillis;
         }
     }
+
+    /**
+     * {@link OutputStream}, which accumulates the data in a direct
+     * {@link ByteBuffer} and writes it to the {@link FileChannel} once
+     * the buffer is full.
+     */
+    private static final class ChannelOutputStream extends OutputStream {
+        private final FileChannel channel;
+        private final ByteBuffer buffer =
+                ByteBuffer.allocateDirect(COMPRESSION_BUFFER_SIZE);
+
+        ChannelOutputStream(final FileChannel channel) {
+            this.channel = channel;
+        }
+        
+        @Override
+        public void write(final int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(final byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                
+                final int chunk = Math.min(len, buffer.remaining());
+                buffer.put(b, off, chunk);
+                off += chunk;
+                len -= chunk;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+        
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
 }
@@ -40,6 +40,7 @@
 
 package org.glassfish.grizzly.http.server.filecache;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -49,7 +50,12 @@ import java.util.logging.Logger;
 import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.http.CompressionConfig;
 import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.Protocol;
 import org.glassfish.grizzly.http.util.ContentType;
+import org.glassfish.grizzly.http.util.FastHttpDateFormat;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpCodecUtils;
+import org.glassfish.grizzly.http.util.HttpStatus;
 
 /**
  * The entry value in the file cache map.
@@ -59,6 +65,12 @@ import org.glassfish.grizzly.http.util.ContentType;
 public final class FileCacheEntry implements Runnable {
 
     private static final Logger LOGGER = Grizzly.logger(FileCacheEntry.class);
+    
+    private static final byte[] CRLF_BYTES = {(byte) '\r', (byte) '\n'};
+    
+    private static final int PLAIN_HEAD_IDX = 0;
+    private static final int COMPRESSED_HEAD_IDX = 1;
+    private static final int NOT_MODIFIED_HEAD_IDX = 2;
 
     public FileCacheKey key;
     public String host;
@@ -86,6 +98,10 @@ public final class FileCacheEntry implements Runnable {
     public volatile long timeoutMillis;
 
     private final FileCache fileCache;
+    
+    // lazily initialized pre-encoded response heads
+    // [200 plain, 200 compressed, 304]
+    private final EncodedHead[] encodedHeads = new EncodedHead[3];
 
     public FileCacheEntry(FileCache fileCache) {
         this.fileCache = fileCache;
@@ -118,11 +134,15 @@ public final class FileCacheEntry implements Runnable {
         }
         
         if (isCompressed.compareAndSet(false, true)) {
-            fileCache.compressFile(this);
+            if (!fileCache.scheduleCompression(this)) {
+                // the compression executor is overloaded, let subsequent
+                // requests retry
+                isCompressed.set(false);
+            }
         }
         
-        // compressedFile could be still "null" if the file compression was
-        // initiated by other request and it is still not completed
+        // compressedFile is "null" until the background compression
+        // is completed, so the plain variant will be served meanwhile
         return compressedFile != null;
     }
     
@@ -158,6 +178,43 @@ public final class FileCacheEntry implements Runnable {
         return isCompressed ? compressedBb : bb;
     }
     
+    /**
+     * Returns the pre-encoded HTTP/1.1 response status line and headers for
+     * this entry, including the current <tt>Date</tt> header and the empty
+     * line terminating the headers block.
+     * The returned array is shared and must not be modified.
+     * 
+     * @param status the response status, only {@link HttpStatus#OK_200} and
+     *        {@link HttpStatus#NOT_MODIFIED_304} are supported
+     * @param isCompressed if <tt>true</tt> the headers describe the compressed
+     *        representation of the entry, otherwise uncompressed one
+     * @return the pre-encoded response head, or <tt>null</tt> if it's not
+     *         available and the response has to be serialized as usual
+     */
+    public byte[] getEncodedResponseHead(final HttpStatus status,
+            final boolean isCompressed) {
+        final int idx;
+        if (status == HttpStatus.OK_200) {
+            idx = isCompressed ? COMPRESSED_HEAD_IDX : PLAIN_HEAD_IDX;
+        } else if (status == HttpStatus.NOT_MODIFIED_304) {
+            idx = NOT_MODIFIED_HEAD_IDX;
+        } else {
+            return null;
+        }
+        
+        EncodedHead encodedHead = encodedHeads[idx];
+        if (encodedHead == null) {
+            if (contentType == null || !contentType.isMimeTypeSet()) {
+                return null;
+            }
+            
+            encodedHead = new EncodedHead(status, isCompressed);
+            encodedHeads[idx] = encodedHead;
+        }
+        
+        return encodedHead.get();
+    }
+    
     @Override
     public void run() {
         fileCache.remove(this);
@@ -197,4 +254,92 @@ public final class FileCacheEntry implements Runnable {
         
         super.finalize();
     }
+
+    /**
+     * The pre-encoded response status line and headers with the
+     * fixed-width slot for the <tt>Date</tt> header value, which gets
+     * patched once the current date is changed.
+     */
+    private final class EncodedHead {
+        private final byte[] template;
+        private final int dateOffset;
+        private final int dateLength;
+        
+        private volatile DatedHead datedHead;
+
+        EncodedHead(final HttpStatus status, final boolean isCompressed) {
+            final byte[] currentDate = FastHttpDateFormat.getCurrentDateBytes();
+            dateLength = currentDate.length;
+            
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            appendLine(out, Protocol.HTTP_1_1.getProtocolString() + ' '
+                    + status.getStatusCode() + ' ' + status.getReasonPhrase());
+            
+            appendHeader(out, Header.Server, server);
+            
+            if (status == HttpStatus.OK_200) {
+                appendHeader(out, Header.ETag, Etag);
+                appendHeader(out, Header.LastModified, lastModifiedHeader);
+                if (isCompressed) {
+                    appendHeader(out, Header.ContentEncoding, "gzip");
+                }
+                appendHeader(out, Header.ContentType, contentType.get());
+                appendHeader(out, Header.ContentLength,
+                        String.valueOf(getFileSize(isCompressed)));
+            }
+            
+            // the date slot is patched by get()
+            final byte[] dateName = HttpCodecUtils.toCheckedByteArray(
+                    Header.Date + ": ");
+            out.write(dateName, 0, dateName.length);
+            dateOffset = out.size();
+            out.write(currentDate, 0, dateLength);
+            out.write(CRLF_BYTES, 0, CRLF_BYTES.length);
+            out.write(CRLF_BYTES, 0, CRLF_BYTES.length);
+            
+            template = out.toByteArray();
+        }
+
+        byte[] get() {
+            final byte[] currentDate = FastHttpDateFormat.getCurrentDateBytes();
+            
+            DatedHead head = datedHead;
+            if (head == null || head.date != currentDate) {
+                if (currentDate.length != dateLength) {
+                    return null;
+                }
+                
+                final byte[] bytes = template.clone();
+                System.arraycopy(currentDate, 0, bytes, dateOffset, dateLength);
+                head = new DatedHead(currentDate, bytes);
+                datedHead = head;
+            }
+            
+            return head.bytes;
+        }
+        
+        private void appendHeader(final ByteArrayOutputStream out,
+                final Header name, final String value) {
+            if (value != null) {
+                appendLine(out, name + ": " + value);
+            }
+        }
+        
+        private void appendLine(final ByteArrayOutputStream out,
+                final String line) {
+            final byte[] bytes = HttpCodecUtils.toCheckedByteArray(line);
+            out.write(bytes, 0, bytes.length);
+            out.write(CRLF_BYTES, 0, CRLF_BYTES.length);
+        }
+    }
+    
+    private static final class DatedHead {
+        private final byte[] date;
+        private final byte[] bytes;
+
+        DatedHead(final byte[] date, final byte[] bytes) {
+            this.date = date;
+            this.bytes = bytes;
+        }
+    }
 }
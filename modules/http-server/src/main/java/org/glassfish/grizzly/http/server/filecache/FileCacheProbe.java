@@ -89,6 +89,24 @@ public interface FileCacheProbe {
      */
     void onErrorEvent(FileCache fileCache, Throwable error);
 
+    /**
+     * Method will be called, when file cache entry background compression
+     * gets scheduled.
+     *
+     * @param fileCache {@link FileCache}, the event belongs to.
+     * @param entry {@link FileCacheEntry} to be compressed.
+     */
+    void onEntryCompressionScheduledEvent(FileCache fileCache, FileCacheEntry entry);
+
+    /**
+     * Method will be called, when file cache entry background compression
+     * gets completed, either successfully or not.
+     *
+     * @param fileCache {@link FileCache}, the event belongs to.
+     * @param entry {@link FileCacheEntry} been compressed.
+     */
+    void onEntryCompressionCompletedEvent(FileCache fileCache, FileCacheEntry entry);
+
 
     // ---------------------------------------------------------- Nested Classes
 
@@ -134,5 +152,17 @@ public interface FileCacheProbe {
         @Override
         public void onErrorEvent(FileCache fileCache, Throwable error) {}
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onEntryCompressionScheduledEvent(FileCache fileCache, FileCacheEntry entry) {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onEntryCompressionCompletedEvent(FileCache fileCache, FileCacheEntry entry) {}
+
     } // END Adapter
 }
@@ -0,0 +1,130 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.limiter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Additive increase/multiplicative decrease {@link LimitAlgorithm}.
+ * 
+ * The limit grows by one for every successful request, completed while
+ * at least half of the limit was in use, and is multiplied by the backoff
+ * ratio once a request is dropped or takes longer than the timeout.
+ * 
+ * @since 2.4.3
+ */
+public class AimdLimit implements LimitAlgorithm {
+    private int initialLimit = 20;
+    private int minLimit = 1;
+    private int maxLimit = 1000;
+    private double backoffRatio = 0.9;
+    private long timeoutNanos = TimeUnit.SECONDS.toNanos(5);
+
+    @Override
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    /**
+     * @param initialLimit the limit to start with
+     * @return this {@link AimdLimit}
+     */
+    public AimdLimit setInitialLimit(final int initialLimit) {
+        this.initialLimit = initialLimit;
+        return this;
+    }
+
+    /**
+     * @param minLimit the limit will never drop below this value
+     * @return this {@link AimdLimit}
+     */
+    public AimdLimit setMinLimit(final int minLimit) {
+        this.minLimit = minLimit;
+        return this;
+    }
+
+    /**
+     * @param maxLimit the limit will never grow over this value
+     * @return this {@link AimdLimit}
+     */
+    public AimdLimit setMaxLimit(final int maxLimit) {
+        this.maxLimit = maxLimit;
+        return this;
+    }
+
+    /**
+     * @param backoffRatio the ratio (<tt>0 &lt; ratio &lt; 1</tt>) the limit is
+     *      multiplied by on a drop
+     * @return this {@link AimdLimit}
+     */
+    public AimdLimit setBackoffRatio(final double backoffRatio) {
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio should be in (0, 1) range");
+        }
+        
+        this.backoffRatio = backoffRatio;
+        return this;
+    }
+
+    /**
+     * @param timeout the request processing time, which is treated as a drop
+     * @param timeUnit the timeout {@link TimeUnit}
+     * @return this {@link AimdLimit}
+     */
+    public AimdLimit setTimeout(final long timeout, final TimeUnit timeUnit) {
+        this.timeoutNanos = timeUnit.toNanos(timeout);
+        return this;
+    }
+
+    @Override
+    public int update(final int limit, final long rttNanos,
+            final int inFlight, final boolean dropped) {
+        if (dropped || rttNanos > timeoutNanos) {
+            return Math.max(minLimit, (int) (limit * backoffRatio));
+        }
+        
+        if (inFlight * 2 >= limit) {
+            return Math.min(maxLimit, limit + 1);
+        }
+        
+        return limit;
+    }
+}
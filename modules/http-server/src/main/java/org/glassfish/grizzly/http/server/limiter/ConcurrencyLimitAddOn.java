@@ -0,0 +1,417 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.limiter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.http.server.AddOn;
+import org.glassfish.grizzly.http.server.HttpServerFilter;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.monitoring.MetricsSource;
+import org.glassfish.grizzly.monitoring.MetricsWriter;
+import org.glassfish.grizzly.utils.DelayedExecutor;
+import org.glassfish.grizzly.utils.NullaryFunction;
+
+/**
+ * {@link AddOn}, which protects the {@link NetworkListener} from overload
+ * by limiting the number of concurrently processed HTTP requests.
+ * 
+ * The limit is not fixed, it's continuously adjusted by a
+ * {@link LimitAlgorithm} ({@link GradientLimit} by default) based on
+ * the observed response latencies. Requests over the limit get immediate
+ * <tt>503 Service Unavailable</tt> response with a <tt>Retry-After</tt>
+ * header before reaching the {@link org.glassfish.grizzly.http.server.HttpHandler},
+ * or, if {@link #setMaxQueueSize(int)} is set, wait up to
+ * {@link #setMaxQueueWait(long, java.util.concurrent.TimeUnit)} for a permit.
+ * 
+ * Each {@link NetworkListener} gets its own {@link ConcurrencyLimiter}.
+ * Paths registered via {@link #addPath(java.lang.String)} get separate
+ * {@link ConcurrencyLimiter}s, so a slow handler doesn't take the whole
+ * listener capacity:
+ * <pre>
+ * final ConcurrencyLimitAddOn limits = new ConcurrencyLimitAddOn()
+ *         .addPath("/reports")
+ *         .setMaxQueueSize(100)
+ *         .setMaxQueueWait(50, TimeUnit.MILLISECONDS);
+ * listener.registerAddOn(limits);
+ * </pre>
+ * 
+ * Live limit values are available via {@link #getLimiter(java.lang.String)}
+ * and, as the AddOn is a {@link MetricsSource}, could be exported by the
+ * {@link org.glassfish.grizzly.http.server.metrics.MetricsAddOn}.
+ * 
+ * @since 2.4.3
+ */
+public class ConcurrencyLimitAddOn implements AddOn, MetricsSource {
+    private final NullaryFunction<? extends LimitAlgorithm> algorithmFactory;
+    
+    private final List<String> paths = new ArrayList<String>();
+    private int maxQueueSize;
+    private long maxQueueWaitMillis = 100;
+    private int retryAfterSeconds = 1;
+    
+    private final CopyOnWriteArrayList<Entry> entries =
+            new CopyOnWriteArrayList<Entry>();
+    
+    private DelayedExecutor delayedExecutor;
+    private DelayedExecutor.DelayQueue<ConcurrencyLimitFilter.QueuedRequest> delayQueue;
+
+    /**
+     * Constructs the AddOn, which uses {@link GradientLimit} with default
+     * settings.
+     */
+    public ConcurrencyLimitAddOn() {
+        this(new NullaryFunction<LimitAlgorithm>() {
+            @Override
+            public LimitAlgorithm evaluate() {
+                return new GradientLimit();
+            }
+        });
+    }
+
+    /**
+     * @param algorithmFactory creates a {@link LimitAlgorithm} for every
+     *      {@link ConcurrencyLimiter}
+     */
+    public ConcurrencyLimitAddOn(
+            final NullaryFunction<? extends LimitAlgorithm> algorithmFactory) {
+        if (algorithmFactory == null) {
+            throw new IllegalArgumentException("algorithmFactory can't be null");
+        }
+        
+        this.algorithmFactory = algorithmFactory;
+    }
+
+    /**
+     * Registers the path (like <tt>/reports</tt>), requests to which
+     * (including sub-paths) are limited separately from the other
+     * {@link NetworkListener} requests.
+     * 
+     * @param path the path
+     * @return this {@link ConcurrencyLimitAddOn}
+     */
+    public ConcurrencyLimitAddOn addPath(final String path) {
+        if (path == null || !path.startsWith("/")) {
+            throw new IllegalArgumentException("path should start with '/'");
+        }
+        
+        synchronized (paths) {
+            if (!paths.contains(path)) {
+                paths.add(path);
+            }
+        }
+        
+        return this;
+    }
+
+    /**
+     * @return the max number of requests per {@link ConcurrencyLimiter},
+     *      which may wait for a permit. <tt>0</tt> (default) means
+     *      over-limit requests are rejected immediately
+     */
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    /**
+     * @param maxQueueSize the max number of requests per {@link ConcurrencyLimiter},
+     *      which may wait for a permit
+     * @return this {@link ConcurrencyLimitAddOn}
+     */
+    public ConcurrencyLimitAddOn setMaxQueueSize(final int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+        return this;
+    }
+
+    /**
+     * @param timeUnit the {@link TimeUnit}
+     * @return the max time a queued request may wait for a permit
+     */
+    public long getMaxQueueWait(final TimeUnit timeUnit) {
+        return timeUnit.convert(maxQueueWaitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param maxQueueWait the max time a queued request may wait for a permit
+     * @param timeUnit the {@link TimeUnit}
+     * @return this {@link ConcurrencyLimitAddOn}
+     */
+    public ConcurrencyLimitAddOn setMaxQueueWait(final long maxQueueWait,
+            final TimeUnit timeUnit) {
+        this.maxQueueWaitMillis = Math.max(1, timeUnit.toMillis(maxQueueWait));
+        return this;
+    }
+
+    /**
+     * @return the <tt>Retry-After</tt> value (in seconds) of rejected requests
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * @param retryAfterSeconds the <tt>Retry-After</tt> value (in seconds)
+     *      of rejected requests
+     * @return this {@link ConcurrencyLimitAddOn}
+     */
+    public ConcurrencyLimitAddOn setRetryAfterSeconds(final int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
+    /**
+     * @param listenerName the {@link NetworkListener} name
+     * @return the {@link NetworkListener} {@link ConcurrencyLimiter}, or
+     *      <tt>null</tt> if the AddOn hasn't been set up on the listener
+     */
+    public ConcurrencyLimiter getLimiter(final String listenerName) {
+        final Entry entry = find(listenerName);
+        return entry != null ? entry.limiter : null;
+    }
+
+    /**
+     * @param listenerName the {@link NetworkListener} name
+     * @param path the path registered via {@link #addPath(java.lang.String)}
+     * @return the path {@link ConcurrencyLimiter}, or <tt>null</tt> if
+     *      there is no such path or listener
+     */
+    public ConcurrencyLimiter getLimiter(final String listenerName,
+            final String path) {
+        final Entry entry = find(listenerName);
+        if (entry != null) {
+            for (int i = 0; i < entry.paths.length; i++) {
+                if (entry.paths[i].equals(path)) {
+                    return entry.pathLimiters[i];
+                }
+            }
+        }
+        
+        return null;
+    }
+
+    /**
+     * Stops the thread, which expires queued requests.
+     */
+    public synchronized void destroy() {
+        if (delayedExecutor != null) {
+            delayedExecutor.destroy();
+            delayedExecutor.getThreadPool().shutdown();
+            delayedExecutor = null;
+            delayQueue = null;
+        }
+    }
+
+    @Override
+    public void setup(final NetworkListener networkListener,
+            final FilterChainBuilder builder) {
+        final int httpServerFilterIdx = builder.indexOfType(HttpServerFilter.class);
+        if (httpServerFilterIdx < 0) {
+            return;
+        }
+        
+        final String[] listenerPaths;
+        synchronized (paths) {
+            listenerPaths = paths.toArray(new String[paths.size()]);
+        }
+        
+        // the most specific paths go first
+        Arrays.sort(listenerPaths, Collections.reverseOrder(
+                new Comparator<String>() {
+            @Override
+            public int compare(final String p1, final String p2) {
+                return p1.length() - p2.length();
+            }
+        }));
+        
+        final ConcurrencyLimiter[] pathLimiters =
+                new ConcurrencyLimiter[listenerPaths.length];
+        for (int i = 0; i < pathLimiters.length; i++) {
+            pathLimiters[i] = createLimiter();
+        }
+        
+        final Entry entry = new Entry(networkListener.getName(),
+                createLimiter(), listenerPaths, pathLimiters);
+        
+        // Insert the filter right before HttpServerFilter
+        builder.add(httpServerFilterIdx, new ConcurrencyLimitFilter(
+                entry.limiter, listenerPaths, pathLimiters,
+                retryAfterSeconds, maxQueueWaitMillis,
+                maxQueueSize > 0 ? obtainDelayQueue() : null));
+        
+        entries.add(entry);
+    }
+
+    @Override
+    public void writeMetrics(final MetricsWriter writer) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        
+        writer.family("grizzly_http_concurrency_limit", MetricsWriter.Type.GAUGE,
+                "The current concurrency limit");
+        for (Entry entry : entries) {
+            for (int i = -1; i < entry.paths.length; i++) {
+                sample(writer, "grizzly_http_concurrency_limit", null, entry, i)
+                        .value(limiter(entry, i).getLimit());
+            }
+        }
+        
+        writer.family("grizzly_http_concurrency_in_flight", MetricsWriter.Type.GAUGE,
+                "The number of admitted requests in progress");
+        for (Entry entry : entries) {
+            for (int i = -1; i < entry.paths.length; i++) {
+                sample(writer, "grizzly_http_concurrency_in_flight", null, entry, i)
+                        .value(limiter(entry, i).getInFlight());
+            }
+        }
+        
+        writer.family("grizzly_http_concurrency_queued", MetricsWriter.Type.GAUGE,
+                "The number of requests waiting for a permit");
+        for (Entry entry : entries) {
+            for (int i = -1; i < entry.paths.length; i++) {
+                sample(writer, "grizzly_http_concurrency_queued", null, entry, i)
+                        .value(limiter(entry, i).getQueueSize());
+            }
+        }
+        
+        writer.family("grizzly_http_concurrency_rejected", MetricsWriter.Type.COUNTER,
+                "The total number of requests rejected because of the limit");
+        for (Entry entry : entries) {
+            for (int i = -1; i < entry.paths.length; i++) {
+                sample(writer, "grizzly_http_concurrency_rejected", "_total", entry, i)
+                        .value(limiter(entry, i).getRejectedCount());
+            }
+        }
+        
+        writer.family("grizzly_http_concurrency_queue_timeouts", MetricsWriter.Type.COUNTER,
+                "The total number of queued requests rejected after the max queue wait");
+        for (Entry entry : entries) {
+            for (int i = -1; i < entry.paths.length; i++) {
+                sample(writer, "grizzly_http_concurrency_queue_timeouts", "_total", entry, i)
+                        .value(limiter(entry, i).getQueueTimeoutCount());
+            }
+        }
+    }
+
+    private static MetricsWriter sample(final MetricsWriter writer,
+            final String name, final String suffix, final Entry entry,
+            final int pathIdx) {
+        if (suffix != null) {
+            writer.sample(name, suffix);
+        } else {
+            writer.sample(name);
+        }
+        
+        writer.label("listener", entry.name);
+        if (pathIdx >= 0) {
+            writer.label("path", entry.paths[pathIdx]);
+        }
+        
+        return writer;
+    }
+
+    private static ConcurrencyLimiter limiter(final Entry entry,
+            final int pathIdx) {
+        return pathIdx >= 0 ? entry.pathLimiters[pathIdx] : entry.limiter;
+    }
+
+    private ConcurrencyLimiter createLimiter() {
+        return new ConcurrencyLimiter(algorithmFactory.evaluate(), maxQueueSize);
+    }
+
+    private synchronized DelayedExecutor.DelayQueue<ConcurrencyLimitFilter.QueuedRequest> obtainDelayQueue() {
+        if (delayQueue == null) {
+            final ExecutorService threadPool = Executors.newSingleThreadExecutor(
+                    new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(r,
+                            "Grizzly-ConcurrencyLimit-QueueTimeout");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            
+            // check the queue often enough to keep the wait time accuracy
+            delayedExecutor = new DelayedExecutor(threadPool,
+                    Math.max(1, Math.min(100, maxQueueWaitMillis / 4)),
+                    TimeUnit.MILLISECONDS);
+            delayQueue = ConcurrencyLimitFilter.createDelayQueue(delayedExecutor);
+            delayedExecutor.start();
+        }
+        
+        return delayQueue;
+    }
+
+    private Entry find(final String listenerName) {
+        for (Entry entry : entries) {
+            if (entry.name.equals(listenerName)) {
+                return entry;
+            }
+        }
+        
+        return null;
+    }
+
+    private static final class Entry {
+        final String name;
+        final ConcurrencyLimiter limiter;
+        final String[] paths;
+        final ConcurrencyLimiter[] pathLimiters;
+
+        Entry(final String name, final ConcurrencyLimiter limiter,
+                final String[] paths, final ConcurrencyLimiter[] pathLimiters) {
+            this.name = name;
+            this.limiter = limiter;
+            this.paths = paths;
+            this.pathLimiters = pathLimiters;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.limiter;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.FilterChainEvent;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpContext;
+import org.glassfish.grizzly.http.HttpEvents;
+import org.glassfish.grizzly.http.HttpHeader;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.HttpServerFilter;
+import org.glassfish.grizzly.http.Note;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.glassfish.grizzly.utils.DelayedExecutor;
+
+/**
+ * The {@link org.glassfish.grizzly.filterchain.Filter}, which admits HTTP
+ * requests to the {@link org.glassfish.grizzly.http.server.HttpServerFilter}
+ * according to the {@link ConcurrencyLimiter}s and releases their permits
+ * once the response is complete.
+ * 
+ * Over-limit requests are either queued for a limited time, or get
+ * immediate <tt>503 Service Unavailable</tt> response with a
+ * <tt>Retry-After</tt> header.
+ * 
+ * @since 2.4.3
+ */
+class ConcurrencyLimitFilter extends BaseFilter {
+    private static final Note<Permit> PERMIT_NOTE =
+            HttpRequestPacket.createNote(ConcurrencyLimitFilter.class.getName() + ".permit");
+    
+    private final ConcurrencyLimiter limiter;
+    private final String[] paths;
+    private final ConcurrencyLimiter[] pathLimiters;
+    private final String retryAfter;
+    private final long maxQueueWaitMillis;
+    private final DelayedExecutor.DelayQueue<QueuedRequest> delayQueue;
+
+    /**
+     * @param limiter the {@link ConcurrencyLimiter} for requests, which don't
+     *      match any of the paths
+     * @param paths the paths, sorted from the most to the least specific
+     * @param pathLimiters the {@link ConcurrencyLimiter}s of the paths
+     * @param retryAfterSeconds the <tt>Retry-After</tt> header value
+     * @param maxQueueWaitMillis the max time a request may wait for a permit
+     * @param delayQueue the queue timeouts {@link DelayedExecutor.DelayQueue},
+     *      or <tt>null</tt> if requests shouldn't be queued
+     */
+    ConcurrencyLimitFilter(final ConcurrencyLimiter limiter,
+            final String[] paths, final ConcurrencyLimiter[] pathLimiters,
+            final int retryAfterSeconds, final long maxQueueWaitMillis,
+            final DelayedExecutor.DelayQueue<QueuedRequest> delayQueue) {
+        this.limiter = limiter;
+        this.paths = paths;
+        this.pathLimiters = pathLimiters;
+        this.retryAfter = String.valueOf(retryAfterSeconds);
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+        this.delayQueue = delayQueue;
+    }
+
+    static DelayedExecutor.DelayQueue<QueuedRequest> createDelayQueue(
+            final DelayedExecutor delayedExecutor) {
+        return delayedExecutor.createDelayQueue(new DelayQueueWorker(),
+                new DelayQueueResolver());
+    }
+
+    @Override
+    public NextAction handleRead(final FilterChainContext ctx) throws IOException {
+        final Object message = ctx.getMessage();
+        if (!(message instanceof HttpContent)) {
+            return ctx.getInvokeAction();
+        }
+        
+        final HttpHeader httpHeader = ((HttpContent) message).getHttpHeader();
+        
+        // upgraded requests are not completed the usual way,
+        // so they're not limited
+        if (!httpHeader.isRequest() || httpHeader.isUpgrade()) {
+            return ctx.getInvokeAction();
+        }
+        
+        final HttpRequestPacket request = (HttpRequestPacket) httpHeader;
+        if (request.getNote(PERMIT_NOTE) != null) {
+            // payload of the admitted request
+            return ctx.getInvokeAction();
+        }
+        
+        final ConcurrencyLimiter requestLimiter =
+                getLimiter(request.getRequestURI());
+        
+        if (requestLimiter.tryAcquire()) {
+            request.setNote(PERMIT_NOTE, new Permit(requestLimiter));
+            return ctx.getInvokeAction();
+        }
+        
+        if (delayQueue == null) {
+            requestLimiter.onRejected();
+            sendServiceUnavailable(ctx, request);
+            return ctx.getStopAction();
+        }
+        
+        final QueuedRequest queuedRequest =
+                new QueuedRequest(ctx, request, requestLimiter);
+        
+        final NextAction suspendAction = ctx.getSuspendAction();
+        ctx.suspend();
+        
+        delayQueue.add(queuedRequest, maxQueueWaitMillis, TimeUnit.MILLISECONDS);
+        if (!requestLimiter.offer(queuedRequest)
+                && queuedRequest.done.compareAndSet(false, true)) {
+            // the queue is full
+            delayQueue.remove(queuedRequest);
+            requestLimiter.onRejected();
+            sendServiceUnavailable(ctx, request);
+            ctx.resume(ctx.getStopAction());
+        }
+        
+        return suspendAction;
+    }
+
+    @Override
+    public NextAction handleEvent(final FilterChainContext ctx,
+            final FilterChainEvent event) throws IOException {
+        if (event.type() == HttpEvents.ResponseCompleteEvent.TYPE) {
+            final HttpContext httpContext = HttpContext.get(ctx);
+            final HttpRequestPacket request = httpContext != null
+                    ? httpContext.getRequest()
+                    : null;
+            
+            if (request != null) {
+                final Permit permit = request.removeNote(PERMIT_NOTE);
+                if (permit != null) {
+                    final int status = request.getResponse().getStatus();
+                    permit.limiter.release(System.nanoTime() - permit.startNanos,
+                            status == 503 || status == 504);
+                }
+            }
+        }
+        
+        return ctx.getInvokeAction();
+    }
+
+    private ConcurrencyLimiter getLimiter(final String requestURI) {
+        if (requestURI != null) {
+            for (int i = 0; i < paths.length; i++) {
+                final String path = paths[i];
+                if (requestURI.startsWith(path)
+                        && (requestURI.length() == path.length()
+                        || path.endsWith("/")
+                        || requestURI.charAt(path.length()) == '/')) {
+                    return pathLimiters[i];
+                }
+            }
+        }
+        
+        return limiter;
+    }
+
+    private void sendServiceUnavailable(final FilterChainContext ctx,
+            final HttpRequestPacket request) {
+        final HttpResponsePacket response = request.getResponse();
+        HttpStatus.SERVICE_UNAVAILABLE_503.setValues(response);
+        response.setHeader(Header.RetryAfter, retryAfter);
+        response.setContentLength(0);
+        
+        ctx.write(HttpContent.builder(response).last(true).build());
+        
+        // let the codec skip the request payload and handle keep-alive
+        ctx.notifyDownstream(HttpServerFilter.RESPONSE_COMPLETE_EVENT);
+    }
+
+    private static void execute(final FilterChainContext ctx,
+            final Runnable task) {
+        final ExecutorService workerThreadPool =
+                ctx.getConnection().getTransport().getWorkerThreadPool();
+        if (workerThreadPool != null) {
+            workerThreadPool.execute(task);
+        } else {
+            task.run();
+        }
+    }
+
+    private static final class Permit {
+        final ConcurrencyLimiter limiter;
+        final long startNanos = System.nanoTime();
+
+        Permit(final ConcurrencyLimiter limiter) {
+            this.limiter = limiter;
+        }
+    }
+
+    final class QueuedRequest implements ConcurrencyLimiter.Waiter {
+        private final FilterChainContext ctx;
+        private final HttpRequestPacket request;
+        private final ConcurrencyLimiter requestLimiter;
+        
+        final AtomicBoolean done = new AtomicBoolean();
+        volatile long timeoutTimeMillis = DelayedExecutor.UNSET_TIMEOUT;
+
+        QueuedRequest(final FilterChainContext ctx,
+                final HttpRequestPacket request,
+                final ConcurrencyLimiter requestLimiter) {
+            this.ctx = ctx;
+            this.request = request;
+            this.requestLimiter = requestLimiter;
+        }
+
+        @Override
+        public boolean onPermit() {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            
+            delayQueue.remove(this);
+            request.setNote(PERMIT_NOTE, new Permit(requestLimiter));
+            
+            execute(ctx, new Runnable() {
+                @Override
+                public void run() {
+                    ctx.resumeNext();
+                }
+            });
+            
+            return true;
+        }
+
+        void onTimeout() {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            
+            requestLimiter.remove(this);
+            requestLimiter.onQueueTimeout();
+            
+            execute(ctx, new Runnable() {
+                @Override
+                public void run() {
+                    sendServiceUnavailable(ctx, request);
+                    ctx.resume(ctx.getStopAction());
+                }
+            });
+        }
+    }
+
+    private static class DelayQueueWorker implements
+            DelayedExecutor.Worker<QueuedRequest> {
+
+        @Override
+        public boolean doWork(final QueuedRequest element) {
+            element.onTimeout();
+            return true;
+        }
+    }
+
+    private static class DelayQueueResolver implements
+            DelayedExecutor.Resolver<QueuedRequest> {
+
+        @Override
+        public boolean removeTimeout(final QueuedRequest element) {
+            if (element.timeoutTimeMillis != DelayedExecutor.UNSET_TIMEOUT) {
+                element.timeoutTimeMillis = DelayedExecutor.UNSET_TIMEOUT;
+                return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public long getTimeoutMillis(final QueuedRequest element) {
+            return element.timeoutTimeMillis;
+        }
+
+        @Override
+        public void setTimeoutMillis(final QueuedRequest element,
+                final long timeoutMillis) {
+            element.timeoutTimeMillis = timeoutMillis;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.limiter;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the number of requests processed concurrently. The limit is
+ * adjusted by the {@link LimitAlgorithm} after every completed request.
+ * 
+ * Requests, which can't be admitted immediately, might be queued (up to
+ * the max queue size) until a permit is released.
+ * 
+ * @since 2.4.3
+ */
+public class ConcurrencyLimiter {
+    private final LimitAlgorithm algorithm;
+    private final int maxQueueSize;
+    
+    private volatile int limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<Waiter>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    
+    private final LongAdder acceptedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder queueTimeoutCount = new LongAdder();
+
+    /**
+     * Constructs the limiter, which doesn't queue requests.
+     * 
+     * @param algorithm the {@link LimitAlgorithm}
+     */
+    public ConcurrencyLimiter(final LimitAlgorithm algorithm) {
+        this(algorithm, 0);
+    }
+
+    /**
+     * @param algorithm the {@link LimitAlgorithm}
+     * @param maxQueueSize the max number of requests waiting for a permit
+     */
+    public ConcurrencyLimiter(final LimitAlgorithm algorithm,
+            final int maxQueueSize) {
+        if (algorithm == null) {
+            throw new IllegalArgumentException("algorithm can't be null");
+        }
+        
+        this.algorithm = algorithm;
+        this.maxQueueSize = maxQueueSize;
+        this.limit = Math.max(1, algorithm.getInitialLimit());
+    }
+
+    /**
+     * @return the current limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the number of permits currently in use
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the number of requests waiting for a permit
+     */
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    /**
+     * @return the max number of requests waiting for a permit
+     */
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    /**
+     * @return the total number of admitted requests
+     */
+    public long getAcceptedCount() {
+        return acceptedCount.sum();
+    }
+
+    /**
+     * @return the total number of requests rejected because of the limit
+     *      (including the queue timeouts)
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * @return the total number of requests, which were rejected because
+     *      they had waited in the queue for too long
+     */
+    public long getQueueTimeoutCount() {
+        return queueTimeoutCount.sum();
+    }
+
+    /**
+     * Acquires a permit, if the limit allows.
+     * 
+     * @return <tt>true</tt> if the permit has been acquired, or
+     *      <tt>false</tt> otherwise
+     */
+    public boolean tryAcquire() {
+        if (acquire0()) {
+            acceptedCount.increment();
+            return true;
+        }
+        
+        return false;
+    }
+
+    /**
+     * Releases the permit and updates the limit.
+     * 
+     * @param rttNanos the request processing time in nanoseconds
+     * @param dropped <tt>true</tt> if the request has been failed by
+     *      an overloaded downstream
+     */
+    public void release(final long rttNanos, final boolean dropped) {
+        final int inFlightCount = inFlight.getAndDecrement();
+        
+        synchronized (algorithm) {
+            limit = Math.max(1, algorithm.update(limit, rttNanos,
+                    inFlightCount, dropped));
+        }
+        
+        drain();
+    }
+
+    /**
+     * Registers the rejected request.
+     */
+    void onRejected() {
+        rejectedCount.increment();
+    }
+
+    /**
+     * Registers the request, which has been rejected after waiting in the
+     * queue.
+     */
+    void onQueueTimeout() {
+        queueTimeoutCount.increment();
+        rejectedCount.increment();
+    }
+
+    /**
+     * Queues the {@link Waiter}. The {@link Waiter} might be notified
+     * before this method returns.
+     * 
+     * @return <tt>false</tt> if the queue is full
+     */
+    boolean offer(final Waiter waiter) {
+        int size;
+        do {
+            size = queueSize.get();
+            if (size >= maxQueueSize) {
+                return false;
+            }
+        } while (!queueSize.compareAndSet(size, size + 1));
+        
+        waiters.offer(waiter);
+        
+        // the permit might have been released meanwhile
+        drain();
+        return true;
+    }
+
+    /**
+     * Removes the expired {@link Waiter} from the queue.
+     */
+    void remove(final Waiter waiter) {
+        if (waiters.remove(waiter)) {
+            queueSize.decrementAndGet();
+        }
+    }
+
+    private boolean acquire0() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        
+        return true;
+    }
+
+    private void drain() {
+        while (!waiters.isEmpty() && acquire0()) {
+            final Waiter waiter = waiters.poll();
+            if (waiter == null) {
+                // the queue has been drained by another thread
+                inFlight.decrementAndGet();
+                return;
+            }
+            
+            queueSize.decrementAndGet();
+            
+            if (waiter.onPermit()) {
+                acceptedCount.increment();
+            } else {
+                // the waiter has already expired - return the permit
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * The request waiting for a permit.
+     */
+    interface Waiter {
+        /**
+         * Passes the acquired permit to the waiting request.
+         * 
+         * @return <tt>false</tt> if the request has already expired and
+         *      the permit has to be returned
+         */
+        boolean onPermit();
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.limiter;
+
+/**
+ * Gradient based {@link LimitAlgorithm}.
+ * 
+ * The algorithm tracks the long-term (exponentially averaged) request
+ * latency and compares every sample with it. While latencies stay within
+ * the tolerance of the long-term average, the limit grows by roughly the
+ * square root of its value; once requests start to queue up downstream
+ * and latencies grow, the limit shrinks proportionally to the latency
+ * increase (at most by half per sample). Changes are smoothed to avoid
+ * oscillation.
+ * 
+ * @since 2.4.3
+ */
+public class GradientLimit implements LimitAlgorithm {
+    private int initialLimit = 20;
+    private int minLimit = 1;
+    private int maxLimit = 1000;
+    private double smoothing = 0.2;
+    private double rttTolerance = 1.5;
+    private int longWindow = 600;
+
+    private double estimatedLimit;
+    private double longRtt;
+
+    @Override
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    /**
+     * @param initialLimit the limit to start with
+     * @return this {@link GradientLimit}
+     */
+    public GradientLimit setInitialLimit(final int initialLimit) {
+        this.initialLimit = initialLimit;
+        return this;
+    }
+
+    /**
+     * @param minLimit the limit will never drop below this value
+     * @return this {@link GradientLimit}
+     */
+    public GradientLimit setMinLimit(final int minLimit) {
+        this.minLimit = minLimit;
+        return this;
+    }
+
+    /**
+     * @param maxLimit the limit will never grow over this value
+     * @return this {@link GradientLimit}
+     */
+    public GradientLimit setMaxLimit(final int maxLimit) {
+        this.maxLimit = maxLimit;
+        return this;
+    }
+
+    /**
+     * @param smoothing the weight (<tt>0 &lt; smoothing &lt;= 1</tt>) of a newly
+     *      calculated limit, comparing to the current one
+     * @return this {@link GradientLimit}
+     */
+    public GradientLimit setSmoothing(final double smoothing) {
+        if (smoothing <= 0 || smoothing > 1) {
+            throw new IllegalArgumentException("smoothing should be in (0, 1] range");
+        }
+        
+        this.smoothing = smoothing;
+        return this;
+    }
+
+    /**
+     * @param rttTolerance the ratio (<tt>&gt;= 1</tt>) of a sample latency
+     *      to the long-term latency, which is still not treated as a sign
+     *      of the overload
+     * @return this {@link GradientLimit}
+     */
+    public GradientLimit setRttTolerance(final double rttTolerance) {
+        if (rttTolerance < 1) {
+            throw new IllegalArgumentException("rttTolerance can't be less than 1");
+        }
+        
+        this.rttTolerance = rttTolerance;
+        return this;
+    }
+
+    /**
+     * @param longWindow the number of samples the long-term latency is
+     *      averaged over
+     * @return this {@link GradientLimit}
+     */
+    public GradientLimit setLongWindow(final int longWindow) {
+        if (longWindow < 1) {
+            throw new IllegalArgumentException("longWindow should be positive");
+        }
+        
+        this.longWindow = longWindow;
+        return this;
+    }
+
+    @Override
+    public int update(final int limit, final long rttNanos,
+            final int inFlight, final boolean dropped) {
+        if (estimatedLimit == 0) {
+            estimatedLimit = limit;
+        }
+        
+        final double rtt = Math.max(rttNanos, 1);
+        if (longRtt == 0) {
+            longRtt = rtt;
+        } else {
+            final double alpha = 2.0 / (longWindow + 1);
+            longRtt = longRtt * (1 - alpha) + rtt * alpha;
+            
+            // the latency has dropped significantly (downstream has
+            // recovered) - let the long-term average catch up faster
+            if (longRtt / rtt > 2) {
+                longRtt *= 0.95;
+            }
+        }
+        
+        // don't grow the limit, if it's not really used
+        if (!dropped && inFlight < estimatedLimit / 2) {
+            return (int) estimatedLimit;
+        }
+        
+        final double gradient = dropped
+                ? 0.5
+                : Math.max(0.5, Math.min(1.0, rttTolerance * longRtt / rtt));
+        final double newLimit = estimatedLimit * gradient
+                + Math.sqrt(estimatedLimit);
+        
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit,
+                estimatedLimit * (1 - smoothing) + newLimit * smoothing));
+        
+        return (int) estimatedLimit;
+    }
+}
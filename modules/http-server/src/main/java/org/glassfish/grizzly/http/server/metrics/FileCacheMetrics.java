@@ -0,0 +1,194 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.metrics;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.glassfish.grizzly.http.server.filecache.FileCache;
+import org.glassfish.grizzly.http.server.filecache.FileCacheEntry;
+import org.glassfish.grizzly.http.server.filecache.FileCacheProbe;
+import org.glassfish.grizzly.monitoring.MetricsSource;
+import org.glassfish.grizzly.monitoring.MetricsWriter;
+
+/**
+ * {@link MetricsSource} reporting {@link FileCache} statistics.
+ * 
+ * @since 2.4.3
+ */
+public class FileCacheMetrics implements MetricsSource {
+    private final CopyOnWriteArrayList<Entry> entries =
+            new CopyOnWriteArrayList<Entry>();
+
+    /**
+     * Starts collecting metrics of the {@link FileCache}.
+     * 
+     * @param name the name to label the {@link FileCache} samples with
+     * @param fileCache the {@link FileCache}
+     * @return <tt>true</tt> if the {@link FileCache} has been added, or
+     *          <tt>false</tt> if it had already been added before
+     */
+    public synchronized boolean add(final String name,
+            final FileCache fileCache) {
+        if (find(fileCache) != null) {
+            return false;
+        }
+        
+        final Entry entry = new Entry(name, fileCache);
+        fileCache.getMonitoringConfig().addProbes(entry);
+        entries.add(entry);
+        return true;
+    }
+
+    /**
+     * Stops collecting metrics of the {@link FileCache}.
+     * 
+     * @param fileCache the {@link FileCache}
+     * @return <tt>true</tt> if the {@link FileCache} has been removed
+     */
+    public synchronized boolean remove(final FileCache fileCache) {
+        final Entry entry = find(fileCache);
+        if (entry == null) {
+            return false;
+        }
+        
+        fileCache.getMonitoringConfig().removeProbes(entry);
+        entries.remove(entry);
+        return true;
+    }
+
+    @Override
+    public void writeMetrics(final MetricsWriter writer) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        
+        writer.family("grizzly_file_cache_entries", MetricsWriter.Type.GAUGE,
+                "The number of cached entries");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_file_cache_entries")
+                    .label("cache", entry.name)
+                    .value(entry.entriesCount.get());
+        }
+        
+        writer.family("grizzly_file_cache_hits", MetricsWriter.Type.COUNTER,
+                "The total number of cache hits");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_file_cache_hits", "_total")
+                    .label("cache", entry.name)
+                    .value(entry.hitCount.sum());
+        }
+        
+        writer.family("grizzly_file_cache_misses", MetricsWriter.Type.COUNTER,
+                "The total number of cache misses");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_file_cache_misses", "_total")
+                    .label("cache", entry.name)
+                    .value(entry.missCount.sum());
+        }
+        
+        writer.family("grizzly_file_cache_errors", MetricsWriter.Type.COUNTER,
+                "The total number of cache errors");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_file_cache_errors", "_total")
+                    .label("cache", entry.name)
+                    .value(entry.errorCount.sum());
+        }
+    }
+    
+    private Entry find(final FileCache fileCache) {
+        for (Entry entry : entries) {
+            if (entry.fileCache == fileCache) {
+                return entry;
+            }
+        }
+        
+        return null;
+    }
+    
+    private static final class Entry extends FileCacheProbe.Adapter {
+        private final String name;
+        private final FileCache fileCache;
+        
+        private final AtomicInteger entriesCount = new AtomicInteger();
+        private final LongAdder hitCount = new LongAdder();
+        private final LongAdder missCount = new LongAdder();
+        private final LongAdder errorCount = new LongAdder();
+
+        Entry(final String name, final FileCache fileCache) {
+            this.name = name;
+            this.fileCache = fileCache;
+        }
+
+        @Override
+        public void onEntryAddedEvent(final FileCache fileCache,
+                final FileCacheEntry entry) {
+            entriesCount.incrementAndGet();
+        }
+
+        @Override
+        public void onEntryRemovedEvent(final FileCache fileCache,
+                final FileCacheEntry entry) {
+            final int val = entriesCount.decrementAndGet();
+            if (val < 0) {
+                entriesCount.compareAndSet(val, 0);
+            }
+        }
+
+        @Override
+        public void onEntryHitEvent(final FileCache fileCache,
+                final FileCacheEntry entry) {
+            hitCount.increment();
+        }
+
+        @Override
+        public void onEntryMissedEvent(final FileCache fileCache,
+                final String host, final String requestURI) {
+            missCount.increment();
+        }
+
+        @Override
+        public void onErrorEvent(final FileCache fileCache,
+                final Throwable error) {
+            errorCount.increment();
+        }
+    }
+}
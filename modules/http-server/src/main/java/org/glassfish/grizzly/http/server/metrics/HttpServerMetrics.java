@@ -0,0 +1,230 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.metrics;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.http.Note;
+import org.glassfish.grizzly.http.server.HttpServerFilter;
+import org.glassfish.grizzly.http.server.HttpServerProbe;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.monitoring.Histogram;
+import org.glassfish.grizzly.monitoring.MetricsSource;
+import org.glassfish.grizzly.monitoring.MetricsWriter;
+
+/**
+ * {@link MetricsSource} reporting request statistics of one or more
+ * {@link HttpServerFilter}s.
+ * 
+ * @since 2.4.3
+ */
+public class HttpServerMetrics implements MetricsSource {
+    private static final Note<Long> REQUEST_START_NOTE =
+            Request.createNote(HttpServerMetrics.class.getName() + ".request-start");
+    
+    private static final String[] STATUS_CLASSES =
+            {"1xx", "2xx", "3xx", "4xx", "5xx"};
+    
+    private final CopyOnWriteArrayList<Entry> entries =
+            new CopyOnWriteArrayList<Entry>();
+
+    /**
+     * Starts collecting metrics of the {@link HttpServerFilter}.
+     * 
+     * @param name the name to label the {@link HttpServerFilter} samples with,
+     *             typically the {@link org.glassfish.grizzly.http.server.NetworkListener} name
+     * @param filter the {@link HttpServerFilter}
+     * @return <tt>true</tt> if the {@link HttpServerFilter} has been added,
+     *          or <tt>false</tt> if it had already been added before
+     */
+    public synchronized boolean add(final String name,
+            final HttpServerFilter filter) {
+        if (find(filter) != null) {
+            return false;
+        }
+        
+        final Entry entry = new Entry(name, filter);
+        filter.getMonitoringConfig().addProbes(entry);
+        entries.add(entry);
+        return true;
+    }
+
+    /**
+     * Stops collecting metrics of the {@link HttpServerFilter}.
+     * 
+     * @param filter the {@link HttpServerFilter}
+     * @return <tt>true</tt> if the {@link HttpServerFilter} has been removed
+     */
+    public synchronized boolean remove(final HttpServerFilter filter) {
+        final Entry entry = find(filter);
+        if (entry == null) {
+            return false;
+        }
+        
+        filter.getMonitoringConfig().removeProbes(entry);
+        entries.remove(entry);
+        return true;
+    }
+
+    @Override
+    public void writeMetrics(final MetricsWriter writer) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        
+        writer.family("grizzly_http_requests", MetricsWriter.Type.COUNTER,
+                "The total number of received requests");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_http_requests", "_total")
+                    .label("listener", entry.name)
+                    .value(entry.receivedCount.sum());
+        }
+        
+        writer.family("grizzly_http_requests_in_flight",
+                MetricsWriter.Type.GAUGE,
+                "The number of requests, which are currently being processed");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_http_requests_in_flight")
+                    .label("listener", entry.name)
+                    .value(entry.inFlightCount.get());
+        }
+        
+        writer.family("grizzly_http_responses", MetricsWriter.Type.COUNTER,
+                "The total number of completed responses by status class");
+        for (Entry entry : entries) {
+            for (int i = 0; i < STATUS_CLASSES.length; i++) {
+                writer.sample("grizzly_http_responses", "_total")
+                        .label("listener", entry.name)
+                        .label("code", STATUS_CLASSES[i])
+                        .value(entry.statusCounts[i].sum());
+            }
+        }
+        
+        writer.family("grizzly_http_suspended_requests_timed_out",
+                MetricsWriter.Type.COUNTER,
+                "The total number of suspended requests, which have timed out");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_http_suspended_requests_timed_out", "_total")
+                    .label("listener", entry.name)
+                    .value(entry.timedOutCount.sum());
+        }
+        
+        writer.family("grizzly_http_request_duration_seconds",
+                MetricsWriter.Type.SUMMARY,
+                "The time between receiving a request and completing its response");
+        for (Entry entry : entries) {
+            writer.summary("grizzly_http_request_duration_seconds",
+                    "listener", entry.name, entry.requestLatency.snapshot(), 9);
+        }
+    }
+    
+    private Entry find(final HttpServerFilter filter) {
+        for (Entry entry : entries) {
+            if (entry.filter == filter) {
+                return entry;
+            }
+        }
+        
+        return null;
+    }
+    
+    private static final class Entry extends HttpServerProbe.Adapter {
+        private final String name;
+        private final HttpServerFilter filter;
+        
+        private final LongAdder receivedCount = new LongAdder();
+        private final AtomicInteger inFlightCount = new AtomicInteger();
+        private final LongAdder timedOutCount = new LongAdder();
+        private final LongAdder[] statusCounts =
+                new LongAdder[STATUS_CLASSES.length];
+        private final Histogram requestLatency = new Histogram();
+
+        Entry(final String name, final HttpServerFilter filter) {
+            this.name = name;
+            this.filter = filter;
+            
+            for (int i = 0; i < statusCounts.length; i++) {
+                statusCounts[i] = new LongAdder();
+            }
+        }
+
+        @Override
+        public void onRequestReceiveEvent(final HttpServerFilter filter,
+                final Connection connection, final Request request) {
+            receivedCount.increment();
+            inFlightCount.incrementAndGet();
+            
+            // the note might be shared by several HttpServerMetrics
+            if (request.getNote(REQUEST_START_NOTE) == null) {
+                request.setNote(REQUEST_START_NOTE, System.nanoTime());
+            }
+        }
+
+        @Override
+        public void onRequestCompleteEvent(final HttpServerFilter filter,
+                final Connection connection, final Response response) {
+            final int val = inFlightCount.decrementAndGet();
+            if (val < 0) {
+                // the request might have been received before the probe was added
+                inFlightCount.compareAndSet(val, 0);
+            }
+            
+            final int statusClass = response.getStatus() / 100 - 1;
+            if (statusClass >= 0 && statusClass < statusCounts.length) {
+                statusCounts[statusClass].increment();
+            }
+            
+            final Long startNanos = response.getRequest().getNote(REQUEST_START_NOTE);
+            if (startNanos != null) {
+                requestLatency.recordElapsedSince(startNanos);
+            }
+        }
+
+        @Override
+        public void onRequestTimeoutEvent(final HttpServerFilter filter,
+                final Connection connection, final Request request) {
+            timedOutCount.increment();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.metrics;
+
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.http.server.AddOn;
+import org.glassfish.grizzly.http.server.HttpServerFilter;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.monitoring.MemoryManagerMetrics;
+import org.glassfish.grizzly.monitoring.MetricsSource;
+import org.glassfish.grizzly.monitoring.ThreadPoolMetrics;
+import org.glassfish.grizzly.monitoring.TransportMetrics;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+
+/**
+ * {@link AddOn}, which collects the {@link NetworkListener} transport,
+ * thread pool, memory manager, {@link org.glassfish.grizzly.http.server.filecache.FileCache}
+ * and {@link HttpServerFilter} metrics and exposes them in the OpenMetrics
+ * text format via {@link #getHttpHandler()}.
+ * 
+ * The {@link MetricsHttpHandler} has to be mounted explicitly, either on the
+ * monitored {@link org.glassfish.grizzly.http.server.HttpServer}:
+ * <pre>
+ * final MetricsAddOn metrics = new MetricsAddOn();
+ * listener.registerAddOn(metrics);
+ * server.getServerConfiguration().addHttpHandler(metrics.getHttpHandler(), "/metrics");
+ * </pre>
+ * or on a separate (management) server, so it's not exposed on the public
+ * {@link NetworkListener}s.
+ * 
+ * Additional {@link MetricsSource}s (like HTTP/2 or connection pool metrics)
+ * could be registered via {@link #addSource(MetricsSource)}. If such a source
+ * is an {@link AddOn} itself, it's set up on every {@link NetworkListener}
+ * this AddOn is set up on, so it has to be registered after the AddOns
+ * it depends on.
+ * 
+ * @since 2.4.3
+ */
+public class MetricsAddOn implements AddOn {
+    private final MetricsHttpHandler httpHandler = new MetricsHttpHandler();
+    
+    private final TransportMetrics transportMetrics = new TransportMetrics();
+    private final ThreadPoolMetrics threadPoolMetrics = new ThreadPoolMetrics();
+    private final MemoryManagerMetrics memoryManagerMetrics =
+            new MemoryManagerMetrics();
+    private final FileCacheMetrics fileCacheMetrics = new FileCacheMetrics();
+    private final HttpServerMetrics httpServerMetrics = new HttpServerMetrics();
+
+    public MetricsAddOn() {
+        httpHandler.addSource(transportMetrics);
+        httpHandler.addSource(threadPoolMetrics);
+        httpHandler.addSource(memoryManagerMetrics);
+        httpHandler.addSource(fileCacheMetrics);
+        httpHandler.addSource(httpServerMetrics);
+    }
+
+    /**
+     * @return the {@link MetricsHttpHandler} rendering the collected metrics
+     */
+    public MetricsHttpHandler getHttpHandler() {
+        return httpHandler;
+    }
+
+    /**
+     * Registers an additional {@link MetricsSource}.
+     * 
+     * @param source the {@link MetricsSource}
+     * @return this {@link MetricsAddOn}
+     */
+    public MetricsAddOn addSource(final MetricsSource source) {
+        httpHandler.addSource(source);
+        return this;
+    }
+
+    @Override
+    public void setup(final NetworkListener networkListener,
+            final FilterChainBuilder builder) {
+        final String name = networkListener.getName();
+        final TCPNIOTransport transport = networkListener.getTransport();
+        
+        transportMetrics.add(name, transport);
+        threadPoolMetrics.add(name, transport.getThreadPoolMonitoringConfig());
+        memoryManagerMetrics.add(
+                transport.getMemoryManager().getClass().getSimpleName(),
+                transport.getMemoryManager());
+        fileCacheMetrics.add(name, networkListener.getFileCache());
+        
+        final int idx = builder.indexOfType(HttpServerFilter.class);
+        if (idx != -1) {
+            httpServerMetrics.add(name, (HttpServerFilter) builder.get(idx));
+        }
+        
+        for (MetricsSource source : httpHandler.getSources()) {
+            if (source instanceof AddOn && source != this) {
+                ((AddOn) source).setup(networkListener, builder);
+            }
+        }
+    }
+}
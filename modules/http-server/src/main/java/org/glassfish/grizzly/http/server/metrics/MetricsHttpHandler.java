@@ -0,0 +1,132 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.metrics;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.http.Method;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.glassfish.grizzly.monitoring.MetricsSource;
+import org.glassfish.grizzly.monitoring.MetricsWriter;
+import org.glassfish.grizzly.utils.ArraySet;
+
+/**
+ * {@link HttpHandler}, which renders the registered {@link MetricsSource}s in
+ * the OpenMetrics text format.
+ * 
+ * The metrics are rendered by a {@link MetricsWriter} straight into
+ * {@link Buffer}s allocated from the connection
+ * {@link org.glassfish.grizzly.memory.MemoryManager}, which are then passed
+ * to the response output stream without copying.
+ * 
+ * @since 2.4.3
+ */
+public class MetricsHttpHandler extends HttpHandler {
+    /**
+     * The OpenMetrics text format content type.
+     */
+    public static final String CONTENT_TYPE =
+            "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    
+    private final ArraySet<MetricsSource> sources =
+            new ArraySet<MetricsSource>(MetricsSource.class);
+
+    public MetricsHttpHandler() {
+        super("MetricsHttpHandler");
+    }
+
+    /**
+     * Adds the {@link MetricsSource} to be rendered.
+     * 
+     * @param source the {@link MetricsSource}
+     * @return <tt>true</tt> if the source has been added
+     */
+    public boolean addSource(final MetricsSource source) {
+        return sources.add(source);
+    }
+
+    /**
+     * Removes the {@link MetricsSource}.
+     * 
+     * @param source the {@link MetricsSource}
+     * @return <tt>true</tt> if the source has been removed
+     */
+    public boolean removeSource(final MetricsSource source) {
+        return sources.remove(source);
+    }
+
+    /**
+     * @return the registered {@link MetricsSource}s
+     */
+    public MetricsSource[] getSources() {
+        return sources.obtainArrayCopy();
+    }
+    
+    @Override
+    public void service(final Request request, final Response response)
+            throws Exception {
+        final Method method = request.getMethod();
+        if (!Method.GET.equals(method) && !Method.HEAD.equals(method)) {
+            response.setStatus(HttpStatus.METHOD_NOT_ALLOWED_405);
+            response.setHeader(Header.Allow, "GET, HEAD");
+            return;
+        }
+        
+        final MetricsWriter writer = new MetricsWriter(
+                request.getContext().getMemoryManager());
+        
+        final MetricsSource[] array = sources.getArray();
+        if (array != null) {
+            for (MetricsSource source : array) {
+                source.writeMetrics(writer);
+            }
+        }
+        
+        final Buffer buffer = writer.finish();
+        
+        response.setContentType(CONTENT_TYPE);
+        response.setContentLength(buffer.remaining());
+        response.getNIOOutputStream().write(buffer);
+    }
+}
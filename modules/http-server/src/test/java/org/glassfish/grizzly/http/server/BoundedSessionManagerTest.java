@@ -0,0 +1,234 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link BoundedSessionManager} and {@link FileSessionStore}.
+ */
+public class BoundedSessionManagerTest {
+
+    private File directory;
+    private BoundedSessionManager manager;
+
+    @Before
+    public void before() throws IOException {
+        directory = Files.createTempDirectory("sessions").toFile();
+    }
+
+    @After
+    public void after() {
+        if (manager != null) {
+            manager.close();
+        }
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testEvictsIdlestSession() {
+        manager = new BoundedSessionManager(2, Long.MAX_VALUE);
+
+        final Session s1 = manager.createSession(null);
+        final Session s2 = manager.createSession(null);
+        // s1 was accessed after s2 was created
+        s1.setTimestamp(System.currentTimeMillis() + 1000);
+
+        final Session s3 = manager.createSession(null);
+        assertEquals(2, manager.getSessionCount());
+        assertEquals(1, manager.getEvictedCount());
+        assertFalse(s2.isValid());
+        assertNull(manager.getSession(null, s2.getIdInternal()));
+        assertSame(s1, manager.getSession(null, s1.getIdInternal()));
+        assertSame(s3, manager.getSession(null, s3.getIdInternal()));
+    }
+
+    @Test
+    public void testByteBudget() {
+        manager = new BoundedSessionManager(100, 3000);
+
+        final Session s1 = manager.createSession(null);
+        final Session s2 = manager.createSession(null);
+        assertTrue(manager.getEstimatedBytes() > 0);
+
+        s2.setAttribute("big", new byte[2700]);
+        // sizes are re-estimated when the session is requested
+        assertSame(s2, manager.getSession(null, s2.getIdInternal()));
+        assertEquals(1, manager.getSessionCount());
+        assertFalse(s1.isValid());
+        assertNull(manager.getSession(null, s1.getIdInternal()));
+        assertTrue(manager.getEstimatedBytes() <= 3000);
+    }
+
+    @Test
+    public void testSizeReestimatedOnChange() {
+        final AtomicInteger estimations = new AtomicInteger();
+        manager = new BoundedSessionManager(100, Long.MAX_VALUE) {
+            @Override
+            protected long estimateSize(final Session session) {
+                estimations.incrementAndGet();
+                return super.estimateSize(session);
+            }
+        };
+
+        final Session session = manager.createSession(null);
+        session.setSessionTimeout(1000);
+        final String id = session.getIdInternal();
+        final long initialBytes = manager.getEstimatedBytes();
+        assertEquals(1, estimations.get());
+
+        // unchanged sessions are not re-estimated
+        for (int i = 0; i < 10; i++) {
+            assertSame(session, manager.getSession(null, id));
+        }
+        assertEquals(1, estimations.get());
+
+        session.setAttribute("user", "grizzly");
+        assertSame(session, manager.getSession(null, id));
+        assertEquals(2, estimations.get());
+        final long userBytes = manager.getEstimatedBytes();
+        assertTrue(userBytes > initialBytes);
+
+        // direct attributes map changes are picked up by the expirer
+        session.attributes().put("data", new byte[1000]);
+        assertSame(session, manager.getSession(null, id));
+        assertEquals(userBytes, manager.getEstimatedBytes());
+
+        final long now = System.currentTimeMillis();
+        session.setTimestamp(now + 5000);
+        manager.expireSessions(now + 2000);
+        assertTrue(session.isValid());
+        assertTrue(manager.getEstimatedBytes() > userBytes + 1000);
+    }
+
+    @Test
+    public void testExpiration() {
+        manager = new BoundedSessionManager(100, Long.MAX_VALUE);
+
+        final Session expiring = manager.createSession(null);
+        expiring.setSessionTimeout(1000);
+        // shortened timeouts are noticed when the session is requested
+        assertSame(expiring, manager.getSession(null, expiring.getIdInternal()));
+        final Session forever = manager.createSession(null);
+
+        final long now = System.currentTimeMillis();
+        manager.expireSessions(now + 500);
+        assertTrue(expiring.isValid());
+        assertEquals(2, manager.getSessionCount());
+
+        manager.expireSessions(now + 5000);
+        assertFalse(expiring.isValid());
+        assertTrue(forever.isValid());
+        assertEquals(1, manager.getSessionCount());
+    }
+
+    @Test
+    public void testChangeSessionId() {
+        manager = new BoundedSessionManager();
+
+        final Session session = manager.createSession(null);
+        final String oldId = session.getIdInternal();
+        assertEquals(32, oldId.length());
+
+        assertEquals(oldId, manager.changeSessionId(null, session));
+        assertFalse(oldId.equals(session.getIdInternal()));
+        assertNull(manager.getSession(null, oldId));
+        assertSame(session, manager.getSession(null, session.getIdInternal()));
+        assertEquals(1, manager.getSessionCount());
+    }
+
+    @Test
+    public void testOverflowToStore() throws Exception {
+        manager = new BoundedSessionManager(1, Long.MAX_VALUE,
+                new FileSessionStore(directory));
+
+        final Session s1 = manager.createSession(null);
+        s1.setAttribute("user", "grizzly");
+        final String id = s1.getIdInternal();
+
+        manager.createSession(null);
+        assertEquals(1, manager.getEvictedCount());
+
+        final Session restored = manager.getSession(null, id);
+        assertNotNull(restored);
+        assertEquals("grizzly", restored.getAttribute("user"));
+    }
+
+    @Test
+    public void testSessionsSurviveRestart() throws Exception {
+        manager = new BoundedSessionManager(100, Long.MAX_VALUE,
+                new FileSessionStore(directory));
+
+        final Session session = manager.createSession(null);
+        session.setSessionTimeout(60000);
+        session.setAttribute("user", "grizzly");
+        session.setAttribute("unserializable", new Object());
+        final String id = session.getIdInternal();
+        final Session invalidated = manager.createSession(null);
+        invalidated.setValid(false);
+        manager.close();
+
+        manager = new BoundedSessionManager(100, Long.MAX_VALUE,
+                new FileSessionStore(directory));
+        final Session restored = manager.getSession(null, id);
+        assertNotNull(restored);
+        assertEquals(session.getCreationTime(), restored.getCreationTime());
+        assertEquals(60000, restored.getSessionTimeout());
+        assertEquals("grizzly", restored.getAttribute("user"));
+        assertNull(restored.getAttribute("unserializable"));
+        assertNull(manager.getSession(null, invalidated.getIdInternal()));
+        assertNull(manager.getSession(null, "../" + id));
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.http.server.limiter.AimdLimit;
+import org.glassfish.grizzly.http.server.limiter.ConcurrencyLimitAddOn;
+import org.glassfish.grizzly.http.server.limiter.ConcurrencyLimiter;
+import org.glassfish.grizzly.http.server.limiter.LimitAlgorithm;
+import org.glassfish.grizzly.utils.NullaryFunction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link ConcurrencyLimitAddOn}.
+ */
+public class ConcurrencyLimitAddOnTest {
+    private static final int PORT = 18912;
+    
+    private HttpServer httpServer;
+    private ConcurrencyLimitAddOn addOn;
+    private ExecutorService executor;
+    private volatile CountDownLatch slowLatch;
+
+    @Before
+    public void before() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        slowLatch = new CountDownLatch(1);
+        
+        // the limit is fixed to a single request
+        addOn = new ConcurrencyLimitAddOn(new NullaryFunction<LimitAlgorithm>() {
+            @Override
+            public LimitAlgorithm evaluate() {
+                return new AimdLimit().setInitialLimit(1).setMaxLimit(1);
+            }
+        });
+    }
+
+    @After
+    public void after() throws Exception {
+        slowLatch.countDown();
+        if (httpServer != null) {
+            httpServer.shutdownNow();
+        }
+        
+        addOn.destroy();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testReject() throws Exception {
+        startServer();
+        final ConcurrencyLimiter limiter = addOn.getLimiter("grizzly");
+        
+        final Future<Integer> slow = submit("/slow");
+        waitFor(limiter, 1, 0);
+        
+        final HttpURLConnection connection = open("/fast");
+        assertEquals(503, connection.getResponseCode());
+        assertEquals("1", connection.getHeaderField("Retry-After"));
+        consume(connection);
+        
+        slowLatch.countDown();
+        assertEquals(200, (int) slow.get(10, TimeUnit.SECONDS));
+        waitFor(limiter, 0, 0);
+        
+        assertEquals(200, request("/fast"));
+        assertEquals(1, limiter.getRejectedCount());
+        assertEquals(2, limiter.getAcceptedCount());
+    }
+
+    @Test
+    public void testQueue() throws Exception {
+        addOn.setMaxQueueSize(1).setMaxQueueWait(10, TimeUnit.SECONDS);
+        startServer();
+        final ConcurrencyLimiter limiter = addOn.getLimiter("grizzly");
+        
+        final Future<Integer> slow = submit("/slow");
+        waitFor(limiter, 1, 0);
+        
+        final Future<Integer> queued = submit("/fast");
+        waitFor(limiter, 1, 1);
+        
+        // the queue is full
+        assertEquals(503, request("/fast"));
+        
+        slowLatch.countDown();
+        assertEquals(200, (int) slow.get(10, TimeUnit.SECONDS));
+        assertEquals(200, (int) queued.get(10, TimeUnit.SECONDS));
+        assertEquals(1, limiter.getRejectedCount());
+        assertEquals(0, limiter.getQueueTimeoutCount());
+    }
+
+    @Test
+    public void testQueueTimeout() throws Exception {
+        addOn.setMaxQueueSize(1).setMaxQueueWait(100, TimeUnit.MILLISECONDS);
+        startServer();
+        final ConcurrencyLimiter limiter = addOn.getLimiter("grizzly");
+        
+        final Future<Integer> slow = submit("/slow");
+        waitFor(limiter, 1, 0);
+        
+        assertEquals(503, request("/fast"));
+        assertEquals(1, limiter.getQueueTimeoutCount());
+        assertEquals(0, limiter.getQueueSize());
+        
+        slowLatch.countDown();
+        assertEquals(200, (int) slow.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPathLimit() throws Exception {
+        addOn.addPath("/slow");
+        startServer();
+        final ConcurrencyLimiter pathLimiter = addOn.getLimiter("grizzly", "/slow");
+        assertNotNull(pathLimiter);
+        
+        final Future<Integer> slow = submit("/slow");
+        waitFor(pathLimiter, 1, 0);
+        
+        // other paths are limited separately
+        assertEquals(200, request("/fast"));
+        assertEquals(503, request("/slow/more"));
+        
+        slowLatch.countDown();
+        assertEquals(200, (int) slow.get(10, TimeUnit.SECONDS));
+        assertEquals(1, pathLimiter.getRejectedCount());
+        assertEquals(0, addOn.getLimiter("grizzly").getRejectedCount());
+    }
+
+    private void startServer() throws Exception {
+        httpServer = HttpServer.createSimpleServer(null, "localhost", PORT);
+        httpServer.getListener("grizzly").registerAddOn(addOn);
+        
+        final ServerConfiguration config = httpServer.getServerConfiguration();
+        config.addHttpHandler(new HttpHandler() {
+            @Override
+            public void service(Request request, Response response) throws Exception {
+                slowLatch.await(10, TimeUnit.SECONDS);
+                response.getWriter().write("Slow");
+            }
+        }, "/slow");
+        config.addHttpHandler(new HttpHandler() {
+            @Override
+            public void service(Request request, Response response) throws Exception {
+                response.getWriter().write("Fast");
+            }
+        }, "/fast");
+        
+        httpServer.start();
+    }
+
+    private Future<Integer> submit(final String path) {
+        return executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return request(path);
+            }
+        });
+    }
+
+    private static void waitFor(final ConcurrencyLimiter limiter,
+            final int inFlight, final int queued) throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            if (limiter.getInFlight() == inFlight
+                    && limiter.getQueueSize() == queued) {
+                return;
+            }
+            
+            Thread.sleep(10);
+        }
+        
+        fail("in-flight=" + limiter.getInFlight()
+                + " queued=" + limiter.getQueueSize());
+    }
+
+    private static int request(final String path) throws Exception {
+        final HttpURLConnection connection = open(path);
+        final int status = connection.getResponseCode();
+        consume(connection);
+        return status;
+    }
+
+    private static HttpURLConnection open(final String path) throws Exception {
+        final HttpURLConnection connection = (HttpURLConnection)
+                new URL("http://localhost:" + PORT + path).openConnection();
+        connection.setReadTimeout(20000);
+        return connection;
+    }
+
+    private static void consume(final HttpURLConnection connection)
+            throws Exception {
+        final InputStream in = connection.getResponseCode() < 400
+                ? connection.getInputStream()
+                : connection.getErrorStream();
+        if (in != null) {
+            try {
+                final byte[] buf = new byte[1024];
+                while (in.read(buf) != -1) {
+                }
+            } finally {
+                in.close();
+            }
+        }
+    }
+}
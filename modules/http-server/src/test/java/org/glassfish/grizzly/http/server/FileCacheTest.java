@@ -62,6 +62,7 @@ import org.glassfish.grizzly.http.HttpClientFilter;
 import org.glassfish.grizzly.http.HttpContent;
 import org.glassfish.grizzly.http.HttpRequestPacket;
 import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.http.io.NIOWriter;
 import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.memory.ByteBufferWrapper;
@@ -525,6 +526,14 @@ public class FileCacheTest {
                 .header("Accept-Encoding", "gzip")
                 .build();
 
+        final HttpRequestPacket request2Compressed = HttpRequestPacket.builder()
+                .method("GET")
+                .uri("/somedata")
+                .protocol("HTTP/1.1")
+                .header("Host", "localhost")
+                .header("Accept-Encoding", "gzip")
+                .build();
+
         final HttpRequestPacket request3 = HttpRequestPacket.builder()
                 .method("GET")
                 .uri("/somedata")
@@ -553,15 +562,43 @@ public class FileCacheTest {
             responseFuture.reset();
             c.write(request2);
             final HttpContent response2 = responseFuture.get(10, TimeUnit.SECONDS);
-            assertEquals(probe.toString(), "gzip", response2.getHttpHeader().getHeader("Content-Encoding"));
+            // the compression is scheduled in background, so the plain
+            // variant is expected until it is completed
+            assertNull(response2.getHttpHeader().getHeader("Content-Encoding"));
             assertEquals("Cached data mismatch\n" + probe, pattern, response2.getContent().toStringContent());
             
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (probe.getEntryCompressedCounter() == 0
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(probe.toString(), 1, probe.getEntryCompressedCounter());
+            
+            final FileCache fileCache = httpServer.getListener("grizzly").getFileCache();
+            assertEquals(1, fileCache.getCompletedCompressionsCount());
+            assertEquals(0, fileCache.getFailedCompressionsCount());
+            
+            responseFuture.reset();
+            c.write(request2Compressed);
+            final HttpContent response2Compressed = responseFuture.get(10, TimeUnit.SECONDS);
+            assertEquals(probe.toString(), "gzip", response2Compressed.getHttpHeader().getHeader("Content-Encoding"));
+            assertEquals("Cached data mismatch\n" + probe, pattern, response2Compressed.getContent().toStringContent());
+            
             responseFuture.reset();
             c.write(request3);
             final HttpContent response3 = responseFuture.get(10, TimeUnit.SECONDS);
             assertNull(response3.getHttpHeader().getHeader("Content-Encoding"));
             assertEquals("Cached data mismatch\n" + probe, pattern, response3.getContent().toStringContent());
             
+            // the compression thread pool has to be stopped with the server
+            httpServer.shutdownNow();
+            final long stopDeadline = System.currentTimeMillis() + 10000;
+            while (hasCompressionThreads()
+                    && System.currentTimeMillis() < stopDeadline) {
+                Thread.sleep(10);
+            }
+            assertFalse("Compression threads are still alive", hasCompressionThreads());
+            
             isOk = true;
         } finally {
             if (!isOk) {
@@ -675,6 +712,79 @@ public class FileCacheTest {
         }
     }
 
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @Test
+    public void testPreEncodedResponseHead() throws Exception {
+        final File file = createTempFile();
+        final String fileName = file.getName();
+        final String requestPath = "/" + fileName;
+
+        final StatsHttpProbe httpProbe = new StatsHttpProbe();
+        httpServer.getServerConfiguration().getMonitoringConfig().getHttpConfig().addProbes(httpProbe);
+
+        httpServer.getListener("grizzly").getKeepAlive().setMaxRequestsCount(2);
+        startHttpServer(new StaticHttpHandler(file.getParent()) {
+        });
+
+        InputStream fis = new FileInputStream(file);
+        byte[] data = new byte[(int) file.length()];
+        fis.read(data);
+        fis.close();
+
+        final String pattern = new String(data);
+        final ReusableFuture<HttpContent> responseFuture =
+                new ReusableFuture<HttpContent>();
+        final Connection c = getConnection("localhost", PORT, responseFuture);
+
+        // the first response is not cached yet, the rest are served
+        // using pre-encoded response heads
+        HttpResponsePacket firstResponse = null;
+        for (int i = 0; i < 3; i++) {
+            final HttpRequestPacket request = HttpRequestPacket.builder()
+                    .method("GET")
+                    .uri(requestPath)
+                    .protocol("HTTP/1.1")
+                    .header("Host", "localhost")
+                    .build();
+            final int sentBytesBefore = httpProbe.sentBytesCounter.get();
+            responseFuture.reset();
+            c.write(request);
+            final HttpContent content = responseFuture.get(10, TimeUnit.SECONDS);
+            final HttpResponsePacket response =
+                    (HttpResponsePacket) content.getHttpHeader();
+
+            assertEquals(200, response.getStatus());
+            // the probes have to be notified about the pre-encoded responses too
+            assertEquals(i + 1, httpProbe.headerSerializedCounter.get());
+            assertTrue(httpProbe.sentBytesCounter.get() - sentBytesBefore
+                    > file.length());
+            assertEquals("Cached data mismatch. Response=" + response,
+                    pattern, content.getContent().toStringContent());
+            assertNotNull(response.getHeader(Header.Date));
+
+            if (firstResponse == null) {
+                firstResponse = response;
+                assertNull(response.getHeader(Header.Connection));
+                continue;
+            }
+
+            assertEquals(firstResponse.getHeader(Header.ETag),
+                    response.getHeader(Header.ETag));
+            assertEquals(firstResponse.getHeader(Header.LastModified),
+                    response.getHeader(Header.LastModified));
+            assertEquals(firstResponse.getHeader(Header.ContentType),
+                    response.getHeader(Header.ContentType));
+            assertEquals(file.length(), response.getContentLength());
+
+            if (i == 2) {
+                // max keep-alive requests count is reached
+                assertEquals("close", response.getHeader(Header.Connection));
+            } else {
+                assertNull(response.getHeader(Header.Connection));
+            }
+        }
+    }
+
     /**
      * Added for http://java.net/jira/browse/GRIZZLY-1234
      */
@@ -1118,6 +1228,17 @@ public class FileCacheTest {
     }
 
 
+    private static boolean hasCompressionThreads() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive()
+                    && thread.getName().startsWith("Grizzly-FileCache-Compression")) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+
     private void configureHttpServer() throws Exception {
         httpServer = new HttpServer();
         final NetworkListener listener =
@@ -1288,6 +1409,13 @@ public class FileCacheTest {
     private static class StatsHttpProbe extends HttpProbe.Adapter {
         final AtomicInteger sentBytesCounter = new AtomicInteger();
         final AtomicInteger receivedCounter = new AtomicInteger();
+        final AtomicInteger headerSerializedCounter = new AtomicInteger();
+
+        @Override
+        public void onHeaderSerializeEvent(Connection connection,
+                HttpHeader header, Buffer buffer) {
+            headerSerializedCounter.incrementAndGet();
+        }
 
         @Override
         public void onDataReceivedEvent(Connection connection, Buffer buffer) {
@@ -1317,6 +1445,7 @@ public class FileCacheTest {
         final AtomicInteger entryHitCounter = new AtomicInteger();
         final AtomicInteger entryMissedCounter = new AtomicInteger();
         final AtomicInteger entryErrorCounter = new AtomicInteger();
+        final AtomicInteger entryCompressedCounter = new AtomicInteger();
 
         @Override
         public void onEntryAddedEvent(FileCache fileCache, FileCacheEntry entry) {
@@ -1343,6 +1472,15 @@ public class FileCacheTest {
             entryErrorCounter.incrementAndGet();
         }
 
+        @Override
+        public void onEntryCompressionScheduledEvent(FileCache fileCache, FileCacheEntry entry) {
+        }
+
+        @Override
+        public void onEntryCompressionCompletedEvent(FileCache fileCache, FileCacheEntry entry) {
+            entryCompressedCounter.incrementAndGet();
+        }
+
         public int getEntryAddedCounter() {
             return entryAddedCounter.get();
         }
@@ -1359,6 +1497,9 @@ public class FileCacheTest {
         public int getEntryErrorCounter() {
             return entryErrorCounter.get();
         }
+        public int getEntryCompressedCounter() {
+            return entryCompressedCounter.get();
+        }
 
         @Override
         public String toString() {
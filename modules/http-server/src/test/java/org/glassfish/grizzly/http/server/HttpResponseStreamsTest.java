@@ -55,14 +55,17 @@ import org.glassfish.grizzly.http.Protocol;
 import org.glassfish.grizzly.http.util.HttpStatus;
 import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.impl.SafeFutureImpl;
+import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.utils.Charsets;
 import org.glassfish.grizzly.utils.ChunkingFilter;
 import junit.framework.TestCase;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -726,6 +729,91 @@ public class HttpResponseStreamsTest extends TestCase {
 
     }
 
+    public void testCharacter028() throws Exception {
+
+        // surrogate pair split between two writes
+        WriteStrategy s = new WriteStrategy() {
+            @Override
+            public void doWrite(Response response)
+                    throws IOException {
+                response.setCharacterEncoding("UTF-8");
+                Writer writer = response.getWriter();
+                writer.write("a\ud83d");
+                writer.write("\ude00b");
+            }
+        };
+
+        doTest(s, "a\ud83d\ude00b");
+
+        s = new WriteStrategy() {
+            @Override
+            public void doWrite(Response response)
+                    throws IOException {
+                response.setCharacterEncoding("UTF-8");
+                Writer writer = response.getWriter();
+                writer.write("a\ud83d".toCharArray());
+                writer.flush();
+                writer.write("\ude00b".toCharArray());
+            }
+        };
+
+        doTest(s, "a\ud83d\ude00b");
+
+        // the low surrogate never comes
+        s = new WriteStrategy() {
+            @Override
+            public void doWrite(Response response)
+                    throws IOException {
+                response.setCharacterEncoding("UTF-8");
+                Writer writer = response.getWriter();
+                writer.write("a\ud83d");
+            }
+        };
+
+        doTest(s, "a?");
+
+    }
+
+    public void testCharacter029() throws Exception {
+
+        // characters, buffered by the CharsetEncoder path, precede the Buffer
+        WriteStrategy s = new WriteStrategy() {
+            @Override
+            public void doWrite(Response response)
+                    throws IOException {
+                response.setCharacterEncoding("windows-1252");
+                Writer writer = response.getWriter();
+                writer.write("abc");
+                response.getOutputBuffer().writeBuffer(
+                        Buffers.wrap(null, "def"));
+                writer.write("ghi");
+                response.getOutputBuffer().writeByteBuffer(
+                        ByteBuffer.wrap("jkl".getBytes()));
+            }
+        };
+
+        doTest(s, "abcdefghijkl");
+
+        // the pending high surrogate precedes the Buffer
+        s = new WriteStrategy() {
+            @Override
+            public void doWrite(Response response)
+                    throws IOException {
+                response.setCharacterEncoding("UTF-8");
+                Writer writer = response.getWriter();
+                writer.write("a\ud83d");
+                response.getOutputBuffer().writeBuffer(
+                        Buffers.wrap(null, "b"));
+                writer.write("c\ud83d");
+                response.getOutputBuffer().writeByteBuffer(
+                        ByteBuffer.wrap("d".getBytes()));
+            }
+        };
+
+        doTest(s, "a?bc?d");
+
+    }
+
     // ------------------------------------------------------------ Binary Tests
 
 
@@ -1196,7 +1284,7 @@ public class HttpResponseStreamsTest extends TestCase {
                     if (logger.isLoggable(Level.FINE)) {
                         logger.log(Level.FINE, "Response complete: {0} bytes", bytesDownloaded);
                     }
-                    completeFuture.result(buf.toStringContent());
+                    completeFuture.result(buf.toStringContent(Charsets.UTF8_CHARSET));
                     close();
                 }
             } catch (IOException e) {
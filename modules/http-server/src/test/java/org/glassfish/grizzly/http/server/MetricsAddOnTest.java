@@ -0,0 +1,164 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import org.glassfish.grizzly.http.server.metrics.MetricsAddOn;
+import org.glassfish.grizzly.http.server.metrics.MetricsHttpHandler;
+import org.glassfish.grizzly.monitoring.MetricsSource;
+import org.glassfish.grizzly.monitoring.MetricsWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link MetricsAddOn}.
+ */
+public class MetricsAddOnTest {
+    private static final int PORT = 18911;
+    
+    private HttpServer httpServer;
+    private MetricsAddOn metricsAddOn;
+
+    @Before
+    public void before() throws Exception {
+        httpServer = HttpServer.createSimpleServer(null, "localhost", PORT);
+        metricsAddOn = new MetricsAddOn();
+        httpServer.getListener("grizzly").registerAddOn(metricsAddOn);
+        
+        final ServerConfiguration config = httpServer.getServerConfiguration();
+        config.addHttpHandler(new HttpHandler() {
+            @Override
+            public void service(Request request, Response response) throws Exception {
+                response.getWriter().write("Hello");
+            }
+        }, "/hello");
+        config.addHttpHandler(metricsAddOn.getHttpHandler(), "/metrics");
+        
+        httpServer.start();
+    }
+
+    @After
+    public void after() throws Exception {
+        if (httpServer != null) {
+            httpServer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testScrape() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertEquals("Hello", get("/hello", null));
+        }
+        
+        final String[] contentType = new String[1];
+        final String metrics = get("/metrics", contentType);
+        
+        assertEquals(MetricsHttpHandler.CONTENT_TYPE, contentType[0]);
+        assertTrue(metrics, metrics.endsWith("# EOF\n"));
+        assertTrue(metrics, metrics.contains("# TYPE grizzly_http_requests counter\n"));
+        // 5 hello requests + the scrape itself
+        assertTrue(metrics, metrics.contains(
+                "grizzly_http_requests_total{listener=\"grizzly\"} 6\n"));
+        assertTrue(metrics, metrics.contains(
+                "grizzly_http_responses_total{listener=\"grizzly\",code=\"2xx\"} 5\n"));
+        assertTrue(metrics, metrics.contains(
+                "grizzly_http_requests_in_flight{listener=\"grizzly\"} 1\n"));
+        assertTrue(metrics, metrics.contains(
+                "grizzly_http_request_duration_seconds_count{listener=\"grizzly\"} 5\n"));
+        assertTrue(metrics, metrics.contains(
+                "grizzly_http_request_duration_seconds{listener=\"grizzly\",quantile=\"0.99\"} 0."));
+        assertTrue(metrics, metrics.contains("grizzly_transport_read_bytes_total{transport=\"grizzly\"} "));
+        assertTrue(metrics, metrics.contains("grizzly_thread_pool_completed_tasks_total{pool=\"grizzly\"} "));
+        assertTrue(metrics, metrics.contains("grizzly_file_cache_misses_total{cache=\"grizzly\"} "));
+        
+        // every family is reported once
+        assertEquals(metrics.indexOf("# TYPE grizzly_transport_connections_open "),
+                metrics.lastIndexOf("# TYPE grizzly_transport_connections_open "));
+    }
+
+    @Test
+    public void testCustomSource() throws Exception {
+        metricsAddOn.addSource(new MetricsSource() {
+            @Override
+            public void writeMetrics(MetricsWriter writer) {
+                writer.family("custom_value", MetricsWriter.Type.GAUGE, "Custom \"value\"");
+                writer.sample("custom_value").label("name", "a\"b").value(-15, 1);
+            }
+        });
+        
+        final String metrics = get("/metrics", null);
+        assertTrue(metrics, metrics.contains("# HELP custom_value Custom \"value\"\n"));
+        assertTrue(metrics, metrics.contains("custom_value{name=\"a\\\"b\"} -1.5\n"));
+    }
+
+    private static String get(final String path, final String[] contentType)
+            throws Exception {
+        // the keep-alive connection is reused, so requests are processed
+        // sequentially and the previous request is completed before the next
+        // one is received
+        final HttpURLConnection connection = (HttpURLConnection)
+                new URL("http://localhost:" + PORT + path).openConnection();
+        assertEquals(200, connection.getResponseCode());
+        if (contentType != null) {
+            contentType[0] = connection.getContentType();
+        }
+
+        final InputStream in = connection.getInputStream();
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buf = new byte[1024];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+            }
+            
+            return new String(out.toByteArray(), "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -48,6 +48,7 @@ import static org.glassfish.grizzly.http.Method.GET;
 import static org.glassfish.grizzly.http.Protocol.HTTP_1_1;
 import static org.junit.Assert.assertEquals;
 
+import java.nio.charset.Charset;
 import java.util.Locale;
 import java.util.Date;
 import java.util.TimeZone;
@@ -167,6 +168,17 @@ public class ApacheLogFormatTest {
         assertEquals("Test-User-Agent", ApacheLogFormat.AGENT_UTC.unsafeFormat(response, date, nanos));
     }
 
+    @Test
+    public void testBinaryFormat() {
+        final Response response = mockSimpleResponse();
+        Locale.setDefault(Locale.US);
+
+        final AccessLogBuffer buffer = new AccessLogBuffer();
+        ApacheLogFormat.COMBINED_UTC.format(response, date.getTime(), nanos, buffer);
+        assertEquals(ApacheLogFormat.COMBINED_UTC.unsafeFormat(response, date, nanos) + System.getProperty("line.separator"),
+                     new String(buffer.array(), 0, buffer.length(), Charset.forName("UTF-8")));
+    }
+
     @Test
     public void testBasicFormatsEmptyResponse() {
         final Response response = mockEmptyResponse();
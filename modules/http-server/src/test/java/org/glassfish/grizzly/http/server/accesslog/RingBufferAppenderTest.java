@@ -0,0 +1,169 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.accesslog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.glassfish.grizzly.http.server.accesslog.RingBufferAppender.OverflowPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for {@link RingBufferAppender}
+ */
+public class RingBufferAppenderTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private File file;
+
+    @Before
+    public void before() throws IOException {
+        file = File.createTempFile("access", ".log");
+    }
+
+    @After
+    public void after() {
+        if (file != null) file.delete();
+    }
+
+    @Test
+    public void testConcurrentAppendersBlock() throws Exception {
+        final int threads = 4;
+        final int entries = 10000;
+        final RingBufferAppender appender = new RingBufferAppender(file, 64, OverflowPolicy.BLOCK);
+        assertEquals(64, appender.getCapacity());
+
+        final Thread[] appenders = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int id = i;
+            appenders[i] = new Thread() {
+                @Override
+                public void run() {
+                    final AccessLogBuffer buffer = new AccessLogBuffer();
+                    try {
+                        for (int j = 0; j < entries; j++) {
+                            buffer.reset().append("thread-").append(id).append(" entry-").append(j);
+                            buffer.encode();
+                            appender.append(buffer.array(), 0, buffer.length());
+                        }
+                    } catch (IOException exception) {
+                        throw new IllegalStateException(exception);
+                    }
+                }
+            };
+            appenders[i].start();
+        }
+        for (Thread thread : appenders) thread.join();
+        appender.close();
+
+        final List<String> lines = Files.readAllLines(file.toPath(), UTF8);
+        assertEquals(threads * entries, lines.size());
+        assertEquals(threads * entries, new HashSet<String>(lines).size());
+        assertEquals(0, appender.getDroppedEntries());
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        final int entries = 10000;
+        final RingBufferAppender appender = new RingBufferAppender(file, 2, OverflowPolicy.DROP);
+        for (int i = 0; i < entries; i++) appender.append("entry-" + i);
+        appender.close();
+
+        final List<String> lines = Files.readAllLines(file.toPath(), UTF8);
+        assertTrue(lines.size() > 0);
+        assertEquals(entries, lines.size() + appender.getDroppedEntries());
+
+        /* Whatever was not dropped is written in order */
+        int last = -1;
+        for (String line : lines) {
+            final int current = Integer.parseInt(line.substring("entry-".length()));
+            assertTrue(current > last);
+            last = current;
+        }
+    }
+
+    @Test
+    public void testEncodingAndLargeEntries() throws Exception {
+        final StringBuilder large = new StringBuilder();
+        while (large.length() < 300 * 1024) large.append("large-entry ");
+
+        final String unicode = "caf\u00e9 \u20ac \ud83d\ude00";
+        final RingBufferAppender appender = new RingBufferAppender(file, 4, OverflowPolicy.BLOCK);
+        appender.append(unicode);
+        appender.append(large.toString());
+        appender.append("after");
+        appender.close();
+
+        final List<String> lines = Files.readAllLines(file.toPath(), UTF8);
+        assertEquals(3, lines.size());
+        assertEquals(unicode, lines.get(0));
+        assertEquals(large.toString(), lines.get(1));
+        assertEquals("after", lines.get(2));
+
+        /* Closed, nothing else gets written */
+        appender.append("closed");
+        assertEquals(3, Files.readAllLines(file.toPath(), UTF8).size());
+    }
+
+    @Test
+    public void testAppendsToExistingFile() throws Exception {
+        final Set<String> expected = new HashSet<String>();
+        for (int i = 0; i < 2; i++) {
+            final RingBufferAppender appender = new RingBufferAppender(file, 16, OverflowPolicy.BLOCK);
+            appender.append("run-" + i);
+            expected.add("run-" + i);
+            appender.close();
+        }
+        assertEquals(expected, new HashSet<String>(Files.readAllLines(file.toPath(), UTF8)));
+    }
+
+}
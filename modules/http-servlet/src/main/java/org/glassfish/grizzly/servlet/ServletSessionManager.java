@@ -63,11 +63,26 @@ public class ServletSessionManager implements SessionManager {
         private static final ServletSessionManager INSTANCE = new ServletSessionManager();
     }
 
-    private final SessionManager defaultManager = DefaultSessionManager.instance();
+    private final SessionManager defaultManager;
 
     private String sessionCookieName = Globals.SESSION_COOKIE_NAME;
 
     private ServletSessionManager() {
+        this(DefaultSessionManager.instance());
+    }
+
+    /**
+     * Create a Servlet-aware {@link SessionManager}, which keeps track of
+     * sessions using the given {@link SessionManager} (for example a
+     * {@link org.glassfish.grizzly.http.server.BoundedSessionManager}).
+     *
+     * @param sessionManager the {@link SessionManager} to delegate to
+     */
+    public ServletSessionManager(final SessionManager sessionManager) {
+        if (sessionManager == null) {
+            throw new NullPointerException("Null session manager");
+        }
+        this.defaultManager = sessionManager;
     }
 
     @Override
@@ -1004,8 +1004,90 @@ public class HttpServerFilter extends HttpCodecFilter {
         }
 
         return encodedHttpContent;
-    }        
-    
+    }
+
+    /**
+     * Commits the {@link HttpResponsePacket}, whose status line and headers
+     * have been already encoded by the caller (for example cached along with
+     * a static resource), so the encoded bytes could be written directly,
+     * bypassing the regular {@link HttpResponsePacket} serialization.
+     *
+     * The response could be committed this way only if it's HTTP/1.1 response
+     * to not upgraded HTTP request, and none of this filter's
+     * {@link ContentEncoding}s is registered, unless <tt>isContentEncoded</tt>
+     * is <tt>true</tt>. In this case the method applies this filter's
+     * keep-alive policy to the response, so if
+     * {@link ProcessingState#isKeepAlive()} returns <tt>false</tt> after the
+     * call, the caller is responsible for adding <tt>Connection: close</tt>
+     * header.
+     *
+     * @param ctx the {@link FilterChainContext}
+     * @param response the {@link HttpResponsePacket} to commit
+     * @param isContentEncoded <tt>true</tt> if the response content is
+     *        already encoded, or there is no content at all
+     * @return <tt>true</tt> if the response has been committed, or
+     *         <tt>false</tt> if it has to be serialized as usual
+     */
+    public boolean commitPreEncodedResponse(final FilterChainContext ctx,
+            final HttpResponsePacket response, final boolean isContentEncoded) {
+        final HttpRequestPacket request = response.getRequest();
+
+        if (response.isCommitted()
+                || request.getProtocol() != Protocol.HTTP_1_1
+                || request.isUpgrade()
+                || request.isIgnoreContentModifiers()
+                || response.isIgnoreContentModifiers()
+                || (!isContentEncoded && !contentEncodings.isEmpty())) {
+            return false;
+        }
+
+        final ProcessingState state = response.getProcessingState();
+        if (state.keepAlive) {
+            state.keepAlive = checkKeepAliveRequestsCount(state.getHttpContext())
+                    && !statusDropsConnection(response.getStatus());
+        }
+
+        response.setCommitted(true);
+
+        return true;
+    }
+
+    /**
+     * Notifies this filter's {@link HttpProbe}s about the response, committed
+     * by {@link #commitPreEncodedResponse(FilterChainContext, HttpResponsePacket, boolean)},
+     * the same way they are notified when the response is serialized by this
+     * filter. The method has to be called before the pre-encoded response is
+     * written.
+     *
+     * @param ctx the {@link FilterChainContext}
+     * @param response the committed {@link HttpResponsePacket}
+     * @param head the pre-encoded status line and headers
+     * @param content the response content, or <tt>null</tt> if the content
+     *        is not sent as part of the <tt>output</tt>
+     * @param output the {@link Buffer} to be written
+     */
+    public void notifyPreEncodedResponse(final FilterChainContext ctx,
+            final HttpResponsePacket response, final Buffer head,
+            final Buffer content, final Buffer output) {
+        if (!monitoringConfig.hasProbes()) {
+            return;
+        }
+
+        final Connection connection = ctx.getConnection();
+        HttpProbeNotifier.notifyHeaderSerialize(this, connection, response,
+                head);
+
+        if (content != null) {
+            HttpProbeNotifier.notifyContentChunkSerialize(this, connection,
+                    HttpContent.builder(response)
+                            .content(content)
+                            .last(true)
+                            .build());
+        }
+
+        HttpProbeNotifier.notifyDataSent(this, connection, output);
+    }
+
     @Override
     Buffer encodeInitialLine(HttpPacket httpPacket, Buffer output, MemoryManager memoryManager) {
         final HttpResponsePacket httpResponse = (HttpResponsePacket) httpPacket;
@@ -80,6 +80,7 @@ import org.glassfish.grizzly.http.HttpHeader;
 import org.glassfish.grizzly.http.HttpServerFilter;
 import org.glassfish.grizzly.http.HttpTrailer;
 import org.glassfish.grizzly.http.Protocol;
+import org.glassfish.grizzly.http.util.FastCharEncoder;
 import org.glassfish.grizzly.http.util.MimeType;
 import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.http.util.HeaderValue;
@@ -149,6 +150,16 @@ public class OutputBuffer {
     private final Map<String, CharsetEncoder> encoders =
             new HashMap<>();
 
+    // UTF-8 and ISO-8859-1 are encoded by FastCharEncoder straight into
+    // the current Buffer, skipping charsArray and the CharsetEncoder.
+    // The encoder is kept across recycles, isFastEncoderResolved tells
+    // if it matches the current response encoding
+    private FastCharEncoder fastEncoder;
+    private boolean isFastEncoderResolved;
+    // the high surrogate, which ended the last chunk encoded by the
+    // FastCharEncoder and waits for its low surrogate, or 0
+    private char pendingHighSurrogate;
+
     private char[] charsArray;
     private int charsArrayLength;
     private CharBuffer charsBuffer;
@@ -237,7 +248,9 @@ public class OutputBuffer {
 
 
     public void prepareCharacterEncoder() {
-        getEncoder();
+        if (getFastEncoder() == null) {
+            getEncoder();
+        }
     }
 
     public int getBufferSize() {
@@ -293,7 +306,9 @@ public class OutputBuffer {
         }
 
         charsArrayLength = 0;
+        pendingHighSurrogate = 0;
         encoder = null;
+        isFastEncoderResolved = false;
     }
 
 
@@ -363,7 +378,9 @@ public class OutputBuffer {
 
         bufferSize = DEFAULT_BUFFER_SIZE;
         fileTransferRequested = false;
+        pendingHighSurrogate = 0;
         encoder = null;
+        isFastEncoderResolved = false;
         ctx = null;
         httpContext = null;
         connection = null;
@@ -457,6 +474,17 @@ public class OutputBuffer {
 
         updateNonBlockingStatus();
 
+        final FastCharEncoder fastEncoderLocal = getFastEncoder();
+        if (fastEncoderLocal != null) {
+            if (writingChars()) {
+                flushCharsToBuf(false);
+            }
+            
+            encodeToBuf(fastEncoderLocal, cbuf, off, len);
+            flushBinaryBuffersIfNeeded();
+            return;
+        }
+        
         if (writingBytes()) {
             flushBinaryBuffers(false);
         }
@@ -502,6 +530,17 @@ public class OutputBuffer {
 
         updateNonBlockingStatus();
 
+        final FastCharEncoder fastEncoderLocal = getFastEncoder();
+        if (fastEncoderLocal != null) {
+            if (writingChars()) {
+                flushCharsToBuf(false);
+            }
+            
+            encodeToBuf(fastEncoderLocal, str, off, len);
+            flushBinaryBuffersIfNeeded();
+            return;
+        }
+        
         if (writingBytes()) {
             flushBinaryBuffers(false);
         }
@@ -553,6 +592,7 @@ public class OutputBuffer {
         if (writingChars()) {
             flushCharsToBuf(false);
         }
+        flushPendingHighSurrogate();
         
         checkCurrentBuffer();
         
@@ -694,6 +734,7 @@ public class OutputBuffer {
         if (writingChars()) {
             flushCharsToBuf(false);
         }
+        flushPendingHighSurrogate();
         
         // Copy the content of the b[] to the currentBuffer, if it's possible
         if (bufferSize >= len &&
@@ -816,6 +857,11 @@ public class OutputBuffer {
         
         updateNonBlockingStatus();
         
+        if (writingChars()) {
+            flushCharsToBuf(false);
+        }
+        flushPendingHighSurrogate();
+        
         finishCurrentBuffer();
         checkCompositeBuffer();
         compositeBuffer.append(buffer);
@@ -1033,6 +1079,11 @@ public class OutputBuffer {
             flushCharsToBuf(false);
         }
         
+        if (isLast) {
+            // the low surrogate won't come
+            flushPendingHighSurrogate();
+        }
+        
         return flushBinaryBuffers(isLast);
     }
     
@@ -1127,13 +1178,31 @@ public class OutputBuffer {
         }
     }
 
+    private String getCharacterEncoding() {
+        final String encoding = outputHeader.getCharacterEncoding();
+        return encoding != null
+                ? encoding
+                : org.glassfish.grizzly.http.util.Constants.DEFAULT_HTTP_CHARACTER_ENCODING;
+    }
+    
+    private FastCharEncoder getFastEncoder() {
+        if (!isFastEncoderResolved) {
+            final Charset charset =
+                    Charsets.lookupCharset(getCharacterEncoding());
+            // reuse the encoder (and its scratch array) of the previous response
+            if (fastEncoder == null || !fastEncoder.getCharset().equals(charset)) {
+                fastEncoder = FastCharEncoder.forCharset(charset);
+            }
+            isFastEncoderResolved = true;
+        }
+        
+        return fastEncoder;
+    }
+    
     private CharsetEncoder getEncoder() {
 
         if (encoder == null) {
-            String encoding = outputHeader.getCharacterEncoding();
-            if (encoding == null) {
-                encoding = org.glassfish.grizzly.http.util.Constants.DEFAULT_HTTP_CHARACTER_ENCODING;
-            }
+            final String encoding = getCharacterEncoding();
 
             encoder = encoders.get(encoding);
             if (encoder == null) {
@@ -1203,6 +1272,19 @@ public class OutputBuffer {
 
         if (!charBuf.hasRemaining()) return;
 
+        final FastCharEncoder fastEncoderLocal = getFastEncoder();
+        if (fastEncoderLocal != null && charBuf.hasArray()) {
+            encodeToBuf(fastEncoderLocal, charBuf.array(),
+                    charBuf.arrayOffset() + charBuf.position(),
+                    charBuf.remaining());
+            charBuf.position(charBuf.limit());
+            
+            if (canFlushToNet) {
+                flushBinaryBuffersIfNeeded();
+            }
+            return;
+        }
+        
         // flush the buffer - need to take care of encoding at this point
         final CharsetEncoder enc = getEncoder();
 
@@ -1247,6 +1329,84 @@ public class OutputBuffer {
         }
     }
 
+    /**
+     * Encodes the <tt>String</tt> or <tt>char[]</tt> characters straight into
+     * the binary buffers. A surrogate pair split between the subsequent
+     * writes is kept and encoded once its low surrogate is written.
+     */
+    private void encodeToBuf(final FastCharEncoder fastEncoderLocal,
+            final Object src, final int off, final int len) {
+        int offLocal = off;
+        int lenLocal = len;
+        
+        checkCurrentBuffer();
+        
+        if (pendingHighSurrogate != 0 && lenLocal > 0) {
+            final char high = pendingHighSurrogate;
+            pendingHighSurrogate = 0;
+            
+            final char next = charAt(src, offLocal);
+            if (Character.isLowSurrogate(next)) {
+                encodeToBuf0(fastEncoderLocal, new char[] {high, next}, 0, 2);
+                offLocal++;
+                lenLocal--;
+            } else {
+                // malformed, will be replaced
+                encodeToBuf0(fastEncoderLocal, new char[] {high}, 0, 1);
+            }
+        }
+        
+        if (lenLocal > 0
+                && Character.isHighSurrogate(charAt(src, offLocal + lenLocal - 1))) {
+            pendingHighSurrogate = charAt(src, offLocal + lenLocal - 1);
+            lenLocal--;
+        }
+        
+        encodeToBuf0(fastEncoderLocal, src, offLocal, lenLocal);
+    }
+
+    private void encodeToBuf0(final FastCharEncoder fastEncoderLocal,
+            final Object src, final int off, final int len) {
+        int offLocal = off;
+        int lenLocal = len;
+        
+        while (lenLocal > 0) {
+            final int encoded = src instanceof String
+                    ? fastEncoderLocal.encode((String) src, offLocal, lenLocal,
+                            currentBuffer)
+                    : fastEncoderLocal.encode((char[]) src, offLocal, lenLocal,
+                            currentBuffer);
+            offLocal += encoded;
+            lenLocal -= encoded;
+            
+            if (lenLocal > 0) {
+                // the current buffer is full
+                finishCurrentBuffer();
+                checkCurrentBuffer();
+            }
+        }
+    }
+
+    /**
+     * Encodes the pending high surrogate, which can't be completed anymore,
+     * as malformed input.
+     */
+    private void flushPendingHighSurrogate() {
+        if (pendingHighSurrogate != 0) {
+            final char high = pendingHighSurrogate;
+            pendingHighSurrogate = 0;
+            
+            checkCurrentBuffer();
+            encodeToBuf0(getFastEncoder(), new char[] {high}, 0, 1);
+        }
+    }
+
+    private static char charAt(final Object src, final int index) {
+        return src instanceof String
+                ? ((String) src).charAt(index)
+                : ((char[]) src)[index];
+    }
+
     private void flushBinaryBuffersIfNeeded() throws IOException {
         if (compositeBuffer != null) { // this actually checks wheather current buffer was overloaded during encoding so we need to flush
             flushBinaryBuffers(false);
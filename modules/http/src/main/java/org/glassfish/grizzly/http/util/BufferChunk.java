@@ -499,7 +499,10 @@ public class BufferChunk implements Chunk {
             return cachedString;
         }
 
-        cachedString = buffer.toStringContent(charset, start, end);
+        final InterningStringCache stringCache = InterningStringCache.getInstance();
+        cachedString = stringCache != null
+                ? stringCache.toString(buffer, start, end, charset)
+                : buffer.toStringContent(charset, start, end);
 
         cachedStringCharset = charset;
 
@@ -658,7 +658,10 @@ public final class ByteChunk implements Chunk, Cloneable, Serializable {
             return cachedString;
         }
 
-        cachedString = charset.decode(ByteBuffer.wrap(buff, start, end - start)).toString();
+        final InterningStringCache stringCache = InterningStringCache.getInstance();
+        cachedString = stringCache != null
+                ? stringCache.toString(buff, start, end, charset)
+                : charset.decode(ByteBuffer.wrap(buff, start, end - start)).toString();
         cachedStringCharset = charset;
         
         return cachedString;
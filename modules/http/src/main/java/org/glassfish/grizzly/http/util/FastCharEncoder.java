@@ -0,0 +1,409 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.util;
+
+import java.nio.charset.Charset;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.utils.Charsets;
+
+/**
+ * Encodes characters straight from {@link String}s and <tt>char[]</tt>s into
+ * {@link Buffer}s using hand-written loops for the most common HTTP body
+ * charsets: <tt>UTF-8</tt> and <tt>ISO-8859-1</tt>.
+ * 
+ * The encoders behave like the JDK {@link java.nio.charset.CharsetEncoder}s
+ * configured with {@link java.nio.charset.CodingErrorAction#REPLACE}, malformed
+ * and unmappable characters are replaced with <tt>'?'</tt>. A character (or a
+ * surrogate pair) is never split between {@link Buffer}s, the encoding stops
+ * once the next character doesn't fit into the destination {@link Buffer}.
+ * 
+ * The encoders are not thread-safe: every encoder owns the scratch array,
+ * used to encode into {@link Buffer}s, which don't expose an array, so an
+ * encoder is supposed to be obtained once and reused by its owner, like
+ * {@link org.glassfish.grizzly.http.io.OutputBuffer}.
+ * 
+ * @since 2.4.3
+ */
+public abstract class FastCharEncoder {
+    private static final byte REPLACEMENT = (byte) '?';
+    private static final Charset LATIN1_CHARSET = Charsets.lookupCharset("ISO-8859-1");
+    // the chunk size used to encode into Buffers, which don't expose an array
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * Creates a new {@link FastCharEncoder} for the given {@link Charset}, or
+     * returns <tt>null</tt> if the {@link Charset} is not supported.
+     * 
+     * @param charset the {@link Charset}.
+     * @return a new {@link FastCharEncoder} for the given {@link Charset}, or
+     *  <tt>null</tt> if the {@link Charset} is not supported.
+     */
+    public static FastCharEncoder forCharset(final Charset charset) {
+        if (Charsets.UTF8_CHARSET.equals(charset)) {
+            return new Utf8Encoder();
+        } else if (LATIN1_CHARSET.equals(charset)) {
+            return new Latin1Encoder();
+        }
+
+        return null;
+    }
+
+    private final Charset charset;
+    // the scratch array to encode into Buffers, which don't expose an array
+    private byte[] chunk;
+
+    FastCharEncoder(final Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * @return the {@link Charset} this encoder encodes to.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Encodes the characters into the {@link Buffer} space between its
+     * position and limit, and advances the {@link Buffer} position.
+     * 
+     * @param src the characters source.
+     * @param off the offset of the first character to encode.
+     * @param len the number of characters to encode.
+     * @param dst the destination {@link Buffer}.
+     * 
+     * @return the number of encoded characters, it's less than <tt>len</tt>
+     *  if the {@link Buffer} is full.
+     */
+    public int encode(final String src, final int off, final int len,
+            final Buffer dst) {
+        if (dst.hasArray()) {
+            final int position = dst.position();
+            final int arrayOffset = dst.arrayOffset();
+            final long result = encode(src, off, off + len, dst.array(),
+                    arrayOffset + position, arrayOffset + dst.limit());
+            dst.position(position + bytesWritten(result));
+            return charsRead(result);
+        }
+
+        final byte[] chunk = getChunk();
+        int read = 0;
+        while (read < len && dst.hasRemaining()) {
+            final long result = encode(src, off + read, off + len, chunk,
+                    0, Math.min(chunk.length, dst.remaining()));
+            if (charsRead(result) == 0) {
+                break;
+            }
+            dst.put(chunk, 0, bytesWritten(result));
+            read += charsRead(result);
+        }
+
+        return read;
+    }
+
+    /**
+     * Encodes the characters into the {@link Buffer} space between its
+     * position and limit, and advances the {@link Buffer} position.
+     * 
+     * @param src the characters source.
+     * @param off the offset of the first character to encode.
+     * @param len the number of characters to encode.
+     * @param dst the destination {@link Buffer}.
+     * 
+     * @return the number of encoded characters, it's less than <tt>len</tt>
+     *  if the {@link Buffer} is full.
+     */
+    public int encode(final char[] src, final int off, final int len,
+            final Buffer dst) {
+        if (dst.hasArray()) {
+            final int position = dst.position();
+            final int arrayOffset = dst.arrayOffset();
+            final long result = encode(src, off, off + len, dst.array(),
+                    arrayOffset + position, arrayOffset + dst.limit());
+            dst.position(position + bytesWritten(result));
+            return charsRead(result);
+        }
+
+        final byte[] chunk = getChunk();
+        int read = 0;
+        while (read < len && dst.hasRemaining()) {
+            final long result = encode(src, off + read, off + len, chunk,
+                    0, Math.min(chunk.length, dst.remaining()));
+            if (charsRead(result) == 0) {
+                break;
+            }
+            dst.put(chunk, 0, bytesWritten(result));
+            read += charsRead(result);
+        }
+
+        return read;
+    }
+
+    private byte[] getChunk() {
+        if (chunk == null) {
+            chunk = new byte[CHUNK_SIZE];
+        }
+
+        return chunk;
+    }
+
+    /**
+     * Encodes the <tt>src[sp, sl)</tt> characters into <tt>dst[dp, dl)</tt>.
+     * 
+     * @return the number of characters read (high 32 bits) and the number of
+     *  bytes written (low 32 bits).
+     */
+    abstract long encode(String src, int sp, int sl, byte[] dst, int dp, int dl);
+
+    /**
+     * Encodes the <tt>src[sp, sl)</tt> characters into <tt>dst[dp, dl)</tt>.
+     * 
+     * @return the number of characters read (high 32 bits) and the number of
+     *  bytes written (low 32 bits).
+     */
+    abstract long encode(char[] src, int sp, int sl, byte[] dst, int dp, int dl);
+
+    static long result(final int charsRead, final int bytesWritten) {
+        return ((long) charsRead << 32) | bytesWritten;
+    }
+
+    static int charsRead(final long result) {
+        return (int) (result >>> 32);
+    }
+
+    static int bytesWritten(final long result) {
+        return (int) result;
+    }
+
+    private static final class Utf8Encoder extends FastCharEncoder {
+
+        Utf8Encoder() {
+            super(Charsets.UTF8_CHARSET);
+        }
+
+        @Override
+        long encode(final String src, final int off, final int sl,
+                final byte[] dst, final int dOff, final int dl) {
+            int sp = off;
+            int dp = dOff;
+
+            // ASCII run
+            final int asciiLimit = sp + Math.min(sl - sp, dl - dp);
+            while (sp < asciiLimit) {
+                final char c = src.charAt(sp);
+                if (c >= 0x80) {
+                    break;
+                }
+                dst[dp++] = (byte) c;
+                sp++;
+            }
+
+            while (sp < sl) {
+                final char c = src.charAt(sp);
+                if (c < 0x80) {
+                    if (dp >= dl) {
+                        break;
+                    }
+                    dst[dp++] = (byte) c;
+                    sp++;
+                } else if (c < 0x800) {
+                    if (dl - dp < 2) {
+                        break;
+                    }
+                    dst[dp++] = (byte) (0xc0 | (c >> 6));
+                    dst[dp++] = (byte) (0x80 | (c & 0x3f));
+                    sp++;
+                } else if (Character.isSurrogate(c)) {
+                    if (Character.isHighSurrogate(c) && sp + 1 < sl
+                            && Character.isLowSurrogate(src.charAt(sp + 1))) {
+                        if (dl - dp < 4) {
+                            break;
+                        }
+                        dp = putCodePoint(Character.toCodePoint(c,
+                                src.charAt(sp + 1)), dst, dp);
+                        sp += 2;
+                    } else {
+                        if (dp >= dl) {
+                            break;
+                        }
+                        dst[dp++] = REPLACEMENT;
+                        sp++;
+                    }
+                } else {
+                    if (dl - dp < 3) {
+                        break;
+                    }
+                    dst[dp++] = (byte) (0xe0 | (c >> 12));
+                    dst[dp++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    dst[dp++] = (byte) (0x80 | (c & 0x3f));
+                    sp++;
+                }
+            }
+
+            return result(sp - off, dp - dOff);
+        }
+
+        @Override
+        long encode(final char[] src, final int off, final int sl,
+                final byte[] dst, final int dOff, final int dl) {
+            int sp = off;
+            int dp = dOff;
+
+            // ASCII run
+            final int asciiLimit = sp + Math.min(sl - sp, dl - dp);
+            while (sp < asciiLimit) {
+                final char c = src[sp];
+                if (c >= 0x80) {
+                    break;
+                }
+                dst[dp++] = (byte) c;
+                sp++;
+            }
+
+            while (sp < sl) {
+                final char c = src[sp];
+                if (c < 0x80) {
+                    if (dp >= dl) {
+                        break;
+                    }
+                    dst[dp++] = (byte) c;
+                    sp++;
+                } else if (c < 0x800) {
+                    if (dl - dp < 2) {
+                        break;
+                    }
+                    dst[dp++] = (byte) (0xc0 | (c >> 6));
+                    dst[dp++] = (byte) (0x80 | (c & 0x3f));
+                    sp++;
+                } else if (Character.isSurrogate(c)) {
+                    if (Character.isHighSurrogate(c) && sp + 1 < sl
+                            && Character.isLowSurrogate(src[sp + 1])) {
+                        if (dl - dp < 4) {
+                            break;
+                        }
+                        dp = putCodePoint(Character.toCodePoint(c,
+                                src[sp + 1]), dst, dp);
+                        sp += 2;
+                    } else {
+                        if (dp >= dl) {
+                            break;
+                        }
+                        dst[dp++] = REPLACEMENT;
+                        sp++;
+                    }
+                } else {
+                    if (dl - dp < 3) {
+                        break;
+                    }
+                    dst[dp++] = (byte) (0xe0 | (c >> 12));
+                    dst[dp++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    dst[dp++] = (byte) (0x80 | (c & 0x3f));
+                    sp++;
+                }
+            }
+
+            return result(sp - off, dp - dOff);
+        }
+
+        private static int putCodePoint(final int cp, final byte[] dst,
+                final int dOff) {
+            int dp = dOff;
+            dst[dp++] = (byte) (0xf0 | (cp >> 18));
+            dst[dp++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+            dst[dp++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+            dst[dp++] = (byte) (0x80 | (cp & 0x3f));
+            return dp;
+        }
+    }
+
+    private static final class Latin1Encoder extends FastCharEncoder {
+
+        Latin1Encoder() {
+            super(LATIN1_CHARSET);
+        }
+
+        @Override
+        long encode(final String src, final int off, final int sl,
+                final byte[] dst, final int dOff, final int dl) {
+            int sp = off;
+            int dp = dOff;
+
+            while (sp < sl && dp < dl) {
+                final char c = src.charAt(sp++);
+                if (c <= 0xff) {
+                    dst[dp++] = (byte) c;
+                } else {
+                    // a surrogate pair is replaced with a single '?'
+                    if (Character.isHighSurrogate(c) && sp < sl
+                            && Character.isLowSurrogate(src.charAt(sp))) {
+                        sp++;
+                    }
+                    dst[dp++] = REPLACEMENT;
+                }
+            }
+
+            return result(sp - off, dp - dOff);
+        }
+
+        @Override
+        long encode(final char[] src, final int off, final int sl,
+                final byte[] dst, final int dOff, final int dl) {
+            int sp = off;
+            int dp = dOff;
+
+            while (sp < sl && dp < dl) {
+                final char c = src[sp++];
+                if (c <= 0xff) {
+                    dst[dp++] = (byte) c;
+                } else {
+                    // a surrogate pair is replaced with a single '?'
+                    if (Character.isHighSurrogate(c) && sp < sl
+                            && Character.isLowSurrogate(src[sp])) {
+                        sp++;
+                    }
+                    dst[dp++] = REPLACEMENT;
+                }
+            }
+
+            return result(sp - off, dp - dOff);
+        }
+    }
+}
@@ -0,0 +1,497 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.util;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.monitoring.MetricsSource;
+import org.glassfish.grizzly.monitoring.MetricsWriter;
+
+/**
+ * Thread-safe, bounded cache, which maps short byte sequences to the
+ * {@link String}s they decode to, so frequently repeated header values,
+ * cookie and parameter names share a single {@link String} instance instead
+ * of being decoded over and over again.
+ * 
+ * The cache is a 2-way set associative table keyed on the byte content and
+ * its hash. A byte sequence is admitted only after it has been seen at least
+ * {@link #ADMISSION_FREQUENCY} times, and it replaces an existing entry only
+ * if it's been seen more often than that entry. The access frequencies are
+ * kept in a small count-min sketch, which is periodically halved, so the
+ * cache keeps adapting to the traffic instead of being trained once. Every
+ * miss is counted, but only a random sample of 1 in
+ * {@value #HIT_SAMPLE_RATE} hits updates the sketch (weighted accordingly),
+ * so the lookups of popular values don't keep writing the shared counters.
+ * 
+ * The sketch counters are plain <tt>int</tt>s shared by all the threads and
+ * updated without synchronization. The races are tolerated: a lost update
+ * only makes an estimate a bit lower, and an update racing with the
+ * periodic halving may keep a counter un-halved, but a counter never goes
+ * beyond <tt>0..15</tt> range, because every write is capped, so the worst
+ * outcome is a slightly different admission decision, never a wrong
+ * {@link String}. The cached entries themselves are published safely.
+ * 
+ * Once enabled, the cache is consulted by every {@link ByteChunk} and
+ * {@link BufferChunk} <tt>toString()</tt> (including the header values) and
+ * by the {@link Parameters} names, so like {@link StringCache} it's
+ * disabled by default and has to be switched on for the workloads with
+ * many repeated values. It can be configured using the following system
+ * properties:
+ * <ul>
+ *   <li><tt>org.glassfish.grizzly.http.util.InterningStringCache.enabled</tt>
+ *      (default <tt>false</tt>)</li>
+ *   <li><tt>org.glassfish.grizzly.http.util.InterningStringCache.size</tt>
+ *      the max number of entries (default {@value #DEFAULT_SIZE})</li>
+ *   <li><tt>org.glassfish.grizzly.http.util.InterningStringCache.maxLength</tt>
+ *      the max length of a cached byte sequence (default
+ *      {@value #DEFAULT_MAX_LENGTH})</li>
+ * </ul>
+ * 
+ * @since 2.4.3
+ */
+public final class InterningStringCache implements MetricsSource {
+    private static final String PROPERTY_PREFIX =
+            InterningStringCache.class.getName();
+    
+    public static final int DEFAULT_SIZE = 2048;
+    public static final int DEFAULT_MAX_LENGTH = 64;
+    
+    /**
+     * The number of times a byte sequence has to be seen before it may be
+     * cached.
+     */
+    public static final int ADMISSION_FREQUENCY = 2;
+
+    private static final int MAX_FREQUENCY = 15;
+    
+    /**
+     * One in how many cache hits updates the frequency sketch.
+     */
+    static final int HIT_SAMPLE_RATE = 8;
+    
+    private static final boolean IS_ENABLED = Boolean.parseBoolean(
+            System.getProperty(PROPERTY_PREFIX + ".enabled", "false"));
+    
+    private static final InterningStringCache INSTANCE =
+            new InterningStringCache(
+            Integer.getInteger(PROPERTY_PREFIX + ".size", DEFAULT_SIZE),
+            Integer.getInteger(PROPERTY_PREFIX + ".maxLength", DEFAULT_MAX_LENGTH));
+
+    /**
+     * @return the shared cache used by {@link ByteChunk}, {@link BufferChunk}
+     *  and {@link Parameters}, or <tt>null</tt> if the cache is disabled
+     */
+    public static InterningStringCache getInstance() {
+        return IS_ENABLED ? INSTANCE : null;
+    }
+    
+    private final int maxLength;
+    private final AtomicReferenceArray<Entry> table;
+    private final int tableMask;
+    
+    // count-min sketch counters, updated without synchronization,
+    // see the class javadoc why the races are harmless
+    private final int[] sketch;
+    private final int sketchMask;
+    private final int sampleSize;
+    private final AtomicInteger sampleCounter = new AtomicInteger();
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder admissions = new LongAdder();
+
+    /**
+     * Constructs the cache.
+     * 
+     * @param size the max number of entries, rounded up to a power of two
+     * @param maxLength the max length of a byte sequence to be cached
+     */
+    public InterningStringCache(final int size, final int maxLength) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        
+        final int tableSize = Math.max(2, powerOfTwo(size));
+        this.maxLength = maxLength;
+        this.table = new AtomicReferenceArray<Entry>(tableSize);
+        this.tableMask = tableSize - 1;
+        this.sketch = new int[tableSize * 4];
+        this.sketchMask = sketch.length - 1;
+        this.sampleSize = tableSize * 10;
+    }
+
+    /**
+     * @return the max number of entries
+     */
+    public int getSize() {
+        return table.length();
+    }
+
+    /**
+     * @return the max length of a byte sequence to be cached
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+    
+    /**
+     * Returns the {@link String} the given bytes decode to, either from the
+     * cache or freshly decoded.
+     * 
+     * @param bytes the byte array
+     * @param start the start offset (inclusive)
+     * @param end the end offset (exclusive)
+     * @param charset the {@link Charset} to decode the bytes with
+     * @return the decoded {@link String}
+     */
+    public String toString(final byte[] bytes, final int start, final int end,
+            final Charset charset) {
+        final int length = end - start;
+        if (length == 0) {
+            return "";
+        }
+        
+        if (length > maxLength) {
+            return new String(bytes, start, length, charset);
+        }
+        
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        
+        final int set = spread(hash) & tableMask & ~1;
+        final Entry e0 = table.get(set);
+        final Entry e1 = table.get(set + 1);
+        
+        if (e0 != null && e0.matches(hash, bytes, start, length, charset)) {
+            onHit(hash);
+            return e0.value;
+        }
+        
+        if (e1 != null && e1.matches(hash, bytes, start, length, charset)) {
+            onHit(hash);
+            return e1.value;
+        }
+
+        misses.increment();
+        final int frequency = incrementFrequency(hash, 1);
+        
+        final String value = new String(bytes, start, length, charset);
+        if (frequency >= ADMISSION_FREQUENCY) {
+            final byte[] key = new byte[length];
+            System.arraycopy(bytes, start, key, 0, length);
+            admit(set, e0, e1, frequency, new Entry(hash, key, charset, value));
+        }
+        
+        return value;
+    }
+    
+    /**
+     * Returns the {@link String} the given {@link Buffer} content decodes to,
+     * either from the cache or freshly decoded.
+     * 
+     * @param buffer the {@link Buffer}
+     * @param start the start position (inclusive)
+     * @param end the end position (exclusive)
+     * @param charset the {@link Charset} to decode the bytes with
+     * @return the decoded {@link String}
+     */
+    public String toString(final Buffer buffer, final int start, final int end,
+            final Charset charset) {
+        if (buffer.hasArray()) {
+            final int offset = buffer.arrayOffset();
+            return toString(buffer.array(), offset + start, offset + end,
+                    charset);
+        }
+        
+        final int length = end - start;
+        if (length == 0) {
+            return "";
+        }
+        
+        if (length > maxLength) {
+            return buffer.toStringContent(charset, start, end);
+        }
+        
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        
+        final int set = spread(hash) & tableMask & ~1;
+        final Entry e0 = table.get(set);
+        final Entry e1 = table.get(set + 1);
+        
+        if (e0 != null && e0.matches(hash, buffer, start, length, charset)) {
+            onHit(hash);
+            return e0.value;
+        }
+        
+        if (e1 != null && e1.matches(hash, buffer, start, length, charset)) {
+            onHit(hash);
+            return e1.value;
+        }
+
+        misses.increment();
+        final int frequency = incrementFrequency(hash, 1);
+        
+        final String value = buffer.toStringContent(charset, start, end);
+        if (frequency >= ADMISSION_FREQUENCY) {
+            final byte[] key = new byte[length];
+            for (int i = 0; i < length; i++) {
+                key[i] = buffer.get(start + i);
+            }
+            admit(set, e0, e1, frequency, new Entry(hash, key, charset, value));
+        }
+        
+        return value;
+    }
+
+    /**
+     * @return the number of lookups served from the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups, which had to decode the bytes
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of byte sequences admitted to the cache
+     */
+    public long getAdmissions() {
+        return admissions.sum();
+    }
+    
+    /**
+     * @return the ratio of lookups served from the cache, a value from
+     *  <tt>0</tt> to <tt>1</tt>
+     */
+    public double getHitRate() {
+        final long h = hits.sum();
+        final long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Removes all the cached entries and resets the frequencies.
+     * The hit/miss counters are not reset.
+     */
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, null);
+        }
+        
+        for (int i = 0; i < sketch.length; i++) {
+            sketch[i] = 0;
+        }
+    }
+    
+    @Override
+    public void writeMetrics(final MetricsWriter writer) {
+        writer.family("grizzly_http_string_cache_hits", MetricsWriter.Type.COUNTER,
+                "The total number of Strings served from the interning cache");
+        writer.sample("grizzly_http_string_cache_hits", "_total")
+                .value(hits.sum());
+        
+        writer.family("grizzly_http_string_cache_misses", MetricsWriter.Type.COUNTER,
+                "The total number of Strings decoded because of an interning cache miss");
+        writer.sample("grizzly_http_string_cache_misses", "_total")
+                .value(misses.sum());
+        
+        writer.family("grizzly_http_string_cache_admissions", MetricsWriter.Type.COUNTER,
+                "The total number of Strings admitted to the interning cache");
+        writer.sample("grizzly_http_string_cache_admissions", "_total")
+                .value(admissions.sum());
+    }
+    
+    private void admit(final int set, final Entry e0, final Entry e1,
+            final int frequency, final Entry candidate) {
+        final int victim;
+        if (e0 == null) {
+            victim = set;
+        } else if (e1 == null) {
+            victim = set + 1;
+        } else {
+            final int f0 = frequency(e0.hash);
+            final int f1 = frequency(e1.hash);
+            if (f0 <= f1) {
+                if (frequency <= f0) {
+                    return;
+                }
+                victim = set;
+            } else {
+                if (frequency <= f1) {
+                    return;
+                }
+                victim = set + 1;
+            }
+        }
+        
+        table.lazySet(victim, candidate);
+        admissions.increment();
+    }
+    
+    private void onHit(final int hash) {
+        hits.increment();
+        if (ThreadLocalRandom.current().nextInt(HIT_SAMPLE_RATE) == 0) {
+            incrementFrequency(hash, HIT_SAMPLE_RATE);
+        }
+    }
+    
+    private int incrementFrequency(final int hash, final int delta) {
+        final int i0 = hash & sketchMask;
+        final int i1 = rehash(hash) & sketchMask;
+        
+        int f0 = sketch[i0];
+        if (f0 < MAX_FREQUENCY) {
+            f0 = Math.min(f0 + delta, MAX_FREQUENCY);
+            sketch[i0] = f0;
+        }
+        int f1 = sketch[i1];
+        if (f1 < MAX_FREQUENCY) {
+            f1 = Math.min(f1 + delta, MAX_FREQUENCY);
+            sketch[i1] = f1;
+        }
+        
+        if (sampleCounter.addAndGet(delta) >= sampleSize) {
+            age();
+        }
+        
+        return Math.min(f0, f1);
+    }
+    
+    private int frequency(final int hash) {
+        return Math.min(sketch[hash & sketchMask],
+                sketch[rehash(hash) & sketchMask]);
+    }
+    
+    /**
+     * Halves all the frequencies, so the entries, which used to be popular,
+     * may be replaced by the currently popular ones.
+     */
+    private void age() {
+        final int count = sampleCounter.get();
+        if (count < sampleSize || !sampleCounter.compareAndSet(count, 0)) {
+            // another thread is aging the sketch
+            return;
+        }
+        
+        for (int i = 0; i < sketch.length; i++) {
+            sketch[i] >>>= 1;
+        }
+    }
+    
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+    
+    private static int rehash(final int hash) {
+        final int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 15);
+    }
+    
+    private static int powerOfTwo(final int value) {
+        final int highestOneBit = Integer.highestOneBit(value);
+        return highestOneBit == value ? value : highestOneBit << 1;
+    }
+    
+    private static final class Entry {
+        private final int hash;
+        private final byte[] bytes;
+        private final Charset charset;
+        private final String value;
+
+        private Entry(final int hash, final byte[] bytes,
+                final Charset charset, final String value) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.charset = charset;
+            this.value = value;
+        }
+        
+        private boolean matches(final int hash, final byte[] array,
+                final int start, final int length, final Charset charset) {
+            if (this.hash != hash || bytes.length != length
+                    || !sameCharset(charset)) {
+                return false;
+            }
+            
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != array[start + i]) {
+                    return false;
+                }
+            }
+            
+            return true;
+        }
+        
+        private boolean matches(final int hash, final Buffer buffer,
+                final int start, final int length, final Charset charset) {
+            if (this.hash != hash || bytes.length != length
+                    || !sameCharset(charset)) {
+                return false;
+            }
+            
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != buffer.get(start + i)) {
+                    return false;
+                }
+            }
+            
+            return true;
+        }
+
+        private boolean sameCharset(final Charset charset) {
+            return this.charset == charset || this.charset.equals(charset);
+        }
+    }
+}
@@ -62,6 +62,7 @@ import java.io.CharConversionException;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Set;
@@ -72,6 +73,7 @@ import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.Grizzly;
 
 import org.glassfish.grizzly.localization.LogMessages;
+import org.glassfish.grizzly.utils.Charsets;
 
 /**
  * @author Costin Manolache
@@ -154,6 +156,24 @@ public final class Parameters {
         parameterCount = 0;
         decodedQuery.recycle();
 
+        clearLazyParameters();
+        lazyDecodeFailCount = 0;
+        if (lazyBytes != null && lazyBytes.length > MAX_RETAINED_BYTES) {
+            lazyBytes = null;
+        }
+        if (lazyNames.length > MAX_RETAINED_PARAMETERS) {
+            lazyRanges = new int[INITIAL_SIZE * RANGE_SIZE];
+            lazyCharsets = new Charset[INITIAL_SIZE];
+            lazyNames = new String[INITIAL_SIZE];
+            lazyValues = new String[INITIAL_SIZE];
+            lazyIndex = null;
+            lazyIndexNext = null;
+            lazyNameHashes = null;
+        }
+        final byte[] decodeBuffer = decodedChunk.getBuffer();
+        if (decodeBuffer != null && decodeBuffer.length > MAX_RETAINED_BYTES) {
+            decodedChunk.recycleAndReset();
+        }
     }
     // -------------------- Sub-request support --------------------
 
@@ -217,6 +237,7 @@ public final class Parameters {
         if (key == null) {
             return;
         }
+        materializeLazyParameters();
         ArrayList<String> values;
         if (paramHashValues.containsKey(key)) {
             values = paramHashValues.get(key);
@@ -235,6 +256,8 @@ public final class Parameters {
         if (currentChild != null) {
             currentChild.merge();
             values = currentChild.paramHashValues.get(name);
+        } else if (lazyCount > 0) {
+            return getLazyParameterValues(name);
         } else {
             // no "facade"
             values = paramHashValues.get(name);
@@ -244,6 +267,7 @@ public final class Parameters {
 
     public Set<String> getParameterNames() {
         handleQueryParameters();
+        materializeLazyParameters();
         // Slow - the original code
         if (currentChild != null) {
             currentChild.merge();
@@ -276,6 +300,7 @@ public final class Parameters {
 
         // Local parameters first - they take precedence as in spec.
         handleQueryParameters();
+        materializeLazyParameters();
         // we already merged with the parent
         if (didMerge) {
             return;
@@ -302,14 +327,25 @@ public final class Parameters {
     // Shortcut.
     public String getParameter(final String name) {
         ArrayList<String> values = paramHashValues.get(name);
-        if (values != null) {
-            if (values.isEmpty()) {
-                return "";
-            }
+        if (values != null && !values.isEmpty()) {
             return values.get(0);
-        } else {
-            return null;
         }
+
+        if (name != null && lazyCount > 0) {
+            indexLazyParametersIfNeeded();
+            final int hash = name.hashCode();
+            final boolean isAsciiName = isAscii(name);
+            for (int idx = nextLazyParameter(-1, name, hash, isAsciiName);
+                    idx != -1;
+                    idx = nextLazyParameter(idx, name, hash, isAsciiName)) {
+                final String value = lazyValue(idx);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+
+        return values != null ? "" : null;
     }
     // -------------------- Processing --------------------
 
@@ -378,6 +414,8 @@ public final class Parameters {
             return;
         }
 
+        materializeLazyParameters();
+
         parameterCount++;
         if (limit > -1 && parameterCount > limit) {
             // Processing this parameter will push us over the limit. ISE is
@@ -403,8 +441,6 @@ public final class Parameters {
     // of the above.
     // we are called from a single thread - we can do it the hard way
     // if needed
-    final BufferChunk tmpName = new BufferChunk();
-    final BufferChunk tmpValue = new BufferChunk();
     private final BufferChunk origName = new BufferChunk();
     private final BufferChunk origValue = new BufferChunk();
     final CharChunk tmpNameC = new CharChunk(1024);
@@ -413,6 +449,53 @@ public final class Parameters {
     public static final String DEFAULT_ENCODING = Constants.DEFAULT_HTTP_CHARACTER_ENCODING;
     public static final Charset DEFAULT_CHARSET = Constants.DEFAULT_HTTP_CHARSET;
 
+    // Lazily decoded parameters.
+    // processParameters(Buffer, ...) copies the raw bytes into lazyBytes
+    // (the source Buffer, like a form body, may be released right after
+    // the parsing) and records just the name/value ranges of each parameter.
+    // Names are compared as raw bytes on lookup and a value is decoded only
+    // when it's requested. The URL-encoding is validated while parsing
+    // though, so the parameters, which can't be decoded, are skipped and
+    // logged right away, like the eagerly processed ones. Anything that needs all the parameters (names
+    // enumeration, sub-request merging, direct additions) materializes
+    // the pending ranges into paramHashValues first, so the original order
+    // is preserved.
+    // Up to LAZY_INDEX_THRESHOLD pending parameters are simply scanned on
+    // lookup. Above that, the first lookup builds a hash index of the names
+    // (the name hash is computed over the raw bytes for ASCII names), which
+    // is rebuilt only if more parameters are processed.
+    private static final int RANGE_SIZE = 5;
+    private static final int FLAGS_OFFSET = 4;
+    private static final int DECODE_NAME = 1;
+    private static final int DECODE_VALUE = 2;
+    private static final int RAW_NAME = 4;
+    private static final int INVALID = 8;
+
+    private static final int LAZY_INDEX_THRESHOLD = 8;
+
+    private static final int MAX_RETAINED_BYTES = 8192;
+    private static final int MAX_RETAINED_PARAMETERS = 256;
+
+    private byte[] lazyBytes;
+    private int lazyBytesLength;
+    // nameStart, nameEnd, valueStart (-1 if there's no '='), valueEnd, flags
+    private int[] lazyRanges = new int[INITIAL_SIZE * RANGE_SIZE];
+    private Charset[] lazyCharsets = new Charset[INITIAL_SIZE];
+    private String[] lazyNames = new String[INITIAL_SIZE];
+    private String[] lazyValues = new String[INITIAL_SIZE];
+    private int lazyCount;
+    private int lazyDecodeFailCount;
+
+    // bucket -> the first parameter idx in the bucket, or -1
+    private int[] lazyIndex;
+    // parameter idx -> the next parameter idx in the same bucket, or -1
+    private int[] lazyIndexNext;
+    private int[] lazyNameHashes;
+    // the lazyCount the index has been built for, 0 if there's no index
+    private int lazyIndexedCount;
+
+    private final ByteChunk rawChunk = new ByteChunk();
+    private final ByteChunk decodedChunk = new ByteChunk();
 
     public void processParameters(final Buffer buffer, final int start, final int len) {
         processParameters(buffer, start, len, encoding);
@@ -432,10 +515,17 @@ public final class Parameters {
                        });
         }
         
+        if (len <= 0) {
+            return;
+        }
+        
+        final int offset = copyLazyBytes(buffer, start, len);
+        final byte[] bytes = lazyBytes;
+        final boolean isAsciiCompatible = isAsciiCompatible(enc);
         int decodeFailCount = 0;
 
-        int end = start + len;
-        int pos = start;
+        int end = offset + len;
+        int pos = offset;
         while (pos < end) {
             if (limit > -1 && parameterCount >= limit) {
                 LOGGER.warning(LogMessages.WARNING_GRIZZLY_HTTP_SEVERE_GRIZZLY_HTTP_PARAMETERS_MAX_COUNT_FAIL(limit));
@@ -449,10 +539,12 @@ public final class Parameters {
             boolean parsingName = true;
             boolean decodeName = false;
             boolean decodeValue = false;
+            boolean asciiName = true;
             boolean parameterComplete = false;
 
             do {
-                switch (buffer.get(pos)) {
+                final byte b = bytes[pos];
+                switch (b) {
                     case '=':
                         if (parsingName) {
                             // Name finished. Value starts from next character
@@ -486,6 +578,9 @@ public final class Parameters {
                         pos++;
                         break;
                     default:
+                        if (b < 0 && parsingName) {
+                            asciiName = false;
+                        }
                         pos++;
                         break;
                 }
@@ -502,116 +597,463 @@ public final class Parameters {
             if (LOGGER.isLoggable(Level.FINEST) && valueStart == -1) {
                 LOGGER.log(Level.FINEST,
                            LogMessages.FINE_GRIZZLY_HTTP_PARAMETERS_NOEQUAL(
-                                   nameStart,
-                                   nameEnd,
-                                   buffer.toStringContent(DEFAULT_CHARSET,
-                                                          nameStart, nameEnd)));
+                                   nameStart - offset + start,
+                                   nameEnd - offset + start,
+                                   rawString(nameStart, nameEnd)));
             }
 
             if (nameEnd <= nameStart) {
                 if (LOGGER.isLoggable(Level.INFO)) {
-                    String extract;
                     if (valueEnd < nameStart) {
                         LOGGER.info(LogMessages.INFO_GRIZZLY_HTTP_PARAMETERS_INVALID_CHUNK(
-                                nameStart,
-                                nameEnd,
+                                nameStart - offset + start,
+                                nameEnd - offset + start,
                                 null));
                     }
                 }
                 continue;
                 // invalid chunk - it's better to ignore
             }
-            tmpName.setBufferChunk(buffer, nameStart, nameEnd);
-            tmpValue.setBufferChunk(buffer, valueStart, valueEnd);
 
-            // Take copies as if anything goes wrong originals will be
-            // corrupted. This means original values can be logged.
-            // For performance - only done for debug
-            if (LOGGER.isLoggable(Level.FINEST)) {
-                origName.setBufferChunk(buffer, nameStart, nameEnd);
-                origValue.setBufferChunk(buffer, valueStart, valueEnd);
+            // the URL-encoding is validated right away, so the parameters,
+            // which fail to decode, are not counted against the limit
+            final String decodeError = decodeName
+                    ? checkUrlEncoding(bytes, nameStart, nameEnd)
+                    : null;
+            if (decodeError != null || decodeValue) {
+                final String error = decodeError != null
+                        ? decodeError
+                        : checkUrlEncoding(bytes, valueStart, valueEnd);
+                if (error != null) {
+                    decodeFailCount++;
+                    logDecodeFailure(decodeFailCount, nameStart, nameEnd,
+                            valueStart, valueEnd, error, null);
+                    continue;
+                }
             }
 
-            try {
-                String name;
-                String value;
+            int flags = 0;
+            if (decodeName) {
+                flags |= DECODE_NAME;
+            } else if (asciiName && isAsciiCompatible) {
+                flags |= RAW_NAME;
+            }
+            if (decodeValue) {
+                flags |= DECODE_VALUE;
+            }
 
-                if (decodeName) {
-                    name = urlDecode(tmpName, enc);
-                } else {
-                    name = tmpName.toString(enc);
+            addLazyParameter(nameStart, nameEnd, valueStart, valueEnd, flags, enc);
+        }
+
+        if (!LOGGER.isLoggable(Level.FINEST) && decodeFailCount > 1) {
+            LOGGER.info(
+                    LogMessages.INFO_GRIZZLY_HTTP_PARAMETERS_MULTIPLE_DECODING_FAIL(
+                            decodeFailCount));
+        }
+    }
+
+    /**
+     * Checks the URL-encoded <tt>bytes[start, end)</tt> the same way
+     * {@link URLDecoder} does, without decoding them.
+     *
+     * @return the decoding error message, or <tt>null</tt> if the bytes
+     *  could be decoded
+     */
+    private static String checkUrlEncoding(final byte[] bytes, final int start,
+            final int end) {
+        for (int j = start; j < end; j++) {
+            if (bytes[j] == '%') {
+                if (j + 2 >= end) {
+                    return "Unexpected termination";
                 }
 
-                if (valueStart != -1) {
-                    if (decodeValue) {
-                        value = urlDecode(tmpValue, enc);
-                    } else {
-                        value = tmpValue.toString(enc);
+                final byte b1 = bytes[j + 1];
+                final byte b2 = bytes[j + 2];
+                if (!HexUtils.isHexDigit(b1) || !HexUtils.isHexDigit(b2)) {
+                    return "URLDecoder: Illegal hex characters in escape (%) pattern - %"
+                            + (char) b1 + "" + (char) b2;
+                }
+
+                j += 2;
+            }
+        }
+
+        return null;
+    }
+
+    private int copyLazyBytes(final Buffer buffer, final int start, final int len) {
+        final int offset = lazyBytesLength;
+        final int required = offset + len;
+        if (lazyBytes == null) {
+            lazyBytes = new byte[Math.max(required, 256)];
+        } else if (lazyBytes.length < required) {
+            lazyBytes = Arrays.copyOf(lazyBytes,
+                    Math.max(required, lazyBytes.length * 2));
+        }
+
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + start,
+                    lazyBytes, offset, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                lazyBytes[offset + i] = buffer.get(start + i);
+            }
+        }
+
+        lazyBytesLength = required;
+        return offset;
+    }
+
+    private void addLazyParameter(final int nameStart, final int nameEnd,
+            final int valueStart, final int valueEnd, final int flags,
+            final Charset enc) {
+        if (lazyCount == lazyNames.length) {
+            final int newSize = lazyCount * 2;
+            lazyRanges = Arrays.copyOf(lazyRanges, newSize * RANGE_SIZE);
+            lazyCharsets = Arrays.copyOf(lazyCharsets, newSize);
+            lazyNames = Arrays.copyOf(lazyNames, newSize);
+            lazyValues = Arrays.copyOf(lazyValues, newSize);
+        }
+
+        final int i = lazyCount * RANGE_SIZE;
+        lazyRanges[i] = nameStart;
+        lazyRanges[i + 1] = nameEnd;
+        lazyRanges[i + 2] = valueStart;
+        lazyRanges[i + 3] = valueEnd;
+        lazyRanges[i + FLAGS_OFFSET] = flags;
+        lazyCharsets[lazyCount] = enc;
+
+        lazyCount++;
+        parameterCount++;
+    }
+
+    private String[] getLazyParameterValues(final String name) {
+        final ArrayList<String> values = paramHashValues.get(name);
+        ArrayList<String> result = values;
+
+        if (name != null) {
+            indexLazyParametersIfNeeded();
+            final int hash = name.hashCode();
+            final boolean isAsciiName = isAscii(name);
+            for (int idx = nextLazyParameter(-1, name, hash, isAsciiName);
+                    idx != -1;
+                    idx = nextLazyParameter(idx, name, hash, isAsciiName)) {
+                final String value = lazyValue(idx);
+                if (value != null) {
+                    if (result == values) {
+                        result = values != null
+                                ? new ArrayList<String>(values)
+                                : new ArrayList<String>(2);
                     }
-                } else {
-                    value = "";
+                    result.add(value);
                 }
-                
-                addParameter(name, value);
-            } catch (Exception e) {
-                decodeFailCount++;
-                if (LOGGER.isLoggable(Level.FINEST)) {
-                   LOGGER.log(Level.FINEST,
-                            LogMessages.FINE_GRIZZLY_HTTP_PARAMETERS_DECODE_FAIL_DEBUG(
-                            origName.toString(), origValue.toString()));
-                } else if (LOGGER.isLoggable(Level.INFO) && decodeFailCount == 1) {
-                    final String name = ((tmpName.getLength() > 0)
-                                            ? tmpName.toString()
-                                            : "unavailable");
-                    final String value = ((tmpValue.getLength() > 0)
-                                            ? tmpValue.toString()
-                                            : "unavailable");
-                    LOGGER.log(Level.INFO,
-                               LogMessages.INFO_GRIZZLY_HTTP_PARAMETERS_DECODE_FAIL_INFO(
-                                       e.getMessage(), name, value));
-                    LOGGER.log(Level.FINE, "Decoding stacktrace.", e);
+            }
+        }
+
+        return ((result != null) ? result.toArray(new String[result.size()]) : null);
+    }
+
+    /**
+     * Decodes all the pending lazy parameters into paramHashValues.
+     */
+    private void materializeLazyParameters() {
+        if (lazyCount == 0) {
+            return;
+        }
+
+        for (int idx = 0; idx < lazyCount; idx++) {
+            final String name = lazyName(idx);
+            if (name == null) {
+                continue;
+            }
+            final String value = lazyValue(idx);
+            if (value == null) {
+                continue;
+            }
+
+            ArrayList<String> values = paramHashValues.get(name);
+            if (values == null) {
+                values = new ArrayList<String>(1);
+                paramHashValues.put(name, values);
+            }
+            values.add(value);
+        }
+
+        clearLazyParameters();
+    }
+
+    private void clearLazyParameters() {
+        Arrays.fill(lazyCharsets, 0, lazyCount, null);
+        Arrays.fill(lazyNames, 0, lazyCount, null);
+        Arrays.fill(lazyValues, 0, lazyCount, null);
+        lazyCount = 0;
+        lazyBytesLength = 0;
+        lazyIndexedCount = 0;
+    }
+
+    /**
+     * Builds the name index of the pending lazy parameters, if there are too
+     * many of them to be scanned on every lookup and they are not indexed yet.
+     */
+    private void indexLazyParametersIfNeeded() {
+        if (lazyCount <= LAZY_INDEX_THRESHOLD || lazyIndexedCount == lazyCount) {
+            return;
+        }
+
+        final int indexSize = Integer.highestOneBit(lazyCount * 2 - 1) << 1;
+        if (lazyIndex == null || lazyIndex.length < indexSize) {
+            lazyIndex = new int[indexSize];
+        }
+        if (lazyIndexNext == null || lazyIndexNext.length < lazyCount) {
+            lazyIndexNext = new int[lazyNames.length];
+            lazyNameHashes = new int[lazyNames.length];
+        }
+
+        Arrays.fill(lazyIndex, -1);
+        final int mask = lazyIndex.length - 1;
+
+        // iterate backwards, so each bucket lists the parameters in order
+        for (int idx = lazyCount - 1; idx >= 0; idx--) {
+            final int i = idx * RANGE_SIZE;
+            final int flags = lazyRanges[i + FLAGS_OFFSET];
+            if ((flags & INVALID) != 0) {
+                continue;
+            }
+
+            final int hash;
+            if ((flags & RAW_NAME) != 0) {
+                // the same hash String.hashCode() gives for the ASCII name
+                int h = 0;
+                final byte[] bytes = lazyBytes;
+                for (int j = lazyRanges[i]; j < lazyRanges[i + 1]; j++) {
+                    h = 31 * h + bytes[j];
                 }
-            } finally {
-                tmpName.recycle();
-                tmpValue.recycle();
+                hash = h;
+            } else {
+                final String name = lazyName(idx);
+                if (name == null) {
+                    continue;
+                }
+                hash = name.hashCode();
             }
 
+            final int bucket = spread(hash) & mask;
+            lazyNameHashes[idx] = hash;
+            lazyIndexNext[idx] = lazyIndex[bucket];
+            lazyIndex[bucket] = idx;
         }
 
-        if (!LOGGER.isLoggable(Level.FINEST) && decodeFailCount > 1) {
-            LOGGER.info(LogMessages.INFO_GRIZZLY_HTTP_PARAMETERS_MULTIPLE_DECODING_FAIL(decodeFailCount));
+        lazyIndexedCount = lazyCount;
+    }
+
+    /**
+     * Returns the idx of the next pending lazy parameter with the given name,
+     * which follows the parameter <tt>prevIdx</tt>.
+     *
+     * @param prevIdx the previously found parameter idx, or <tt>-1</tt> to
+     *  find the first one
+     * @return the parameter idx, or <tt>-1</tt> if there are no more parameters
+     *  with the name
+     */
+    private int nextLazyParameter(final int prevIdx, final String name,
+            final int hash, final boolean isAsciiName) {
+        if (lazyIndexedCount == lazyCount) {
+            int idx = prevIdx == -1
+                    ? lazyIndex[spread(hash) & (lazyIndex.length - 1)]
+                    : lazyIndexNext[prevIdx];
+            for (; idx != -1; idx = lazyIndexNext[idx]) {
+                if (lazyNameHashes[idx] == hash
+                        && lazyNameEquals(idx, name, isAsciiName)) {
+                    return idx;
+                }
+            }
+
+            return -1;
+        }
+
+        for (int idx = prevIdx + 1; idx < lazyCount; idx++) {
+            if (lazyNameEquals(idx, name, isAsciiName)) {
+                return idx;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private boolean lazyNameEquals(final int idx, final String name,
+            final boolean isAsciiName) {
+        final int i = idx * RANGE_SIZE;
+        final int flags = lazyRanges[i + FLAGS_OFFSET];
+        if ((flags & INVALID) != 0) {
+            return false;
+        }
+
+        if ((flags & RAW_NAME) == 0) {
+            return name.equals(lazyName(idx));
+        }
+
+        // the raw name is ASCII, so it can't match a non-ASCII name
+        final int nameStart = lazyRanges[i];
+        final int length = lazyRanges[i + 1] - nameStart;
+        if (!isAsciiName || length != name.length()) {
+            return false;
+        }
+
+        final byte[] bytes = lazyBytes;
+        for (int j = 0; j < length; j++) {
+            if (bytes[nameStart + j] != name.charAt(j)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private String lazyName(final int idx) {
+        String name = lazyNames[idx];
+        if (name == null) {
+            final int i = idx * RANGE_SIZE;
+            final int flags = lazyRanges[i + FLAGS_OFFSET];
+            if ((flags & INVALID) != 0) {
+                return null;
+            }
+
+            try {
+                // names are interned, values are mostly unique,
+                // so they bypass the String cache
+                name = decode(lazyRanges[i], lazyRanges[i + 1],
+                        (flags & DECODE_NAME) != 0, lazyCharsets[idx], true);
+                lazyNames[idx] = name;
+            } catch (Exception e) {
+                onLazyDecodeFailure(idx, e);
+            }
         }
+
+        return name;
     }
 
-    private String urlDecode(final BufferChunk bc, final Charset enc)
-        throws IOException {
-//        if (urlDec == null) {
-//            urlDec = new UDecoder();
-//        }
-        URLDecoder.decode(bc, true);
-        String result;
-        if (enc != null) {
-            if (bc.getStart() == -1 && bc.getEnd() == -1) {
+    private String lazyValue(final int idx) {
+        String value = lazyValues[idx];
+        if (value == null) {
+            final int i = idx * RANGE_SIZE;
+            final int flags = lazyRanges[i + FLAGS_OFFSET];
+            if ((flags & INVALID) != 0) {
+                return null;
+            }
+
+            final int valueStart = lazyRanges[i + 2];
+            if (valueStart == -1) {
                 return "";
             }
-            result = bc.toString(enc);
-        } else {
-            final CharChunk cc = tmpNameC;
-            final int length = bc.getLength();
-            cc.allocate(length, -1);
-            // Default encoding: fast conversion
-            final Buffer bbuf = bc.getBuffer();
-            final char[] cbuf = cc.getBuffer();
-            final int start = bc.getStart();
-            for (int i = 0; i < length; i++) {
-                cbuf[i] = (char) (bbuf.get(i + start) & 0xff);
+
+            try {
+                value = decode(valueStart, lazyRanges[i + 3],
+                        (flags & DECODE_VALUE) != 0, lazyCharsets[idx], false);
+                lazyValues[idx] = value;
+            } catch (Exception e) {
+                onLazyDecodeFailure(idx, e);
             }
+        }
+
+        return value;
+    }
+
+    private String decode(int start, int end, final boolean isUrlEncoded,
+            final Charset enc, final boolean isIntern) throws IOException {
+        final Charset charset = enc != null ? enc : DEFAULT_CHARSET;
 
-            cc.setChars(cbuf, 0, length);
-            result = cc.toString();
-            cc.recycle();
+        byte[] bytes = lazyBytes;
+        if (isUrlEncoded) {
+            // decode into a separate chunk, so the raw bytes stay untouched
+            rawChunk.setBytes(bytes, start, end - start);
+            decodedChunk.allocate(end - start, -1);
+            try {
+                URLDecoder.decode(rawChunk, decodedChunk, true);
+            } finally {
+                rawChunk.recycle();
+            }
+
+            bytes = decodedChunk.getBuffer();
+            start = decodedChunk.getStart();
+            end = decodedChunk.getEnd();
         }
-        return result;
+
+        if (isIntern) {
+            final InterningStringCache stringCache =
+                    InterningStringCache.getInstance();
+            if (stringCache != null) {
+                return stringCache.toString(bytes, start, end, charset);
+            }
+        }
+
+        return new String(bytes, start, end - start, charset);
+    }
+
+    private void onLazyDecodeFailure(final int idx, final Exception e) {
+        // the URL-encoding has been validated by processParameters(),
+        // so it's not expected to happen
+        final int i = idx * RANGE_SIZE;
+        lazyRanges[i + FLAGS_OFFSET] |= INVALID;
+        lazyDecodeFailCount++;
+
+        logDecodeFailure(lazyDecodeFailCount, lazyRanges[i], lazyRanges[i + 1],
+                lazyRanges[i + 2], lazyRanges[i + 3], e.getMessage(), e);
+    }
+
+    private void logDecodeFailure(final int decodeFailCount,
+            final int nameStart, final int nameEnd,
+            final int valueStart, final int valueEnd,
+            final String message, final Exception e) {
+        if (LOGGER.isLoggable(Level.FINEST)) {
+            LOGGER.log(Level.FINEST,
+                    LogMessages.FINE_GRIZZLY_HTTP_PARAMETERS_DECODE_FAIL_DEBUG(
+                            rawString(nameStart, nameEnd),
+                            rawString(valueStart, valueEnd)));
+        } else if (LOGGER.isLoggable(Level.INFO) && decodeFailCount == 1) {
+            final String name = ((nameEnd > nameStart)
+                                    ? rawString(nameStart, nameEnd)
+                                    : "unavailable");
+            final String value = ((valueEnd > valueStart)
+                                    ? rawString(valueStart, valueEnd)
+                                    : "unavailable");
+            LOGGER.log(Level.INFO,
+                       LogMessages.INFO_GRIZZLY_HTTP_PARAMETERS_DECODE_FAIL_INFO(
+                               message, name, value));
+            if (e != null) {
+                LOGGER.log(Level.FINE, "Decoding stacktrace.", e);
+            }
+        }
+    }
+
+    private String rawString(final int start, final int end) {
+        return start < 0 || end < start
+                ? null
+                : new String(lazyBytes, start, end - start, DEFAULT_CHARSET);
+    }
+
+    private static boolean isAscii(final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return <tt>true</tt> if ASCII bytes are decoded to the same ASCII
+     *  chars by the passed {@link Charset}, so the names could be compared
+     *  as raw bytes
+     */
+    private static boolean isAsciiCompatible(final Charset enc) {
+        final Charset charset = enc != null ? enc : DEFAULT_CHARSET;
+        return Charsets.UTF8_CHARSET.equals(charset)
+                || Charsets.ASCII_CHARSET.equals(charset)
+                || "ISO-8859-1".equals(charset.name());
     }
 
     public void processParameters(char chars[], int start, int len) {
@@ -758,6 +1200,7 @@ public final class Parameters {
      * Debug purpose
      */
     public String paramsAsString() {
+        materializeLazyParameters();
         StringBuilder sb = new StringBuilder();
         for (final String s : paramHashValues.keySet()) {
             // END PWC 6057385
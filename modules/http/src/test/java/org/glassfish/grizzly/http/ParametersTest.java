@@ -60,14 +60,22 @@ package org.glassfish.grizzly.http;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.http.util.Constants;
 
 import org.glassfish.grizzly.http.util.DataChunk;
 import org.glassfish.grizzly.utils.Charsets;
 import org.glassfish.grizzly.http.util.Parameters;
 import org.glassfish.grizzly.http.util.UEncoder;
+import org.glassfish.grizzly.localization.LogMessages;
 
 import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.memory.MemoryManager;
@@ -391,6 +399,153 @@ public class ParametersTest {
         params.processParameters(request);
     }
 
+    @Test
+    public void testLazyLookup() {
+        final byte[] data = ("a=1&b=%41%42&c&enc+name=v+1&a=2&bad=%zz&"
+                + "%E2%82%AC=euro&\u00e9t\u00e9=summer").getBytes(Charsets.UTF8_CHARSET);
+        final Buffer buffer = Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER, data);
+
+        Parameters p = new Parameters();
+        p.setEncoding(Charsets.UTF8_CHARSET);
+        p.processParameters(buffer, 0, data.length);
+
+        // the parameters don't depend on the source Buffer once processed
+        for (int i = 0; i < data.length; i++) {
+            buffer.put(i, (byte) 'x');
+        }
+
+        assertEquals("1", p.getParameter("a"));
+        assertArrayEquals(new String[] {"1", "2"}, p.getParameterValues("a"));
+        assertEquals("AB", p.getParameter("b"));
+        assertEquals("", p.getParameter("c"));
+        assertEquals("v 1", p.getParameter("enc name"));
+        assertEquals("euro", p.getParameter("\u20ac"));
+        assertEquals("summer", p.getParameter("\u00e9t\u00e9"));
+        assertNull(p.getParameter("bad"));
+        assertNull(p.getParameterValues("bad"));
+        assertNull(p.getParameter("A"));
+        assertNull(p.getParameter("missing"));
+
+        // added parameters go after the processed ones
+        p.addParameter("a", "3");
+        assertArrayEquals(new String[] {"1", "2", "3"}, p.getParameterValues("a"));
+
+        Iterator<String> names = p.getParameterNames().iterator();
+        assertEquals("a", names.next());
+        assertEquals("b", names.next());
+        assertEquals("c", names.next());
+        assertEquals("enc name", names.next());
+        assertEquals("\u20ac", names.next());
+        assertEquals("\u00e9t\u00e9", names.next());
+        assertFalse(names.hasNext());
+
+        p.recycle();
+        assertNull(p.getParameter("a"));
+        assertTrue(p.getParameterNames().isEmpty());
+    }
+
+    @Test
+    public void testLazyLookupLimit() {
+        final byte[] data = "a=1&b=2&c=3".getBytes(Charsets.UTF8_CHARSET);
+
+        Parameters p = new Parameters();
+        p.setEncoding(Charsets.UTF8_CHARSET);
+        p.setLimit(2);
+        p.processParameters(
+                Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER, data),
+                0, data.length);
+
+        assertEquals("1", p.getParameter("a"));
+        assertEquals("2", p.getParameter("b"));
+        assertNull(p.getParameter("c"));
+
+        try {
+            p.addParameter("d", "4");
+            fail("IllegalStateException is expected");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testLazyDecodeFailures() {
+        final byte[] data = "bad=%zz&a=1&%=2&b=2&c=%4".getBytes(Charsets.UTF8_CHARSET);
+        final List<String> messages = new ArrayList<String>();
+        final Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                messages.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        final Logger logger = Grizzly.logger(Parameters.class);
+        logger.addHandler(handler);
+        try {
+            Parameters p = new Parameters();
+            p.setEncoding(Charsets.UTF8_CHARSET);
+            p.setLimit(2);
+            p.processParameters(
+                    Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER, data),
+                    0, data.length);
+
+            // the parameters, which fail to decode, don't count against the limit
+            assertEquals("1", p.getParameter("a"));
+            assertEquals("2", p.getParameter("b"));
+            assertNull(p.getParameter("bad"));
+            assertNull(p.getParameter("c"));
+        } finally {
+            logger.removeHandler(handler);
+        }
+
+        assertTrue(messages.toString(), messages.contains(
+                LogMessages.INFO_GRIZZLY_HTTP_PARAMETERS_MULTIPLE_DECODING_FAIL(2)));
+    }
+
+    @Test
+    public void testLazyLookupIndex() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            sb.append("p").append(i).append('=').append(i).append('&');
+        }
+        sb.append("p7=again&enc+name=v+1&bad=%zz&%E2%82%AC=euro");
+        final byte[] data = sb.toString().getBytes(Charsets.UTF8_CHARSET);
+
+        Parameters p = new Parameters();
+        p.setEncoding(Charsets.UTF8_CHARSET);
+        p.processParameters(
+                Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER, data),
+                0, data.length);
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(String.valueOf(i), p.getParameter("p" + i));
+        }
+        assertArrayEquals(new String[] {"7", "again"}, p.getParameterValues("p7"));
+        assertEquals("v 1", p.getParameter("enc name"));
+        assertEquals("euro", p.getParameter("\u20ac"));
+        assertNull(p.getParameter("bad"));
+        assertNull(p.getParameter("p50"));
+
+        // more parameters after the index has been built
+        final byte[] more = "p7=last&p50=50".getBytes(Charsets.UTF8_CHARSET);
+        p.processParameters(
+                Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER, more),
+                0, more.length);
+
+        assertArrayEquals(new String[] {"7", "again", "last"},
+                p.getParameterValues("p7"));
+        assertEquals("50", p.getParameter("p50"));
+
+        p.recycle();
+        assertNull(p.getParameter("p1"));
+    }
+
     private void validateParameters(Parameter[] parameters, Parameters p) {
         Iterator<String> names = p.getParameterNames().iterator();
 
@@ -0,0 +1,195 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Random;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.ByteBufferManager;
+import org.glassfish.grizzly.memory.HeapMemoryManager;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.utils.Charsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test {@link FastCharEncoder} produces the same output as the JDK
+ * {@link CharsetEncoder}s.
+ */
+public class FastCharEncoderTest {
+    private static final Charset LATIN1 = Charsets.lookupCharset("ISO-8859-1");
+
+    private static final String[] SAMPLES = {
+        "",
+        "plain ascii <html><body>hello</body></html>",
+        "café naïve © ÿ",
+        "русский 中文 €",
+        "emoji 😀 and 𝄞",
+        "lone high \ud83d end",
+        "lone low \ude00 end",
+        "trailing high \ud83d",
+        "\ud83d😀"
+    };
+
+    @Test
+    public void testForCharset() {
+        Assert.assertEquals(Charsets.UTF8_CHARSET,
+                FastCharEncoder.forCharset(Charsets.UTF8_CHARSET).getCharset());
+        Assert.assertEquals(LATIN1,
+                FastCharEncoder.forCharset(LATIN1).getCharset());
+        Assert.assertNull(FastCharEncoder.forCharset(
+                Charsets.lookupCharset("UTF-16")));
+    }
+
+    @Test
+    public void testUtf8() {
+        for (String sample : SAMPLES) {
+            check(FastCharEncoder.forCharset(Charsets.UTF8_CHARSET), Charsets.UTF8_CHARSET, sample);
+        }
+        check(FastCharEncoder.forCharset(Charsets.UTF8_CHARSET), Charsets.UTF8_CHARSET, randomString(10000));
+    }
+
+    @Test
+    public void testLatin1() {
+        for (String sample : SAMPLES) {
+            check(FastCharEncoder.forCharset(LATIN1), LATIN1, sample);
+        }
+        check(FastCharEncoder.forCharset(LATIN1), LATIN1, randomString(10000));
+    }
+
+    @Test
+    public void testCharacterIsNotSplit() {
+        // 3 bytes left, a 4-byte sequence doesn't fit
+        final Buffer buffer = new HeapMemoryManager().allocate(5);
+        final String s = "ab😀";
+        final FastCharEncoder fastEncoder =
+                FastCharEncoder.forCharset(Charsets.UTF8_CHARSET);
+        Assert.assertEquals(2, fastEncoder.encode(s, 0, s.length(), buffer));
+        Assert.assertEquals(2, buffer.position());
+
+        buffer.clear();
+        Assert.assertEquals(2, fastEncoder.encode(s, 2, 2, buffer));
+        Assert.assertEquals(4, buffer.position());
+    }
+
+    private static void check(final FastCharEncoder fastEncoder,
+            final Charset charset, final String s) {
+        final byte[] expected = jdkEncode(charset, s);
+        final MemoryManager[] mms = {new HeapMemoryManager(),
+            new ByteBufferManager(true)};
+
+        for (MemoryManager mm : mms) {
+            for (int size : new int[] {7, 64, 4096}) {
+                Assert.assertArrayEquals(s, expected,
+                        encodeString(fastEncoder, mm, size, s));
+                Assert.assertArrayEquals(s, expected,
+                        encodeChars(fastEncoder, mm, size, s.toCharArray()));
+            }
+        }
+    }
+
+    private static byte[] encodeString(final FastCharEncoder fastEncoder,
+            final MemoryManager mm, final int bufferSize, final String s) {
+        final ByteBuffer result = ByteBuffer.allocate(s.length() * 4);
+        int off = 0;
+        while (off < s.length()) {
+            final Buffer buffer = mm.allocate(bufferSize);
+            off += fastEncoder.encode(s, off, s.length() - off, buffer);
+            buffer.flip();
+            result.put(buffer.toByteBuffer());
+        }
+        return Arrays.copyOf(result.array(), result.position());
+    }
+
+    private static byte[] encodeChars(final FastCharEncoder fastEncoder,
+            final MemoryManager mm, final int bufferSize, final char[] chars) {
+        final ByteBuffer result = ByteBuffer.allocate(chars.length * 4);
+        int off = 0;
+        while (off < chars.length) {
+            final Buffer buffer = mm.allocate(bufferSize);
+            off += fastEncoder.encode(chars, off, chars.length - off, buffer);
+            buffer.flip();
+            result.put(buffer.toByteBuffer());
+        }
+        return Arrays.copyOf(result.array(), result.position());
+    }
+
+    private static byte[] jdkEncode(final Charset charset, final String s) {
+        final CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        try {
+            final ByteBuffer bb = encoder.encode(CharBuffer.wrap(s));
+            return Arrays.copyOf(bb.array(), bb.limit());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String randomString(final int length) {
+        final Random random = new Random(0);
+        final StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            switch (random.nextInt(6)) {
+                case 0:
+                    sb.append((char) (0x80 + random.nextInt(0x780)));
+                    break;
+                case 1:
+                    sb.append((char) (0x800 + random.nextInt(0xd000)));
+                    break;
+                case 2:
+                    sb.appendCodePoint(0x10000 + random.nextInt(0xfffff));
+                    break;
+                case 3:
+                    sb.append((char) (0xd800 + random.nextInt(0x800)));
+                    break;
+                default:
+                    sb.append((char) random.nextInt(0x80));
+            }
+        }
+        return sb.toString();
+    }
+}
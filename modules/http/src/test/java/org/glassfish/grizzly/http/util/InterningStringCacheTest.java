@@ -0,0 +1,202 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.ByteBufferManager;
+import org.glassfish.grizzly.utils.Charsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test {@link InterningStringCache}.
+ */
+public class InterningStringCacheTest {
+    static {
+        // the shared cache is disabled by default
+        System.setProperty(InterningStringCache.class.getName() + ".enabled",
+                "true");
+    }
+
+    private static final Charset LATIN1 = Charsets.lookupCharset("ISO-8859-1");
+
+    @Test
+    public void testAdmission() throws Exception {
+        final InterningStringCache cache = new InterningStringCache(64, 64);
+        final byte[] bytes = "xxAcceptxx".getBytes("ISO-8859-1");
+        
+        final String s1 = cache.toString(bytes, 2, 8, LATIN1);
+        Assert.assertEquals("Accept", s1);
+        Assert.assertEquals(0, cache.getAdmissions());
+        
+        // seen twice - admitted
+        final String s2 = cache.toString(bytes, 2, 8, LATIN1);
+        Assert.assertEquals("Accept", s2);
+        Assert.assertEquals(1, cache.getAdmissions());
+        
+        final String s3 = cache.toString("Accept".getBytes("ISO-8859-1"), 0, 6, LATIN1);
+        Assert.assertSame(s2, s3);
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(1.0 / 3, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testCharsetAndLength() throws Exception {
+        final InterningStringCache cache = new InterningStringCache(64, 8);
+        final byte[] bytes = "café".getBytes(Charsets.UTF8_CHARSET);
+        
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("café",
+                    cache.toString(bytes, 0, bytes.length, Charsets.UTF8_CHARSET));
+        }
+        // same bytes, different charset
+        Assert.assertEquals("cafÃ©",
+                cache.toString(bytes, 0, bytes.length, LATIN1));
+        Assert.assertEquals("cafÃ©",
+                cache.toString(bytes, 0, bytes.length, LATIN1));
+        Assert.assertEquals("café",
+                cache.toString(bytes, 0, bytes.length, Charsets.UTF8_CHARSET));
+        Assert.assertEquals(2, cache.getAdmissions());
+        
+        // longer than maxLength - never cached
+        final byte[] longBytes = "0123456789".getBytes("ISO-8859-1");
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("0123456789",
+                    cache.toString(longBytes, 0, longBytes.length, LATIN1));
+        }
+        Assert.assertEquals(2, cache.getAdmissions());
+    }
+
+    @Test
+    public void testBuffer() throws Exception {
+        final InterningStringCache cache = new InterningStringCache(64, 64);
+        final Buffer heap = Buffers.wrap(null, "--gzip, deflate--");
+        
+        final ByteBuffer bb = ByteBuffer.allocateDirect(32);
+        bb.put("..gzip, deflate..".getBytes("ISO-8859-1")).flip();
+        final Buffer direct = new ByteBufferManager().wrap(bb);
+        
+        Assert.assertEquals("gzip, deflate", cache.toString(heap, 2, 15, LATIN1));
+        Assert.assertEquals("gzip, deflate", cache.toString(direct, 2, 15, LATIN1));
+        final String s = cache.toString(heap, 2, 15, LATIN1);
+        Assert.assertSame(s, cache.toString(direct, 2, 15, LATIN1));
+    }
+
+    @Test
+    public void testFrequentReplacesRare() throws Exception {
+        // a single set of two entries
+        final InterningStringCache cache = new InterningStringCache(2, 64);
+        
+        final byte[][] rare = new byte[2][];
+        for (int i = 0; i < rare.length; i++) {
+            rare[i] = ("rare" + i).getBytes("ISO-8859-1");
+            cache.toString(rare[i], 0, rare[i].length, LATIN1);
+            cache.toString(rare[i], 0, rare[i].length, LATIN1);
+        }
+        Assert.assertEquals(2, cache.getAdmissions());
+        
+        final byte[] hot = "hot".getBytes("ISO-8859-1");
+        String hotString = null;
+        for (int i = 0; i < 10; i++) {
+            hotString = cache.toString(hot, 0, hot.length, LATIN1);
+        }
+        
+        Assert.assertEquals(3, cache.getAdmissions());
+        Assert.assertSame(hotString, cache.toString(hot, 0, hot.length, LATIN1));
+    }
+
+    @Test
+    public void testSampledHitsKeepPopularEntry() throws Exception {
+        // a single set of two entries
+        final InterningStringCache cache = new InterningStringCache(2, 64);
+        
+        final byte[] popular = "popular".getBytes("ISO-8859-1");
+        final byte[] rare = "rare".getBytes("ISO-8859-1");
+        cache.toString(popular, 0, popular.length, LATIN1);
+        final String popularString =
+                cache.toString(popular, 0, popular.length, LATIN1);
+        cache.toString(rare, 0, rare.length, LATIN1);
+        cache.toString(rare, 0, rare.length, LATIN1);
+        Assert.assertEquals(2, cache.getAdmissions());
+        
+        // only some of the hits are counted
+        for (int i = 0; i < 100 * InterningStringCache.HIT_SAMPLE_RATE; i++) {
+            Assert.assertSame(popularString,
+                    cache.toString(popular, 0, popular.length, LATIN1));
+        }
+        
+        final byte[] hot = "hot".getBytes("ISO-8859-1");
+        for (int i = 0; i < 10; i++) {
+            cache.toString(hot, 0, hot.length, LATIN1);
+        }
+        
+        // the popular entry isn't replaced
+        Assert.assertSame(popularString,
+                cache.toString(popular, 0, popular.length, LATIN1));
+    }
+
+    @Test
+    public void testChunks() throws Exception {
+        final InterningStringCache cache = InterningStringCache.getInstance();
+        Assert.assertNotNull(cache);
+        
+        final String value = "text/html;q=0.9," + System.nanoTime();
+        final byte[] bytes = value.getBytes("ISO-8859-1");
+        
+        final String[] results = new String[3];
+        for (int i = 0; i < results.length; i++) {
+            final DataChunk dc = DataChunk.newInstance();
+            if (i % 2 == 0) {
+                dc.setBytes(bytes);
+            } else {
+                dc.setBuffer(Buffers.wrap(null, bytes), 0, bytes.length);
+            }
+            results[i] = dc.toString();
+            Assert.assertEquals(value, results[i]);
+        }
+        
+        Assert.assertSame(results[1], results[2]);
+    }
+}
@@ -41,8 +41,12 @@
 package org.glassfish.grizzly.http2;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.glassfish.grizzly.Buffer;
@@ -128,6 +132,10 @@ public abstract class Http2BaseFilter extends HttpBaseFilter {
     
     private int localMaxFramePayloadSize;
 
+    private final Set<Http2Session> activeSessions = Collections.newSetFromMap(
+            new ConcurrentHashMap<Http2Session, Boolean>());
+    private final LongAdder totalSessionsCount = new LongAdder();
+
     /**
      * Constructs Http2HandlerFilter.
      */
@@ -161,6 +169,34 @@ public abstract class Http2BaseFilter extends HttpBaseFilter {
         return configuration;
     }
 
+    /**
+     * @return the number of currently open {@link Http2Session}s handled by
+     *          this filter.
+     */
+    public int getActiveSessionsCount() {
+        return activeSessions.size();
+    }
+
+    /**
+     * @return the total number of {@link Http2Session}s handled by this filter.
+     */
+    public long getTotalSessionsCount() {
+        return totalSessionsCount.sum();
+    }
+
+    /**
+     * @return the number of currently open streams across all the
+     *          {@link Http2Session}s handled by this filter.
+     */
+    public int getActiveStreamsCount() {
+        int count = 0;
+        for (Http2Session http2Session : activeSessions) {
+            count += http2Session.getConcurrentStreamsCount();
+        }
+        
+        return count;
+    }
+
     protected boolean processFrames(final FilterChainContext ctx,
             final Http2Session http2Session,
             final List<Http2Frame> framesList) {
@@ -859,6 +895,15 @@ public abstract class Http2BaseFilter extends HttpBaseFilter {
     protected void onPrefaceReceived(final Http2Session http2Session) {
     }
     
+    void onSessionOpened(final Http2Session http2Session) {
+        activeSessions.add(http2Session);
+        totalSessionsCount.increment();
+    }
+    
+    void onSessionClosed(final Http2Session http2Session) {
+        activeSessions.remove(http2Session);
+    }
+    
     void sendUpstream(final Http2Session http2Session,
             final Http2Stream stream, final HttpContent content) {
         
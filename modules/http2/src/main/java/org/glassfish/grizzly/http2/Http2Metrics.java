@@ -0,0 +1,152 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.http.server.AddOn;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.monitoring.MetricsSource;
+import org.glassfish.grizzly.monitoring.MetricsWriter;
+
+/**
+ * {@link MetricsSource} reporting {@link Http2Session} statistics of one or
+ * more {@link Http2BaseFilter}s.
+ * 
+ * Filters could be added explicitly via {@link #add(String, Http2BaseFilter)}
+ * or, when used as an {@link AddOn} registered after the {@link Http2AddOn},
+ * discovered in the {@link NetworkListener} filter chain. 
+ * 
+ * @since 2.4.3
+ */
+public class Http2Metrics implements MetricsSource, AddOn {
+    private final CopyOnWriteArrayList<Entry> entries =
+            new CopyOnWriteArrayList<Entry>();
+
+    /**
+     * Starts reporting metrics of the {@link Http2BaseFilter}.
+     * 
+     * @param name the name to label the filter samples with
+     * @param filter the {@link Http2BaseFilter}
+     * @return <tt>true</tt> if the filter has been added, or <tt>false</tt>
+     *          if it had already been added before
+     */
+    public synchronized boolean add(final String name,
+            final Http2BaseFilter filter) {
+        if (find(filter) != null) {
+            return false;
+        }
+        
+        entries.add(new Entry(name, filter));
+        return true;
+    }
+
+    /**
+     * Stops reporting metrics of the {@link Http2BaseFilter}.
+     * 
+     * @param filter the {@link Http2BaseFilter}
+     * @return <tt>true</tt> if the filter has been removed
+     */
+    public synchronized boolean remove(final Http2BaseFilter filter) {
+        final Entry entry = find(filter);
+        return entry != null && entries.remove(entry);
+    }
+
+    @Override
+    public void setup(final NetworkListener networkListener,
+            final FilterChainBuilder builder) {
+        final int idx = builder.indexOfType(Http2BaseFilter.class);
+        if (idx != -1) {
+            add(networkListener.getName(), (Http2BaseFilter) builder.get(idx));
+        }
+    }
+
+    @Override
+    public void writeMetrics(final MetricsWriter writer) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        
+        writer.family("grizzly_http2_sessions_active",
+                MetricsWriter.Type.GAUGE, "The number of open HTTP/2 sessions");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_http2_sessions_active")
+                    .label("listener", entry.name)
+                    .value(entry.filter.getActiveSessionsCount());
+        }
+        
+        writer.family("grizzly_http2_sessions", MetricsWriter.Type.COUNTER,
+                "The total number of HTTP/2 sessions");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_http2_sessions", "_total")
+                    .label("listener", entry.name)
+                    .value(entry.filter.getTotalSessionsCount());
+        }
+        
+        writer.family("grizzly_http2_streams_active",
+                MetricsWriter.Type.GAUGE, "The number of open HTTP/2 streams");
+        for (Entry entry : entries) {
+            writer.sample("grizzly_http2_streams_active")
+                    .label("listener", entry.name)
+                    .value(entry.filter.getActiveStreamsCount());
+        }
+    }
+    
+    private Entry find(final Http2BaseFilter filter) {
+        for (Entry entry : entries) {
+            if (entry.filter == filter) {
+                return entry;
+            }
+        }
+        
+        return null;
+    }
+    
+    private static final class Entry {
+        private final String name;
+        private final Http2BaseFilter filter;
+
+        Entry(final String name, final Http2BaseFilter filter) {
+            this.name = name;
+            this.filter = filter;
+        }
+    }
+}
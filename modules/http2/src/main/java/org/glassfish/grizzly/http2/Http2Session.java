@@ -130,7 +130,6 @@ public class Http2Session {
 
     private static final AtomicIntegerFieldUpdater<Http2Session> concurrentStreamCountUpdater =
             AtomicIntegerFieldUpdater.newUpdater(Http2Session.class, "concurrentStreamsCount");
-    @SuppressWarnings("unused")
     private volatile int concurrentStreamsCount;
 
     private final TreeMap<Integer, Http2Stream> streamsMap = new TreeMap<>();
@@ -245,6 +244,7 @@ public class Http2Session {
             }
         });
         
+        handlerFilter.onSessionOpened(this);
         connection.addCloseListener(new ConnectionCloseListener());
         
         this.outputSink = newOutputSink();
@@ -1416,12 +1416,20 @@ public class Http2Session {
         concurrentStreamCountUpdater.decrementAndGet(this);
     }
 
+    /**
+     * @return the number of currently open streams
+     */
+    int getConcurrentStreamsCount() {
+        return concurrentStreamsCount;
+    }
+
     private final class ConnectionCloseListener implements CloseListener<Closeable, CloseType> {
 
         @Override
         public void onClosed(final Closeable closeable, final CloseType type)
                 throws IOException {
 
+            handlerFilter.onSessionClosed(Http2Session.this);
             NetLogger.logClose(Http2Session.this);
             final boolean isClosing;
             synchronized (sessionLock) {
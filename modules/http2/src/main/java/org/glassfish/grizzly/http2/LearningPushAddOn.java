@@ -0,0 +1,261 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.http.server.AddOn;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.http.server.filecache.FileCache;
+
+/**
+ * The {@link AddOn}, which makes HTTP/2 server push decisions automatically,
+ * based on the dependencies between HTML pages and sub-resources (assets)
+ * learned from the traffic.
+ * 
+ * When a client requests an asset within {@link #getLearningWindowMillis()}
+ * after an HTML page has been served on the same HTTP/2 session, the asset is
+ * registered as a dependency of the page in a bounded {@link PushDependencyCache}.
+ * On subsequent requests for the page, up to {@link #getMaxPushesPerRequest()}
+ * most frequently observed assets are pushed, skipping the ones the client
+ * likely has cached: the assets pushed earlier (tracked via the digest cookie)
+ * or all the assets if the client revalidates the page using conditional headers.
+ * 
+ * By default only the assets present in the {@link NetworkListener}'s
+ * {@link FileCache} are pushed, so the pushed responses are served from the
+ * cached buffers.
+ * 
+ * This {@link AddOn} has to be registered after {@link Http2AddOn}:
+ * 
+ * <pre>
+ *     {@link org.glassfish.grizzly.filterchain.TransportFilter} <-> ... <-> {@link Http2ServerFilter} <-> {@link LearningPushFilter} <-> ... <-> {@link org.glassfish.grizzly.http.server.HttpServer}
+ * </pre>
+ */
+public class LearningPushAddOn implements AddOn {
+    private static final Logger LOGGER = Grizzly.logger(LearningPushAddOn.class);
+
+    public static final String DEFAULT_DIGEST_COOKIE_NAME = "GRIZZLY_PUSH_DIGEST";
+    
+    private int maxPages = 512;
+    private int maxAssetsPerPage = 32;
+    private int maxPushesPerRequest = 8;
+    private int minHits = 2;
+    private long learningWindowMillis = TimeUnit.SECONDS.toMillis(3);
+    private boolean pushCachedOnly = true;
+    private String digestCookieName = DEFAULT_DIGEST_COOKIE_NAME;
+    private int digestCookieMaxAge = (int) TimeUnit.DAYS.toSeconds(7);
+    private int maxDigestEntries = 32;
+    
+    private volatile LearningPushFilter filter;
+    
+    // ----------------------------------------------------- Methods From AddOn
+
+
+    @Override
+    public void setup(final NetworkListener networkListener,
+            final FilterChainBuilder builder) {
+        final int http2FilterIdx = builder.indexOfType(Http2ServerFilter.class);
+        if (http2FilterIdx == -1) {
+            LOGGER.warning("Http2ServerFilter is not found in the filter chain. Make sure Http2AddOn is registered before LearningPushAddOn.");
+            return;
+        }
+        
+        final FileCache fileCache = networkListener.getFileCache();
+        final LearningPushFilter pushFilter = new LearningPushFilter(
+                new PushDependencyCache(maxPages, maxAssetsPerPage),
+                fileCache != null && fileCache.isEnabled() ? fileCache : null,
+                this);
+        
+        builder.add(http2FilterIdx + 1, pushFilter);
+        filter = pushFilter;
+    }
+
+
+    // --------------------------------------------------------- Public Methods
+
+
+    /**
+     * @return the {@link LearningPushFilter} created by this {@link AddOn},
+     *          or <tt>null</tt> if the {@link AddOn} hasn't been set up yet
+     */
+    public LearningPushFilter getFilter() {
+        return filter;
+    }
+    
+    /**
+     * @return the max number of pages tracked by the {@link PushDependencyCache}
+     */
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    /**
+     * Sets the max number of pages tracked by the {@link PushDependencyCache},
+     * least recently used pages are evicted first.
+     */
+    public void setMaxPages(final int maxPages) {
+        this.maxPages = maxPages;
+    }
+
+    /**
+     * @return the max number of assets tracked per page
+     */
+    public int getMaxAssetsPerPage() {
+        return maxAssetsPerPage;
+    }
+
+    /**
+     * Sets the max number of assets tracked per page.
+     */
+    public void setMaxAssetsPerPage(final int maxAssetsPerPage) {
+        this.maxAssetsPerPage = maxAssetsPerPage;
+    }
+
+    /**
+     * @return the max number of assets pushed in response to a single page request
+     */
+    public int getMaxPushesPerRequest() {
+        return maxPushesPerRequest;
+    }
+
+    /**
+     * Sets the max number of assets pushed in response to a single page request.
+     */
+    public void setMaxPushesPerRequest(final int maxPushesPerRequest) {
+        this.maxPushesPerRequest = maxPushesPerRequest;
+    }
+
+    /**
+     * @return the min number of times an asset has to be observed after
+     *          a page, before it could be pushed
+     */
+    public int getMinHits() {
+        return minHits;
+    }
+
+    /**
+     * Sets the min number of times an asset has to be observed after
+     * a page, before it could be pushed.
+     */
+    public void setMinHits(final int minHits) {
+        this.minHits = minHits;
+    }
+
+    /**
+     * @return the time window (in milliseconds) after an HTML page has been
+     *          served, within which the requested resources are considered
+     *          as the page dependencies
+     */
+    public long getLearningWindowMillis() {
+        return learningWindowMillis;
+    }
+
+    /**
+     * Sets the time window after an HTML page has been served, within
+     * which the requested resources are considered as the page dependencies.
+     */
+    public void setLearningWindow(final long learningWindow,
+            final TimeUnit timeUnit) {
+        this.learningWindowMillis = timeUnit.toMillis(learningWindow);
+    }
+
+    /**
+     * @return <tt>true</tt> if only assets, cached by the {@link FileCache},
+     *          could be pushed, or <tt>false</tt> otherwise
+     */
+    public boolean isPushCachedOnly() {
+        return pushCachedOnly;
+    }
+
+    /**
+     * If <tt>true</tt>, only assets cached by the {@link FileCache} could be pushed.
+     */
+    public void setPushCachedOnly(final boolean pushCachedOnly) {
+        this.pushCachedOnly = pushCachedOnly;
+    }
+
+    /**
+     * @return the name of the cookie, which is used to track assets
+     *          pushed to the client, or <tt>null</tt> if the digest cookie
+     *          is disabled
+     */
+    public String getDigestCookieName() {
+        return digestCookieName;
+    }
+
+    /**
+     * Sets the name of the cookie, which is used to track assets
+     * pushed to the client. <tt>null</tt> disables the digest cookie.
+     */
+    public void setDigestCookieName(final String digestCookieName) {
+        this.digestCookieName = digestCookieName;
+    }
+
+    /**
+     * @return the digest cookie max-age in seconds
+     */
+    public int getDigestCookieMaxAge() {
+        return digestCookieMaxAge;
+    }
+
+    /**
+     * Sets the digest cookie max-age in seconds.
+     */
+    public void setDigestCookieMaxAge(final int digestCookieMaxAge) {
+        this.digestCookieMaxAge = digestCookieMaxAge;
+    }
+
+    /**
+     * @return the max number of asset digests stored in the digest cookie
+     */
+    public int getMaxDigestEntries() {
+        return maxDigestEntries;
+    }
+
+    /**
+     * Sets the max number of asset digests stored in the digest cookie.
+     */
+    public void setMaxDigestEntries(final int maxDigestEntries) {
+        this.maxDigestEntries = maxDigestEntries;
+    }
+}
@@ -0,0 +1,528 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.attributes.Attribute;
+import org.glassfish.grizzly.attributes.AttributeBuilder;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.http.Cookie;
+import org.glassfish.grizzly.http.Cookies;
+import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpHeader;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.Method;
+import org.glassfish.grizzly.http.server.filecache.FileCache;
+import org.glassfish.grizzly.http.server.filecache.FileCacheEntry;
+import org.glassfish.grizzly.http.server.http2.PushEvent;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.glassfish.grizzly.http.util.MimeHeaders;
+
+/**
+ * The {@link org.glassfish.grizzly.filterchain.Filter}, which learns what
+ * sub-resources are requested by clients right after an HTML page and pushes
+ * them (HTTP/2 PUSH_PROMISE) on subsequent requests for the same page.
+ * 
+ * The filter has to be placed right after {@link Http2ServerFilter}, so it's
+ * able to see every HTTP/2 stream request and response.
+ * 
+ * @see LearningPushAddOn
+ */
+public class LearningPushFilter extends BaseFilter {
+    private static final Logger LOGGER = Grizzly.logger(LearningPushFilter.class);
+
+    private static final String REQUEST_PROCESSED_ATTR =
+            LearningPushFilter.class.getName() + ".request-processed";
+    private static final String RESPONSE_PROCESSED_ATTR =
+            LearningPushFilter.class.getName() + ".response-processed";
+    private static final String PUSHED_DIGESTS_ATTR =
+            LearningPushFilter.class.getName() + ".pushed-digests";
+    
+    private static final Attribute<SessionState> SESSION_STATE_ATTR =
+            AttributeBuilder.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
+            LearningPushFilter.class.getName() + ".session-state");
+    
+    // the request headers, which must not be copied to a push request
+    private static final Header[] REMOVE_HEADERS = {
+            Header.Accept,
+            Header.Authorization,
+            Header.ContentLength,
+            Header.ContentType,
+            Header.Cookie,
+            Header.IfMatch,
+            Header.IfModifiedSince,
+            Header.IfNoneMatch,
+            Header.IfRange,
+            Header.IfUnmodifiedSince,
+            Header.ProxyAuthorization,
+            Header.Range,
+            Header.Referer
+    };
+    
+    private static final String HTML_CONTENT_TYPE = "text/html";
+    private static final char DIGEST_SEPARATOR = '.';
+    
+    private final PushDependencyCache dependencyCache;
+    private final FileCache fileCache;
+    private final LearningPushAddOn config;
+    
+    private final AtomicLong pushesCount = new AtomicLong();
+    private final AtomicLong skippedAsCachedCount = new AtomicLong();
+    private final AtomicLong learnedDependenciesCount = new AtomicLong();
+
+    /**
+     * Constructs <tt>LearningPushFilter</tt>.
+     * 
+     * @param dependencyCache the page-to-assets {@link PushDependencyCache}
+     * @param fileCache the {@link FileCache}, which is checked before pushing
+     *        an asset, may be <tt>null</tt>
+     * @param config the {@link LearningPushAddOn} configuration
+     */
+    public LearningPushFilter(final PushDependencyCache dependencyCache,
+            final FileCache fileCache, final LearningPushAddOn config) {
+        this.dependencyCache = dependencyCache;
+        this.fileCache = fileCache;
+        this.config = config;
+    }
+
+    /**
+     * @return the {@link PushDependencyCache} this filter is working with
+     */
+    public PushDependencyCache getDependencyCache() {
+        return dependencyCache;
+    }
+
+    /**
+     * @return the number of PUSH_PROMISEs initiated by this filter
+     */
+    public long getPushesCount() {
+        return pushesCount.get();
+    }
+
+    /**
+     * @return the number of pushes, which have been skipped, because client
+     *          is likely to have the asset cached
+     */
+    public long getSkippedAsCachedCount() {
+        return skippedAsCachedCount.get();
+    }
+
+    /**
+     * @return the number of page-to-asset observations registered by this filter
+     */
+    public long getLearnedDependenciesCount() {
+        return learnedDependenciesCount.get();
+    }
+    
+    @Override
+    public NextAction handleRead(final FilterChainContext ctx)
+            throws IOException {
+        final Object message = ctx.getMessage();
+        if (!(message instanceof HttpContent)) {
+            return ctx.getInvokeAction();
+        }
+        
+        final HttpHeader header = ((HttpContent) message).getHttpHeader();
+        if (!header.isRequest()) {
+            return ctx.getInvokeAction();
+        }
+        
+        final HttpRequestPacket request = (HttpRequestPacket) header;
+        if (request.getAttribute(REQUEST_PROCESSED_ATTR) != null) {
+            return ctx.getInvokeAction();
+        }
+        request.setAttribute(REQUEST_PROCESSED_ATTR, Boolean.TRUE);
+        
+        if (request.getAttribute(Http2Stream.HTTP2_PARENT_STREAM_ATTRIBUTE) != null
+                || !Method.GET.equals(request.getMethod())) {
+            // skip pushed and non-GET requests
+            return ctx.getInvokeAction();
+        }
+        
+        final Connection connection = ctx.getConnection();
+        final Http2Session http2Session = Http2Session.get(connection);
+        if (http2Session == null) {
+            return ctx.getInvokeAction();
+        }
+        
+        final String requestURI = request.getRequestURI();
+        final SessionState state = obtainSessionState(connection);
+        
+        learn(state, request, requestURI);
+        
+        if (http2Session.isPushEnabled()
+                && dependencyCache.containsPage(requestURI)) {
+            push(ctx, state, request, requestURI);
+        }
+        
+        return ctx.getInvokeAction();
+    }
+
+    @Override
+    public NextAction handleWrite(final FilterChainContext ctx)
+            throws IOException {
+        final Object message = ctx.getMessage();
+        if (!(message instanceof HttpContent)) {
+            return ctx.getInvokeAction();
+        }
+        
+        final HttpHeader header = ((HttpContent) message).getHttpHeader();
+        if (header.isRequest() || header.isCommitted()) {
+            return ctx.getInvokeAction();
+        }
+        
+        final HttpResponsePacket response = (HttpResponsePacket) header;
+        final HttpRequestPacket request = response.getRequest();
+        
+        if (request == null
+                || request.getAttribute(REQUEST_PROCESSED_ATTR) == null
+                || request.getAttribute(RESPONSE_PROCESSED_ATTR) != null) {
+            return ctx.getInvokeAction();
+        }
+        request.setAttribute(RESPONSE_PROCESSED_ATTR, Boolean.TRUE);
+        
+        if (request.getAttribute(Http2Stream.HTTP2_PARENT_STREAM_ATTRIBUTE) != null) {
+            return ctx.getInvokeAction();
+        }
+        
+        if (response.getStatus() == HttpStatus.OK_200.getStatusCode()
+                && isHtml(response.getContentType())) {
+            final SessionState state = SESSION_STATE_ATTR.get(ctx.getConnection());
+            if (state != null) {
+                state.onPage(request.getRequestURI(), System.currentTimeMillis());
+            }
+        }
+        
+        @SuppressWarnings("unchecked")
+        final List<String> pushedDigests =
+                (List<String>) request.getAttribute(PUSHED_DIGESTS_ATTR);
+        if (pushedDigests != null) {
+            updateDigestCookie(request, response, pushedDigests);
+        }
+        
+        return ctx.getInvokeAction();
+    }
+
+    private void learn(final SessionState state,
+            final HttpRequestPacket request, final String requestURI) {
+        final String page = state.getPage(System.currentTimeMillis(),
+                config.getLearningWindowMillis());
+        if (page == null || page.equals(requestURI)) {
+            return;
+        }
+        
+        final String referer = request.getHeader(Header.Referer);
+        if (referer != null && !page.equals(refererPath(referer))) {
+            return;
+        }
+        
+        dependencyCache.recordDependency(page, requestURI);
+        learnedDependenciesCount.incrementAndGet();
+    }
+    
+    private void push(final FilterChainContext ctx, final SessionState state,
+            final HttpRequestPacket request, final String requestURI) {
+        
+        if (request.getHeaders().getHeader(Header.IfNoneMatch) != null
+                || request.getHeaders().getHeader(Header.IfModifiedSince) != null) {
+            // client revalidates its cached page copy, so it's likely
+            // it has the page assets cached as well
+            skippedAsCachedCount.incrementAndGet();
+            return;
+        }
+        
+        final List<String> assets = dependencyCache.getTopAssets(requestURI,
+                config.getMaxPushesPerRequest(), config.getMinHits());
+        if (assets.isEmpty()) {
+            return;
+        }
+        
+        final String host = request.getHeader(Header.Host);
+        final String clientDigests = getDigestCookie(request);
+        
+        MimeHeaders pushHeaders = null;
+        List<String> pushedDigests = null;
+        
+        for (int i = 0; i < assets.size(); i++) {
+            final String asset = assets.get(i);
+            
+            String etag = null;
+            if (fileCache != null) {
+                final FileCacheEntry entry = fileCache.peek(host, asset);
+                if (entry == null && config.isPushCachedOnly()) {
+                    continue;
+                }
+                
+                etag = entry != null ? entry.Etag : null;
+            }
+            
+            final String digest = digest(asset, etag);
+            if (containsDigest(clientDigests, digest)
+                    || !state.markPushed(digest)) {
+                skippedAsCachedCount.incrementAndGet();
+                continue;
+            }
+
+            if (pushHeaders == null) {
+                pushHeaders = createPushHeaders(request, requestURI);
+                pushedDigests = new ArrayList<>(assets.size());
+            }
+            
+            try {
+                ctx.notifyDownstream(PushEvent.builder()
+                        .path(asset)
+                        .headers(pushHeaders)
+                        .httpRequest(request)
+                        .build());
+                
+                pushedDigests.add(digest);
+                pushesCount.incrementAndGet();
+            } catch (Exception e) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, "Unable to push " + asset, e);
+                }
+            }
+        }
+        
+        if (pushedDigests != null && !pushedDigests.isEmpty()) {
+            request.setAttribute(PUSHED_DIGESTS_ATTR, pushedDigests);
+        }
+    }
+
+    private void updateDigestCookie(final HttpRequestPacket request,
+            final HttpResponsePacket response, final List<String> pushedDigests) {
+        final String cookieName = config.getDigestCookieName();
+        if (cookieName == null) {
+            return;
+        }
+        
+        final String clientDigests = getDigestCookie(request);
+        final int maxDigests = config.getMaxDigestEntries();
+        
+        final StringBuilder sb = new StringBuilder(maxDigests * 7);
+        int count = 0;
+        for (int i = 0; i < pushedDigests.size() && count < maxDigests; i++) {
+            if (count > 0) {
+                sb.append(DIGEST_SEPARATOR);
+            }
+            sb.append(pushedDigests.get(i));
+            count++;
+        }
+        
+        if (clientDigests != null) {
+            // keep the most recent client digests
+            int start = 0;
+            final int len = clientDigests.length();
+            while (start < len && count < maxDigests) {
+                int end = clientDigests.indexOf(DIGEST_SEPARATOR, start);
+                if (end == -1) {
+                    end = len;
+                }
+                
+                if (end > start) {
+                    final String digest = clientDigests.substring(start, end);
+                    if (!pushedDigests.contains(digest)) {
+                        sb.append(DIGEST_SEPARATOR).append(digest);
+                        count++;
+                    }
+                }
+                
+                start = end + 1;
+            }
+        }
+        
+        final Cookie cookie = new Cookie(cookieName, sb.toString());
+        cookie.setPath("/");
+        cookie.setMaxAge(config.getDigestCookieMaxAge());
+        cookie.setHttpOnly(true);
+        response.addHeader(Header.SetCookie, cookie.asServerCookieString());
+    }
+    
+    private String getDigestCookie(final HttpRequestPacket request) {
+        final String cookieName = config.getDigestCookieName();
+        if (cookieName == null
+                || request.getHeaders().getHeader(Header.Cookie) == null) {
+            return null;
+        }
+        
+        final Cookies cookies = new Cookies();
+        cookies.setHeaders(request.getHeaders());
+        final Cookie cookie = cookies.findByName(cookieName);
+        
+        return cookie != null ? cookie.getValue() : null;
+    }
+    
+    private static MimeHeaders createPushHeaders(final HttpRequestPacket request,
+            final String requestURI) {
+        final MimeHeaders headers = new MimeHeaders();
+        headers.copyFrom(request.getHeaders());
+        
+        for (int i = 0; i < REMOVE_HEADERS.length; i++) {
+            headers.removeHeader(REMOVE_HEADERS[i]);
+        }
+        headers.setValue(Header.Referer).setString(requestURI);
+        
+        return headers;
+    }
+    
+    private static SessionState obtainSessionState(final Connection connection) {
+        SessionState state = SESSION_STATE_ATTR.get(connection);
+        if (state == null) {
+            state = new SessionState();
+            SESSION_STATE_ATTR.set(connection, state);
+        }
+        
+        return state;
+    }
+    
+    private static boolean isHtml(final String contentType) {
+        return contentType != null
+                && contentType.regionMatches(true, 0, HTML_CONTENT_TYPE,
+                        0, HTML_CONTENT_TYPE.length());
+    }
+
+    /**
+     * Returns the path part of the <tt>Referer</tt> header value.
+     */
+    static String refererPath(final String referer) {
+        int start = 0;
+        final int schemeIdx = referer.indexOf("://");
+        if (schemeIdx != -1) {
+            start = referer.indexOf('/', schemeIdx + 3);
+            if (start == -1) {
+                return "/";
+            }
+        }
+        
+        int end = referer.indexOf('?', start);
+        if (end == -1) {
+            end = referer.indexOf('#', start);
+        }
+        
+        return end == -1 ? referer.substring(start) : referer.substring(start, end);
+    }
+    
+    /**
+     * Returns the compact digest of the asset (and its ETag, if known),
+     * which is safe to be used as a part of cookie value.
+     */
+    static String digest(final String asset, final String etag) {
+        int hash = asset.hashCode();
+        if (etag != null) {
+            hash = 31 * hash + etag.hashCode();
+        }
+        
+        return Integer.toString(hash & 0x7FFFFFFF, Character.MAX_RADIX);
+    }
+    
+    static boolean containsDigest(final String digests, final String digest) {
+        if (digests == null) {
+            return false;
+        }
+        
+        int idx = 0;
+        final int digestLen = digest.length();
+        final int len = digests.length();
+        while ((idx = digests.indexOf(digest, idx)) != -1) {
+            final int end = idx + digestLen;
+            if ((idx == 0 || digests.charAt(idx - 1) == DIGEST_SEPARATOR)
+                    && (end == len || digests.charAt(end) == DIGEST_SEPARATOR)) {
+                return true;
+            }
+            
+            idx = end;
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Per HTTP/2 connection state: the last HTML page served and the assets,
+     * which have been already pushed.
+     */
+    private static final class SessionState {
+        private static final int MAX_PUSHED = 256;
+        
+        private String page;
+        private long pageTimestamp;
+        
+        private final List<String> pushed = new ArrayList<>();
+        
+        synchronized void onPage(final String page, final long timestamp) {
+            this.page = page;
+            this.pageTimestamp = timestamp;
+        }
+        
+        synchronized String getPage(final long now, final long windowMillis) {
+            return page != null && now - pageTimestamp <= windowMillis
+                    ? page
+                    : null;
+        }
+        
+        /**
+         * @return <tt>true</tt> if the asset has not been pushed within
+         *          the session yet, or <tt>false</tt> otherwise
+         */
+        synchronized boolean markPushed(final String digest) {
+            if (pushed.contains(digest)) {
+                return false;
+            }
+            
+            if (pushed.size() >= MAX_PUSHED) {
+                pushed.remove(0);
+            }
+            pushed.add(digest);
+            
+            return true;
+        }
+    }
+}
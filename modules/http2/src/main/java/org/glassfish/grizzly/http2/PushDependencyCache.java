@@ -0,0 +1,220 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU map of page URIs to the sub-resources (assets), which have been
+ * observed to be requested by clients right after the page.
+ *
+ * Each page keeps at most {@link #getMaxAssetsPerPage()} assets along with the
+ * number of times each asset has been observed. When the asset limit is
+ * reached, the least frequently observed asset is replaced by the new one.
+ * When the page limit is reached, the least recently used page is evicted.
+ *
+ * @see LearningPushAddOn
+ */
+public class PushDependencyCache {
+
+    private static final Comparator<Map.Entry<String, int[]>> BY_HITS_DESC =
+            new Comparator<Map.Entry<String, int[]>>() {
+        @Override
+        public int compare(final Map.Entry<String, int[]> o1,
+                final Map.Entry<String, int[]> o2) {
+            final int h1 = o1.getValue()[0];
+            final int h2 = o2.getValue()[0];
+            return h1 < h2 ? 1 : (h1 == h2 ? 0 : -1);
+        }
+    };
+    
+    private final int maxPages;
+    private final int maxAssetsPerPage;
+    
+    private final LinkedHashMap<String, Map<String, int[]>> pages;
+
+    public PushDependencyCache(final int maxPages, final int maxAssetsPerPage) {
+        if (maxPages <= 0) {
+            throw new IllegalArgumentException("maxPages should be > 0");
+        }
+        if (maxAssetsPerPage <= 0) {
+            throw new IllegalArgumentException("maxAssetsPerPage should be > 0");
+        }
+        
+        this.maxPages = maxPages;
+        this.maxAssetsPerPage = maxAssetsPerPage;
+        pages = new LinkedHashMap<String, Map<String, int[]>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, Map<String, int[]>> eldest) {
+                return size() > PushDependencyCache.this.maxPages;
+            }
+        };
+    }
+
+    /**
+     * @return the max number of pages this cache keeps
+     */
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    /**
+     * @return the max number of assets tracked per page
+     */
+    public int getMaxAssetsPerPage() {
+        return maxAssetsPerPage;
+    }
+
+    /**
+     * Registers the observation, that the <tt>asset</tt> has been requested
+     * after the <tt>page</tt>.
+     * 
+     * @param page the page URI
+     * @param asset the asset URI
+     */
+    public synchronized void recordDependency(final String page,
+            final String asset) {
+        Map<String, int[]> assets = pages.get(page);
+        if (assets == null) {
+            assets = new HashMap<>();
+            pages.put(page, assets);
+        }
+        
+        final int[] hits = assets.get(asset);
+        if (hits != null) {
+            if (hits[0] < Integer.MAX_VALUE) {
+                hits[0]++;
+            }
+            return;
+        }
+        
+        if (assets.size() >= maxAssetsPerPage) {
+            removeLeastObserved(assets);
+        }
+        
+        assets.put(asset, new int[] {1});
+    }
+
+    /**
+     * Returns up to <tt>max</tt> assets associated with the <tt>page</tt>,
+     * which have been observed at least <tt>minHits</tt> times. The assets
+     * are ordered by the number of observations, the most observed first.
+     * 
+     * @param page the page URI
+     * @param max the max number of assets to return
+     * @param minHits the min number of times an asset has to be observed
+     * @return the {@link List} of asset URIs, never <tt>null</tt>
+     */
+    public synchronized List<String> getTopAssets(final String page,
+            final int max, final int minHits) {
+        final Map<String, int[]> assets = pages.get(page);
+        if (assets == null || assets.isEmpty() || max <= 0) {
+            return Collections.emptyList();
+        }
+        
+        final List<Map.Entry<String, int[]>> candidates =
+                new ArrayList<>(assets.size());
+        for (Map.Entry<String, int[]> entry : assets.entrySet()) {
+            if (entry.getValue()[0] >= minHits) {
+                candidates.add(entry);
+            }
+        }
+        
+        Collections.sort(candidates, BY_HITS_DESC);
+        
+        final int size = Math.min(max, candidates.size());
+        final List<String> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(candidates.get(i).getKey());
+        }
+        
+        return result;
+    }
+
+    /**
+     * Checks if the page is known to the cache. Similar to
+     * {@link #getTopAssets(String, int, int)}, the check marks the page as
+     * recently used.
+     * 
+     * @param page the page URI
+     * @return <tt>true</tt> if there are assets associated with the page,
+     *          or <tt>false</tt> otherwise
+     */
+    public synchronized boolean containsPage(final String page) {
+        return pages.get(page) != null;
+    }
+    
+    /**
+     * @return the number of pages in the cache
+     */
+    public synchronized int size() {
+        return pages.size();
+    }
+
+    /**
+     * Removes all the pages from the cache.
+     */
+    public synchronized void clear() {
+        pages.clear();
+    }
+    
+    private static void removeLeastObserved(final Map<String, int[]> assets) {
+        String leastAsset = null;
+        int leastHits = Integer.MAX_VALUE;
+        
+        for (Map.Entry<String, int[]> entry : assets.entrySet()) {
+            final int hits = entry.getValue()[0];
+            if (hits < leastHits) {
+                leastHits = hits;
+                leastAsset = entry.getKey();
+            }
+        }
+        
+        assets.remove(leastAsset);
+    }
+}
@@ -554,6 +554,7 @@ public class FileCacheTest extends AbstractHttp2Test {
         final AtomicInteger entryHitCounter = new AtomicInteger();
         final AtomicInteger entryMissedCounter = new AtomicInteger();
         final AtomicInteger entryErrorCounter = new AtomicInteger();
+        final AtomicInteger entryCompressedCounter = new AtomicInteger();
 
         @Override
         public void onEntryAddedEvent(FileCache fileCache, FileCacheEntry entry) {
@@ -580,6 +581,15 @@ public class FileCacheTest extends AbstractHttp2Test {
             entryErrorCounter.incrementAndGet();
         }
 
+        @Override
+        public void onEntryCompressionScheduledEvent(FileCache fileCache, FileCacheEntry entry) {
+        }
+
+        @Override
+        public void onEntryCompressionCompletedEvent(FileCache fileCache, FileCacheEntry entry) {
+            entryCompressedCounter.incrementAndGet();
+        }
+
         public int getEntryAddedCounter() {
             return entryAddedCounter.get();
         }
@@ -596,6 +606,9 @@ public class FileCacheTest extends AbstractHttp2Test {
         public int getEntryErrorCounter() {
             return entryErrorCounter.get();
         }
+        public int getEntryCompressedCounter() {
+            return entryCompressedCounter.get();
+        }
 
         @Override
         public String toString() {
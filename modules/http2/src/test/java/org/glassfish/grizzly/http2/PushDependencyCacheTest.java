@@ -0,0 +1,124 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link PushDependencyCache} and {@link LearningPushFilter} helpers tests.
+ */
+public class PushDependencyCacheTest {
+
+    @Test
+    public void testTopAssetsOrdering() {
+        final PushDependencyCache cache = new PushDependencyCache(4, 4);
+        
+        cache.recordDependency("/index.html", "/a.css");
+        cache.recordDependency("/index.html", "/b.js");
+        cache.recordDependency("/index.html", "/b.js");
+        cache.recordDependency("/index.html", "/c.png");
+        cache.recordDependency("/index.html", "/c.png");
+        cache.recordDependency("/index.html", "/c.png");
+        
+        assertEquals(Arrays.asList("/c.png", "/b.js", "/a.css"),
+                cache.getTopAssets("/index.html", 10, 1));
+        assertEquals(Arrays.asList("/c.png", "/b.js"),
+                cache.getTopAssets("/index.html", 2, 1));
+        assertEquals(Arrays.asList("/c.png", "/b.js"),
+                cache.getTopAssets("/index.html", 10, 2));
+        assertEquals(Collections.<String>emptyList(),
+                cache.getTopAssets("/unknown.html", 10, 1));
+    }
+
+    @Test
+    public void testAssetsLimit() {
+        final PushDependencyCache cache = new PushDependencyCache(4, 2);
+        
+        cache.recordDependency("/index.html", "/a.css");
+        cache.recordDependency("/index.html", "/a.css");
+        cache.recordDependency("/index.html", "/b.js");
+        // replaces the least observed /b.js
+        cache.recordDependency("/index.html", "/c.png");
+        
+        assertEquals(Arrays.asList("/a.css", "/c.png"),
+                cache.getTopAssets("/index.html", 10, 1));
+    }
+
+    @Test
+    public void testPagesLru() {
+        final PushDependencyCache cache = new PushDependencyCache(2, 2);
+        
+        cache.recordDependency("/1.html", "/a.css");
+        cache.recordDependency("/2.html", "/a.css");
+        // touch /1.html, so /2.html becomes the eldest
+        assertTrue(cache.containsPage("/1.html"));
+        cache.recordDependency("/3.html", "/a.css");
+        
+        assertEquals(2, cache.size());
+        assertTrue(cache.containsPage("/1.html"));
+        assertFalse(cache.containsPage("/2.html"));
+        assertTrue(cache.containsPage("/3.html"));
+    }
+
+    @Test
+    public void testDigests() {
+        final String d1 = LearningPushFilter.digest("/a.css", null);
+        final String d2 = LearningPushFilter.digest("/a.css", "\"v2\"");
+        
+        assertFalse(d1.equals(d2));
+        assertTrue(LearningPushFilter.containsDigest(d1, d1));
+        assertTrue(LearningPushFilter.containsDigest("x." + d1 + ".y", d1));
+        assertFalse(LearningPushFilter.containsDigest("x" + d1, d1));
+        assertFalse(LearningPushFilter.containsDigest(null, d1));
+    }
+
+    @Test
+    public void testRefererPath() {
+        assertEquals("/index.html",
+                LearningPushFilter.refererPath("https://localhost:8080/index.html?a=b"));
+        assertEquals("/", LearningPushFilter.refererPath("https://localhost:8080"));
+        assertEquals("/docs/", LearningPushFilter.refererPath("/docs/"));
+    }
+}
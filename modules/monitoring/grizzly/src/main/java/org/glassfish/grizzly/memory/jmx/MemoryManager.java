@@ -42,7 +42,7 @@ package org.glassfish.grizzly.memory.jmx;
 
 import org.glassfish.grizzly.monitoring.jmx.JmxObject;
 import org.glassfish.grizzly.memory.MemoryProbe;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import org.glassfish.gmbal.Description;
 import org.glassfish.gmbal.GmbalMBean;
 import org.glassfish.gmbal.ManagedAttribute;
@@ -62,10 +62,10 @@ public class MemoryManager extends JmxObject {
     protected final org.glassfish.grizzly.memory.MemoryManager memoryManager;
     private final MemoryProbe probe;
 
-    private final AtomicLong totalAllocatedBytes = new AtomicLong();
-    private final AtomicLong realAllocatedBytes = new AtomicLong();
-    private final AtomicLong poolAllocatedBytes = new AtomicLong();
-    private final AtomicLong poolReleasedBytes = new AtomicLong();
+    private final LongAdder totalAllocatedBytes = new LongAdder();
+    private final LongAdder realAllocatedBytes = new LongAdder();
+    private final LongAdder poolAllocatedBytes = new LongAdder();
+    private final LongAdder poolReleasedBytes = new LongAdder();
     
     public MemoryManager(org.glassfish.grizzly.memory.MemoryManager memoryManager) {
         this.memoryManager = memoryManager;
@@ -97,44 +97,44 @@ public class MemoryManager extends JmxObject {
     @ManagedAttribute(id="total-allocated-bytes")
     @Description("Total number of allocated bytes (real + pool)")
     public long getTotalAllocatedBytes() {
-        return totalAllocatedBytes.get();
+        return totalAllocatedBytes.sum();
     }
 
     @ManagedAttribute(id="real-allocated-bytes")
     @Description("Total number of bytes allocated using ByteBuffer.allocate(...) operation")
     public long getRealAllocatedBytes() {
-        return realAllocatedBytes.get();
+        return realAllocatedBytes.sum();
     }
 
     @ManagedAttribute(id="pool-allocated-bytes")
     @Description("Total number of bytes allocated from memory pool")
     public long getPoolAllocatedBytes() {
-        return poolAllocatedBytes.get();
+        return poolAllocatedBytes.sum();
     }
 
     @ManagedAttribute(id="pool-released-bytes")
     @Description("Total number of bytes released to memory pool")
     public long getPoolReleasedBytes() {
-        return poolReleasedBytes.get();
+        return poolReleasedBytes.sum();
     }
 
     private class JmxMemoryProbe implements MemoryProbe {
 
         @Override
         public void onBufferAllocateEvent(int size) {
-            totalAllocatedBytes.addAndGet(size);
-            realAllocatedBytes.addAndGet(size);
+            totalAllocatedBytes.add(size);
+            realAllocatedBytes.add(size);
         }
 
         @Override
         public void onBufferAllocateFromPoolEvent(int size) {
-            totalAllocatedBytes.addAndGet(size);
-            poolAllocatedBytes.addAndGet(size);
+            totalAllocatedBytes.add(size);
+            poolAllocatedBytes.add(size);
         }
 
         @Override
         public void onBufferReleaseToPoolEvent(int size) {
-            poolReleasedBytes.addAndGet(size);
+            poolReleasedBytes.add(size);
         }
 
     }
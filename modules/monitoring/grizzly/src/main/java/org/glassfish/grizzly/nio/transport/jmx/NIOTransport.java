@@ -46,6 +46,8 @@ import org.glassfish.grizzly.ConnectionProbe;
 import org.glassfish.grizzly.IOEvent;
 import org.glassfish.grizzly.Transport;
 import org.glassfish.grizzly.TransportProbe;
+import org.glassfish.grizzly.monitoring.Histogram;
+import org.glassfish.grizzly.monitoring.HistogramSnapshot;
 import org.glassfish.grizzly.monitoring.jmx.JmxObject;
 import org.glassfish.grizzly.memory.MemoryManager;
 import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
@@ -55,8 +57,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import org.glassfish.gmbal.Description;
 import org.glassfish.gmbal.GmbalMBean;
 import org.glassfish.gmbal.ManagedAttribute;
@@ -72,12 +75,20 @@ import org.glassfish.grizzly.jmxbase.GrizzlyJmxManager;
 @ManagedObject
 @Description("Grizzly NIO Transport")
 public class NIOTransport extends JmxObject {
+    /**
+     * The max age (in milliseconds) of the {@link HistogramSnapshot} shared
+     * by the percentile attributes.
+     */
+    private static final long SNAPSHOT_MAX_AGE_MILLIS = 1000;
+    
     protected final org.glassfish.grizzly.nio.NIOTransport transport;
     private final JmxTransportProbe probe;
     private final JmxConnectionProbe connectionProbe;
 
-    private final AtomicLong bytesRead = new AtomicLong();
-    private final AtomicLong bytesWritten = new AtomicLong();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final Histogram readSizes = new Histogram();
+    private final Histogram writeSizes = new Histogram();
     
     private volatile EventDate stateEvent;
     private volatile EventDate lastErrorEvent;
@@ -88,7 +99,7 @@ public class NIOTransport extends JmxObject {
     private final Queue<String> boundAddresses = new ConcurrentLinkedQueue<String>();
 
     private final AtomicInteger openConnectionsNum = new AtomicInteger();
-    private final AtomicLong totalConnectionsNum = new AtomicLong();
+    private final LongAdder totalConnectionsNum = new LongAdder();
 
     private GrizzlyJmxManager mom;
     
@@ -206,12 +217,68 @@ public class NIOTransport extends JmxObject {
 
     @ManagedAttribute(id="bytes-read")
     public long getBytesRead() {
-        return bytesRead.get();
+        return bytesRead.sum();
     }
 
     @ManagedAttribute(id="bytes-written")
     public long getBytesWritten() {
-        return bytesWritten.get();
+        return bytesWritten.sum();
+    }
+
+    @ManagedAttribute(id="read-size-p50")
+    @Description("The median number of bytes read by a single read operation.")
+    public long getReadSizeP50() {
+        return readSizes.snapshot(SNAPSHOT_MAX_AGE_MILLIS, TimeUnit.MILLISECONDS)
+                .getP50();
+    }
+
+    @ManagedAttribute(id="read-size-p99")
+    @Description("The 99th percentile of the number of bytes read by a single read operation.")
+    public long getReadSizeP99() {
+        return readSizes.snapshot(SNAPSHOT_MAX_AGE_MILLIS, TimeUnit.MILLISECONDS)
+                .getP99();
+    }
+
+    @ManagedAttribute(id="read-size-p999")
+    @Description("The 99.9th percentile of the number of bytes read by a single read operation.")
+    public long getReadSizeP999() {
+        return readSizes.snapshot(SNAPSHOT_MAX_AGE_MILLIS, TimeUnit.MILLISECONDS)
+                .getP999();
+    }
+
+    @ManagedAttribute(id="write-size-p50")
+    @Description("The median number of bytes written by a single write operation.")
+    public long getWriteSizeP50() {
+        return writeSizes.snapshot(SNAPSHOT_MAX_AGE_MILLIS, TimeUnit.MILLISECONDS)
+                .getP50();
+    }
+
+    @ManagedAttribute(id="write-size-p99")
+    @Description("The 99th percentile of the number of bytes written by a single write operation.")
+    public long getWriteSizeP99() {
+        return writeSizes.snapshot(SNAPSHOT_MAX_AGE_MILLIS, TimeUnit.MILLISECONDS)
+                .getP99();
+    }
+
+    @ManagedAttribute(id="write-size-p999")
+    @Description("The 99.9th percentile of the number of bytes written by a single write operation.")
+    public long getWriteSizeP999() {
+        return writeSizes.snapshot(SNAPSHOT_MAX_AGE_MILLIS, TimeUnit.MILLISECONDS)
+                .getP999();
+    }
+
+    /**
+     * @return the {@link HistogramSnapshot} of the read operation sizes (in bytes).
+     */
+    public HistogramSnapshot getReadSizeSnapshot() {
+        return readSizes.snapshot();
+    }
+
+    /**
+     * @return the {@link HistogramSnapshot} of the write operation sizes (in bytes).
+     */
+    public HistogramSnapshot getWriteSizeSnapshot() {
+        return writeSizes.snapshot();
     }
 
     @ManagedAttribute(id="bound-addresses")
@@ -226,7 +293,7 @@ public class NIOTransport extends JmxObject {
 
     @ManagedAttribute(id="total-connections-count")
     public long getTotalConnectionsCount() {
-        return totalConnectionsNum.get();
+        return totalConnectionsNum.sum();
     }
 
     private static String getType(Object o) {
@@ -368,23 +435,25 @@ public class NIOTransport extends JmxObject {
         public void onAcceptEvent(Connection serverConnection,
                 Connection clientConnection) {
             openConnectionsNum.incrementAndGet();
-            totalConnectionsNum.incrementAndGet();
+            totalConnectionsNum.increment();
         }
 
         @Override
         public void onConnectEvent(Connection connection) {
             openConnectionsNum.incrementAndGet();
-            totalConnectionsNum.incrementAndGet();
+            totalConnectionsNum.increment();
         }
 
         @Override
         public void onReadEvent(Connection connection, Buffer data, int size) {
-            bytesRead.addAndGet(size);
+            bytesRead.add(size);
+            readSizes.record(size);
         }
 
         @Override
         public void onWriteEvent(Connection connection, Buffer data, long size) {
-            bytesWritten.addAndGet(size);
+            bytesWritten.add(size);
+            writeSizes.record(size);
         }
 
         @Override
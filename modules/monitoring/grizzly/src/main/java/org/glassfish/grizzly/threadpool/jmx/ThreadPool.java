@@ -40,6 +40,8 @@
 
 package org.glassfish.grizzly.threadpool.jmx;
 
+import org.glassfish.grizzly.monitoring.Histogram;
+import org.glassfish.grizzly.monitoring.HistogramSnapshot;
 import org.glassfish.grizzly.monitoring.jmx.JmxObject;
 import org.glassfish.grizzly.threadpool.AbstractThreadPool;
 import org.glassfish.grizzly.threadpool.ThreadPoolProbe;
@@ -48,8 +50,11 @@ import org.glassfish.gmbal.GmbalMBean;
 import org.glassfish.gmbal.ManagedAttribute;
 import org.glassfish.gmbal.ManagedObject;
 
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import org.glassfish.grizzly.jmxbase.GrizzlyJmxManager;
 
 /**
@@ -60,15 +65,34 @@ import org.glassfish.grizzly.jmxbase.GrizzlyJmxManager;
 @ManagedObject
 @Description("Grizzly ThreadPool (typically shared between Transport instances).")
 public class ThreadPool extends JmxObject {
+    /**
+     * On average one of <tt>TASK_SAMPLE_RATE</tt> queued tasks is timed
+     * to estimate the task queue wait time.
+     */
+    private static final int TASK_SAMPLE_RATE = 16;
+    
+    /**
+     * The max age (in milliseconds) of the {@link HistogramSnapshot} shared
+     * by the percentile attributes.
+     */
+    private static final long SNAPSHOT_MAX_AGE_MILLIS = 1000;
 
     private final AbstractThreadPool threadPool;
     private final ThreadPoolProbe probe = new JmxThreadPoolProbe();
 
     private final AtomicInteger totalAllocatedThreadCount = new AtomicInteger();
     private final AtomicInteger busyThreadsCount = new AtomicInteger();
-    private final AtomicLong totalCompletedTasksCount = new AtomicLong();
+    private final LongAdder totalCompletedTasksCount = new LongAdder();
     private final AtomicInteger totalTaskQueueOverflowCount = new AtomicInteger();
 
+    private final Histogram taskQueueWaitTime = new Histogram();
+    
+    /**
+     * The queued task, which is being timed at the moment, if any.
+     */
+    private final AtomicReference<SampledTask> sampledTask =
+            new AtomicReference<>();
+
 
     // ------------------------------------------------------------ Constructors
 
@@ -195,7 +219,7 @@ public class ThreadPool extends JmxObject {
     @ManagedAttribute(id="thread-pool-total-completed-tasks-count")
     @Description("The total number of tasks that have been processed by this thread pool.")
     public long getTotalCompletedTasksCount() {
-        return totalCompletedTasksCount.get();
+        return totalCompletedTasksCount.sum();
     }
 
 
@@ -208,6 +232,50 @@ public class ThreadPool extends JmxObject {
         return totalTaskQueueOverflowCount.get();
     }
 
+    /**
+     * @return the median time (in microseconds) a task spent in the task queue.
+     */
+    @ManagedAttribute(id="thread-pool-task-queue-wait-p50")
+    @Description("The median time (in microseconds) a task spent in the task queue before being picked up by a thread.")
+    public long getTaskQueueWaitTimeP50() {
+        return HistogramSnapshot.convert(
+                taskQueueWaitTime.snapshot(SNAPSHOT_MAX_AGE_MILLIS,
+                        TimeUnit.MILLISECONDS).getP50(), TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * @return the 99th percentile of the time (in microseconds) a task spent
+     *  in the task queue.
+     */
+    @ManagedAttribute(id="thread-pool-task-queue-wait-p99")
+    @Description("The 99th percentile of the time (in microseconds) a task spent in the task queue before being picked up by a thread.")
+    public long getTaskQueueWaitTimeP99() {
+        return HistogramSnapshot.convert(
+                taskQueueWaitTime.snapshot(SNAPSHOT_MAX_AGE_MILLIS,
+                        TimeUnit.MILLISECONDS).getP99(), TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * @return the 99.9th percentile of the time (in microseconds) a task spent
+     *  in the task queue.
+     */
+    @ManagedAttribute(id="thread-pool-task-queue-wait-p999")
+    @Description("The 99.9th percentile of the time (in microseconds) a task spent in the task queue before being picked up by a thread.")
+    public long getTaskQueueWaitTimeP999() {
+        return HistogramSnapshot.convert(
+                taskQueueWaitTime.snapshot(SNAPSHOT_MAX_AGE_MILLIS,
+                        TimeUnit.MILLISECONDS).getP999(), TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * @return the {@link HistogramSnapshot} of the times (in nanoseconds)
+     *  tasks spent in the task queue. The times are measured for a sample
+     *  of the queued tasks.
+     */
+    public HistogramSnapshot getTaskQueueWaitTimeSnapshot() {
+        return taskQueueWaitTime.snapshot();
+    }
+
     // ---------------------------------------------------------- Nested Classes
 
 
@@ -222,9 +290,31 @@ public class ThreadPool extends JmxObject {
             totalAllocatedThreadCount.incrementAndGet();
         }
 
+        @Override
+        public void onThreadPoolStopEvent(AbstractThreadPool threadPool) {
+            sampledTask.set(null);
+        }
+
+        @Override
+        public void onTaskQueueEvent(AbstractThreadPool threadPool, Runnable task) {
+            // time one task at a time, so the queue and dequeue events
+            // don't have to track every task
+            if (sampledTask.get() == null
+                    && ThreadLocalRandom.current().nextInt(TASK_SAMPLE_RATE) == 0) {
+                sampledTask.compareAndSet(null,
+                        new SampledTask(task, System.nanoTime()));
+            }
+        }
+
         @Override
         public void onTaskDequeueEvent(AbstractThreadPool threadPool, Runnable task) {
             busyThreadsCount.incrementAndGet();
+            
+            final SampledTask sample = sampledTask.get();
+            if (sample != null && sample.task == task
+                    && sampledTask.compareAndSet(sample, null)) {
+                taskQueueWaitTime.recordElapsedSince(sample.queuedNanos);
+            }
         }
 
         @Override
@@ -234,7 +324,7 @@ public class ThreadPool extends JmxObject {
         
         @Override
         public void onTaskCompleteEvent(AbstractThreadPool threadPool, Runnable task) {
-            totalCompletedTasksCount.incrementAndGet();
+            totalCompletedTasksCount.increment();
             decBusyThreadCount();
         }
 
@@ -255,4 +345,14 @@ public class ThreadPool extends JmxObject {
         }        
     } // END JmxThreadPoolProbe
 
+    private static final class SampledTask {
+        private final Runnable task;
+        private final long queuedNanos;
+
+        private SampledTask(final Runnable task, final long queuedNanos) {
+            this.task = task;
+            this.queuedNanos = queuedNanos;
+        }
+    } // END SampledTask
+
 }
@@ -49,7 +49,7 @@ import org.glassfish.gmbal.ManagedAttribute;
 import org.glassfish.gmbal.ManagedObject;
 
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import org.glassfish.grizzly.jmxbase.GrizzlyJmxManager;
 
 /**
@@ -75,12 +75,12 @@ public class FileCache extends JmxObject {
     /**
      * The number of cache hits.
      */
-    private final AtomicLong cacheHitCount = new AtomicLong();
+    private final LongAdder cacheHitCount = new LongAdder();
 
     /**
      * The number of cache misses.
      */
-    private final AtomicLong cacheMissCount = new AtomicLong();
+    private final LongAdder cacheMissCount = new LongAdder();
 
     /**
      * The number of cache errors.
@@ -234,7 +234,7 @@ public class FileCache extends JmxObject {
     @ManagedAttribute(id="cache-hit-count")
     @Description("The total number of cache hits.")
     public long getCacheHitCount() {
-        return cacheHitCount.get();
+        return cacheHitCount.sum();
     }
 
     /**
@@ -243,7 +243,7 @@ public class FileCache extends JmxObject {
     @ManagedAttribute(id="cache-miss-count")
     @Description("The total number of cache misses.")
     public long getCacheMissCount() {
-        return cacheMissCount.get();
+        return cacheMissCount.sum();
     }
 
     /**
@@ -273,6 +273,35 @@ public class FileCache extends JmxObject {
         return fileCache.getMappedCacheSize();
     }
 
+    /**
+     * @return the number of cache entry compressions scheduled, but not
+     *  completed yet.
+     */
+    @ManagedAttribute(id="compressions-in-progress-count")
+    @Description("The current number of cache entries being compressed in background.")
+    public int getCompressionsInProgressCount() {
+        return fileCache.getCompressionsInProgressCount();
+    }
+
+    /**
+     * @return the total number of successfully completed cache entry
+     *  compressions.
+     */
+    @ManagedAttribute(id="compressed-entries-count")
+    @Description("The total number of successfully completed cache entry compressions.")
+    public long getCompressedEntryCount() {
+        return fileCache.getCompletedCompressionsCount();
+    }
+
+    /**
+     * @return the total number of failed cache entry compressions.
+     */
+    @ManagedAttribute(id="failed-compressions-count")
+    @Description("The total number of failed cache entry compressions.")
+    public long getFailedCompressionsCount() {
+        return fileCache.getFailedCompressionsCount();
+    }
+
 
     // ---------------------------------------------------------- Nested Classes
 
@@ -300,12 +329,12 @@ public class FileCache extends JmxObject {
 
         @Override
         public void onEntryHitEvent(org.glassfish.grizzly.http.server.filecache.FileCache fileCache, FileCacheEntry entry) {
-            cacheHitCount.incrementAndGet();
+            cacheHitCount.increment();
         }
 
         @Override
         public void onEntryMissedEvent(org.glassfish.grizzly.http.server.filecache.FileCache fileCache, String host, String requestURI) {
-            cacheMissCount.incrementAndGet();
+            cacheMissCount.increment();
         }
 
         @Override
@@ -313,6 +342,14 @@ public class FileCache extends JmxObject {
             cacheErrorCount.incrementAndGet();
         }
 
+        @Override
+        public void onEntryCompressionScheduledEvent(org.glassfish.grizzly.http.server.filecache.FileCache fileCache, FileCacheEntry entry) {
+        }
+
+        @Override
+        public void onEntryCompressionCompletedEvent(org.glassfish.grizzly.http.server.filecache.FileCache fileCache, FileCacheEntry entry) {
+        }
+
     } // END JMXFileCacheProbe
 
 }
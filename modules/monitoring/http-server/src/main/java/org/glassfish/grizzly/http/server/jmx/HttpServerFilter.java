@@ -41,17 +41,21 @@
 package org.glassfish.grizzly.http.server.jmx;
 
 import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.http.Note;
 import org.glassfish.grizzly.http.server.Request;
 import org.glassfish.grizzly.http.server.Response;
 import org.glassfish.grizzly.http.server.HttpServerProbe;
+import org.glassfish.grizzly.monitoring.Histogram;
+import org.glassfish.grizzly.monitoring.HistogramSnapshot;
 import org.glassfish.grizzly.monitoring.jmx.JmxObject;
 import org.glassfish.gmbal.Description;
 import org.glassfish.gmbal.GmbalMBean;
 import org.glassfish.gmbal.ManagedAttribute;
 import org.glassfish.gmbal.ManagedObject;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import org.glassfish.grizzly.jmxbase.GrizzlyJmxManager;
 
 /**
@@ -63,13 +67,23 @@ import org.glassfish.grizzly.jmxbase.GrizzlyJmxManager;
 @Description("The HttpServerFilter is the entity responsible for providing and processing higher level abstractions based on HTTP protocol.")
 public class HttpServerFilter extends JmxObject {
 
+    /**
+     * The max age (in milliseconds) of the {@link HistogramSnapshot} shared
+     * by the percentile attributes.
+     */
+    private static final long SNAPSHOT_MAX_AGE_MILLIS = 1000;
+    
+    private static final Note<Long> REQUEST_START_NOTE =
+            Request.createNote(HttpServerFilter.class.getName() + ".request-start");
+
     private final org.glassfish.grizzly.http.server.HttpServerFilter httpServerFilter;
 
-    private final AtomicLong receivedCount = new AtomicLong();
-    private final AtomicLong completedCount = new AtomicLong();
+    private final LongAdder receivedCount = new LongAdder();
+    private final LongAdder completedCount = new LongAdder();
     private final AtomicInteger suspendCount = new AtomicInteger();
-    private final AtomicLong timedOutCount = new AtomicLong();
-    private final AtomicLong cancelledCount = new AtomicLong();
+    private final LongAdder timedOutCount = new LongAdder();
+    private final LongAdder cancelledCount = new LongAdder();
+    private final Histogram requestLatency = new Histogram();
 
     private final HttpServerProbe probe = new JmxWebServerProbe();
 
@@ -110,7 +124,7 @@ public class HttpServerFilter extends JmxObject {
     @ManagedAttribute(id="requests-received-count")
     @Description("The total number of requests received.")
     public long getRequestsReceivedCount() {
-        return receivedCount.get();
+        return receivedCount.sum();
     }
 
 
@@ -121,7 +135,7 @@ public class HttpServerFilter extends JmxObject {
     @ManagedAttribute(id="requests-completed-count")
     @Description("The total number of requests that have been successfully completed.")
     public long getRequestsCompletedCount() {
-        return completedCount.get();
+        return completedCount.sum();
     }
 
 
@@ -141,7 +155,7 @@ public class HttpServerFilter extends JmxObject {
     @ManagedAttribute(id="requests-timed-out-count")
     @Description("The total number of suspended requests that have been timed out.")
     public long getRequestsTimedOutCount() {
-        return timedOutCount.get();
+        return timedOutCount.sum();
     }
 
 
@@ -152,7 +166,52 @@ public class HttpServerFilter extends JmxObject {
     @ManagedAttribute(id="requests-cancelled-count")
     @Description("The total number of suspended requests that have been cancelled.")
     public long getRequestsCancelledCount() {
-        return cancelledCount.get();
+        return cancelledCount.sum();
+    }
+
+
+    /**
+     * @return the median request processing time in microseconds.
+     */
+    @ManagedAttribute(id="request-latency-p50")
+    @Description("The median time (in microseconds) between receiving a request and completing its response.")
+    public long getRequestLatencyP50() {
+        return HistogramSnapshot.convert(
+                requestLatency.snapshot(SNAPSHOT_MAX_AGE_MILLIS,
+                        TimeUnit.MILLISECONDS).getP50(), TimeUnit.MICROSECONDS);
+    }
+
+
+    /**
+     * @return the 99th percentile of the request processing time in microseconds.
+     */
+    @ManagedAttribute(id="request-latency-p99")
+    @Description("The 99th percentile of the time (in microseconds) between receiving a request and completing its response.")
+    public long getRequestLatencyP99() {
+        return HistogramSnapshot.convert(
+                requestLatency.snapshot(SNAPSHOT_MAX_AGE_MILLIS,
+                        TimeUnit.MILLISECONDS).getP99(), TimeUnit.MICROSECONDS);
+    }
+
+
+    /**
+     * @return the 99.9th percentile of the request processing time in microseconds.
+     */
+    @ManagedAttribute(id="request-latency-p999")
+    @Description("The 99.9th percentile of the time (in microseconds) between receiving a request and completing its response.")
+    public long getRequestLatencyP999() {
+        return HistogramSnapshot.convert(
+                requestLatency.snapshot(SNAPSHOT_MAX_AGE_MILLIS,
+                        TimeUnit.MILLISECONDS).getP999(), TimeUnit.MICROSECONDS);
+    }
+
+
+    /**
+     * @return the {@link HistogramSnapshot} of the request processing times
+     *  (in nanoseconds) measured since this object has been registered.
+     */
+    public HistogramSnapshot getRequestLatencySnapshot() {
+        return requestLatency.snapshot();
     }
 
 
@@ -167,12 +226,17 @@ public class HttpServerFilter extends JmxObject {
 
         @Override
         public void onRequestReceiveEvent(org.glassfish.grizzly.http.server.HttpServerFilter filter, Connection connection, Request request) {
-            receivedCount.incrementAndGet();
+            receivedCount.increment();
+            request.setNote(REQUEST_START_NOTE, System.nanoTime());
         }
 
         @Override
         public void onRequestCompleteEvent(org.glassfish.grizzly.http.server.HttpServerFilter filter, Connection connection, Response response) {
-            completedCount.incrementAndGet();
+            completedCount.increment();
+            final Long startNanos = response.getRequest().removeNote(REQUEST_START_NOTE);
+            if (startNanos != null) {
+                requestLatency.recordElapsedSince(startNanos);
+            }
         }
 
         @Override
@@ -189,7 +253,7 @@ public class HttpServerFilter extends JmxObject {
 
         @Override
         public void onRequestTimeoutEvent(org.glassfish.grizzly.http.server.HttpServerFilter filter, Connection connection, Request request) {
-            timedOutCount.incrementAndGet();
+            timedOutCount.increment();
             if (suspendCount.get() > 0) {
                 suspendCount.decrementAndGet();
             }
@@ -197,7 +261,7 @@ public class HttpServerFilter extends JmxObject {
 
         @Override
         public void onRequestCancelEvent(org.glassfish.grizzly.http.server.HttpServerFilter filter, Connection connection, Request request) {
-            cancelledCount.incrementAndGet();
+            cancelledCount.increment();
             if (suspendCount.get() > 0) {
                 suspendCount.decrementAndGet();
             }
@@ -55,7 +55,7 @@ import org.glassfish.gmbal.GmbalMBean;
 import org.glassfish.gmbal.ManagedAttribute;
 import org.glassfish.gmbal.ManagedObject;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.glassfish.grizzly.http.HttpPacket;
 import org.glassfish.grizzly.jmxbase.GrizzlyJmxManager;
@@ -71,13 +71,13 @@ public class HttpCodecFilter extends JmxObject {
 
     private final org.glassfish.grizzly.http.HttpCodecFilter httpCodecFilter;
 
-    private final AtomicLong httpContentReceived = new AtomicLong();
-    private final AtomicLong httpContentWritten = new AtomicLong();
-    private final AtomicLong httpCodecErrorCount = new AtomicLong();
-    private final AtomicLong contentCompressionTotalGzip = new AtomicLong();
-    private final AtomicLong contentBeforeCompressionTotalGzip = new AtomicLong();
-    private final AtomicLong contentCompressionTotalLzma = new AtomicLong();
-    private final AtomicLong contentBeforeCompressionTotalLzma = new AtomicLong();
+    private final LongAdder httpContentReceived = new LongAdder();
+    private final LongAdder httpContentWritten = new LongAdder();
+    private final LongAdder httpCodecErrorCount = new LongAdder();
+    private final LongAdder contentCompressionTotalGzip = new LongAdder();
+    private final LongAdder contentBeforeCompressionTotalGzip = new LongAdder();
+    private final LongAdder contentCompressionTotalLzma = new LongAdder();
+    private final LongAdder contentBeforeCompressionTotalLzma = new LongAdder();
 
     private final HttpProbe probe = new JmxHttpProbe();
 
@@ -129,7 +129,7 @@ public class HttpCodecFilter extends JmxObject {
     @ManagedAttribute(id="total-bytes-received")
     @Description("The total number of bytes this filter has processed as part of the HTTP protocol parsing process.")
     public long getTotalContentReceived() {
-        return httpContentReceived.get();
+        return httpContentReceived.sum();
     }
 
 
@@ -140,7 +140,7 @@ public class HttpCodecFilter extends JmxObject {
     @ManagedAttribute(id="total-bytes-written")
     @Description("The total number of bytes that have been written as part of the serialization process to the HTTP protocol.")
     public long getTotalContentWritten() {
-        return httpContentWritten.get();
+        return httpContentWritten.sum();
     }
 
 
@@ -150,7 +150,7 @@ public class HttpCodecFilter extends JmxObject {
     @ManagedAttribute(id="http-codec-error-count")
     @Description("The total number of protocol errors that have occurred during either the parsing or serialization process.")
     public long getHttpCodecErrorCount() {
-        return httpCodecErrorCount.get();
+        return httpCodecErrorCount.sum();
     }
 
     /**
@@ -159,7 +159,7 @@ public class HttpCodecFilter extends JmxObject {
     @ManagedAttribute(id="http-codec-before-gzip-compression-total")
     @Description("The total number of bytes before gzip compression has been applied.")
     public long getTotalBytesBeforeGzipEncoding() {
-        return contentBeforeCompressionTotalGzip.get();
+        return contentBeforeCompressionTotalGzip.sum();
     }
 
     /**
@@ -168,7 +168,7 @@ public class HttpCodecFilter extends JmxObject {
     @ManagedAttribute(id="http-codec-after-gzip-compression-total")
     @Description("The total number of bytes after gzip compression has been applied.")
     public long getTotalBytesAfterGzipEncoding() {
-        return contentCompressionTotalGzip.get();
+        return contentCompressionTotalGzip.sum();
     }
 
     /**
@@ -177,8 +177,8 @@ public class HttpCodecFilter extends JmxObject {
     @ManagedAttribute(id="http-codec-gzip-avg-compression-percent")
     @Description("The average gzip compression result.")
     public String getGzipCompressionRatio() {
-        final long l1 = contentBeforeCompressionTotalGzip.get();
-        final long l2 = contentCompressionTotalGzip.get();
+        final long l1 = contentBeforeCompressionTotalGzip.sum();
+        final long l2 = contentCompressionTotalGzip.sum();
         return calculateAvgCompressionPercent(l1, l2);
     }
 
@@ -188,7 +188,7 @@ public class HttpCodecFilter extends JmxObject {
     @ManagedAttribute(id = "http-codec-before-lzma-compression-total")
     @Description( "The total number of bytes before lzma compression has been applied.")
     public long getTotalBytesBeforeLzmaEncoding() {
-        return contentBeforeCompressionTotalLzma.get();
+        return contentBeforeCompressionTotalLzma.sum();
     }
 
     /**
@@ -197,7 +197,7 @@ public class HttpCodecFilter extends JmxObject {
     @ManagedAttribute(id = "http-codec-after-lzma-compression-total")
     @Description( "The total number of bytes after lzma compression has been applied.")
     public long getTotalBytesAfterLzmaEncoding() {
-        return contentCompressionTotalLzma.get();
+        return contentCompressionTotalLzma.sum();
     }
 
     /**
@@ -206,8 +206,8 @@ public class HttpCodecFilter extends JmxObject {
     @ManagedAttribute(id = "http-codec-lzma-avg-compression-percent")
     @Description( "The average lzma compression result.")
     public String getLzmaAvgCompressionPercent() {
-        final long l1 = contentBeforeCompressionTotalLzma.get();
-        final long l2 = contentCompressionTotalLzma.get();
+        final long l1 = contentBeforeCompressionTotalLzma.sum();
+        final long l2 = contentCompressionTotalLzma.sum();
         return calculateAvgCompressionPercent(l1, l2);
     }
 
@@ -229,18 +229,18 @@ public class HttpCodecFilter extends JmxObject {
 
         @Override
         public void onDataReceivedEvent(Connection connection, Buffer buffer) {
-            httpContentReceived.addAndGet(buffer.remaining());
+            httpContentReceived.add(buffer.remaining());
         }
 
         @Override
         public void onDataSentEvent(Connection connection, Buffer buffer) {
-            httpContentWritten.addAndGet(buffer.remaining());
+            httpContentWritten.add(buffer.remaining());
         }
 
         @Override
         public void onErrorEvent(Connection connection, HttpPacket httpPacket,
                 Throwable error) {
-            httpCodecErrorCount.incrementAndGet();
+            httpCodecErrorCount.increment();
         }
 
         @Override
@@ -269,9 +269,9 @@ public class HttpCodecFilter extends JmxObject {
         public void onContentEncodingSerializeResultEvent(Connection connection, HttpHeader header, Buffer result, ContentEncoding contentEncoding) {
             final String name = contentEncoding.getName();
             if (GZipContentEncoding.NAME.equals(name)) {
-                contentCompressionTotalGzip.addAndGet(result.remaining());
+                contentCompressionTotalGzip.add(result.remaining());
             } else if (LZMAContentEncoding.NAME.equals(name)) {
-                contentCompressionTotalLzma.addAndGet(result.remaining());
+                contentCompressionTotalLzma.add(result.remaining());
             }
         }
 
@@ -283,9 +283,9 @@ public class HttpCodecFilter extends JmxObject {
         public void onContentEncodingSerializeEvent(Connection connection, HttpHeader header, Buffer result, ContentEncoding contentEncoding) {
             final String name = contentEncoding.getName();
             if (GZipContentEncoding.NAME.equals(name)) {
-                contentBeforeCompressionTotalGzip.addAndGet(result.remaining());
+                contentBeforeCompressionTotalGzip.add(result.remaining());
             } else if (LZMAContentEncoding.NAME.equals(name)) {
-                contentBeforeCompressionTotalLzma.addAndGet(result.remaining());
+                contentBeforeCompressionTotalLzma.add(result.remaining());
             }
         }
 
@@ -52,6 +52,11 @@ public class PUContext {
     short skippedProtocolFinders;
     boolean isSticky = true;
     PUProtocol protocol;
+    
+    /**
+     * The time stamp (in nanoseconds) of the first protocol check
+     */
+    long detectionStartNanos;
 
     // ------------------------------------------------------------ Constructors
 
@@ -76,5 +81,6 @@ public class PUContext {
         protocol = null;
         skippedProtocolFinders = 0;
         protocolMissCount = 0;
+        detectionStartNanos = 0;
     }
 }
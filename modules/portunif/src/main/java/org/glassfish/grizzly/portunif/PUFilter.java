@@ -43,8 +43,10 @@ package org.glassfish.grizzly.portunif;
 import java.io.IOException;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.CompletionHandler;
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.Context;
@@ -79,6 +81,14 @@ public class PUFilter extends BaseFilter {
     private final ArraySet<PUProtocol> protocols =
             new ArraySet<PUProtocol>(PUProtocol.class);
     
+    /**
+     * The trie compiled from the registered protocols signatures,
+     * it's rebuilt lazily once the protocols set is changed
+     */
+    private volatile SignatureTrie signatureTrie;
+    
+    private final AtomicLong unrecognizedCount = new AtomicLong();
+    
     final Attribute<PUContext> puContextAttribute;
     final Attribute<FilterChainContext> suspendedContextAttribute;
 
@@ -136,6 +146,7 @@ public class PUFilter extends BaseFilter {
         }
 
         protocols.add(puProtocol);
+        signatureTrie = null;
     }
 
     /**
@@ -145,6 +156,7 @@ public class PUFilter extends BaseFilter {
      */
     public void deregister(final PUProtocol puProtocol) {
         protocols.remove(puProtocol);
+        signatureTrie = null;
     }
 
     /**
@@ -195,6 +207,14 @@ public class PUFilter extends BaseFilter {
         return isCloseUnrecognizedConnection;
     }
     
+    /**
+     * @return the number of {@link Connection}s, whose protocol has not been
+     * recognized
+     */
+    public long getUnrecognizedCount() {
+        return unrecognizedCount.get();
+    }
+    
     @Override
     public NextAction handleRead(final FilterChainContext ctx) throws IOException {
         final Connection connection = ctx.getConnection();
@@ -237,6 +257,8 @@ public class PUFilter extends BaseFilter {
         // no matching protocols within the set of known protocols were found,
         // pass the message to the next filter in the chain
         if (puContext.noProtocolsFound()) {
+            unrecognizedCount.incrementAndGet();
+            
             if (isCloseUnrecognizedConnection) {
                 connection.closeSilently();
                 return ctx.getStopAction();
@@ -303,23 +325,59 @@ public class PUFilter extends BaseFilter {
 
     protected void findProtocol(final PUContext puContext,
                                 final FilterChainContext ctx) {
-        final PUProtocol[] protocolArray = protocols.getArray();
-
+        if (puContext.detectionStartNanos == 0) {
+            puContext.detectionStartNanos = System.nanoTime();
+        }
+        
+        final SignatureTrie trie = getSignatureTrie();
+        final PUProtocol[] protocolArray = trie.protocols;
+        if (protocolArray == null) {
+            return;
+        }
+        
+        int matchedSignatures = 0;
+        final Object message = ctx.getMessage();
+        if (trie.signatureMask != 0 && message instanceof Buffer) {
+            final long matchResult = trie.match((Buffer) message);
+            matchedSignatures = (int) (matchResult >>> 32);
+            final int pendingSignatures = (int) matchResult;
+            
+            final int decisive = matchedSignatures & trie.decisiveMask
+                    & ~puContext.skippedProtocolFinders;
+            if (decisive != 0) {
+                onProtocolFound(puContext,
+                        protocolArray[Integer.numberOfTrailingZeros(decisive)],
+                        true);
+                return;
+            }
+            
+            // the protocols, whose signatures can't match, are not found
+            puContext.skippedProtocolFinders |= trie.signatureMask
+                    & ~matchedSignatures & ~pendingSignatures;
+        }
+        
         for (int i = 0; i < protocolArray.length; i++) {
             final PUProtocol protocol = protocolArray[i];
             if ((puContext.skippedProtocolFinders & 1 << i) != 0) {
                 continue;
             }
+            
+            if ((trie.signatureMask & 1 << i) != 0
+                    && (matchedSignatures & 1 << i) == 0) {
+                // the signature is not complete yet, need more data
+                continue;
+            }
+            
             try {
                 final ProtocolFinder.Result result =
                         protocol.getProtocolFinder().find(puContext, ctx);
 
                 switch (result) {
                     case FOUND:
-                        puContext.protocol = protocol;
+                        onProtocolFound(puContext, protocol, false);
                         return;
                     case NOT_FOUND:
-                        puContext.skippedProtocolFinders ^= 1 << i;
+                        puContext.skippedProtocolFinders |= 1 << i;
                 }
             } catch (Exception e) {
                 LOGGER.log(Level.WARNING,
@@ -329,6 +387,23 @@ public class PUFilter extends BaseFilter {
         }
     }
 
+    private void onProtocolFound(final PUContext puContext,
+            final PUProtocol protocol, final boolean isBySignature) {
+        puContext.protocol = protocol;
+        protocol.onDetected(System.nanoTime() - puContext.detectionStartNanos,
+                isBySignature);
+    }
+    
+    private SignatureTrie getSignatureTrie() {
+        SignatureTrie trie = signatureTrie;
+        if (trie == null || trie.protocols != protocols.getArray()) {
+            trie = new SignatureTrie(protocols.getArray());
+            signatureTrie = trie;
+        }
+        
+        return trie;
+    }
+    
     private static boolean isUpstream(final FilterChainContext context) {
         return context.getStartIdx() < context.getEndIdx();
     }
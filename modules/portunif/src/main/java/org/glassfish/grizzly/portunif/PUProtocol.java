@@ -40,6 +40,8 @@
 
 package org.glassfish.grizzly.portunif;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.glassfish.grizzly.filterchain.FilterChain;
 
 /**
@@ -51,6 +53,10 @@ import org.glassfish.grizzly.filterchain.FilterChain;
 public class PUProtocol {
     private final ProtocolFinder finder;
     private final FilterChain filterChain;
+    
+    private final AtomicLong detectionCount = new AtomicLong();
+    private final AtomicLong signatureDetectionCount = new AtomicLong();
+    private final AtomicLong totalDetectionTimeNanos = new AtomicLong();
 
     public PUProtocol(final ProtocolFinder finder, final FilterChain processor) {
         this.finder = finder;
@@ -64,4 +70,58 @@ public class PUProtocol {
     public FilterChain getFilterChain() {
         return filterChain;
     }
+
+    /**
+     * @return the number of times the protocol has been recognized
+     */
+    public long getDetectionCount() {
+        return detectionCount.get();
+    }
+
+    /**
+     * @return the number of times the protocol has been recognized by
+     * a decisive {@link SignatureProtocolFinder} signature, without calling
+     * any {@link ProtocolFinder}
+     */
+    public long getSignatureDetectionCount() {
+        return signatureDetectionCount.get();
+    }
+    
+    /**
+     * @param timeUnit {@link TimeUnit}
+     * @return the total time spent to recognize the protocol, measured from
+     * the moment the first bytes are checked till the protocol is found
+     */
+    public long getTotalDetectionTime(final TimeUnit timeUnit) {
+        return timeUnit.convert(totalDetectionTimeNanos.get(), TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * @param timeUnit {@link TimeUnit}
+     * @return the average time spent to recognize the protocol
+     */
+    public long getAverageDetectionTime(final TimeUnit timeUnit) {
+        final long count = detectionCount.get();
+        return count == 0
+                ? 0
+                : timeUnit.convert(totalDetectionTimeNanos.get() / count,
+                        TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Resets the protocol detection statistics.
+     */
+    public void resetStatistics() {
+        detectionCount.set(0);
+        signatureDetectionCount.set(0);
+        totalDetectionTimeNanos.set(0);
+    }
+    
+    void onDetected(final long detectionTimeNanos, final boolean isBySignature) {
+        detectionCount.incrementAndGet();
+        if (isBySignature) {
+            signatureDetectionCount.incrementAndGet();
+        }
+        totalDetectionTimeNanos.addAndGet(detectionTimeNanos);
+    }
 }
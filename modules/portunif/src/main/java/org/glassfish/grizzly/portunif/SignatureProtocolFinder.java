@@ -0,0 +1,75 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.portunif;
+
+/**
+ * {@link ProtocolFinder}, which declares the static byte sequences
+ * (signatures), its protocol messages start with.
+ * 
+ * {@link PUFilter} compiles signatures of all the registered
+ * <tt>SignatureProtocolFinder</tt>s into a byte-prefix trie and checks the
+ * incoming bytes against it, before calling any {@link ProtocolFinder}:
+ * <ul>
+ *   <li>if none of the finder signatures can match the incoming bytes - the
+ *       finder is not called and its protocol is considered not found;</li>
+ *   <li>if a signature is matched and the finder signatures are decisive -
+ *       the protocol is considered found without calling any {@link ProtocolFinder};</li>
+ *   <li>if a signature is matched, but it's not decisive - the
+ *       {@link #find(PUContext, org.glassfish.grizzly.filterchain.FilterChainContext)}
+ *       method is called to confirm the protocol.</li>
+ * </ul>
+ * 
+ * So the returned signatures have to cover all the possible protocol
+ * message beginnings.
+ */
+public interface SignatureProtocolFinder extends ProtocolFinder {
+    /**
+     * @return the byte sequences, one of which every protocol message starts with
+     */
+    byte[][] getSignatures();
+    
+    /**
+     * @return <tt>true</tt> if a signature match is enough to recognize the
+     * protocol, or <tt>false</tt> if the protocol has to be confirmed by
+     * {@link #find(PUContext, org.glassfish.grizzly.filterchain.FilterChainContext)}
+     */
+    boolean isSignatureDecisive();
+}
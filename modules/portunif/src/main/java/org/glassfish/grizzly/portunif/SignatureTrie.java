@@ -0,0 +1,187 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.portunif;
+
+import org.glassfish.grizzly.Buffer;
+
+/**
+ * Byte-prefix trie compiled from the {@link SignatureProtocolFinder} signatures
+ * of the registered {@link PUProtocol}s.
+ * 
+ * Protocols are represented by bits in the masks, the bit index is the
+ * protocol index in the {@link #protocols} array.
+ */
+final class SignatureTrie {
+    /**
+     * The max number of protocols, which could be represented by
+     * {@link PUContext#skippedProtocolFinders}.
+     */
+    private static final int MAX_PROTOCOLS = Short.SIZE;
+    
+    /**
+     * The protocols the trie has been compiled for, might be <tt>null</tt>
+     * if there are no protocols registered
+     */
+    final PUProtocol[] protocols;
+    
+    /**
+     * The mask of the protocols, which declare signatures
+     */
+    final int signatureMask;
+    
+    /**
+     * The mask of the protocols, which declare decisive signatures
+     */
+    final int decisiveMask;
+    
+    private final Node root = new Node();
+
+    SignatureTrie(final PUProtocol[] protocols) {
+        this.protocols = protocols;
+        
+        int signatures = 0;
+        int decisive = 0;
+        
+        final int count = protocols != null
+                ? Math.min(protocols.length, MAX_PROTOCOLS)
+                : 0;
+        for (int i = 0; i < count; i++) {
+            final ProtocolFinder finder = protocols[i].getProtocolFinder();
+            if (!(finder instanceof SignatureProtocolFinder)) {
+                continue;
+            }
+            
+            final SignatureProtocolFinder signatureFinder =
+                    (SignatureProtocolFinder) finder;
+            final byte[][] protocolSignatures = signatureFinder.getSignatures();
+            if (protocolSignatures == null || protocolSignatures.length == 0) {
+                continue;
+            }
+            
+            final int bit = 1 << i;
+            signatures |= bit;
+            if (signatureFinder.isSignatureDecisive()) {
+                decisive |= bit;
+            }
+            
+            for (byte[] signature : protocolSignatures) {
+                add(signature, bit);
+            }
+        }
+        
+        signatureMask = signatures;
+        decisiveMask = decisive;
+    }
+
+    /**
+     * Matches the {@link Buffer} remaining bytes against the trie.
+     * The {@link Buffer} position is not changed.
+     * 
+     * @param buffer {@link Buffer}
+     * @return the mask of the protocols, whose signature has been matched, in
+     * the high 32 bits and the mask of the protocols, whose signature might
+     * still be matched, when more bytes come, in the low 32 bits
+     */
+    long match(final Buffer buffer) {
+        int matched = 0;
+        Node node = root;
+        
+        final int limit = buffer.limit();
+        for (int i = buffer.position(); i < limit; i++) {
+            final Node[] children = node.children;
+            final Node child = children != null
+                    ? children[buffer.get(i) & 0xFF]
+                    : null;
+            if (child == null) {
+                return ((long) matched) << 32;
+            }
+            
+            node = child;
+            matched |= node.terminalMask;
+        }
+        
+        final int pending = node.children != null
+                ? node.subtreeMask & ~node.terminalMask & ~matched
+                : 0;
+        
+        return (((long) matched) << 32) | (pending & 0xFFFFFFFFL);
+    }
+    
+    private void add(final byte[] signature, final int bit) {
+        if (signature == null || signature.length == 0) {
+            throw new IllegalStateException("Protocol signature can not be empty");
+        }
+        
+        Node node = root;
+        node.subtreeMask |= bit;
+        
+        for (byte b : signature) {
+            if (node.children == null) {
+                node.children = new Node[256];
+            }
+            
+            final int idx = b & 0xFF;
+            Node child = node.children[idx];
+            if (child == null) {
+                child = new Node();
+                node.children[idx] = child;
+            }
+            
+            node = child;
+            node.subtreeMask |= bit;
+        }
+        
+        node.terminalMask |= bit;
+    }
+    
+    private static final class Node {
+        /**
+         * The protocols, which have a signature passing through this node
+         */
+        private int subtreeMask;
+        /**
+         * The protocols, which have a signature ending at this node
+         */
+        private int terminalMask;
+        
+        private Node[] children;
+    }
+}
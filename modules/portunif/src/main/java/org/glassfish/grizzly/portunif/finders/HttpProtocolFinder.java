@@ -47,6 +47,7 @@ import org.glassfish.grizzly.attributes.Attribute;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.portunif.PUContext;
 import org.glassfish.grizzly.portunif.ProtocolFinder;
+import org.glassfish.grizzly.portunif.SignatureProtocolFinder;
 
 /**
  * A {@link ProtocolFinder} implementation that parse the available
@@ -62,8 +63,16 @@ import org.glassfish.grizzly.portunif.ProtocolFinder;
  * @author Jeanfrancois Arcand
  * @author Alexey Stashok
  */
-public class HttpProtocolFinder implements ProtocolFinder {
+public class HttpProtocolFinder implements SignatureProtocolFinder {
     private static final char[] METHOD_FIRST_LETTERS = new char[] {'G', 'P', 'O', 'H', 'D', 'T', 'C'};
+    private static final byte[][] SIGNATURES = new byte[METHOD_FIRST_LETTERS.length][];
+    
+    static {
+        for (int i = 0; i < METHOD_FIRST_LETTERS.length; i++) {
+            SIGNATURES[i] = new byte[] {(byte) METHOD_FIRST_LETTERS[i]};
+        }
+    }
+    
     private final Attribute<ParsingState> parsingStateAttribute =
             Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
                     HttpProtocolFinder.class + "-" + hashCode()
@@ -173,6 +182,22 @@ public class HttpProtocolFinder implements ProtocolFinder {
         return Result.NEED_MORE_DATA;
     }
 
+    /**
+     * @return the HTTP method first letters
+     */
+    @Override
+    public byte[][] getSignatures() {
+        return SIGNATURES;
+    }
+
+    /**
+     * @return <tt>false</tt>, the request line has to be checked
+     */
+    @Override
+    public boolean isSignatureDecisive() {
+        return false;
+    }
+
     private static final class ParsingState {
         int position;
         int state;
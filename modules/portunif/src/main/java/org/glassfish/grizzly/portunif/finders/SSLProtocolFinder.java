@@ -48,7 +48,7 @@ import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.portunif.PUContext;
-import org.glassfish.grizzly.portunif.ProtocolFinder;
+import org.glassfish.grizzly.portunif.SignatureProtocolFinder;
 import org.glassfish.grizzly.ssl.SSLEngineConfigurator;
 import static org.glassfish.grizzly.ssl.SSLUtils.*;
 
@@ -56,9 +56,26 @@ import static org.glassfish.grizzly.ssl.SSLUtils.*;
  *
  * @author Alexey Stashok
  */
-public class SSLProtocolFinder implements ProtocolFinder {
+public class SSLProtocolFinder implements SignatureProtocolFinder {
 
     private static final Logger LOGGER = Grizzly.logger(SSLProtocolFinder.class);
+    
+    /**
+     * SSLv3/TLS records start with the content type (20-23) followed by the
+     * major version 3, SSLv2 hello starts with the length, which has
+     * the high bit set.
+     */
+    private static final byte[][] SIGNATURES = new byte[4 + 128][];
+    
+    static {
+        for (int i = 0; i < 4; i++) {
+            SIGNATURES[i] = new byte[] {(byte) (0x14 + i), 0x03};
+        }
+        
+        for (int i = 0; i < 128; i++) {
+            SIGNATURES[4 + i] = new byte[] {(byte) (0x80 + i)};
+        }
+    }
 
     private final SSLEngineConfigurator sslEngineConfigurator;
 
@@ -82,4 +99,17 @@ public class SSLProtocolFinder implements ProtocolFinder {
 
         return Result.FOUND;
     }
+
+    @Override
+    public byte[][] getSignatures() {
+        return SIGNATURES;
+    }
+
+    /**
+     * @return <tt>false</tt>, the finder waits for the complete SSL record
+     */
+    @Override
+    public boolean isSignatureDecisive() {
+        return false;
+    }
 }
@@ -52,6 +52,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.SocketConnectorHandler;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
 import org.glassfish.grizzly.filterchain.*;
 import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.impl.SafeFutureImpl;
@@ -377,6 +379,76 @@ public class BasicPUTest {
     }
 
 
+    @Test
+    public void testSignatureDispatch() throws Exception {
+        final TestPUFilter puFilter = new TestPUFilter();
+        final TestFinder plain = new TestFinder() {
+            @Override
+            public Result find(PUContext puContext, FilterChainContext ctx) {
+                invocationCount++;
+                return Result.NEED_MORE_DATA;
+            }
+        };
+        final TestSignatureFinder decisive =
+                new TestSignatureFinder(true, new byte[] {1, 2}, new byte[] {1, 4});
+        final TestSignatureFinder confirming =
+                new TestSignatureFinder(false, new byte[] {3});
+        
+        puFilter.register(plain, puFilter.getPUFilterChainBuilder().add(new EchoFilter()).build());
+        final PUProtocol decisiveProtocol = puFilter.register(decisive,
+                puFilter.getPUFilterChainBuilder().add(new EchoFilter()).build());
+        final PUProtocol confirmingProtocol = puFilter.register(confirming,
+                puFilter.getPUFilterChainBuilder().add(new EchoFilter()).build());
+
+        // decisive signature - no finders are called
+        FilterChainContext ctx = createContext(1, 2, 100);
+        PUContext puContext = new PUContext(puFilter);
+        puFilter.findProtocol(puContext, ctx);
+        assertSame(decisiveProtocol, puContext.protocol);
+        assertEquals(0, plain.invocationCount);
+        assertEquals(0, decisive.invocationCount);
+        assertEquals(0, confirming.invocationCount);
+        assertEquals(1, decisiveProtocol.getDetectionCount());
+        assertEquals(1, decisiveProtocol.getSignatureDetectionCount());
+
+        // incomplete decisive signature, mismatched non-decisive signature
+        ctx = createContext(1);
+        puContext = new PUContext(puFilter);
+        puFilter.findProtocol(puContext, ctx);
+        assertNull(puContext.protocol);
+        assertFalse(puContext.noProtocolsFound());
+        assertEquals(1, plain.invocationCount);
+        assertEquals(0, decisive.invocationCount);
+        assertEquals(0, confirming.invocationCount);
+        
+        ctx = createContext(1, 4);
+        puFilter.findProtocol(puContext, ctx);
+        assertSame(decisiveProtocol, puContext.protocol);
+        assertEquals(1, plain.invocationCount);
+        assertEquals(2, decisiveProtocol.getDetectionCount());
+        
+        // non-decisive signature - the finder confirms the protocol
+        ctx = createContext(3, 100);
+        puContext = new PUContext(puFilter);
+        puFilter.findProtocol(puContext, ctx);
+        assertSame(confirmingProtocol, puContext.protocol);
+        assertEquals(2, plain.invocationCount);
+        assertEquals(0, decisive.invocationCount);
+        assertEquals(1, confirming.invocationCount);
+        assertEquals(1, confirmingProtocol.getDetectionCount());
+        assertEquals(0, confirmingProtocol.getSignatureDetectionCount());
+        
+        // no signature matches
+        ctx = createContext(5, 100);
+        puContext = new PUContext(puFilter);
+        puFilter.findProtocol(puContext, ctx);
+        assertNull(puContext.protocol);
+        assertEquals(3, plain.invocationCount);
+        assertEquals(0, decisive.invocationCount);
+        assertEquals(1, confirming.invocationCount);
+    }
+
+
     // --------------------------------------------------------- Private Methods
 
     private PUProtocol createProtocol(final PUFilter puFilter, final String name,
@@ -400,6 +472,17 @@ public class BasicPUTest {
         return new PUProtocol(new SimpleProtocolFinder(name), chain);
     }
 
+    private static FilterChainContext createContext(final int... bytes) {
+        final byte[] array = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            array[i] = (byte) bytes[i];
+        }
+        
+        final FilterChainContext ctx = new FilterChainContext();
+        ctx.setMessage(Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER, array));
+        return ctx;
+    }
+    
     private Connection openConnection(TCPNIOTransport transport,
             final FutureImpl<String> resultFuture)
             throws TimeoutException, IOException, ExecutionException, InterruptedException {
@@ -501,4 +584,32 @@ public class BasicPUTest {
 
     }
 
+    private static final class TestSignatureFinder extends TestFinder
+            implements SignatureProtocolFinder {
+        private final boolean isDecisive;
+        private final byte[][] signatures;
+
+        public TestSignatureFinder(final boolean isDecisive,
+                final byte[]... signatures) {
+            this.isDecisive = isDecisive;
+            this.signatures = signatures;
+        }
+        
+        @Override
+        public Result find(PUContext puContext, FilterChainContext ctx) {
+            invocationCount++;
+            return Result.FOUND;
+        }
+
+        @Override
+        public byte[][] getSignatures() {
+            return signatures;
+        }
+
+        @Override
+        public boolean isSignatureDecisive() {
+            return isDecisive;
+        }
+    }
+
 }
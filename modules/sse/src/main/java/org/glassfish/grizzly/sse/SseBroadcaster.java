@@ -0,0 +1,485 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.sse;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.WriteHandler;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
+
+/**
+ * Broadcasts {@link SseEvent}s of a topic to all its subscribers.
+ * <p>
+ * Each event is serialized once into a read-only {@link Buffer}, which is shared by all the subscribers. The event
+ * is written to a subscriber only if its output can accept it without queueing, otherwise the subscriber is handled
+ * according to the {@link SlowSubscriberPolicy}. The most recent events are kept in a bounded history, which is used
+ * to resume the stream of a client reconnecting with <tt>Last-Event-ID</tt>, and to let slow subscribers catch up.
+ * <p>
+ * Idle subscribers get a heartbeat comment, so intermediaries don't close the connection. A single periodic task per
+ * broadcaster serves all its subscribers.
+ *
+ * <pre><code>
+ * final SseBroadcaster broadcaster = new SseBroadcaster("prices");
+ *
+ * server.getServerConfiguration().addHttpHandler(new HttpHandler() {
+ *     public void service(Request request, Response response) throws Exception {
+ *         broadcaster.subscribe(request, response);
+ *     }
+ * }, "/prices");
+ *
+ * broadcaster.broadcast(SseEvent.builder().id("1").data("{\"EUR\": 1.17}").build());
+ * </code></pre>
+ *
+ * @since 2.4.3
+ */
+public class SseBroadcaster {
+    private static final Logger LOGGER = Grizzly.logger(SseBroadcaster.class);
+
+    /**
+     * The default number of events kept in the history.
+     */
+    public static final int DEFAULT_HISTORY_SIZE = 256;
+
+    /**
+     * The default heartbeat interval in milliseconds.
+     */
+    public static final long DEFAULT_HEARTBEAT_INTERVAL_MILLIS = 15000;
+
+    private static final byte[] HEARTBEAT_BYTES = ":\n\n".getBytes(Charset.forName("ASCII"));
+
+    private static volatile ScheduledExecutorService sharedScheduler;
+
+    private final String topic;
+    private final ScheduledExecutorService scheduler;
+    private final MemoryManager memoryManager = MemoryManager.DEFAULT_MEMORY_MANAGER;
+    private final Buffer heartbeatBuffer;
+
+    private final Set<SseEmitter> subscribers =
+            Collections.newSetFromMap(new ConcurrentHashMap<SseEmitter, Boolean>());
+    private final AtomicLong droppedSubscribersCount = new AtomicLong();
+
+    private volatile SlowSubscriberPolicy slowSubscriberPolicy = SlowSubscriberPolicy.CATCH_UP;
+    private volatile long heartbeatIntervalNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_HEARTBEAT_INTERVAL_MILLIS);
+
+    /**
+     * Guards the history, event order and the heartbeat task.
+     */
+    private final Object lock = new Object();
+    private SseEventRing history = new SseEventRing(DEFAULT_HISTORY_SIZE);
+    private ScheduledFuture<?> heartbeatFuture;
+    private boolean isClosed;
+
+    /**
+     * Create the broadcaster, which sends heartbeats using the scheduler shared by all the broadcasters.
+     *
+     * @param topic the topic name
+     */
+    public SseBroadcaster(final String topic) {
+        this(topic, null);
+    }
+
+    /**
+     * Create the broadcaster.
+     *
+     * @param topic the topic name
+     * @param scheduler the {@link ScheduledExecutorService} used to send heartbeats, if <tt>null</tt> - the
+     *                  scheduler shared by all the broadcasters is used
+     */
+    public SseBroadcaster(final String topic,
+            final ScheduledExecutorService scheduler) {
+        this.topic = topic;
+        this.scheduler = scheduler;
+        this.heartbeatBuffer = Buffers.wrap(memoryManager, HEARTBEAT_BYTES)
+                .asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the topic name
+     */
+    public String getTopic() {
+        return topic;
+    }
+
+    /**
+     * @return the number of active subscribers
+     */
+    public int getSubscribersCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * @return the number of subscribers closed, because they couldn't keep up with the events
+     */
+    public long getDroppedSubscribersCount() {
+        return droppedSubscribersCount.get();
+    }
+
+    /**
+     * @return the {@link SlowSubscriberPolicy}
+     */
+    public SlowSubscriberPolicy getSlowSubscriberPolicy() {
+        return slowSubscriberPolicy;
+    }
+
+    /**
+     * Set the {@link SlowSubscriberPolicy}, {@link SlowSubscriberPolicy#CATCH_UP} by default.
+     *
+     * @param slowSubscriberPolicy the {@link SlowSubscriberPolicy}
+     * @return this
+     */
+    public SseBroadcaster setSlowSubscriberPolicy(
+            final SlowSubscriberPolicy slowSubscriberPolicy) {
+        if (slowSubscriberPolicy == null) {
+            throw new IllegalArgumentException("slowSubscriberPolicy can't be null");
+        }
+        this.slowSubscriberPolicy = slowSubscriberPolicy;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of events kept in the history
+     */
+    public int getHistorySize() {
+        synchronized (lock) {
+            return history.capacity();
+        }
+    }
+
+    /**
+     * Set the maximum number of events kept in the history, {@value #DEFAULT_HISTORY_SIZE} by default. Changing the
+     * size discards the current history.
+     *
+     * @param historySize the maximum number of events kept in the history
+     * @return this
+     */
+    public SseBroadcaster setHistorySize(final int historySize) {
+        if (historySize < 0) {
+            throw new IllegalArgumentException("historySize can't be negative");
+        }
+
+        synchronized (lock) {
+            // keep the sequence numbers growing, so subscribers don't replay old events
+            history = new SseEventRing(historySize, history.lastSequence() + 1);
+        }
+        return this;
+    }
+
+    /**
+     * @param timeUnit the {@link TimeUnit}
+     * @return the heartbeat interval
+     */
+    public long getHeartbeatInterval(final TimeUnit timeUnit) {
+        return timeUnit.convert(heartbeatIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Set the interval, after which an idle subscriber gets a heartbeat comment,
+     * {@value #DEFAULT_HEARTBEAT_INTERVAL_MILLIS} milliseconds by default. A non-positive interval disables
+     * heartbeats.
+     *
+     * @param interval the heartbeat interval
+     * @param timeUnit the {@link TimeUnit}
+     * @return this
+     */
+    public SseBroadcaster setHeartbeatInterval(final long interval,
+            final TimeUnit timeUnit) {
+        synchronized (lock) {
+            heartbeatIntervalNanos = timeUnit.toNanos(interval);
+            if (heartbeatFuture != null) {
+                heartbeatFuture.cancel(false);
+                heartbeatFuture = null;
+                scheduleHeartbeat();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Subscribe the client to the topic. The {@link Response} is suspended, the events sent after the
+     * <tt>Last-Event-ID</tt> are replayed if they are still in the history.
+     *
+     * @param request the {@link Request}
+     * @param response the {@link Response}
+     * @return the subscriber's {@link SseEmitter}
+     * @throws IOException if the response headers couldn't be sent
+     * @throws IllegalStateException if the broadcaster has been closed
+     */
+    public SseEmitter subscribe(final Request request, final Response response)
+            throws IOException {
+        synchronized (lock) {
+            if (isClosed) {
+                throw new IllegalStateException("The broadcaster is closed");
+            }
+        }
+
+        final SseEmitter emitter = new SseEmitter(request, response, this);
+
+        synchronized (lock) {
+            if (isClosed) {
+                emitter.close();
+                return emitter;
+            }
+
+            final String lastEventId = emitter.getLastEventId();
+            final long resumeSequence = lastEventId != null
+                    ? history.find(lastEventId)
+                    : -1;
+
+            emitter.lastSequence = resumeSequence != -1
+                    ? resumeSequence
+                    : history.lastSequence();
+            subscribers.add(emitter);
+
+            if (!emitter.isOpen()) { // closed concurrently
+                subscribers.remove(emitter);
+                return emitter;
+            }
+
+            catchUp(emitter);
+            scheduleHeartbeat();
+        }
+
+        return emitter;
+    }
+
+    /**
+     * Broadcast the event to all the subscribers. The events are delivered in the order this method is called.
+     *
+     * @param event the {@link SseEvent}
+     */
+    public void broadcast(final SseEvent event) {
+        final Buffer buffer = event.encode(memoryManager);
+
+        synchronized (lock) {
+            if (isClosed) {
+                return;
+            }
+
+            final long sequence = history.add(event.getId(), buffer);
+            for (SseEmitter emitter : subscribers) {
+                if (emitter.isLagging) {
+                    continue;
+                }
+
+                try {
+                    if (emitter.tryWrite(buffer)) {
+                        emitter.lastSequence = sequence;
+                        continue;
+                    }
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINEST, "Failed to send the event", e);
+                    emitter.close();
+                    continue;
+                }
+
+                onSlowSubscriber(emitter);
+            }
+        }
+    }
+
+    /**
+     * Close the event streams of all the subscribers and stop sending heartbeats.
+     */
+    public void close() {
+        synchronized (lock) {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+
+            if (heartbeatFuture != null) {
+                heartbeatFuture.cancel(false);
+                heartbeatFuture = null;
+            }
+        }
+
+        for (SseEmitter emitter : subscribers) {
+            emitter.close();
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * Unsubscribe the closed {@link SseEmitter}.
+     */
+    void remove(final SseEmitter emitter) {
+        subscribers.remove(emitter);
+    }
+
+    /**
+     * Write the events the subscriber has missed. Must be called holding the lock.
+     */
+    private void catchUp(final SseEmitter emitter) {
+        emitter.isLagging = false;
+
+        for (long seq = emitter.lastSequence + 1; seq <= history.lastSequence(); seq++) {
+            final Buffer buffer = history.get(seq);
+            if (buffer == null) {
+                // the missed event is not in the history anymore
+                droppedSubscribersCount.incrementAndGet();
+                emitter.close();
+                return;
+            }
+
+            try {
+                if (!emitter.tryWrite(buffer)) {
+                    onSlowSubscriber(emitter);
+                    return;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINEST, "Failed to send the event", e);
+                emitter.close();
+                return;
+            }
+
+            emitter.lastSequence = seq;
+        }
+    }
+
+    /**
+     * Handle the subscriber, which can't accept more events. Must be called holding the lock.
+     */
+    private void onSlowSubscriber(final SseEmitter emitter) {
+        if (slowSubscriberPolicy == SlowSubscriberPolicy.DROP) {
+            droppedSubscribersCount.incrementAndGet();
+            emitter.close();
+            return;
+        }
+
+        emitter.isLagging = true;
+        emitter.notifyCanWrite(new WriteHandler() {
+
+            @Override
+            public void onWritePossible() throws Exception {
+                synchronized (lock) {
+                    if (emitter.isOpen()) {
+                        catchUp(emitter);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(final Throwable t) {
+                emitter.close();
+            }
+        });
+    }
+
+    /**
+     * Schedule the heartbeat task, if it's not scheduled yet. Must be called holding the lock.
+     */
+    private void scheduleHeartbeat() {
+        final long intervalNanos = heartbeatIntervalNanos;
+        if (heartbeatFuture != null || intervalNanos <= 0) {
+            return;
+        }
+
+        final ScheduledExecutorService s = scheduler != null
+                ? scheduler
+                : getSharedScheduler();
+        heartbeatFuture = s.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                sendHeartbeats(intervalNanos);
+            }
+        }, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void sendHeartbeats(final long intervalNanos) {
+        final long now = System.nanoTime();
+        for (SseEmitter emitter : subscribers) {
+            if (now - emitter.getLastWriteNanos() < intervalNanos) {
+                continue;
+            }
+
+            try {
+                // lagging subscribers are not writable, so they're skipped
+                emitter.tryWrite(heartbeatBuffer);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINEST, "Failed to send the heartbeat", e);
+                emitter.close();
+            }
+        }
+    }
+
+    private static ScheduledExecutorService getSharedScheduler() {
+        if (sharedScheduler == null) {
+            synchronized (SseBroadcaster.class) {
+                if (sharedScheduler == null) {
+                    sharedScheduler = Executors.newSingleThreadScheduledExecutor(
+                            new ThreadFactory() {
+                                @Override
+                                public Thread newThread(final Runnable r) {
+                                    final Thread t = new Thread(r, "Grizzly-SSE-Heartbeat");
+                                    t.setDaemon(true);
+                                    return t;
+                                }
+                            });
+                }
+            }
+        }
+        return sharedScheduler;
+    }
+
+    @Override
+    public String toString() {
+        return "SseBroadcaster{topic=" + topic
+                + ", subscribers=" + subscribers.size() + '}';
+    }
+}
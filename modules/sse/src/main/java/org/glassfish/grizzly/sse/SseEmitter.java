@@ -0,0 +1,264 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.sse;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.WriteHandler;
+import org.glassfish.grizzly.http.io.OutputBuffer;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.memory.MemoryManager;
+
+/**
+ * The <tt>text/event-stream</tt> {@link Response}. The {@link Response} is suspended, until either the emitter is
+ * {@link #close() closed} or the client disconnects.
+ * <p>
+ * The emitter is thread-safe, the events might be sent by any thread.
+ *
+ * <pre><code>
+ * public void service(Request request, Response response) throws Exception {
+ *     final SseEmitter emitter = SseEmitter.create(request, response);
+ *     ...
+ *     emitter.send(SseEvent.builder().data("hello").build());
+ * }
+ * </code></pre>
+ *
+ * @see SseBroadcaster
+ * @since 2.4.3
+ */
+public class SseEmitter {
+    private static final Logger LOGGER = Grizzly.logger(SseEmitter.class);
+
+    /**
+     * The <tt>text/event-stream</tt> content type.
+     */
+    public static final String CONTENT_TYPE = "text/event-stream";
+
+    /**
+     * The request header, which carries the id of the last event received by a reconnecting client.
+     */
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    private final Response response;
+    private final OutputBuffer outputBuffer;
+    private final MemoryManager memoryManager;
+    private final String lastEventId;
+    private final SseBroadcaster broadcaster;
+
+    private volatile boolean isOpen = true;
+    private volatile long lastWriteNanos;
+
+    // the following fields are guarded by the broadcaster lock
+    long lastSequence = -1;
+    boolean isLagging;
+
+    /**
+     * Create the {@link SseEmitter}, which is not bound to any {@link SseBroadcaster}.
+     *
+     * @param request the {@link Request}
+     * @param response the {@link Response}
+     * @return the {@link SseEmitter}
+     * @throws IOException if the response headers couldn't be sent
+     */
+    public static SseEmitter create(final Request request, final Response response)
+            throws IOException {
+        return new SseEmitter(request, response, null);
+    }
+
+    SseEmitter(final Request request, final Response response,
+            final SseBroadcaster broadcaster) throws IOException {
+        this.response = response;
+        this.outputBuffer = response.getOutputBuffer();
+        this.memoryManager = request.getContext().getConnection().getMemoryManager();
+        this.lastEventId = request.getHeader(LAST_EVENT_ID_HEADER);
+        this.broadcaster = broadcaster;
+
+        response.setContentType(CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(Header.CacheControl, "no-cache");
+        response.suspend(-1, TimeUnit.MILLISECONDS, new SuspendCompletionHandler());
+
+        // commit the headers, so the client knows the stream is established
+        outputBuffer.flush();
+        lastWriteNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the <tt>Last-Event-ID</tt> sent by the reconnecting client, or <tt>null</tt>
+     */
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    /**
+     * @return the suspended {@link Response}
+     */
+    public Response getResponse() {
+        return response;
+    }
+
+    /**
+     * @return <tt>true</tt>, if neither the emitter has been closed, nor the client disconnected
+     */
+    public boolean isOpen() {
+        return isOpen;
+    }
+
+    /**
+     * Send the event. If the client doesn't read fast enough, the method blocks the same way
+     * {@link OutputBuffer#flush()} does.
+     *
+     * @param event the {@link SseEvent}
+     * @throws IOException if the event couldn't be sent
+     */
+    public void send(final SseEvent event) throws IOException {
+        write(event.encode(memoryManager));
+    }
+
+    /**
+     * Close the event stream and resume the {@link Response}.
+     */
+    public void close() {
+        if (!markClosed()) {
+            return;
+        }
+
+        synchronized (this) {
+            try {
+                response.resume();
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Failed to resume the response", e);
+            }
+        }
+    }
+
+    /**
+     * Write the (possibly shared) serialized event(s).
+     */
+    synchronized void write(final Buffer buffer) throws IOException {
+        if (!isOpen) {
+            throw new IOException("The event stream is closed");
+        }
+
+        outputBuffer.writeBuffer(buffer.duplicate());
+        outputBuffer.flush();
+        lastWriteNanos = System.nanoTime();
+    }
+
+    /**
+     * Write the (possibly shared) serialized event(s), unless it would require queueing.
+     *
+     * @return <tt>false</tt>, if the output can't accept more data without blocking
+     */
+    synchronized boolean tryWrite(final Buffer buffer) throws IOException {
+        if (!isOpen) {
+            throw new IOException("The event stream is closed");
+        }
+
+        if (!outputBuffer.canWrite()) {
+            return false;
+        }
+
+        outputBuffer.writeBuffer(buffer.duplicate());
+        outputBuffer.flush();
+        lastWriteNanos = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * Register the {@link WriteHandler}, which is notified once the output is able to accept
+     * more data.
+     */
+    synchronized void notifyCanWrite(final WriteHandler writeHandler) {
+        outputBuffer.notifyCanWrite(writeHandler);
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} of the last write
+     */
+    long getLastWriteNanos() {
+        return lastWriteNanos;
+    }
+
+    private boolean markClosed() {
+        synchronized (this) {
+            if (!isOpen) {
+                return false;
+            }
+            isOpen = false;
+        }
+
+        if (broadcaster != null) {
+            broadcaster.remove(this);
+        }
+
+        return true;
+    }
+
+    /**
+     * Tracks the suspended {@link Response} termination.
+     */
+    private class SuspendCompletionHandler extends EmptyCompletionHandler<Response> {
+
+        @Override
+        public void cancelled() {
+            markClosed();
+        }
+
+        @Override
+        public void failed(final Throwable throwable) {
+            markClosed();
+        }
+
+        @Override
+        public void completed(final Response result) {
+            markClosed();
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.sse;
+
+import java.nio.charset.Charset;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
+
+/**
+ * Immutable Server-Sent Event, as defined by the
+ * <a href="https://html.spec.whatwg.org/multipage/server-sent-events.html">EventSource</a> specification.
+ *
+ * <pre><code>
+ * SseEvent event = SseEvent.builder().id("42").name("price").data("{\"EUR\": 1.17}").build();
+ * </code></pre>
+ *
+ * @since 2.4.3
+ */
+public final class SseEvent {
+    private static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
+
+    private final String id;
+    private final String name;
+    private final String data;
+    private final String comment;
+    private final long retryMillis;
+
+    private SseEvent(final Builder builder) {
+        this.id = builder.id;
+        this.name = builder.name;
+        this.data = builder.data;
+        this.comment = builder.comment;
+        this.retryMillis = builder.retryMillis;
+    }
+
+    /**
+     * @return a new {@link Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the event id, which is sent back by the client as <tt>Last-Event-ID</tt> on reconnect,
+     *         or <tt>null</tt> if not set
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the event name, or <tt>null</tt> for the default <tt>message</tt> event
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the event data, or <tt>null</tt> if not set
+     */
+    public String getData() {
+        return data;
+    }
+
+    /**
+     * @return the comment, or <tt>null</tt> if not set
+     */
+    public String getComment() {
+        return comment;
+    }
+
+    /**
+     * @return the reconnection time in milliseconds, or <tt>-1</tt> if not set
+     */
+    public long getRetryMillis() {
+        return retryMillis;
+    }
+
+    /**
+     * Serializes the event into a read-only {@link Buffer} in the <tt>text/event-stream</tt> format. The returned
+     * {@link Buffer} might be shared amongst connections, each of them writing its own
+     * {@link Buffer#duplicate() duplicate}.
+     *
+     * @param memoryManager the {@link MemoryManager} used to wrap the serialized event
+     * @return the serialized event
+     */
+    public Buffer encode(final MemoryManager memoryManager) {
+        final StringBuilder sb = new StringBuilder(
+                (data != null ? data.length() : 0) + 64);
+        if (comment != null) {
+            appendField(sb, "", comment);
+        }
+        if (id != null) {
+            sb.append("id: ").append(id).append('\n');
+        }
+        if (name != null) {
+            sb.append("event: ").append(name).append('\n');
+        }
+        if (retryMillis >= 0) {
+            sb.append("retry: ").append(retryMillis).append('\n');
+        }
+        if (data != null) {
+            appendField(sb, "data", data);
+        }
+        sb.append('\n');
+
+        return Buffers.wrap(memoryManager, sb.toString().getBytes(UTF8_CHARSET))
+                .asReadOnlyBuffer();
+    }
+
+    /**
+     * Splits the multi-line value into a field per line.
+     */
+    private static void appendField(final StringBuilder sb, final String field,
+            final String value) {
+        int start = 0;
+        final int len = value.length();
+        for (int i = 0; i <= len; i++) {
+            final char c = i < len ? value.charAt(i) : '\n';
+            if (c == '\r' || c == '\n') {
+                sb.append(field).append(": ").append(value, start, i).append('\n');
+                if (c == '\r' && i + 1 < len && value.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                start = i + 1;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(128);
+        sb.append("SseEvent{id=").append(id)
+                .append(", name=").append(name)
+                .append(", data=").append(data)
+                .append(", comment=").append(comment)
+                .append(", retryMillis=").append(retryMillis)
+                .append('}');
+        return sb.toString();
+    }
+
+    /**
+     * {@link SseEvent} builder.
+     */
+    public static final class Builder {
+        private String id;
+        private String name;
+        private String data;
+        private String comment;
+        private long retryMillis = -1;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the event id.
+         *
+         * @param id the event id, must not contain line breaks
+         * @return this
+         */
+        public Builder id(final String id) {
+            this.id = checkSingleLine("id", id);
+            return this;
+        }
+
+        /**
+         * Set the event name.
+         *
+         * @param name the event name, must not contain line breaks
+         * @return this
+         */
+        public Builder name(final String name) {
+            this.name = checkSingleLine("name", name);
+            return this;
+        }
+
+        /**
+         * Set the event data. Multi-line data is sent as several <tt>data</tt> fields.
+         *
+         * @param data the event data
+         * @return this
+         */
+        public Builder data(final String data) {
+            this.data = data;
+            return this;
+        }
+
+        /**
+         * Set the comment, which is ignored by clients.
+         *
+         * @param comment the comment
+         * @return this
+         */
+        public Builder comment(final String comment) {
+            this.comment = comment;
+            return this;
+        }
+
+        /**
+         * Set the reconnection time.
+         *
+         * @param retryMillis the reconnection time in milliseconds
+         * @return this
+         */
+        public Builder retry(final long retryMillis) {
+            if (retryMillis < 0) {
+                throw new IllegalArgumentException("retryMillis can't be negative");
+            }
+            this.retryMillis = retryMillis;
+            return this;
+        }
+
+        /**
+         * @return the {@link SseEvent}
+         */
+        public SseEvent build() {
+            if (id == null && name == null && data == null
+                    && comment == null && retryMillis < 0) {
+                throw new IllegalStateException("Empty event");
+            }
+            return new SseEvent(this);
+        }
+
+        private static String checkSingleLine(final String field, final String value) {
+            if (value != null
+                    && (value.indexOf('\n') != -1 || value.indexOf('\r') != -1)) {
+                throw new IllegalArgumentException(field + " can't contain line breaks");
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.sse;
+
+import org.glassfish.grizzly.Buffer;
+
+/**
+ * Bounded history of the serialized events broadcast by {@link SseBroadcaster}. Each event gets a sequence number,
+ * so subscribers can resume after the last event they've received.
+ * <p>
+ * The class is not thread-safe.
+ *
+ * @since 2.4.3
+ */
+final class SseEventRing {
+    private final String[] ids;
+    private final Buffer[] buffers;
+    private final long startSequence;
+    private long nextSequence;
+
+    SseEventRing(final int capacity) {
+        this(capacity, 0);
+    }
+
+    /**
+     * @param capacity the history capacity
+     * @param startSequence the sequence number of the first event
+     */
+    SseEventRing(final int capacity, final long startSequence) {
+        ids = new String[capacity];
+        buffers = new Buffer[capacity];
+        this.startSequence = startSequence;
+        this.nextSequence = startSequence;
+    }
+
+    /**
+     * Add the serialized event to the history, evicting the oldest one if the history is full.
+     *
+     * @return the event sequence number
+     */
+    long add(final String id, final Buffer buffer) {
+        final long sequence = nextSequence++;
+        if (buffers.length > 0) {
+            final int idx = (int) (sequence % buffers.length);
+            ids[idx] = id;
+            buffers[idx] = buffer;
+        }
+        return sequence;
+    }
+
+    /**
+     * @return the sequence number of the most recent event, or <tt>-1</tt> if no events were added
+     */
+    long lastSequence() {
+        return nextSequence - 1;
+    }
+
+    /**
+     * @return the sequence number of the oldest event in the history
+     */
+    long firstSequence() {
+        return Math.max(startSequence, nextSequence - buffers.length);
+    }
+
+    /**
+     * @return the sequence number of the most recent event with the given id, or <tt>-1</tt> if there is no such
+     *         event in the history
+     */
+    long find(final String id) {
+        for (long seq = lastSequence(); seq >= firstSequence(); seq--) {
+            if (id.equals(ids[(int) (seq % ids.length)])) {
+                return seq;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the serialized event with the given sequence number, or <tt>null</tt> if it has been evicted
+     */
+    Buffer get(final long sequence) {
+        if (sequence < firstSequence() || sequence > lastSequence()) {
+            return null;
+        }
+        return buffers[(int) (sequence % buffers.length)];
+    }
+
+    /**
+     * @return the history capacity
+     */
+    int capacity() {
+        return buffers.length;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.sse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link SseBroadcaster}.
+ */
+public class SseBroadcasterTest {
+    private static final int PORT = 18913;
+
+    private HttpServer httpServer;
+    private SseBroadcaster broadcaster;
+    private final List<Socket> clients = new ArrayList<Socket>();
+
+    @Before
+    public void before() throws Exception {
+        broadcaster = new SseBroadcaster("test");
+
+        httpServer = HttpServer.createSimpleServer(null, PORT);
+        httpServer.getServerConfiguration().addHttpHandler(new HttpHandler() {
+            @Override
+            public void service(Request request, Response response) throws Exception {
+                broadcaster.subscribe(request, response);
+            }
+        }, "/events");
+        httpServer.start();
+    }
+
+    @After
+    public void after() throws Exception {
+        for (Socket client : clients) {
+            client.close();
+        }
+        broadcaster.close();
+        httpServer.shutdownNow();
+    }
+
+    @Test
+    public void testEncode() throws Exception {
+        final Buffer buffer = SseEvent.builder()
+                .id("7").name("update").retry(1000)
+                .comment("note").data("line1\r\nline2\nline3")
+                .build().encode(MemoryManager.DEFAULT_MEMORY_MANAGER);
+
+        assertTrue(buffer.isReadOnly());
+        assertEquals(": note\nid: 7\nevent: update\nretry: 1000\n"
+                + "data: line1\ndata: line2\ndata: line3\n\n",
+                buffer.toStringContent());
+    }
+
+    @Test
+    public void testBroadcast() throws Exception {
+        final BufferedReader client1 = subscribe(null);
+        final BufferedReader client2 = subscribe(null);
+        waitForSubscribers(2);
+
+        broadcaster.broadcast(SseEvent.builder().id("1").data("hello").build());
+        broadcaster.broadcast(SseEvent.builder().id("2").data("world").build());
+
+        assertEquals("id: 1", readUntil(client1, "id: 1"));
+        assertEquals("data: hello", readUntil(client1, "data: "));
+        assertEquals("data: world", readUntil(client1, "data: "));
+        assertEquals("data: hello", readUntil(client2, "data: "));
+        assertEquals("data: world", readUntil(client2, "data: "));
+    }
+
+    @Test
+    public void testLastEventIdResume() throws Exception {
+        broadcaster.broadcast(SseEvent.builder().id("1").data("one").build());
+        broadcaster.broadcast(SseEvent.builder().id("2").data("two").build());
+        broadcaster.broadcast(SseEvent.builder().id("3").data("three").build());
+
+        final BufferedReader client = subscribe("1");
+        assertEquals("data: two", readUntil(client, "data: "));
+        assertEquals("data: three", readUntil(client, "data: "));
+
+        broadcaster.broadcast(SseEvent.builder().id("4").data("four").build());
+        assertEquals("data: four", readUntil(client, "data: "));
+    }
+
+    @Test
+    public void testHeartbeat() throws Exception {
+        broadcaster.setHeartbeatInterval(100, TimeUnit.MILLISECONDS);
+        final BufferedReader client = subscribe(null);
+
+        assertEquals(":", readUntil(client, ":"));
+    }
+
+    @Test
+    public void testSlowSubscriberDropped() throws Exception {
+        broadcaster.setSlowSubscriberPolicy(SlowSubscriberPolicy.DROP);
+        // the client doesn't read the events
+        subscribe(null);
+        waitForSubscribers(1);
+
+        final StringBuilder sb = new StringBuilder(64 * 1024);
+        while (sb.length() < 64 * 1024) {
+            sb.append("0123456789abcdef");
+        }
+        final SseEvent event = SseEvent.builder().data(sb.toString()).build();
+
+        for (int i = 0; i < 1000 && broadcaster.getSubscribersCount() > 0; i++) {
+            broadcaster.broadcast(event);
+        }
+
+        assertEquals(0, broadcaster.getSubscribersCount());
+        assertEquals(1, broadcaster.getDroppedSubscribersCount());
+    }
+
+    @Test
+    public void testSlowSubscriberCatchesUp() throws Exception {
+        final int eventsCount = 2000;
+        broadcaster.setHistorySize(eventsCount);
+        // the client doesn't read the events until all of them are broadcast
+        final BufferedReader client = subscribe(null);
+        waitForSubscribers(1);
+
+        final StringBuilder sb = new StringBuilder(4 * 1024);
+        while (sb.length() < 4 * 1024) {
+            sb.append("0123456789abcdef");
+        }
+        final String payload = sb.toString();
+
+        for (int i = 0; i < eventsCount; i++) {
+            broadcaster.broadcast(SseEvent.builder().id(String.valueOf(i)).data(payload).build());
+        }
+
+        for (int i = 0; i < eventsCount; i++) {
+            assertEquals("id: " + i, readUntil(client, "id: "));
+        }
+        assertEquals(1, broadcaster.getSubscribersCount());
+        assertEquals(0, broadcaster.getDroppedSubscribersCount());
+    }
+
+    private BufferedReader subscribe(final String lastEventId) throws IOException {
+        final Socket socket = new Socket("localhost", PORT);
+        socket.setSoTimeout(10000);
+        clients.add(socket);
+
+        final OutputStream os = socket.getOutputStream();
+        os.write(("GET /events HTTP/1.1\r\n"
+                + "Host: localhost:" + PORT + "\r\n"
+                + "Accept: " + SseEmitter.CONTENT_TYPE + "\r\n"
+                + (lastEventId != null
+                        ? SseEmitter.LAST_EVENT_ID_HEADER + ": " + lastEventId + "\r\n"
+                        : "")
+                + "\r\n").getBytes("ASCII"));
+        os.flush();
+
+        final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        assertTrue(readUntil(reader, "HTTP/1.1").startsWith("HTTP/1.1 200"));
+        assertTrue(readUntil(reader, "Content-Type").contains(SseEmitter.CONTENT_TYPE));
+        return reader;
+    }
+
+    private static String readUntil(final BufferedReader reader, final String prefix)
+            throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(prefix)) {
+                return line;
+            }
+        }
+        fail("Stream closed before " + prefix);
+        return null;
+    }
+
+    private void waitForSubscribers(final int count) throws InterruptedException {
+        for (int i = 0; i < 100 && broadcaster.getSubscribersCount() < count; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(count, broadcaster.getSubscribersCount());
+    }
+}
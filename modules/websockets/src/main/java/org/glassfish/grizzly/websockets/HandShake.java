@@ -76,6 +76,7 @@ public abstract class HandShake {
     //private final Map<String, String[]> queryParams = new TreeMap<String, String[]>();
     private List<String> subProtocol = new ArrayList<String>();
     private List<Extension> extensions = new ArrayList<Extension>(); // client extensions
+    private PerMessageDeflateCodec perMessageDeflate; // negotiated permessage-deflate
 
     public HandShake(URI url) {
         builder = HttpRequestPacket.builder()
@@ -193,6 +194,17 @@ public abstract class HandShake {
         this.extensions = extensions;
     }
 
+    /**
+     * @return the <tt>permessage-deflate</tt> parameters negotiated by
+     *  {@link #respond(FilterChainContext, WebSocketApplication, HttpResponsePacket)},
+     *  or <tt>null</tt> if the extension is not used.
+     *
+     * @since 2.4.3
+     */
+    public PerMessageDeflateCodec getPerMessageDeflate() {
+        return perMessageDeflate;
+    }
+
     protected final String joinExtensions(List<Extension> extensions) {
         StringBuilder sb = new StringBuilder();
         for (Extension e : extensions) {
@@ -340,16 +352,29 @@ public abstract class HandShake {
             response.setHeader(Constants.SEC_WS_PROTOCOL_HEADER,
                 join(application.getSupportedProtocols(getSubProtocol())));
         }
-        if (!application.getSupportedExtensions().isEmpty() && !getExtensions().isEmpty()) {
+        List<Extension> requested = getExtensions();
+        final List<Extension> negotiated = new ArrayList<Extension>(2);
+        final PerMessageDeflate deflate = application.getPerMessageDeflate();
+        if (deflate != null && !requested.isEmpty()) {
+            perMessageDeflate = deflate.negotiate(requested);
+            if (perMessageDeflate != null) {
+                negotiated.add(perMessageDeflate.getResponse());
+            }
+            requested = withoutExtension(requested, PerMessageDeflate.NAME);
+        }
+        if (!application.getSupportedExtensions().isEmpty() && !requested.isEmpty()) {
             List<Extension> intersection =
-                    intersection(getExtensions(),
+                    intersection(requested,
                                  application.getSupportedExtensions());
             if (!intersection.isEmpty()) {
                 application.onExtensionNegotiation(intersection);
-                response.setHeader(Constants.SEC_WS_EXTENSIONS_HEADER,
-                                   joinExtensions(intersection));
+                negotiated.addAll(intersection);
             }
         }
+        if (!negotiated.isEmpty()) {
+            response.setHeader(Constants.SEC_WS_EXTENSIONS_HEADER,
+                               joinExtensions(negotiated));
+        }
 
         ctx.write(HttpContent.builder(response).build());
     }
@@ -366,6 +391,16 @@ public abstract class HandShake {
         }
     }
 
+    private static List<Extension> withoutExtension(List<Extension> extensions, String name) {
+        List<Extension> result = new ArrayList<Extension>(extensions.size());
+        for (Extension e : extensions) {
+            if (!name.equals(e.getName())) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
     protected List<Extension> intersection(List<Extension> requested, List<Extension> supported) {
         List<Extension> intersection = new ArrayList<Extension>(supported.size());
         for (Extension e : requested) {
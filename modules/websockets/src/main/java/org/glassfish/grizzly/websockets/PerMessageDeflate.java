@@ -0,0 +1,411 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.websockets;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Server-side configuration of the <tt>permessage-deflate</tt> extension
+ * (<a href="https://tools.ietf.org/html/rfc7692">RFC 7692</a>).
+ * 
+ * The instance negotiates the extension parameters with the clients and pools
+ * the {@link Deflater}s and {@link Inflater}s used by the negotiated
+ * {@link PerMessageDeflateCodec}s. It is meant to be shared by all the
+ * {@link WebSocket}s of a {@link WebSocketApplication}:
+ * <pre><code>
+ * application.setPerMessageDeflate(new PerMessageDeflate()
+ *         .setCompressionLevel(Deflater.BEST_SPEED)
+ *         .setClientMaxWindowBits(12));
+ * </code></pre>
+ * 
+ * By default the server requests <tt>server_no_context_takeover</tt>, so every
+ * message is compressed independently, which lets the pooled {@link Deflater}s
+ * be shared and a broadcast message be compressed once for all the recipients
+ * (see {@link SharedFrameBroadcaster}).
+ * 
+ * The {@link Deflater} always uses the 32K (15 bits) window, so the client
+ * offers, which require a smaller <tt>server_max_window_bits</tt>, are declined.
+ * 
+ * @since 2.4.3
+ */
+public class PerMessageDeflate {
+    /**
+     * The extension name.
+     */
+    public static final String NAME = "permessage-deflate";
+
+    static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+    static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+    static final String SERVER_MAX_WINDOW_BITS = "server_max_window_bits";
+    static final String CLIENT_MAX_WINDOW_BITS = "client_max_window_bits";
+
+    static final int MIN_WINDOW_BITS = 8;
+    static final int MAX_WINDOW_BITS = 15;
+
+    private volatile int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private volatile boolean serverNoContextTakeover = true;
+    private volatile boolean clientNoContextTakeover;
+    private volatile int clientMaxWindowBits = MAX_WINDOW_BITS;
+    private volatile int minCompressSize = 64;
+    private volatile int maxPoolSize = Runtime.getRuntime().availableProcessors() * 2;
+    private volatile int maxMessageSize = 16 * 1024 * 1024;
+
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<Deflater>();
+    private final AtomicInteger deflatersCount = new AtomicInteger();
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<Inflater>();
+    private final AtomicInteger inflatersCount = new AtomicInteger();
+
+    /**
+     * @return the {@link Deflater} compression level.
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the {@link Deflater} compression level, {@link Deflater#DEFAULT_COMPRESSION}
+     * by default.
+     * 
+     * @param compressionLevel the compression level.
+     * @return this
+     */
+    public PerMessageDeflate setCompressionLevel(final int compressionLevel) {
+        if ((compressionLevel < Deflater.NO_COMPRESSION
+                || compressionLevel > Deflater.BEST_COMPRESSION)
+                && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: "
+                    + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    /**
+     * @return <tt>true</tt> if the server compresses every message
+     *  independently.
+     */
+    public boolean isServerNoContextTakeover() {
+        return serverNoContextTakeover;
+    }
+
+    /**
+     * Sets whether the server compresses every message independently,
+     * <tt>true</tt> by default. If <tt>false</tt>, the server keeps the
+     * compression context between the messages, unless the client requests
+     * <tt>server_no_context_takeover</tt>, which improves the compression ratio
+     * of small similar messages at the price of a {@link Deflater} allocated per
+     * connection.
+     * 
+     * @param serverNoContextTakeover <tt>true</tt> if the server should compress
+     *  every message independently.
+     * @return this
+     */
+    public PerMessageDeflate setServerNoContextTakeover(
+            final boolean serverNoContextTakeover) {
+        this.serverNoContextTakeover = serverNoContextTakeover;
+        return this;
+    }
+
+    /**
+     * @return <tt>true</tt> if the clients are required to compress every
+     *  message independently.
+     */
+    public boolean isClientNoContextTakeover() {
+        return clientNoContextTakeover;
+    }
+
+    /**
+     * Sets whether the clients are required to compress every message
+     * independently, <tt>false</tt> by default. If <tt>true</tt>, the server
+     * doesn't keep an {@link Inflater} per connection.
+     * 
+     * @param clientNoContextTakeover <tt>true</tt> if the clients should compress
+     *  every message independently.
+     * @return this
+     */
+    public PerMessageDeflate setClientNoContextTakeover(
+            final boolean clientNoContextTakeover) {
+        this.clientNoContextTakeover = clientNoContextTakeover;
+        return this;
+    }
+
+    /**
+     * @return the maximum LZ77 window size (base-2 logarithm) the clients may
+     *  use to compress messages.
+     */
+    public int getClientMaxWindowBits() {
+        return clientMaxWindowBits;
+    }
+
+    /**
+     * Sets the maximum LZ77 window size (base-2 logarithm) the clients may use
+     * to compress messages, <tt>15</tt> by default. The limit is applied only to
+     * the clients, which announce <tt>client_max_window_bits</tt> support.
+     * 
+     * @param clientMaxWindowBits the window size in the <tt>[8..15]</tt> range.
+     * @return this
+     */
+    public PerMessageDeflate setClientMaxWindowBits(final int clientMaxWindowBits) {
+        if (clientMaxWindowBits < MIN_WINDOW_BITS
+                || clientMaxWindowBits > MAX_WINDOW_BITS) {
+            throw new IllegalArgumentException("Invalid window bits: "
+                    + clientMaxWindowBits);
+        }
+        this.clientMaxWindowBits = clientMaxWindowBits;
+        return this;
+    }
+
+    /**
+     * @return the minimum message payload size, which is compressed.
+     */
+    public int getMinCompressSize() {
+        return minCompressSize;
+    }
+
+    /**
+     * Sets the minimum message payload size, which is compressed, <tt>64</tt>
+     * bytes by default. Smaller messages are sent uncompressed.
+     * 
+     * @param minCompressSize the minimum message payload size to compress.
+     * @return this
+     */
+    public PerMessageDeflate setMinCompressSize(final int minCompressSize) {
+        this.minCompressSize = minCompressSize;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of idle {@link Deflater}s and {@link Inflater}s
+     *  (each) kept in the pool.
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * Sets the maximum number of idle {@link Deflater}s and {@link Inflater}s
+     * (each) kept in the pool, twice the number of processors by default.
+     * 
+     * @param maxPoolSize the pool size.
+     * @return this
+     */
+    public PerMessageDeflate setMaxPoolSize(final int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+        return this;
+    }
+
+    /**
+     * @return the maximum size of a decompressed incoming message, if not
+     *  positive - the size is not limited.
+     */
+    public int getMaxMessageSize() {
+        return maxMessageSize;
+    }
+
+    /**
+     * Sets the maximum size of a decompressed incoming message, <tt>16M</tt>
+     * by default. If a message inflates to more bytes, the {@link WebSocket}
+     * is closed with the {@link WebSocket#MESSAGE_TOO_BIG} status code.
+     * 
+     * @param maxMessageSize the maximum size of a decompressed message, if not
+     *  positive - the size is not limited.
+     * @return this
+     */
+    public PerMessageDeflate setMaxMessageSize(final int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+        return this;
+    }
+
+    /**
+     * Negotiates the extension parameters according to the client offers.
+     * 
+     * @param offers the extensions requested by the client.
+     * @return the negotiated {@link PerMessageDeflateCodec}, or <tt>null</tt> if
+     *  none of the offers is acceptable.
+     */
+    public PerMessageDeflateCodec negotiate(final List<Extension> offers) {
+        for (Extension offer : offers) {
+            if (NAME.equals(offer.getName())) {
+                final PerMessageDeflateCodec codec = negotiate(offer);
+                if (codec != null) {
+                    return codec;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Negotiates the parameters of a single client offer.
+     * 
+     * @return the negotiated {@link PerMessageDeflateCodec}, or <tt>null</tt> if
+     *  the offer is not acceptable.
+     */
+    protected PerMessageDeflateCodec negotiate(final Extension offer) {
+        boolean serverNoContext = serverNoContextTakeover;
+        boolean clientWindowBitsSupported = false;
+        int clientWindowBits = MAX_WINDOW_BITS;
+
+        final Set<String> names = new HashSet<String>();
+        for (Extension.Parameter parameter : offer.getParameters()) {
+            final String name = parameter.getName();
+            final String value = parameter.getValue();
+            if (!names.add(name)) {
+                return null; // duplicate parameter
+            }
+
+            if (SERVER_NO_CONTEXT_TAKEOVER.equals(name)) {
+                if (value != null) {
+                    return null;
+                }
+                serverNoContext = true;
+            } else if (CLIENT_NO_CONTEXT_TAKEOVER.equals(name)) {
+                if (value != null) {
+                    return null;
+                }
+            } else if (SERVER_MAX_WINDOW_BITS.equals(name)) {
+                final int bits = parseWindowBits(value);
+                if (bits != MAX_WINDOW_BITS) {
+                    // the Deflater window size can't be changed
+                    return null;
+                }
+            } else if (CLIENT_MAX_WINDOW_BITS.equals(name)) {
+                clientWindowBitsSupported = true;
+                if (value != null) {
+                    clientWindowBits = parseWindowBits(value);
+                    if (clientWindowBits == -1) {
+                        return null;
+                    }
+                }
+            } else {
+                return null; // unknown parameter
+            }
+        }
+
+        final boolean clientNoContext = clientNoContextTakeover
+                || names.contains(CLIENT_NO_CONTEXT_TAKEOVER);
+
+        final Extension response = new Extension(NAME);
+        if (serverNoContext) {
+            response.getParameters().add(
+                    new Extension.Parameter(SERVER_NO_CONTEXT_TAKEOVER, null));
+        }
+        if (clientNoContext) {
+            response.getParameters().add(
+                    new Extension.Parameter(CLIENT_NO_CONTEXT_TAKEOVER, null));
+        }
+        if (clientWindowBitsSupported) {
+            final int bits = Math.min(clientWindowBits, clientMaxWindowBits);
+            if (bits < MAX_WINDOW_BITS) {
+                response.getParameters().add(new Extension.Parameter(
+                        CLIENT_MAX_WINDOW_BITS, String.valueOf(bits)));
+            }
+        }
+
+        return new PerMessageDeflateCodec(this, response,
+                serverNoContext, clientNoContext);
+    }
+
+    Deflater takeDeflater() {
+        final Deflater deflater = deflaters.poll();
+        if (deflater != null) {
+            deflatersCount.decrementAndGet();
+            return deflater;
+        }
+
+        return new Deflater(compressionLevel, true);
+    }
+
+    void releaseDeflater(final Deflater deflater) {
+        deflater.reset();
+        if (deflatersCount.incrementAndGet() <= maxPoolSize) {
+            deflaters.offer(deflater);
+        } else {
+            deflatersCount.decrementAndGet();
+            deflater.end();
+        }
+    }
+
+    Inflater takeInflater() {
+        final Inflater inflater = inflaters.poll();
+        if (inflater != null) {
+            inflatersCount.decrementAndGet();
+            return inflater;
+        }
+
+        return new Inflater(true);
+    }
+
+    void releaseInflater(final Inflater inflater) {
+        inflater.reset();
+        if (inflatersCount.incrementAndGet() <= maxPoolSize) {
+            inflaters.offer(inflater);
+        } else {
+            inflatersCount.decrementAndGet();
+            inflater.end();
+        }
+    }
+
+    private static int parseWindowBits(final String value) {
+        if (value == null) {
+            return -1;
+        }
+
+        try {
+            final int bits = Integer.parseInt(value.startsWith("\"")
+                    ? value.substring(1, value.length() - 1)
+                    : value);
+            return bits >= MIN_WINDOW_BITS && bits <= MAX_WINDOW_BITS
+                    ? bits
+                    : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
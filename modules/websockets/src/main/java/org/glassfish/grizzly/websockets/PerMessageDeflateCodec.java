@@ -0,0 +1,300 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.websockets;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The <tt>permessage-deflate</tt> parameters negotiated for a
+ * {@link WebSocket} connection, which compresses the outgoing and decompresses
+ * the incoming messages.
+ * 
+ * If the compression context is taken over between the messages (no
+ * <tt>server_no_context_takeover</tt>) the connection keeps own
+ * {@link Deflater} and the messages have to be sent by one thread at a time,
+ * otherwise the {@link Deflater} is taken from the {@link PerMessageDeflate}
+ * pool for every message.
+ * 
+ * @since 2.4.3
+ */
+public final class PerMessageDeflateCodec {
+    private static final byte[] TAIL = {0x00, 0x00, (byte) 0xff, (byte) 0xff};
+    private static final byte[] EMPTY = new byte[0];
+
+    private final PerMessageDeflate config;
+    private final Extension response;
+    private final boolean serverNoContextTakeover;
+    private final boolean clientNoContextTakeover;
+
+    // the connection's Deflater, if the context is taken over
+    private Deflater deflater;
+    // the connection's Inflater, if the context is taken over,
+    // or the current message Inflater
+    private Inflater inflater;
+    // the decompressed size of the current message
+    private long messageSize;
+    private boolean released;
+
+    PerMessageDeflateCodec(final PerMessageDeflate config,
+            final Extension response,
+            final boolean serverNoContextTakeover,
+            final boolean clientNoContextTakeover) {
+        this.config = config;
+        this.response = response;
+        this.serverNoContextTakeover = serverNoContextTakeover;
+        this.clientNoContextTakeover = clientNoContextTakeover;
+    }
+
+    /**
+     * @return the negotiated extension to be sent to the client.
+     */
+    public Extension getResponse() {
+        return response;
+    }
+
+    /**
+     * @return <tt>true</tt> if the server compresses every message
+     *  independently.
+     */
+    public boolean isServerNoContextTakeover() {
+        return serverNoContextTakeover;
+    }
+
+    /**
+     * @return <tt>true</tt> if the client compresses every message
+     *  independently.
+     */
+    public boolean isClientNoContextTakeover() {
+        return clientNoContextTakeover;
+    }
+
+    /**
+     * Returns the key, which is equal for all the codecs producing the same
+     * compressed output for the same message, so the compressed message can be
+     * shared amongst them. The codec, which keeps compression context between
+     * messages, is equal only to itself.
+     * 
+     * @return the compressed output sharing key.
+     */
+    public Object getSharingKey() {
+        return serverNoContextTakeover ? config : this;
+    }
+
+    /**
+     * @param length the message payload length.
+     * @return <tt>true</tt> if the message of the given length has to be
+     *  compressed.
+     */
+    public boolean shouldCompress(final int length) {
+        return length >= config.getMinCompressSize();
+    }
+
+    /**
+     * Compresses the complete message payload.
+     * 
+     * @param payload the message payload.
+     * @return the compressed payload without the trailing
+     *  <tt>0x00 0x00 0xff 0xff</tt>.
+     */
+    public synchronized byte[] compress(final byte[] payload) {
+        checkReleased();
+
+        final Deflater localDeflater;
+        if (serverNoContextTakeover) {
+            localDeflater = config.takeDeflater();
+        } else {
+            if (deflater == null) {
+                deflater = new Deflater(config.getCompressionLevel(), true);
+            }
+            localDeflater = deflater;
+        }
+
+        try {
+            localDeflater.setInput(payload);
+            byte[] out = new byte[Math.max(64, payload.length / 2 + 16)];
+            int length = 0;
+            for (;;) {
+                length += localDeflater.deflate(out, length, out.length - length,
+                        Deflater.SYNC_FLUSH);
+                if (length < out.length) {
+                    break;
+                }
+
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+
+            if (length >= TAIL.length && endsWithTail(out, length)) {
+                length -= TAIL.length;
+            }
+
+            return Arrays.copyOf(out, length);
+        } finally {
+            if (serverNoContextTakeover) {
+                config.releaseDeflater(localDeflater);
+            }
+        }
+    }
+
+    /**
+     * Decompresses the message fragment payload.
+     * 
+     * @param payload the compressed fragment payload.
+     * @param last <tt>true</tt> if it's the last message fragment.
+     * @return the decompressed payload.
+     * @throws MessageTooBigError if the decompressed message exceeds
+     *  {@link PerMessageDeflate#getMaxMessageSize()}.
+     */
+    public synchronized byte[] decompress(final byte[] payload,
+            final boolean last) {
+        checkReleased();
+
+        if (inflater == null) {
+            inflater = config.takeInflater();
+        }
+
+        try {
+            final ByteArrayOutputStream out =
+                    new ByteArrayOutputStream(payload.length * 2 + 16);
+            final byte[] chunk = new byte[Math.max(256,
+                    Math.min(payload.length * 4, 16384))];
+
+            final int maxMessageSize = config.getMaxMessageSize();
+            inflate(payload, out, chunk, maxMessageSize);
+            if (last) {
+                inflate(TAIL, out, chunk, maxMessageSize);
+            }
+
+            return out.size() != 0 ? out.toByteArray() : EMPTY;
+        } catch (DataFormatException e) {
+            releaseInflater();
+            throw new ProtocolError("Invalid compressed data", e);
+        } catch (MessageTooBigError e) {
+            releaseInflater();
+            throw e;
+        } finally {
+            if (last) {
+                messageSize = 0;
+            }
+            
+            if (last && inflater != null) {
+                if (clientNoContextTakeover) {
+                    releaseInflater();
+                } else if (inflater.finished()) {
+                    // the client ended the deflate stream, start new one
+                    inflater.reset();
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the compression resources, the codec can't be used afterwards.
+     */
+    public synchronized void release() {
+        if (released) {
+            return;
+        }
+
+        released = true;
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+
+        if (inflater != null) {
+            if (clientNoContextTakeover) {
+                releaseInflater();
+            } else {
+                inflater.end();
+                inflater = null;
+            }
+        }
+    }
+
+    private void inflate(final byte[] input, final ByteArrayOutputStream out,
+            final byte[] chunk, final int maxMessageSize)
+            throws DataFormatException {
+        inflater.setInput(input);
+        for (;;) {
+            final int n = inflater.inflate(chunk);
+            if (n > 0) {
+                messageSize += n;
+                if (maxMessageSize > 0 && messageSize > maxMessageSize) {
+                    throw new MessageTooBigError(
+                            "Decompressed message exceeds " + maxMessageSize + " bytes");
+                }
+                out.write(chunk, 0, n);
+            } else if (inflater.needsInput() || inflater.finished()
+                    || inflater.needsDictionary()) {
+                break;
+            }
+        }
+    }
+
+    private void releaseInflater() {
+        final Inflater localInflater = inflater;
+        inflater = null;
+        messageSize = 0;
+        if (localInflater != null) {
+            config.releaseInflater(localInflater);
+        }
+    }
+
+    private void checkReleased() {
+        if (released) {
+            throw new IllegalStateException("The codec has been released");
+        }
+    }
+
+    private static boolean endsWithTail(final byte[] out, final int length) {
+        for (int i = 0; i < TAIL.length; i++) {
+            if (out[length - TAIL.length + i] != TAIL[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
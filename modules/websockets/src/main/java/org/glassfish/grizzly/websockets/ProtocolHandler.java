@@ -40,6 +40,7 @@
 
 package org.glassfish.grizzly.websockets;
 
+import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
@@ -48,9 +49,12 @@ import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
 
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.CloseType;
+import org.glassfish.grizzly.Closeable;
 import org.glassfish.grizzly.CompletionHandler;
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.GenericCloseListener;
 import org.glassfish.grizzly.GrizzlyFuture;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.http.HttpContent;
@@ -74,6 +78,7 @@ public abstract class ProtocolHandler {
     protected final CharsetDecoder currentDecoder = utf8.newDecoder();
     protected ByteBuffer remainder;
     protected WebSocketMappingData mappingData;
+    protected volatile PerMessageDeflateCodec perMessageDeflate;
     
     public ProtocolHandler(boolean maskData) {
         this.maskData = maskData;
@@ -90,6 +95,18 @@ public abstract class ProtocolHandler {
                 ((HttpRequestPacket) request.getHttpHeader()).getResponse();
         
         handshake.respond(ctx, app, response);
+        
+        final PerMessageDeflateCodec codec = handshake.getPerMessageDeflate();
+        if (codec != null) {
+            setPerMessageDeflate(codec);
+            connection.addCloseListener(new GenericCloseListener() {
+                @Override
+                public void onClosed(final Closeable closeable,
+                        final CloseType type) throws IOException {
+                    codec.release();
+                }
+            });
+        }
         return handshake;
     }
 
@@ -138,6 +155,28 @@ public abstract class ProtocolHandler {
         return maskData;
     }
 
+    /**
+     * @return the negotiated <tt>permessage-deflate</tt> parameters, or
+     *  <tt>null</tt> if the messages are not compressed.
+     *
+     * @since 2.4.3
+     */
+    public PerMessageDeflateCodec getPerMessageDeflate() {
+        return perMessageDeflate;
+    }
+
+    /**
+     * Sets the negotiated <tt>permessage-deflate</tt> parameters.
+     *
+     * @param perMessageDeflate the negotiated parameters, or <tt>null</tt>
+     *  if the messages should not be compressed.
+     *
+     * @since 2.4.3
+     */
+    public void setPerMessageDeflate(final PerMessageDeflateCodec perMessageDeflate) {
+        this.perMessageDeflate = perMessageDeflate;
+    }
+
     public abstract byte[] frame(DataFrame frame);
 /*
     public void readFrame() {
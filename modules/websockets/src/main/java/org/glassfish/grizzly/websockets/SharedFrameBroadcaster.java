@@ -0,0 +1,315 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.websockets;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.Buffers;
+
+/**
+ * {@link Broadcaster}, which frames the message once and shares the same
+ * read-only {@link Buffer} amongst all the recipients, and doesn't let slow
+ * recipients accumulate unbounded amount of queued data.
+ * 
+ * If a recipient's async write queue holds more than {@link #getMaxQueuedBytes()}
+ * bytes, the recipient's {@link SlowConsumerPolicy} (or this broadcaster's
+ * default policy) is applied. Fragments can't be dropped or coalesced without
+ * breaking the fragmented message, so a slow recipient of a fragment is always
+ * closed.
+ * 
+ * The recipients, which negotiated the <tt>permessage-deflate</tt> extension,
+ * share the message compressed once per {@link PerMessageDeflateCodec#getSharingKey()
+ * sharing key}. The recipients keeping the compression context between messages
+ * get the message compressed individually, and only if it is written, because
+ * a dropped or superseded compressed message would break the recipient's
+ * decompression context.
+ * 
+ * NOTE: works with {@link SimpleWebSocket}s and inherited classes.
+ * 
+ * @since 2.4.3
+ */
+public class SharedFrameBroadcaster implements Broadcaster {
+    private volatile SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DROP;
+    private volatile int maxQueuedBytes = -1;
+
+    private final AtomicLong droppedMessagesCount = new AtomicLong();
+
+    /**
+     * @return the {@link SlowConsumerPolicy} applied to the recipients, which
+     *  don't have own policy set.
+     */
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    /**
+     * Sets the {@link SlowConsumerPolicy} applied to the recipients, which
+     * don't have own policy set. {@link SlowConsumerPolicy#DROP} by default.
+     * 
+     * @param slowConsumerPolicy the {@link SlowConsumerPolicy}.
+     * @return this
+     */
+    public SharedFrameBroadcaster setSlowConsumerPolicy(
+            final SlowConsumerPolicy slowConsumerPolicy) {
+        if (slowConsumerPolicy == null) {
+            throw new IllegalArgumentException("slowConsumerPolicy can't be null");
+        }
+        
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of bytes queued for a recipient before the
+     *  {@link SlowConsumerPolicy} is applied, if not positive - the recipient
+     *  connection's max async write queue size is used.
+     */
+    public int getMaxQueuedBytes() {
+        return maxQueuedBytes;
+    }
+
+    /**
+     * Sets the maximum number of bytes queued for a recipient before the
+     * {@link SlowConsumerPolicy} is applied. If not positive (default) - the
+     * recipient connection's max async write queue size is used.
+     * 
+     * @param maxQueuedBytes the maximum number of bytes queued for a recipient.
+     * @return this
+     */
+    public SharedFrameBroadcaster setMaxQueuedBytes(final int maxQueuedBytes) {
+        this.maxQueuedBytes = maxQueuedBytes;
+        return this;
+    }
+
+    /**
+     * @return the number of messages not sent to slow recipients.
+     */
+    public long getDroppedMessagesCount() {
+        return droppedMessagesCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void broadcast(final Iterable<? extends WebSocket> recipients,
+            final String text) {
+        
+        final SharedFrames sharedFrames = new SharedFrames();
+        
+        for (WebSocket websocket : recipients) {
+            if (websocket.isConnected()) {
+                final SimpleWebSocket simpleWebSocket = (SimpleWebSocket) websocket;
+                if (!isShareable(simpleWebSocket)) {
+                    send(simpleWebSocket,
+                            simpleWebSocket.protocolHandler.toDataFrame(text));
+                    continue;
+                }
+                
+                Buffer rawDataToSend = sharedFrames.get(simpleWebSocket);
+                if (rawDataToSend == null) {
+                    rawDataToSend = share(simpleWebSocket, simpleWebSocket.toRawData(text));
+                    sharedFrames.put(simpleWebSocket, rawDataToSend);
+                }
+                
+                send(simpleWebSocket, rawDataToSend, slowConsumerPolicy);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void broadcast(final Iterable<? extends WebSocket> recipients,
+            final byte[] binary) {
+        
+        final SharedFrames sharedFrames = new SharedFrames();
+        
+        for (WebSocket websocket : recipients) {
+            if (websocket.isConnected()) {
+                final SimpleWebSocket simpleWebSocket = (SimpleWebSocket) websocket;
+                if (!isShareable(simpleWebSocket)) {
+                    send(simpleWebSocket,
+                            simpleWebSocket.protocolHandler.toDataFrame(binary));
+                    continue;
+                }
+                
+                Buffer rawDataToSend = sharedFrames.get(simpleWebSocket);
+                if (rawDataToSend == null) {
+                    rawDataToSend = share(simpleWebSocket, simpleWebSocket.toRawData(binary));
+                    sharedFrames.put(simpleWebSocket, rawDataToSend);
+                }
+                
+                send(simpleWebSocket, rawDataToSend, slowConsumerPolicy);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void broadcastFragment(final Iterable<? extends WebSocket> recipients,
+            final String text, final boolean last) {
+        
+        Buffer rawDataToSend = null;
+        
+        for (WebSocket websocket : recipients) {
+            if (websocket.isConnected()) {
+                final SimpleWebSocket simpleWebSocket = (SimpleWebSocket) websocket;
+                if (rawDataToSend == null) {
+                    rawDataToSend = share(simpleWebSocket, simpleWebSocket.toRawData(text, last));
+                }
+                
+                send(simpleWebSocket, rawDataToSend, SlowConsumerPolicy.CLOSE);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void broadcastFragment(final Iterable<? extends WebSocket> recipients,
+            final byte[] binary, final boolean last) {
+        
+        Buffer rawDataToSend = null;
+        
+        for (WebSocket websocket : recipients) {
+            if (websocket.isConnected()) {
+                final SimpleWebSocket simpleWebSocket = (SimpleWebSocket) websocket;
+                if (rawDataToSend == null) {
+                    rawDataToSend = share(simpleWebSocket, simpleWebSocket.toRawData(binary, last));
+                }
+                
+                send(simpleWebSocket, rawDataToSend, SlowConsumerPolicy.CLOSE);
+            }
+        }
+    }
+
+    private void send(final SimpleWebSocket websocket, final Buffer rawData,
+            final SlowConsumerPolicy defaultPolicy) {
+        final SlowConsumerPolicy policy;
+        if (defaultPolicy == SlowConsumerPolicy.CLOSE) {
+            policy = SlowConsumerPolicy.CLOSE;
+        } else {
+            policy = getPolicy(websocket);
+        }
+        
+        try {
+            if (!websocket.sendRaw(rawData, maxQueuedBytes, policy)) {
+                droppedMessagesCount.incrementAndGet();
+            }
+        } catch (WebSocketException ignored) {
+        }
+    }
+
+    private void send(final SimpleWebSocket websocket, final DataFrame frame) {
+        try {
+            if (!websocket.sendRaw(frame, maxQueuedBytes, getPolicy(websocket))) {
+                droppedMessagesCount.incrementAndGet();
+            }
+        } catch (WebSocketException ignored) {
+        }
+    }
+
+    private SlowConsumerPolicy getPolicy(final SimpleWebSocket websocket) {
+        final SlowConsumerPolicy socketPolicy = websocket.getSlowConsumerPolicy();
+        return socketPolicy != null ? socketPolicy : slowConsumerPolicy;
+    }
+
+    /**
+     * @return <tt>false</tt> if the {@link WebSocket} keeps the compression
+     *  context between messages, so the compressed message can't be shared
+     *  and has to be compressed only if it's going to be sent.
+     */
+    private static boolean isShareable(final SimpleWebSocket websocket) {
+        final PerMessageDeflateCodec codec =
+                websocket.protocolHandler.getPerMessageDeflate();
+        return codec == null || codec.getSharingKey() != codec;
+    }
+
+    /**
+     * The framed message per {@link PerMessageDeflateCodec#getSharingKey()
+     * sharing key}, the uncompressed frame is kept separately to avoid map
+     * lookups when the extension is not used.
+     */
+    private static final class SharedFrames {
+        private Buffer plain;
+        private Map<Object, Buffer> compressed;
+
+        Buffer get(final SimpleWebSocket websocket) {
+            final PerMessageDeflateCodec codec =
+                    websocket.protocolHandler.getPerMessageDeflate();
+            if (codec == null) {
+                return plain;
+            }
+
+            return compressed != null
+                    ? compressed.get(codec.getSharingKey())
+                    : null;
+        }
+
+        void put(final SimpleWebSocket websocket, final Buffer rawData) {
+            final PerMessageDeflateCodec codec =
+                    websocket.protocolHandler.getPerMessageDeflate();
+            if (codec == null) {
+                plain = rawData;
+                return;
+            }
+
+            if (compressed == null) {
+                compressed = new HashMap<Object, Buffer>(4);
+            }
+            compressed.put(codec.getSharingKey(), rawData);
+        }
+    }
+
+    private static Buffer share(final SimpleWebSocket websocket,
+            final byte[] rawData) {
+        return Buffers.wrap(websocket.protocolHandler.getConnection()
+                .getTransport().getMemoryManager(), rawData).asReadOnlyBuffer();
+    }
+}
@@ -44,8 +44,10 @@ import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.GrizzlyFuture;
+import org.glassfish.grizzly.WriteHandler;
 import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.nio.NIOConnection;
 import org.glassfish.grizzly.websockets.frametypes.PingFrameType;
 import org.glassfish.grizzly.websockets.frametypes.PongFrameType;
 
@@ -77,6 +79,19 @@ public class SimpleWebSocket implements WebSocket {
     protected final EnumSet<State> connected = EnumSet.range(State.CONNECTED, State.CLOSING);
     protected final AtomicReference<State> state = new AtomicReference<State>(State.NEW);
 
+    private volatile SlowConsumerPolicy slowConsumerPolicy;
+    /*
+     * The latest broadcast frame waiting for the async write queue to drain,
+     * if the COALESCE_LATEST policy is applied.
+     */
+    private final AtomicReference<Buffer> coalescedRawData = new AtomicReference<Buffer>();
+    /*
+     * The latest broadcast message waiting for the async write queue to drain,
+     * if the COALESCE_LATEST policy is applied to a message, which is framed
+     * right before it's written. Guarded by coalescedRawData.
+     */
+    private DataFrame coalescedFrame;
+
 
     public SimpleWebSocket(final ProtocolHandler protocolHandler,
                             final WebSocketListener... listeners) {
@@ -326,6 +341,142 @@ public class SimpleWebSocket implements WebSocket {
         connection.write(buffer);
     }
 
+    /**
+     * Sends the framed data, which might be shared with other {@link WebSocket}s,
+     * unless this {@link WebSocket}'s async write queue is full. The position and
+     * limit of the passed {@link Buffer} are not changed.
+     * 
+     * @param rawData the framed data.
+     * @param maxQueuedBytes the maximum number of bytes queued for this
+     *  {@link WebSocket} before the {@link SlowConsumerPolicy} is applied, if not
+     *  positive - {@link Connection#getMaxAsyncWriteQueueSize()} is used.
+     * @param policy the {@link SlowConsumerPolicy} to apply if the async write
+     *  queue is full.
+     * @return <tt>true</tt> if the data has been sent or scheduled to be sent,
+     *  or <tt>false</tt> if it has been dropped.
+     * 
+     * @since 2.4.3
+     */
+    @SuppressWarnings("unchecked")
+    protected boolean sendRaw(final Buffer rawData, final int maxQueuedBytes,
+            final SlowConsumerPolicy policy) {
+        final Connection connection = protocolHandler.getConnection();
+        
+        synchronized (coalescedRawData) {
+            if (canWrite(connection, rawData.remaining(), maxQueuedBytes)) {
+                // the newer frame supersedes the coalesced one
+                coalescedRawData.set(null);
+                connection.write(rawData.duplicate());
+                return true;
+            }
+
+            if (policy == SlowConsumerPolicy.COALESCE_LATEST) {
+                if (coalescedRawData.getAndSet(rawData) == null) {
+                    connection.notifyCanWrite(new CoalescedWriteHandler(connection));
+                }
+                return true;
+            }
+            
+            return onSlowConsumer(connection, policy);
+        }
+    }
+
+    /**
+     * Frames and sends the message, unless this {@link WebSocket}'s async write
+     * queue is full. Unlike {@link #sendRaw(Buffer, int, SlowConsumerPolicy)}
+     * the message is framed only if it's going to be written, so the messages
+     * dropped or superseded according to the {@link SlowConsumerPolicy} don't
+     * advance the connection's compression context (see
+     * {@link PerMessageDeflateCodec#getSharingKey()}).
+     * 
+     * @param frame the message.
+     * @param maxQueuedBytes the maximum number of bytes queued for this
+     *  {@link WebSocket} before the {@link SlowConsumerPolicy} is applied, if not
+     *  positive - {@link Connection#getMaxAsyncWriteQueueSize()} is used.
+     * @param policy the {@link SlowConsumerPolicy} to apply if the async write
+     *  queue is full.
+     * @return <tt>true</tt> if the message has been sent or scheduled to be sent,
+     *  or <tt>false</tt> if it has been dropped.
+     * 
+     * @since 2.4.3
+     */
+    protected boolean sendRaw(final DataFrame frame, final int maxQueuedBytes,
+            final SlowConsumerPolicy policy) {
+        final Connection connection = protocolHandler.getConnection();
+        final int size = frame.getTextPayload() != null
+                ? frame.getTextPayload().length()
+                : frame.getBytes().length;
+        
+        synchronized (coalescedRawData) {
+            if (canWrite(connection, size, maxQueuedBytes)) {
+                // the newer message supersedes the coalesced one
+                coalescedFrame = null;
+                sendRaw(protocolHandler.frame(frame));
+                return true;
+            }
+
+            if (policy == SlowConsumerPolicy.COALESCE_LATEST) {
+                if (coalescedFrame == null) {
+                    connection.notifyCanWrite(new CoalescedWriteHandler(connection));
+                }
+                coalescedFrame = frame;
+                return true;
+            }
+            
+            return onSlowConsumer(connection, policy);
+        }
+    }
+    
+    private boolean onSlowConsumer(final Connection connection,
+            final SlowConsumerPolicy policy) {
+        if (policy == SlowConsumerPolicy.CLOSE) {
+            close(POLICY_VIOLATION, "Slow consumer");
+            // the closing frame is queued behind the pending data,
+            // so don't wait for the slow peer to read it
+            connection.terminateSilently();
+        }
+        
+        return false;
+    }
+
+    /**
+     * @return the {@link SlowConsumerPolicy} applied to this {@link WebSocket}
+     *  by {@link SharedFrameBroadcaster}, or <tt>null</tt> if the broadcaster's
+     *  default policy is applied.
+     * 
+     * @since 2.4.3
+     */
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    /**
+     * Sets the {@link SlowConsumerPolicy} applied to this {@link WebSocket}
+     * by {@link SharedFrameBroadcaster}.
+     * 
+     * @param slowConsumerPolicy the {@link SlowConsumerPolicy}, or <tt>null</tt>
+     *  to apply the broadcaster's default policy.
+     * 
+     * @since 2.4.3
+     */
+    public void setSlowConsumerPolicy(final SlowConsumerPolicy slowConsumerPolicy) {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+    private static boolean canWrite(final Connection connection,
+            final int size, final int maxQueuedBytes) {
+        final int limit = maxQueuedBytes > 0
+                ? maxQueuedBytes
+                : connection.getMaxAsyncWriteQueueSize();
+        
+        if (limit < 0 || !(connection instanceof NIOConnection)) {
+            return true;
+        }
+        
+        final int queued = ((NIOConnection) connection).getAsyncWriteQueue().spaceInBytes();
+        return queued == 0 || queued + size <= limit;
+    }
+
     protected Broadcaster getBroadcaster() {
         return broadcaster;
     }
@@ -333,4 +484,41 @@ public class SimpleWebSocket implements WebSocket {
     protected void setBroadcaster(Broadcaster broadcaster) {
         this.broadcaster = broadcaster;
     }
+
+    /**
+     * Sends the coalesced frame, once the async write queue has room.
+     */
+    private final class CoalescedWriteHandler implements WriteHandler {
+        private final Connection connection;
+
+        private CoalescedWriteHandler(final Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void onWritePossible() throws Exception {
+            synchronized (coalescedRawData) {
+                final Buffer rawData = coalescedRawData.getAndSet(null);
+                final DataFrame frame = coalescedFrame;
+                coalescedFrame = null;
+                
+                if (isConnected()) {
+                    if (rawData != null) {
+                        connection.write(rawData.duplicate());
+                    } else if (frame != null) {
+                        sendRaw(protocolHandler.frame(frame));
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void onError(final Throwable t) {
+            synchronized (coalescedRawData) {
+                coalescedRawData.set(null);
+                coalescedFrame = null;
+            }
+        }
+    }
 }
@@ -41,6 +41,7 @@
 package org.glassfish.grizzly.websockets;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -61,8 +62,16 @@ public abstract class WebSocketApplication extends WebSocketAdapter {
      */
     private final ConcurrentMap<WebSocket, Boolean> sockets = new ConcurrentHashMap<>();
 
+    /*
+     * Room name -> member WebSockets, and WebSocket -> joined room names.
+     * Modifications are guarded by the rooms map, lookups are lock-free.
+     */
+    private final ConcurrentMap<String, Set<WebSocket>> rooms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<WebSocket, Set<String>> memberships = new ConcurrentHashMap<>();
+
     private final List<Extension> supportedExtensions = new ArrayList<Extension>(2);
     private final List<String> supportedProtocols = new ArrayList<String>(2);
+    private volatile PerMessageDeflate perMessageDeflate;
     
     // ---------------------------------------------------------- Public Methods
 
@@ -201,6 +210,32 @@ public abstract class WebSocketApplication extends WebSocketAdapter {
         return supportedExtensions;
     }
 
+    /**
+     * @return the <tt>permessage-deflate</tt> extension configuration, or
+     *  <tt>null</tt> if the extension is not supported.
+     *
+     * @since 2.4.3
+     */
+    public PerMessageDeflate getPerMessageDeflate() {
+        return perMessageDeflate;
+    }
+
+    /**
+     * Enables the <tt>permessage-deflate</tt> extension
+     * (<a href="https://tools.ietf.org/html/rfc7692">RFC 7692</a>) for this
+     * application's {@link WebSocket}s. The extension is negotiated during the
+     * handshake with the clients, which offer it, and it's not passed to
+     * {@link #onExtensionNegotiation(List)}.
+     *
+     * @param perMessageDeflate the <tt>permessage-deflate</tt> configuration,
+     *  or <tt>null</tt> to disable the extension.
+     *
+     * @since 2.4.3
+     */
+    public void setPerMessageDeflate(final PerMessageDeflate perMessageDeflate) {
+        this.perMessageDeflate = perMessageDeflate;
+    }
+
     /**
      *
      *
@@ -212,6 +247,113 @@ public abstract class WebSocketApplication extends WebSocketAdapter {
     }
     
     
+    /**
+     * Adds the {@link WebSocket} to the room, so it receives the messages
+     * broadcast to the {@link #getRoomMembers(String) room members}. The
+     * {@link WebSocket} leaves all its rooms once it's {@link #remove(WebSocket) removed}
+     * from this application.
+     *
+     * @param room the room name.
+     * @param socket the {@link WebSocket} joining the room.
+     *
+     * @return <code>true</code> if the socket has joined the room, or
+     *  <code>false</code> if it's already a member.
+     *
+     * @since 2.4.3
+     */
+    public boolean join(final String room, final WebSocket socket) {
+        synchronized (rooms) {
+            Set<WebSocket> members = rooms.get(room);
+            if (members == null) {
+                members = Collections.newSetFromMap(
+                        new ConcurrentHashMap<WebSocket, Boolean>());
+                rooms.put(room, members);
+            }
+
+            if (!members.add(socket)) {
+                return false;
+            }
+
+            Set<String> socketRooms = memberships.get(socket);
+            if (socketRooms == null) {
+                socketRooms = Collections.newSetFromMap(
+                        new ConcurrentHashMap<String, Boolean>());
+                memberships.put(socket, socketRooms);
+            }
+            socketRooms.add(room);
+            return true;
+        }
+    }
+
+    /**
+     * Removes the {@link WebSocket} from the room. The room is discarded once
+     * its last member leaves.
+     *
+     * @param room the room name.
+     * @param socket the {@link WebSocket} leaving the room.
+     *
+     * @return <code>true</code> if the socket has left the room, or
+     *  <code>false</code> if it wasn't a member.
+     *
+     * @since 2.4.3
+     */
+    public boolean leave(final String room, final WebSocket socket) {
+        synchronized (rooms) {
+            final Set<WebSocket> members = rooms.get(room);
+            if (members == null || !members.remove(socket)) {
+                return false;
+            }
+
+            if (members.isEmpty()) {
+                rooms.remove(room);
+            }
+
+            final Set<String> socketRooms = memberships.get(socket);
+            if (socketRooms != null) {
+                socketRooms.remove(room);
+                if (socketRooms.isEmpty()) {
+                    memberships.remove(socket);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Returns the {@link WebSocket}s, which have joined the room, so the messages
+     * could be broadcast to the room members only:
+     * <pre><code>
+     * socket.broadcast(getRoomMembers("lobby"), text);
+     * </code></pre>
+     * The returned set is unmodifiable.
+     *
+     * @param room the room name.
+     *
+     * @return the {@link WebSocket}s, which have joined the room.
+     *
+     * @since 2.4.3
+     */
+    public Set<WebSocket> getRoomMembers(final String room) {
+        final Set<WebSocket> members = rooms.get(room);
+        return members != null
+                ? Collections.unmodifiableSet(members)
+                : Collections.<WebSocket>emptySet();
+    }
+
+    /**
+     * @param socket the {@link WebSocket}.
+     *
+     * @return the names of the rooms the {@link WebSocket} has joined.
+     *
+     * @since 2.4.3
+     */
+    public Set<String> getRooms(final WebSocket socket) {
+        final Set<String> socketRooms = memberships.get(socket);
+        return socketRooms != null
+                ? Collections.unmodifiableSet(socketRooms)
+                : Collections.<String>emptySet();
+    }
+
     // ------------------------------------------------------- Protected Methods
 
     
@@ -246,7 +388,16 @@ public abstract class WebSocketApplication extends WebSocketAdapter {
      *  otherwise returns <code>false</code>.
      */
     public boolean remove(WebSocket socket) {
-        return sockets.remove(socket) != null;
+        final boolean removed = sockets.remove(socket) != null;
+
+        final Set<String> socketRooms = memberships.get(socket);
+        if (socketRooms != null) {
+            for (String room : socketRooms) {
+                leave(room, socket);
+            }
+        }
+
+        return removed;
     }
 
 
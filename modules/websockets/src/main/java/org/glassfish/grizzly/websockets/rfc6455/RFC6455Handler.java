@@ -48,6 +48,7 @@ import org.glassfish.grizzly.websockets.DataFrame;
 import org.glassfish.grizzly.websockets.FrameType;
 import org.glassfish.grizzly.websockets.HandShake;
 import org.glassfish.grizzly.websockets.Masker;
+import org.glassfish.grizzly.websockets.PerMessageDeflateCodec;
 import org.glassfish.grizzly.websockets.ProtocolError;
 import org.glassfish.grizzly.websockets.ProtocolHandler;
 import org.glassfish.grizzly.websockets.frametypes.BinaryFrameType;
@@ -63,6 +64,8 @@ import java.util.Locale;
 public class RFC6455Handler extends ProtocolHandler {
 
     private final ParsingState state = new ParsingState();
+    // true, if the message being parsed is compressed (permessage-deflate)
+    private boolean inCompressed;
 
     // ------------------------------------------------------------ Constructors
 
@@ -89,7 +92,16 @@ public class RFC6455Handler extends ProtocolHandler {
     @Override
     public byte[] frame(DataFrame frame) {
         byte opcode = checkForLastFrame(frame, getOpcode(frame.getType()));
-        final byte[] bytes = frame.getType().getBytes(frame);
+        byte[] bytes = frame.getType().getBytes(frame);
+
+        final PerMessageDeflateCodec codec = perMessageDeflate;
+        if (codec != null && frame.isLast()
+                && (opcode & 0x0F) != 0 && !isControlFrame(opcode)
+                && codec.shouldCompress(bytes.length)) {
+            // only unfragmented messages are compressed
+            bytes = codec.compress(bytes);
+            opcode |= 0x40; // RSV1
+        }
         final byte[] lengthBytes = encodeLength(bytes.length);
 
         int length = 1 + lengthBytes.length + bytes.length + (maskData
@@ -126,15 +138,21 @@ public class RFC6455Handler extends ProtocolHandler {
                     }
 
                     byte opcode = buffer.get();
-                    boolean rsvBitSet = isBitSet(opcode, 6)
-                            || isBitSet(opcode, 5)
+                    final boolean compressed = isBitSet(opcode, 6);
+                    boolean rsvBitSet = isBitSet(opcode, 5)
                             || isBitSet(opcode, 4);
+                    state.finalFragment = isBitSet(opcode, 7);
+                    state.controlFrame = isControlFrame(opcode);
+                    state.opcode = (byte) (opcode & 0x0f);
+                    if (compressed) {
+                        // RSV1 marks the first frame of a compressed message
+                        rsvBitSet = perMessageDeflate == null
+                                || state.controlFrame
+                                || isContinuationFrame(state.opcode);
+                    }
                     if (rsvBitSet) {
                         throw new ProtocolError("RSV bit(s) incorrectly set.");
                     }
-                    state.finalFragment = isBitSet(opcode, 7);
-                    state.controlFrame = isControlFrame(opcode);
-                    state.opcode = (byte) (opcode & 0x7f);
                     state.frameType = valueOf(inFragmentedType, state.opcode);
                     if (!state.finalFragment && state.controlFrame) {
                         throw new ProtocolError("Fragmented control frame");
@@ -155,6 +173,9 @@ public class RFC6455Handler extends ProtocolHandler {
                                 state.opcode)) {
                             processingFragment = true;
                         }
+                        if (!isContinuationFrame(state.opcode)) {
+                            inCompressed = compressed;
+                        }
                         if (!state.finalFragment) {
                             if (inFragmentedType == 0) {
                                 inFragmentedType = state.opcode;
@@ -207,13 +228,17 @@ public class RFC6455Handler extends ProtocolHandler {
                     }
 
                     state.masker.setBuffer(buffer);
-                    final byte[] data = state.masker.unmask((int) state.length);
+                    byte[] data = state.masker.unmask((int) state.length);
                     if (data.length != state.length) {
                         throw new ProtocolError(String.format(
                                 "Data read (%s) is not the expected" +
                                         " size (%s)", data.length,
                                 state.length));
                     }
+                    if (!state.controlFrame && inCompressed) {
+                        data = perMessageDeflate.decompress(data,
+                                state.finalFragment);
+                    }
                     dataFrame =
                             state.frameType.create(state.finalFragment, data);
 
@@ -225,6 +250,7 @@ public class RFC6455Handler extends ProtocolHandler {
                     if (!state.controlFrame && state.finalFragment) {
                         inFragmentedType = 0;
                         processingFragment = false;
+                        inCompressed = false;
                     }
                     state.recycle();
 
@@ -0,0 +1,545 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.websockets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.utils.Charsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the <tt>permessage-deflate</tt> extension (RFC 7692) support.
+ */
+public class PerMessageDeflateTest {
+    private static final int PORT = 17260;
+    private static final byte[] TAIL = {0x00, 0x00, (byte) 0xff, (byte) 0xff};
+    private static final String MESSAGE;
+
+    static {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            sb.append("compress me, please ");
+        }
+        MESSAGE = sb.toString();
+    }
+
+    @Test
+    public void testNegotiation() throws Exception {
+        final PerMessageDeflate deflate = new PerMessageDeflate()
+                .setClientMaxWindowBits(10);
+
+        PerMessageDeflateCodec codec = deflate.negotiate(
+                offers("permessage-deflate; client_max_window_bits"));
+        Assert.assertNotNull(codec);
+        Assert.assertEquals("permessage-deflate; server_no_context_takeover; client_max_window_bits=10",
+                codec.getResponse().toString());
+
+        // the Deflater window can't be changed, so the first offer is declined
+        codec = deflate.negotiate(offers("permessage-deflate; server_max_window_bits=10",
+                "permessage-deflate; client_no_context_takeover"));
+        Assert.assertNotNull(codec);
+        Assert.assertEquals("permessage-deflate; server_no_context_takeover; client_no_context_takeover",
+                codec.getResponse().toString());
+
+        Assert.assertNull(deflate.negotiate(offers("permessage-deflate; unknown")));
+        Assert.assertNull(deflate.negotiate(offers(
+                "permessage-deflate; client_no_context_takeover; client_no_context_takeover")));
+        Assert.assertNull(deflate.negotiate(offers("x-webkit-deflate-frame")));
+
+        deflate.setServerNoContextTakeover(false);
+        codec = deflate.negotiate(offers("permessage-deflate"));
+        Assert.assertEquals("permessage-deflate", codec.getResponse().toString());
+        Assert.assertSame(codec, codec.getSharingKey());
+
+        final PerMessageDeflateCodec noContext = deflate.negotiate(
+                offers("permessage-deflate; server_no_context_takeover"));
+        Assert.assertTrue(noContext.isServerNoContextTakeover());
+        Assert.assertSame(deflate, noContext.getSharingKey());
+    }
+
+    @Test
+    public void testContextTakeover() throws Exception {
+        final PerMessageDeflate deflate = new PerMessageDeflate()
+                .setServerNoContextTakeover(false);
+        final PerMessageDeflateCodec sender = deflate.negotiate(offers("permessage-deflate"));
+        final PerMessageDeflateCodec receiver = deflate.negotiate(offers("permessage-deflate"));
+
+        final byte[] payload = MESSAGE.getBytes(Charsets.UTF8_CHARSET);
+        final byte[] first = sender.compress(payload);
+        final byte[] second = sender.compress(payload);
+        // the second message refers the first one
+        Assert.assertTrue(second.length < first.length);
+
+        Assert.assertArrayEquals(payload, receiver.decompress(first, true));
+        final byte[] half1 = Arrays.copyOf(second, second.length / 2);
+        final byte[] half2 = Arrays.copyOfRange(second, second.length / 2, second.length);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(receiver.decompress(half1, false));
+        out.write(receiver.decompress(half2, true));
+        Assert.assertArrayEquals(payload, out.toByteArray());
+
+        sender.release();
+        receiver.release();
+    }
+
+    @Test
+    public void testMaxMessageSize() throws Exception {
+        final PerMessageDeflate deflate = new PerMessageDeflate()
+                .setMaxMessageSize(1000);
+        final PerMessageDeflateCodec codec = deflate.negotiate(offers("permessage-deflate"));
+
+        final byte[] small = deflate(new String(new char[1000]));
+        Assert.assertEquals(1000, codec.decompress(small, true).length);
+
+        // the limit is applied to the whole fragmented message
+        final byte[] big = deflate(new String(new char[1001]));
+        codec.decompress(Arrays.copyOf(big, big.length / 2), false);
+        try {
+            codec.decompress(Arrays.copyOfRange(big, big.length / 2, big.length), true);
+            Assert.fail("MessageTooBigError is expected");
+        } catch (MessageTooBigError e) {
+            Assert.assertEquals(WebSocket.MESSAGE_TOO_BIG, e.getClosingCode());
+        }
+        
+        codec.release();
+    }
+
+    @Test
+    public void testMaxMessageSizeClose() throws Exception {
+        final WebSocketServer server = WebSocketServer.createServer(PORT);
+        final EchoApplication application = new EchoApplication(null);
+        application.setPerMessageDeflate(new PerMessageDeflate()
+                .setMaxMessageSize(MESSAGE.length() - 1));
+        server.register("", "/echo", application);
+        server.start();
+
+        try {
+            final RawClient client = new RawClient("permessage-deflate");
+            try {
+                client.send(deflate(MESSAGE), true);
+                Assert.assertEquals(WebSocket.MESSAGE_TOO_BIG, client.readCloseCode());
+            } finally {
+                client.close();
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testCompressedEcho() throws Exception {
+        final WebSocketServer server = WebSocketServer.createServer(PORT);
+        final EchoApplication application = new EchoApplication(null);
+        application.setPerMessageDeflate(new PerMessageDeflate());
+        server.register("", "/echo", application);
+        server.start();
+
+        try {
+            final RawClient client = new RawClient("permessage-deflate; client_max_window_bits");
+            try {
+                Assert.assertEquals("permessage-deflate; server_no_context_takeover",
+                        client.extensions);
+
+                client.send(deflate(MESSAGE), true);
+                Frame frame = client.read();
+                Assert.assertTrue("RSV1 is expected", frame.compressed);
+                Assert.assertEquals(MESSAGE, inflate(frame.payload));
+
+                // small messages are not compressed
+                client.send("small".getBytes(Charsets.UTF8_CHARSET), false);
+                frame = client.read();
+                Assert.assertFalse(frame.compressed);
+                Assert.assertEquals("small", new String(frame.payload, Charsets.UTF8_CHARSET));
+            } finally {
+                client.close();
+            }
+
+            final RawClient plain = new RawClient(null);
+            try {
+                Assert.assertNull(plain.extensions);
+                plain.send(MESSAGE.getBytes(Charsets.UTF8_CHARSET), false);
+                final Frame frame = plain.read();
+                Assert.assertFalse(frame.compressed);
+                Assert.assertEquals(MESSAGE, new String(frame.payload, Charsets.UTF8_CHARSET));
+            } finally {
+                plain.close();
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testSharedFrameBroadcast() throws Exception {
+        final WebSocketServer server = WebSocketServer.createServer(PORT);
+        final EchoApplication application =
+                new EchoApplication(new SharedFrameBroadcaster());
+        application.setPerMessageDeflate(new PerMessageDeflate());
+        server.register("", "/echo", application);
+        server.start();
+
+        final RawClient deflate1 = new RawClient("permessage-deflate");
+        final RawClient deflate2 = new RawClient("permessage-deflate");
+        final RawClient plain = new RawClient(null);
+        try {
+            plain.send(MESSAGE.getBytes(Charsets.UTF8_CHARSET), false);
+
+            for (RawClient client : Arrays.asList(deflate1, deflate2)) {
+                final Frame frame = client.read();
+                Assert.assertTrue(frame.compressed);
+                Assert.assertEquals(MESSAGE, inflate(frame.payload));
+            }
+
+            final Frame frame = plain.read();
+            Assert.assertFalse(frame.compressed);
+            Assert.assertEquals(MESSAGE, new String(frame.payload, Charsets.UTF8_CHARSET));
+        } finally {
+            deflate1.close();
+            deflate2.close();
+            plain.close();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testContextTakeoverSlowConsumer() throws Exception {
+        final SharedFrameBroadcaster broadcaster = new SharedFrameBroadcaster()
+                .setSlowConsumerPolicy(SlowConsumerPolicy.DROP)
+                .setMaxQueuedBytes(1);
+        final WebSocketServer server = WebSocketServer.createServer(PORT);
+        final EchoApplication application = new EchoApplication(broadcaster);
+        application.setPerMessageDeflate(new PerMessageDeflate()
+                .setServerNoContextTakeover(false));
+        server.register("", "/echo", application);
+        server.start();
+
+        final ExecutorService reader = Executors.newSingleThreadExecutor();
+        final RawClient client = new RawClient("permessage-deflate");
+        try {
+            Assert.assertEquals("permessage-deflate", client.extensions);
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (application.getWebSockets().isEmpty()
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            // the client doesn't read, so the messages are dropped
+            // as soon as the server's async write queue is not empty
+            final Random random = new Random(1);
+            final List<String> sent = new ArrayList<String>();
+            for (int i = 0; i < 10000 && broadcaster.getDroppedMessagesCount() == 0; i++) {
+                broadcast(broadcaster, application, randomMessage(random, i), sent);
+            }
+            Assert.assertTrue("No message has been dropped",
+                    broadcaster.getDroppedMessagesCount() > 0);
+
+            final Future<List<String>> received = reader.submit(
+                    new Callable<List<String>>() {
+                @Override
+                public List<String> call() throws Exception {
+                    final List<String> messages = new ArrayList<String>();
+                    final Inflater inflater = new Inflater(true);
+                    try {
+                        String message;
+                        do {
+                            final Frame frame = client.read();
+                            message = frame.compressed
+                                    ? inflate(inflater, frame.payload)
+                                    : new String(frame.payload, Charsets.UTF8_CHARSET);
+                            messages.add(message);
+                        } while (!message.startsWith("last"));
+                    } finally {
+                        inflater.end();
+                    }
+                    return messages;
+                }
+            });
+
+            // the messages compressed after the dropped ones refer the same
+            // compression context
+            for (int i = 0; i < 10000 && !sent.get(sent.size() - 1).startsWith("last"); i++) {
+                broadcast(broadcaster, application,
+                        "last " + randomMessage(random, i), sent);
+            }
+
+            Assert.assertEquals(sent, received.get(30, TimeUnit.SECONDS));
+        } finally {
+            reader.shutdownNow();
+            client.close();
+            server.stop();
+        }
+    }
+
+    private static void broadcast(final SharedFrameBroadcaster broadcaster,
+            final EchoApplication application, final String message,
+            final List<String> sent) {
+        final long dropped = broadcaster.getDroppedMessagesCount();
+        broadcaster.broadcast(application.getWebSockets(), message);
+        if (broadcaster.getDroppedMessagesCount() == dropped) {
+            sent.add(message);
+        }
+    }
+
+    private static String randomMessage(final Random random, final int i) {
+        final StringBuilder sb = new StringBuilder(16384);
+        sb.append("message ").append(i).append(' ');
+        while (sb.length() < 16384) {
+            sb.append(MESSAGE, 0, 20).append((char) ('a' + random.nextInt(26)))
+                    .append(random.nextInt(1000));
+        }
+        return sb.toString();
+    }
+
+    private static String inflate(final Inflater inflater, final byte[] payload)
+            throws Exception {
+        final byte[] input = Arrays.copyOf(payload, payload.length + TAIL.length);
+        System.arraycopy(TAIL, 0, input, payload.length, TAIL.length);
+        inflater.setInput(input);
+        
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] chunk = new byte[8192];
+        while (!inflater.needsInput()) {
+            final int length = inflater.inflate(chunk);
+            out.write(chunk, 0, length);
+        }
+        return new String(out.toByteArray(), Charsets.UTF8_CHARSET);
+    }
+
+    private static List<Extension> offers(final String... offers) {
+        final List<Extension> result = new ArrayList<Extension>();
+        for (String offer : offers) {
+            final String[] parts = offer.split(";");
+            final Extension extension = new Extension(parts[0].trim());
+            for (int i = 1; i < parts.length; i++) {
+                final String part = parts[i].trim();
+                final int idx = part.indexOf('=');
+                extension.getParameters().add(idx < 0
+                        ? new Extension.Parameter(part, null)
+                        : new Extension.Parameter(part.substring(0, idx), part.substring(idx + 1)));
+            }
+            result.add(extension);
+        }
+        return result;
+    }
+
+    private static byte[] deflate(final String text) {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(text.getBytes(Charsets.UTF8_CHARSET));
+            final byte[] out = new byte[text.length() + 64];
+            final int length = deflater.deflate(out, 0, out.length, Deflater.SYNC_FLUSH);
+            return Arrays.copyOf(out, length - TAIL.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String inflate(final byte[] payload) throws Exception {
+        final Inflater inflater = new Inflater(true);
+        try {
+            final byte[] input = Arrays.copyOf(payload, payload.length + TAIL.length);
+            System.arraycopy(TAIL, 0, input, payload.length, TAIL.length);
+            inflater.setInput(input);
+            final byte[] out = new byte[MESSAGE.length() * 2];
+            final int length = inflater.inflate(out);
+            return new String(out, 0, length, Charsets.UTF8_CHARSET);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static final class Frame {
+        private final boolean compressed;
+        private final byte[] payload;
+
+        private Frame(final boolean compressed, final byte[] payload) {
+            this.compressed = compressed;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Minimal RFC 6455 client, which sends and reads raw frames.
+     */
+    private static final class RawClient {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final OutputStream out;
+        private final String extensions;
+
+        private RawClient(final String offer) throws IOException {
+            socket = new Socket("localhost", PORT);
+            socket.setSoTimeout(10000);
+            in = new DataInputStream(socket.getInputStream());
+            out = socket.getOutputStream();
+
+            final StringBuilder request = new StringBuilder()
+                    .append("GET /echo HTTP/1.1\r\n")
+                    .append("Host: localhost:").append(PORT).append("\r\n")
+                    .append("Upgrade: websocket\r\n")
+                    .append("Connection: Upgrade\r\n")
+                    .append("Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n")
+                    .append("Sec-WebSocket-Version: 13\r\n");
+            if (offer != null) {
+                request.append("Sec-WebSocket-Extensions: ").append(offer).append("\r\n");
+            }
+            request.append("\r\n");
+            out.write(request.toString().getBytes(Charsets.ASCII_CHARSET));
+            out.flush();
+
+            final String response = readHeaders(in);
+            Assert.assertTrue(response, response.startsWith("HTTP/1.1 101"));
+            String negotiated = null;
+            for (String line : response.split("\r\n")) {
+                if (line.toLowerCase().startsWith("sec-websocket-extensions:")) {
+                    negotiated = line.substring(line.indexOf(':') + 1).trim();
+                }
+            }
+            extensions = negotiated;
+        }
+
+        private void send(final byte[] payload, final boolean compressed)
+                throws IOException {
+            final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+            frame.write(compressed ? 0xC1 : 0x81);
+            if (payload.length <= 125) {
+                frame.write(0x80 | payload.length);
+            } else {
+                frame.write(0x80 | 126);
+                frame.write(payload.length >> 8);
+                frame.write(payload.length & 0xff);
+            }
+            final byte[] mask = {1, 2, 3, 4};
+            frame.write(mask);
+            for (int i = 0; i < payload.length; i++) {
+                frame.write(payload[i] ^ mask[i % 4]);
+            }
+            out.write(frame.toByteArray());
+            out.flush();
+        }
+
+        private Frame read() throws IOException {
+            final int b0 = in.readUnsignedByte();
+            int length = in.readUnsignedByte() & 0x7f;
+            if (length == 126) {
+                length = in.readUnsignedShort();
+            } else if (length == 127) {
+                length = (int) in.readLong();
+            }
+            final byte[] payload = new byte[length];
+            in.readFully(payload);
+            Assert.assertEquals("Text frame is expected", 0x81, b0 & 0x8f);
+            return new Frame((b0 & 0x40) != 0, payload);
+        }
+
+        private int readCloseCode() throws IOException {
+            final int b0 = in.readUnsignedByte();
+            Assert.assertEquals("Close frame is expected", 0x88, b0);
+            final int length = in.readUnsignedByte() & 0x7f;
+            final byte[] payload = new byte[length];
+            in.readFully(payload);
+            return ((payload[0] & 0xff) << 8) | (payload[1] & 0xff);
+        }
+
+        private void close() throws IOException {
+            socket.close();
+        }
+
+        private static String readHeaders(final InputStream in) throws IOException {
+            final ByteArrayOutputStream headers = new ByteArrayOutputStream();
+            int matched = 0;
+            while (matched < 4) {
+                final int b = in.read();
+                if (b == -1) {
+                    throw new IOException("Unexpected end of stream");
+                }
+                headers.write(b);
+                matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+            }
+            return new String(headers.toByteArray(), Charsets.ASCII_CHARSET);
+        }
+    }
+
+    private static class EchoApplication extends WebSocketApplication {
+        private final Broadcaster broadcaster;
+
+        private EchoApplication(final Broadcaster broadcaster) {
+            this.broadcaster = broadcaster;
+        }
+
+        @Override
+        public WebSocket createSocket(ProtocolHandler handler,
+                HttpRequestPacket requestPacket, WebSocketListener... listeners) {
+            final DefaultWebSocket ws = (DefaultWebSocket) super.createSocket(
+                    handler, requestPacket, listeners);
+            if (broadcaster != null) {
+                ws.setBroadcaster(broadcaster);
+            }
+            return ws;
+        }
+
+        @Override
+        public void onMessage(WebSocket socket, String text) {
+            if (broadcaster != null) {
+                socket.broadcast(getWebSockets(), text);
+            } else {
+                socket.send(text);
+            }
+        }
+    }
+}
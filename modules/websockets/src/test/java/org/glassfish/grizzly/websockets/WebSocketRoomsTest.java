@@ -0,0 +1,100 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.websockets;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test {@link WebSocketApplication} room membership.
+ */
+public class WebSocketRoomsTest {
+    @Test
+    public void testJoinLeave() throws Exception {
+        final WebSocketApplication application = new WebSocketApplication() {
+        };
+        final WebSocket a = createSocket();
+        final WebSocket b = createSocket();
+
+        Assert.assertTrue(application.join("lobby", a));
+        Assert.assertFalse(application.join("lobby", a));
+        Assert.assertTrue(application.join("lobby", b));
+        Assert.assertTrue(application.join("news", a));
+
+        Assert.assertEquals(new HashSet<WebSocket>(Arrays.asList(a, b)),
+                application.getRoomMembers("lobby"));
+        Assert.assertEquals(Collections.singleton(a), application.getRoomMembers("news"));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("lobby", "news")),
+                application.getRooms(a));
+
+        Assert.assertTrue(application.leave("lobby", b));
+        Assert.assertFalse(application.leave("lobby", b));
+        Assert.assertEquals(Collections.singleton(a), application.getRoomMembers("lobby"));
+        Assert.assertTrue(application.getRooms(b).isEmpty());
+        Assert.assertTrue(application.getRoomMembers("unknown").isEmpty());
+    }
+
+    @Test
+    public void testRemoveLeavesRooms() throws Exception {
+        final WebSocketApplication application = new WebSocketApplication() {
+        };
+        final WebSocket a = createSocket();
+        final WebSocket b = createSocket();
+
+        application.onConnect(a);
+        application.onConnect(b);
+        application.join("lobby", a);
+        application.join("lobby", b);
+        application.join("news", a);
+
+        Assert.assertTrue(application.remove(a));
+        Assert.assertEquals(Collections.singleton(b), application.getRoomMembers("lobby"));
+        Assert.assertTrue(application.getRoomMembers("news").isEmpty());
+        Assert.assertTrue(application.getRooms(a).isEmpty());
+    }
+
+    private static WebSocket createSocket() {
+        return new SimpleWebSocket(Version.RFC6455.createHandler(false));
+    }
+}